@@ -0,0 +1,59 @@
+// index of f which position a along an axis of length n stands for, as Boundaries.remap with condition
+// boundary (0 zero, 1 mirror, 2 periodic, 3 replicate); -1 stands for zero
+int remap(const int boundary, const int a, const int n)
+{
+	if (a >= 0 && a < n) return a;
+	int m;
+	switch (boundary) {
+	case 1:
+		if (n == 1) return 0;
+		m = a % (2*n-2);
+		if (m < 0) m += 2*n-2;
+		return m < n ? m : 2*n-2-m;
+	case 2:
+		m = a % n;
+		return m < 0 ? m+n : m;
+	case 3:
+		return a < 0 ? 0 : n-1;
+	default:
+		return -1;
+	}
+}
+
+kernel void ConvolveVolume(global const float* f, global const float* g, global float* r,
+const int fi, const int fj, const int fk, const int fOffset, const int fsi, const int fsj, const int fsk,
+const int gi, const int gj, const int gk, const int gOffset, const int gsi, const int gsj, const int gsk,
+const int ri, const int rj, const int rk, const int oi, const int oj, const int ok,
+const int boundary, const int di, const int dj, const int dk)
+{
+	int i = get_global_id(0);
+	int j = get_global_id(1);
+	int k = get_global_id(2);
+	if (i >= ri || j >= rj || k >= rk) return;
+	// output (i, j, k) is element (i+oi, j+oj, k+ok) of the full result
+	int ti = i+oi;
+	int tj = j+oj;
+	int tk = k+ok;
+	// tap p of the kernel dilated by di reads position ti-(gi-1-p)*di of f;
+	// only taps which fall inside f for the zero condition, every tap otherwise
+	int pStart = boundary == 0 ? max(0, gi-1-ti/di) : 0;
+	int pEnd = boundary == 0 ? gi - (ti < fi ? 0 : (ti-fi+di)/di) : gi;
+	int qStart = boundary == 0 ? max(0, gj-1-tj/dj) : 0;
+	int qEnd = boundary == 0 ? gj - (tj < fj ? 0 : (tj-fj+dj)/dj) : gj;
+	int sStart = boundary == 0 ? max(0, gk-1-tk/dk) : 0;
+	int sEnd = boundary == 0 ? gk - (tk < fk ? 0 : (tk-fk+dk)/dk) : gk;
+	float sum = 0;
+	int fInd, gInd;
+	for (int p = pStart; p < pEnd; p++) {
+		int ai = remap(boundary, ti-(gi-1-p)*di, fi);
+		for (int q = qStart; q < qEnd; q++) {
+			int aj = remap(boundary, tj-(gj-1-q)*dj, fj);
+			for (int s = sStart; s < sEnd; s++) {
+				fInd = fOffset + ai*fsi + aj*fsj + remap(boundary, tk-(gk-1-s)*dk, fk)*fsk;
+				gInd = gOffset + (gi-1-p)*gsi + (gj-1-q)*gsj + (gk-1-s)*gsk;
+				sum += f[fInd]*g[gInd];
+			}
+		}
+	}
+	r[(i*rj + j)*rk + k] = sum;
+}
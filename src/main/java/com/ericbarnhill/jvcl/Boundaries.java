@@ -31,6 +31,10 @@ import com.ericbarnhill.arrayMath.ArrayMath;
 /**
  * This class finishes boundaries for Unrolled and GPU methods. This allows the methods to run straightforwardly
  * with boundaries cleaned up in a final step, according to preferred boundary condition specifications.
+ * <p>
+ * It also defines the boundary {@link Condition}s with which the finite-difference convolvers extend an array
+ * past its edges. The extension is virtual: taps which fall outside the array are remapped to an index inside
+ * it, or dropped for {@link Condition#ZERO}, so no padded copy of the array is made.
  * @author ericbarnhill
  * @see Unrolled
  * @see FDGPU
@@ -39,6 +43,62 @@ import com.ericbarnhill.arrayMath.ArrayMath;
  */
 public class Boundaries {
 
+	/**
+	 * How an array of length {@code n} is extended past its edges, shown for {@code a b c d}.
+	 */
+	public enum Condition {
+		/** {@code 0 0 | a b c d | 0 0} */
+		ZERO,
+		/** {@code c b | a b c d | c b}, the edge sample is not repeated */
+		MIRROR,
+		/** {@code c d | a b c d | a b} */
+		PERIODIC,
+		/** {@code a a | a b c d | d d} */
+		REPLICATE
+	}
+
+	/**
+	 * @param condition boundary condition
+	 * @param a position along an axis, which may lie outside the array
+	 * @param n length of the array along the axis
+	 * @return index in {@code [0, n)} which position {@code a} stands for, or -1 if it stands for zero
+	 */
+	public static int remap(Condition condition, int a, int n) {
+		if (a >= 0 && a < n) {
+			return a;
+		}
+		switch (condition) {
+			case MIRROR:
+				if (n == 1) {
+					return 0;
+				}
+				final int period = 2*n - 2;
+				int m = a % period;
+				if (m < 0) {
+					m += period;
+				}
+				return m < n ? m : period - m;
+			case PERIODIC:
+				m = a % n;
+				return m < 0 ? m + n : m;
+			case REPLICATE:
+				return a < 0 ? 0 : n - 1;
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * @return table {@code t} of length {@code to - from} with {@code t[a - from] = remap(condition, a, n)}
+	 */
+	static int[] remap(Condition condition, int from, int to, int n) {
+		final int[] t = new int[to - from];
+		for (int a = from; a < to; a++) {
+			t[a - from] = remap(condition, a, n);
+		}
+		return t;
+	}
+
 	/**
 	 * Adds convolutions at boundaries for 1D {@code double[]}.
 	 * @param fPad padded original array
@@ -15,6 +15,63 @@ abstract class Convolver<T> {
     abstract T[][] convolve(T[][] data, T[][] kernel);
     abstract T[][][] convolve(T[][][] data, T[][] kernel);
     abstract T[][][] convolve(T[][][] data, T[][][] kernel);
+    abstract Volume<T> convolve(Volume<T> data, Volume<T> kernel);
+    abstract void convolveInto(Volume<T> data, Volume<T> kernel, Volume<T> result, Workspace workspace);
+    abstract Volume<T> convolve(Volume<T> data, Volume<T> kernel, OutputMode mode);
+    abstract void convolveInto(Volume<T> data, Volume<T> kernel, OutputMode mode, Volume<T> result,
+            Workspace workspace);
+
+    /**
+     * Throws if a caller-supplied result does not have the full convolution
+     * length {@code f + g - 1} along an axis.
+     */
+    static void checkResultLength(int length, int expected) {
+        if (length != expected) {
+            throw new IllegalArgumentException("JVCL: result must have dimensions f + g - 1");
+        }
+    }
+
+    /**
+     * Throws if a caller-supplied result does not have the length of the
+     * {@code mode} output along an axis.
+     */
+    static void checkResultLength(int length, int f, int g, OutputMode mode) {
+        if (length != mode.length(f, g)) {
+            throw new IllegalArgumentException("JVCL: result must have the dimensions of the " + mode + " output");
+        }
+    }
+
+    /**
+     * @return number of outputs along an axis when only every {@code stride}-th
+     *         output of the full result, starting at the first, is kept
+     */
+    static int stridedLength(int f, int g, int stride) {
+        if (stride < 1) {
+            throw new IllegalArgumentException("JVCL: stride must be at least 1");
+        }
+        return (f + g - 2) / stride + 1;
+    }
+
+    /**
+     * Throws if a caller-supplied result does not have the strided length
+     * along an axis.
+     */
+    static void checkStridedLength(int length, int f, int g, int stride) {
+        if (length != stridedLength(f, g, stride)) {
+            throw new IllegalArgumentException("JVCL: result must have dimensions (f + g - 2) / stride + 1");
+        }
+    }
+
+    /**
+     * @return length of a kernel of length {@code g} with {@code dilation - 1}
+     *         zeros between its taps
+     */
+    static int dilatedLength(int g, int dilation) {
+        if (dilation < 1) {
+            throw new IllegalArgumentException("JVCL: dilation must be at least 1");
+        }
+        return (g - 1) * dilation + 1;
+    }
 
      public static String readFile(String fileName) {
         try  {
@@ -15,4 +15,80 @@ abstract class ConvolverComplex extends Convolver<Complex> {
     abstract Complex[][][] convolve(Complex[][][] f, Complex[][] g);
     abstract Complex[][][] convolve(Complex[][][] f, Complex[][][] g);
 
+    abstract VolumeComplex convolve(VolumeComplex f, VolumeComplex g);
+    abstract void convolveInto(VolumeComplex f, VolumeComplex g, VolumeComplex r, Workspace workspace);
+
+    abstract Complex[] convolve(Complex[] f, Complex[] g, OutputMode mode);
+    abstract Complex[][] convolve(Complex[][] f, Complex[][] g, OutputMode mode);
+    abstract Complex[][][] convolve(Complex[][][] f, Complex[][][] g, OutputMode mode);
+    abstract VolumeComplex convolve(VolumeComplex f, VolumeComplex g, OutputMode mode);
+    abstract void convolveInto(VolumeComplex f, VolumeComplex g, OutputMode mode, VolumeComplex r, Workspace workspace);
+
+    /**
+     * Convolve 1D {@code Complex[]} array with 1D {@code Complex[]} kernel, keeping
+     * only every {@code stride}-th output of the full result, starting at the
+     * first. This computes the full result and subsamples it; convolvers
+     * which can evaluate only the kept outputs override it.
+     */
+    Complex[] convolveStrided(Complex[] f, Complex[] g, int stride) {
+        final Complex[] full = convolve(f, g, OutputMode.FULL);
+        final Complex[] r = new Complex[stridedLength(f.length, g.length, stride)];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = full[i * stride];
+        }
+        return r;
+    }
+
+    /**
+     * Convolve 2D {@code Complex[][]} array with 2D {@code Complex[][]} kernel,
+     * keeping only every {@code si}-th, {@code sj}-th output of the full
+     * result along each axis.
+     */
+    Complex[][] convolveStrided(Complex[][] f, Complex[][] g, int si, int sj) {
+        final Complex[][] full = convolve(f, g, OutputMode.FULL);
+        final Complex[][] r = new Complex[stridedLength(f.length, g.length, si)][stridedLength(f[0].length,
+                g[0].length, sj)];
+        for (int i = 0; i < r.length; i++) {
+            for (int j = 0; j < r[0].length; j++) {
+                r[i][j] = full[i * si][j * sj];
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Convolve 3D {@code Complex[][][]} array with 3D {@code Complex[][][]} kernel,
+     * keeping only every {@code si}-th, {@code sj}-th, {@code sk}-th output
+     * of the full result along each axis.
+     */
+    Complex[][][] convolveStrided(Complex[][][] f, Complex[][][] g, int si, int sj, int sk) {
+        final Complex[][][] full = convolve(f, g, OutputMode.FULL);
+        final Complex[][][] r = new Complex[stridedLength(f.length, g.length, si)][stridedLength(f[0].length,
+                g[0].length, sj)][stridedLength(f[0][0].length, g[0][0].length, sk)];
+        for (int i = 0; i < r.length; i++) {
+            for (int j = 0; j < r[0].length; j++) {
+                for (int k = 0; k < r[0][0].length; k++) {
+                    r[i][j][k] = full[i * si][j * sj][k * sk];
+                }
+            }
+        }
+        return r;
+    }
+
+    Volume<Complex> convolve(Volume<Complex> f, Volume<Complex> g) {
+        return convolve((VolumeComplex) f, (VolumeComplex) g);
+    }
+
+    void convolveInto(Volume<Complex> f, Volume<Complex> g, Volume<Complex> r, Workspace workspace) {
+        convolveInto((VolumeComplex) f, (VolumeComplex) g, (VolumeComplex) r, workspace);
+    }
+
+    Volume<Complex> convolve(Volume<Complex> f, Volume<Complex> g, OutputMode mode) {
+        return convolve((VolumeComplex) f, (VolumeComplex) g, mode);
+    }
+
+    void convolveInto(Volume<Complex> f, Volume<Complex> g, OutputMode mode, Volume<Complex> r, Workspace workspace) {
+        convolveInto((VolumeComplex) f, (VolumeComplex) g, mode, (VolumeComplex) r, workspace);
+    }
+
 }
@@ -31,13 +31,57 @@ import org.apache.commons.math4.exception.OutOfRangeException;
 import com.ericbarnhill.arrayMath.ArrayMath;
 
 /**
- * This class performs naive Finite-Differences convolutions on the CPU.
+ * This class performs Finite-Differences convolutions on the CPU. Arrays of {@code Complex}
+ * are converted to split real and imaginary {@code double[]} arrays on the way in and out,
+ * and all multiply-adds are done on primitives, so no {@code Complex} objects are created
+ * in the inner loops. {@link VolumeComplex} gives direct access to the split
+ * representation with no conversion at all. 3D kernels are applied in cache tiles chosen
+ * by {@link Tiling}. Stacks of volumes, such as time series, can be convolved as one batch,
+ * optionally with a second kernel along the stack.
  *
  * @author ericbarnhill
  * @since 0.1
  *
  */
-public class ConvolverComplexFDCPU extends Convolver<Complex>{
+public class ConvolverComplexFDCPU extends ConvolverComplex {
+
+    ParallelSlabs slabs;
+
+    public ConvolverComplexFDCPU() {
+        slabs = new ParallelSlabs(1);
+    }
+
+    /**
+     * @param threads
+     *            number of threads used for large convolutions
+     */
+    public ConvolverComplexFDCPU(int threads) {
+        slabs = new ParallelSlabs(threads);
+    }
+
+    /**
+     * Sets the number of threads used for large convolutions. With 1 thread
+     * (the default) all convolutions run sequentially.
+     * 
+     * @param threads
+     *            number of threads
+     */
+    public void setThreads(int threads) {
+        slabs.close();
+        slabs = new ParallelSlabs(threads);
+    }
+
+    public int getThreads() {
+        return slabs.getThreads();
+    }
+
+    /**
+     * Releases worker threads. Should be called as destructor method when
+     * more than one thread is used.
+     */
+    public void close() {
+        slabs.close();
+    }
 
     /**
      * Convolve 1D {@code Complex[]} array with 1D {@code Complex[]} kernel
@@ -49,26 +93,16 @@ public class ConvolverComplexFDCPU extends Convolver<Complex>{
      * @return {@code Complex[]}
      */
     public Complex[] convolve(Complex[] f, Complex[] g) {
-        final int fi = f.length;
-        final int gi = g.length;
-        final int hgi = (int) ((gi - 1) / 2.0);
-        final int hgie = (gi % 2 == 0) ? hgi + 1 : hgi;
-        Complex[] fPad = ArrayMath.zeroPadBoundaries(f, hgi, hgie);
-        Complex[] r = ArrayMath.zeroPadBoundaries(ComplexUtils.initialize(new Complex[fi]), hgi, hgie);
-        final int ri = r.length;
-        int ai;
-        for (int i = 0; i < ri; i++) {
-            for (int p = 0; p < gi; p++) {
-                ai = i + p - hgie;
-                if (ai >= 0 && ai < ri) {
-                    r[i] = r[i].add(fPad[ai].multiply(g[gi - 1 - p]));
-                }
-            }
-        }
-        return r;
+        final VolumeComplex r = convolve(
+                new VolumeComplex(ComplexUtils.complex2Real(f), ComplexUtils.complex2Imaginary(f), 1, 1, f.length),
+                new VolumeComplex(ComplexUtils.complex2Real(g), ComplexUtils.complex2Imaginary(g), 1, 1, g.length));
+        return ComplexUtils.split2Complex(r.re, r.im);
     }
     /**
      * Convolve 2D {@code Complex[][]} array with 1D {@code Complex[]} kernel.
+     * With {@code dim} 0 each row {@code f[i]} is convolved; with 1 the
+     * kernel runs along the first index. The array is read through its
+     * strides, so it is never transposed.
      * 
      * @param f
      *            {@code Complex[][]} array
@@ -78,19 +112,13 @@ public class ConvolverComplexFDCPU extends Convolver<Complex>{
      *            orientation of kernel(0 or 1)
      * @return {@code Complex[][]}
      */
-    public Complex[][] convolve(Complex[][] f, Complex[] g, int dim) {
+    public Complex[][] convolve(Complex[][] f, final Complex[] g, int dim) {
         if (dim < 0 || dim > 1) {
             throw new OutOfRangeException(dim, 0, 1);
         }
-        if (dim == 1)
-            f = ArrayMath.shiftDim(f);
-        final int fi = f.length;
-        for (int i = 0; i < fi; i++) {
-            f[i] = convolve(f[i], g);
-        }
-        if (dim == 1)
-            f = ArrayMath.shiftDim(f);
-        return f;
+        final VolumeComplex fv = new VolumeComplex(f);
+        final VolumeComplex r = convolve(new VolumeComplex(fv.re, fv.im, 1, fv.ni, fv.nj), axisKernel(g, 2 - dim));
+        return new VolumeComplex(r.re, r.im, r.nj, r.nk, 1).toArray2d();
     }
 
     /**
@@ -108,7 +136,10 @@ public class ConvolverComplexFDCPU extends Convolver<Complex>{
     }
 
     /**
-     * Convolve 3D {@code Complex[][][]} array with 1D {@code Complex[]} kernel
+     * Convolve 3D {@code Complex[][][]} array with 1D {@code Complex[]} kernel.
+     * With {@code dim} 0 each row {@code f[i][j]} is convolved; with 1 the
+     * kernel runs along the first index and with 2 along the second. The
+     * array is read through its strides, so it is never transposed.
      * 
      * @param f
      *            {@code Complex[][][]} array
@@ -118,19 +149,11 @@ public class ConvolverComplexFDCPU extends Convolver<Complex>{
      *            orientation of kernel (0, 1 or 2)
      * @return {@code Complex[][][]}
      */
-    public Complex[][][] convolve(Complex[][][] f, Complex[] g, int dim) {
+    public Complex[][][] convolve(Complex[][][] f, final Complex[] g, int dim) {
         if (dim < 0 || dim > 2) {
             throw new OutOfRangeException(dim, 0, 2);
         }
-        if (dim > 0)
-            f = ArrayMath.shiftDim(f, dim);
-        final int fi = f.length;
-        for (int i = 0; i < fi; i++) {
-            f[i] = convolve(f[i], g);
-        }
-        if (dim > 0)
-            f = ArrayMath.shiftDim(f, 3 - dim);
-        return f;
+        return convolve(new VolumeComplex(f), axisKernel(g, (dim + 2) % 3)).toArray();
     }
 
     /**
@@ -157,35 +180,11 @@ public class ConvolverComplexFDCPU extends Convolver<Complex>{
      * @return {@code Complex[][]}
      */
     public Complex[][] convolve(Complex[][] f, Complex[][] g) {
-        final int fi = f.length;
-        final int fj = f[0].length;
-        final int gi = g.length;
-        final int gj = g[0].length;
-        final int hgi = (int) ((gi - 1) / 2.0);
-        final int hgj = (int) ((gj - 1) / 2.0);
-        final int hgie = (gi % 2 == 0) ? hgi + 1 : hgi;
-        final int hgje = (gj % 2 == 0) ? hgj + 1 : hgj;
-        Complex[][] fPad = ArrayMath.zeroPadBoundaries(f, hgi, hgie, hgj, hgje);
-        Complex[][] r = ArrayMath.zeroPadBoundaries(ComplexUtils.initialize(new Complex[fi][fj]), hgi, hgie, hgj, hgje);
-        final int ri = r.length;
-        final int rj = r[0].length;
-        int ai, aj;
-        for (int i = 0; i < ri; i++) {
-            for (int j = 0; j < rj; j++) {
-                for (int p = 0; p < gi; p++) {
-                    for (int q = 0; q < gj; q++) {
-                        ai = i + (p - hgie);
-                        aj = j + (q - hgje);
-                        if (ai >= 0 && ai < ri) {
-                            if (aj >= 0 && aj < rj) {
-                                r[i][j] = r[i][j].add(fPad[ai][aj].multiply(g[gi - 1 - p][gj - 1 - q]));
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return r;
+        final VolumeComplex fv = new VolumeComplex(f);
+        final VolumeComplex gv = new VolumeComplex(g);
+        final VolumeComplex r = convolve(new VolumeComplex(fv.re, fv.im, 1, fv.ni, fv.nj),
+                new VolumeComplex(gv.re, gv.im, 1, gv.ni, gv.nj));
+        return new VolumeComplex(r.re, r.im, r.nj, r.nk, 1).toArray2d();
     }
 
     /**
@@ -200,16 +199,21 @@ public class ConvolverComplexFDCPU extends Convolver<Complex>{
      *            orientation of kernel (0, 1 or 2)
      * @return {@code Complex[][][]}
      */
-    public Complex[][][] convolve(Complex[][][] f, Complex[][] g, int dim) {
+    public Complex[][][] convolve(Complex[][][] f, final Complex[][] g, int dim) {
         if (dim < 0 || dim > 2) {
             throw new OutOfRangeException(dim, 0, 2);
         }
         if (dim > 0)
             f = ArrayMath.shiftDim(f, dim);
         final int fi = f.length;
-        for (int i = 0; i < fi; i++) {
-            f[i] = convolve(f[i], g);
-        }
+        final Complex[][][] fs = f;
+        slabs.run(fi, (long) fi * fs[0].length * fs[0][0].length * g.length * g[0].length, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    fs[i] = convolve(fs[i], g);
+                }
+            }
+        });
         if (dim > 0)
             f = ArrayMath.shiftDim(f, 3 - dim);
         return f;
@@ -239,39 +243,969 @@ public class ConvolverComplexFDCPU extends Convolver<Complex>{
      * @return {@code Complex[][][]}
      */
     public Complex[][][] convolve(Complex[][][] f, Complex[][][] g) {
-        final int fi = f.length;
-        final int fj = f[0].length;
-        final int fk = f[0][0].length;
-        final int gi = g.length;
-        final int gj = g[0].length;
-        final int gk = g[0][0].length;
-        final int hgi = (int) ((gi - 1) / 2.0);
-        final int hgj = (int) ((gj - 1) / 2.0);
-        final int hgk = (int) ((gk - 1) / 2.0);
-        final int hgie = (gi % 2 == 0) ? hgi + 1 : hgi;
-        final int hgje = (gj % 2 == 0) ? hgj + 1 : hgj;
-        final int hgke = (gk % 2 == 0) ? hgk + 1 : hgk;
-        Complex[][][] fPad = ArrayMath.zeroPadBoundaries(f, hgi, hgie, hgj, hgje, hgk, hgke);
-        Complex[][][] r = ArrayMath.zeroPadBoundaries(ComplexUtils.initialize(new Complex[fi][fj][fk]), hgi, hgie, hgj,
-                hgje, hgk, hgke);
-        final int ri = r.length;
-        final int rj = r[0].length;
-        final int rk = r[0][0].length;
-        int ai, aj, ak;
-        for (int i = 0; i < ri; i++) {
+        return convolve(new VolumeComplex(f), new VolumeComplex(g)).toArray();
+    }
+
+    /**
+     * Convolve 1D {@code Complex[]} array with 1D {@code Complex[]} kernel,
+     * computing only the part of the result selected by {@code mode}.
+     * 
+     * @param f
+     *            {@code Complex[]} array
+     * @param g
+     *            {@code Complex[]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @return {@code Complex[]}
+     */
+    public Complex[] convolve(Complex[] f, Complex[] g, OutputMode mode) {
+        final VolumeComplex r = convolve(
+                new VolumeComplex(ComplexUtils.complex2Real(f), ComplexUtils.complex2Imaginary(f), 1, 1, f.length),
+                new VolumeComplex(ComplexUtils.complex2Real(g), ComplexUtils.complex2Imaginary(g), 1, 1, g.length),
+                mode);
+        return ComplexUtils.split2Complex(r.re, r.im);
+    }
+
+    /**
+     * Convolve 2D {@code Complex[][]} array with 2D {@code Complex[][]}
+     * kernel, computing only the part of the result selected by {@code mode}.
+     * 
+     * @param f
+     *            {@code Complex[][]} array
+     * @param g
+     *            {@code Complex[][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @return {@code Complex[][]}
+     */
+    public Complex[][] convolve(Complex[][] f, Complex[][] g, OutputMode mode) {
+        final VolumeComplex fv = new VolumeComplex(f);
+        final VolumeComplex gv = new VolumeComplex(g);
+        final VolumeComplex r = convolve(new VolumeComplex(fv.re, fv.im, 1, fv.ni, fv.nj),
+                new VolumeComplex(gv.re, gv.im, 1, gv.ni, gv.nj), mode);
+        return new VolumeComplex(r.re, r.im, r.nj, r.nk, 1).toArray2d();
+    }
+
+    /**
+     * Convolve 3D {@code Complex[][][]} array with 3D {@code Complex[][][]}
+     * kernel, computing only the part of the result selected by {@code mode}.
+     * 
+     * @param f
+     *            {@code Complex[][][]} array
+     * @param g
+     *            {@code Complex[][][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @return {@code Complex[][][]}
+     */
+    public Complex[][][] convolve(Complex[][][] f, Complex[][][] g, OutputMode mode) {
+        return convolve(new VolumeComplex(f), new VolumeComplex(g), mode).toArray();
+    }
+
+    /**
+     * Convolve 1D {@code Complex[]} array with 1D {@code Complex[]} kernel,
+     * extending the array past its edges by {@code condition}.
+     * 
+     * @param f
+     *            {@code Complex[]} array
+     * @param g
+     *            {@code Complex[]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return {@code Complex[]}
+     */
+    public Complex[] convolve(Complex[] f, Complex[] g, OutputMode mode, Boundaries.Condition condition) {
+        final VolumeComplex r = convolve(
+                new VolumeComplex(ComplexUtils.complex2Real(f), ComplexUtils.complex2Imaginary(f), 1, 1, f.length),
+                new VolumeComplex(ComplexUtils.complex2Real(g), ComplexUtils.complex2Imaginary(g), 1, 1, g.length),
+                mode, condition);
+        return ComplexUtils.split2Complex(r.re, r.im);
+    }
+
+    /**
+     * Convolve 2D {@code Complex[][]} array with 2D {@code Complex[][]}
+     * kernel, extending the array past its edges by {@code condition}.
+     * 
+     * @param f
+     *            {@code Complex[][]} array
+     * @param g
+     *            {@code Complex[][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return {@code Complex[][]}
+     */
+    public Complex[][] convolve(Complex[][] f, Complex[][] g, OutputMode mode, Boundaries.Condition condition) {
+        final VolumeComplex fv = new VolumeComplex(f);
+        final VolumeComplex gv = new VolumeComplex(g);
+        final VolumeComplex r = convolve(new VolumeComplex(fv.re, fv.im, 1, fv.ni, fv.nj),
+                new VolumeComplex(gv.re, gv.im, 1, gv.ni, gv.nj), mode, condition);
+        return new VolumeComplex(r.re, r.im, r.nj, r.nk, 1).toArray2d();
+    }
+
+    /**
+     * Convolve 3D {@code Complex[][][]} array with 3D {@code Complex[][][]}
+     * kernel, extending the array past its edges by {@code condition}.
+     * 
+     * @param f
+     *            {@code Complex[][][]} array
+     * @param g
+     *            {@code Complex[][][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return {@code Complex[][][]}
+     */
+    public Complex[][][] convolve(Complex[][][] f, Complex[][][] g, OutputMode mode,
+            Boundaries.Condition condition) {
+        return convolve(new VolumeComplex(f), new VolumeComplex(g), mode, condition).toArray();
+    }
+
+    /**
+     * Convolve 1D {@code Complex[]} array with 1D {@code Complex[]} kernel,
+     * computing only every {@code stride}-th output of the full result,
+     * starting at the first.
+     * 
+     * @param f
+     *            {@code Complex[]} array
+     * @param g
+     *            {@code Complex[]} kernel
+     * @param stride
+     *            step between kept outputs
+     * @return {@code Complex[]} of length {@code (f + g - 2) / stride + 1}
+     */
+    public Complex[] convolveStrided(Complex[] f, Complex[] g, int stride) {
+        final VolumeComplex r = new VolumeComplex(1, 1, stridedLength(f.length, g.length, stride));
+        convolveStridedInto(
+                new VolumeComplex(ComplexUtils.complex2Real(f), ComplexUtils.complex2Imaginary(f), 1, 1, f.length),
+                new VolumeComplex(ComplexUtils.complex2Real(g), ComplexUtils.complex2Imaginary(g), 1, 1, g.length),
+                1, 1, stride, r);
+        return ComplexUtils.split2Complex(r.re, r.im);
+    }
+
+    /**
+     * Convolve 2D {@code Complex[][]} array with 2D {@code Complex[][]}
+     * kernel, computing only every {@code si}-th, {@code sj}-th output of the
+     * full result along each axis.
+     * 
+     * @param f
+     *            {@code Complex[][]} array
+     * @param g
+     *            {@code Complex[][]} kernel
+     * @param si
+     *            step between kept outputs along the first axis
+     * @param sj
+     *            step between kept outputs along the second axis
+     * @return {@code Complex[][]} of dimensions {@code (f + g - 2) / stride + 1}
+     */
+    public Complex[][] convolveStrided(Complex[][] f, Complex[][] g, int si, int sj) {
+        final VolumeComplex fv = new VolumeComplex(f);
+        final VolumeComplex gv = new VolumeComplex(g);
+        final VolumeComplex r = new VolumeComplex(1, stridedLength(fv.ni, gv.ni, si), stridedLength(fv.nj, gv.nj,
+                sj));
+        convolveStridedInto(new VolumeComplex(fv.re, fv.im, 1, fv.ni, fv.nj),
+                new VolumeComplex(gv.re, gv.im, 1, gv.ni, gv.nj), 1, si, sj, r);
+        return new VolumeComplex(r.re, r.im, r.nj, r.nk, 1).toArray2d();
+    }
+
+    /**
+     * Convolve 3D {@code Complex[][][]} array with 3D {@code Complex[][][]}
+     * kernel, computing only every {@code si}-th, {@code sj}-th, {@code sk}-th
+     * output of the full result along each axis.
+     * 
+     * @param f
+     *            {@code Complex[][][]} array
+     * @param g
+     *            {@code Complex[][][]} kernel
+     * @param si
+     *            step between kept outputs along the first axis
+     * @param sj
+     *            step between kept outputs along the second axis
+     * @param sk
+     *            step between kept outputs along the third axis
+     * @return {@code Complex[][][]} of dimensions {@code (f + g - 2) / stride + 1}
+     */
+    public Complex[][][] convolveStrided(Complex[][][] f, Complex[][][] g, int si, int sj, int sk) {
+        final VolumeComplex fv = new VolumeComplex(f);
+        final VolumeComplex gv = new VolumeComplex(g);
+        final VolumeComplex r = new VolumeComplex(stridedLength(fv.ni, gv.ni, si), stridedLength(fv.nj, gv.nj, sj),
+                stridedLength(fv.nk, gv.nk, sk));
+        convolveStridedInto(fv, gv, si, sj, sk, r);
+        return r.toArray();
+    }
+
+    /**
+     * Convolve each volume {@code f[t]} of a 4D {@code Complex[][][][]} stack,
+     * such as a time series, with one 3D {@code Complex[][][]} kernel. The
+     * kernel is converted once and the whole batch is shared out between
+     * threads in one pass.
+     * 
+     * @param f
+     *            {@code Complex[][][][]} stack of volumes of the same dimensions
+     * @param g
+     *            {@code Complex[][][]} kernel
+     * @return {@code Complex[][][][]} stack of results {@code f[t] * g}
+     */
+    public Complex[][][][] convolve(Complex[][][][] f, Complex[][][] g) {
+        return toArrays(convolve(toVolumes(f), new VolumeComplex(g)));
+    }
+
+    /**
+     * Convolve a 4D {@code Complex[][][][]} stack with a 3D
+     * {@code Complex[][][]} kernel across each volume and a 1D
+     * {@code Complex[]} kernel along the stack, which is the convolution with
+     * the 4D kernel {@code h[s] * g}.
+     * 
+     * @param f
+     *            {@code Complex[][][][]} stack of volumes of the same dimensions
+     * @param g
+     *            {@code Complex[][][]} kernel across each volume
+     * @param h
+     *            {@code Complex[]} kernel along the stack
+     * @return {@code Complex[][][][]} stack of dimensions {@code f + g - 1},
+     *         with {@code f.length + h.length - 1} volumes
+     */
+    public Complex[][][][] convolve(Complex[][][][] f, Complex[][][] g, Complex[] h) {
+        return toArrays(convolve(toVolumes(f), new VolumeComplex(g), h));
+    }
+
+    /**
+     * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel.
+     * Both are read in place through their strides, with no padded copy; kernel
+     * taps which fall outside the array are skipped. Real and imaginary parts
+     * are accumulated as primitives, so no {@code Complex} objects are created.
+     * 
+     * @param f
+     *            {@code VolumeComplex} array
+     * @param g
+     *            {@code VolumeComplex} kernel
+     * @return contiguous {@code VolumeComplex} of dimensions {@code f + g - 1}
+     */
+    public VolumeComplex convolve(VolumeComplex f, VolumeComplex g) {
+        return convolve(f, g, OutputMode.FULL);
+    }
+
+    /**
+     * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel
+     * into a caller-supplied result, which may be a strided view. No scratch
+     * buffers are needed, so {@code workspace} is not used and may be
+     * {@code null}.
+     * 
+     * @param f
+     *            {@code VolumeComplex} array
+     * @param g
+     *            {@code VolumeComplex} kernel
+     * @param r
+     *            {@code VolumeComplex} result of dimensions {@code f + g - 1}
+     * @param workspace
+     *            scratch buffers
+     */
+    public void convolveInto(VolumeComplex f, VolumeComplex g, VolumeComplex r, Workspace workspace) {
+        convolveInto(f, g, OutputMode.FULL, r, workspace);
+    }
+
+    /**
+     * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel,
+     * computing only the part of the result selected by {@code mode}.
+     * 
+     * @param f
+     *            {@code VolumeComplex} array
+     * @param g
+     *            {@code VolumeComplex} kernel
+     * @param mode
+     *            part of the result to compute
+     * @return contiguous {@code VolumeComplex} of the dimensions given by {@code mode}
+     */
+    public VolumeComplex convolve(VolumeComplex f, VolumeComplex g, OutputMode mode) {
+        final VolumeComplex r = new VolumeComplex(mode.length(f.ni, g.ni), mode.length(f.nj, g.nj),
+                mode.length(f.nk, g.nk));
+        convolveInto(f, g, mode, r, null);
+        return r;
+    }
+
+    /**
+     * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel
+     * into a caller-supplied result, which may be a strided view, computing
+     * only the part selected by {@code mode}.
+     * 
+     * @param f
+     *            {@code VolumeComplex} array
+     * @param g
+     *            {@code VolumeComplex} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param r
+     *            {@code VolumeComplex} result of the dimensions given by {@code mode}
+     * @param workspace
+     *            scratch buffers
+     */
+    public void convolveInto(final VolumeComplex f, final VolumeComplex g, OutputMode mode, final VolumeComplex r,
+            Workspace workspace) {
+        final int fi = f.ni;
+        final int fj = f.nj;
+        final int fk = f.nk;
+        final int gi = g.ni;
+        final int gj = g.nj;
+        final int gk = g.nk;
+        final int ri = r.ni;
+        final int rj = r.nj;
+        final int rk = r.nk;
+        checkResultLength(ri, fi, gi, mode);
+        checkResultLength(rj, fj, gj, mode);
+        checkResultLength(rk, fk, gk, mode);
+        final int oi = mode.offset(gi);
+        final int oj = mode.offset(gj);
+        final int ok = mode.offset(gk);
+        final int kTile = Tiling.tileK(gi, gj, gk, rk, 2 * Double.SIZE / 8);
+        final int jTile = Tiling.tileJ(gi, gj, gk, rj, kTile, 2 * Double.SIZE / 8);
+        slabs.run(ri, (long) ri * rj * rk * gi * gj * gk, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                convolvePlanes(f, g, r, oi, oj, ok, iStart, iEnd, kTile, jTile);
+            }
+        });
+    }
+
+    /**
+     * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel,
+     * extending the array past its edges by {@code condition}.
+     * 
+     * @param f
+     *            {@code VolumeComplex} array
+     * @param g
+     *            {@code VolumeComplex} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return contiguous {@code VolumeComplex} of the dimensions given by {@code mode}
+     */
+    public VolumeComplex convolve(VolumeComplex f, VolumeComplex g, OutputMode mode,
+            Boundaries.Condition condition) {
+        final VolumeComplex r = new VolumeComplex(mode.length(f.ni, g.ni), mode.length(f.nj, g.nj),
+                mode.length(f.nk, g.nk));
+        convolveInto(f, g, mode, condition, r, null);
+        return r;
+    }
+
+    /**
+     * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel
+     * into a caller-supplied result, which may be a strided view, extending
+     * the array past its edges by {@code condition}. Taps which fall outside
+     * {@code f} are remapped to an index inside it, so no padded copy is made.
+     * 
+     * @param f
+     *            {@code VolumeComplex} array
+     * @param g
+     *            {@code VolumeComplex} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @param r
+     *            {@code VolumeComplex} result of the dimensions given by {@code mode}
+     * @param workspace
+     *            scratch buffers
+     */
+    public void convolveInto(final VolumeComplex f, final VolumeComplex g, OutputMode mode,
+            Boundaries.Condition condition, final VolumeComplex r, Workspace workspace) {
+        if (condition == Boundaries.Condition.ZERO) {
+            convolveInto(f, g, mode, r, workspace);
+            return;
+        }
+        final int fi = f.ni;
+        final int fj = f.nj;
+        final int fk = f.nk;
+        final int gi = g.ni;
+        final int gj = g.nj;
+        final int gk = g.nk;
+        final int ri = r.ni;
+        final int rj = r.nj;
+        final int rk = r.nk;
+        checkResultLength(ri, fi, gi, mode);
+        checkResultLength(rj, fj, gj, mode);
+        checkResultLength(rk, fk, gk, mode);
+        // result element (i, j, k) reads position (i + p - ei, j + q - ej, k + s - ek) of f for tap (p, q, s)
+        final int ei = gi - 1 - mode.offset(gi);
+        final int ej = gj - 1 - mode.offset(gj);
+        final int ek = gk - 1 - mode.offset(gk);
+        final int[] mapI = Boundaries.remap(condition, -ei, ri + gi - 1 - ei, fi);
+        final int[] mapJ = Boundaries.remap(condition, -ej, rj + gj - 1 - ej, fj);
+        final int[] mapK = Boundaries.remap(condition, -ek, rk + gk - 1 - ek, fk);
+        slabs.run(ri, (long) ri * rj * rk * gi * gj * gk, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                convolvePlanes(f, g, r, mapI, mapJ, mapK, ek, iStart, iEnd);
+            }
+        });
+    }
+
+    /**
+     * Convolve 3D {@code Complex[][][]} array with 3D {@code Complex[][][]}
+     * kernel dilated by {@code (di, dj, dk)}, applying only the real taps.
+     * 
+     * @param f
+     *            {@code Complex[][][]} array
+     * @param g
+     *            {@code Complex[][][]} kernel
+     * @param di
+     *            dilation along the first axis
+     * @param dj
+     *            dilation along the second axis
+     * @param dk
+     *            dilation along the third axis
+     * @param mode
+     *            part of the result to compute, for the dilated kernel
+     * @return {@code Complex[][][]}
+     */
+    public Complex[][][] convolveDilated(Complex[][][] f, Complex[][][] g, int di, int dj, int dk,
+            OutputMode mode) {
+        return convolveDilated(new VolumeComplex(f), new VolumeComplex(g), di, dj, dk, mode).toArray();
+    }
+
+    /**
+     * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel
+     * dilated by {@code (di, dj, dk)}, as if {@code d - 1} zeros stood between
+     * its taps along each axis. Only the real taps are applied, so the cost
+     * does not grow with the dilation.
+     * 
+     * @param f
+     *            {@code VolumeComplex} array
+     * @param g
+     *            {@code VolumeComplex} kernel
+     * @param di
+     *            dilation along the first axis
+     * @param dj
+     *            dilation along the second axis
+     * @param dk
+     *            dilation along the third axis
+     * @param mode
+     *            part of the result to compute, for the dilated kernel
+     * @return contiguous {@code VolumeComplex} of the dimensions given by {@code mode}
+     */
+    public VolumeComplex convolveDilated(VolumeComplex f, VolumeComplex g, int di, int dj, int dk,
+            OutputMode mode) {
+        final VolumeComplex r = new VolumeComplex(mode.length(f.ni, dilatedLength(g.ni, di)), mode.length(f.nj,
+                dilatedLength(g.nj, dj)), mode.length(f.nk, dilatedLength(g.nk, dk)));
+        convolveDilatedInto(f, g, di, dj, dk, mode, r);
+        return r;
+    }
+
+    /**
+     * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel
+     * dilated by {@code (di, dj, dk)} into a caller-supplied result, which may
+     * be a strided view.
+     * 
+     * @param f
+     *            {@code VolumeComplex} array
+     * @param g
+     *            {@code VolumeComplex} kernel
+     * @param di
+     *            dilation along the first axis
+     * @param dj
+     *            dilation along the second axis
+     * @param dk
+     *            dilation along the third axis
+     * @param mode
+     *            part of the result to compute, for the dilated kernel
+     * @param r
+     *            {@code VolumeComplex} result of the dimensions given by {@code mode}
+     */
+    public void convolveDilatedInto(final VolumeComplex f, final VolumeComplex g, final int di, final int dj,
+            final int dk, OutputMode mode, final VolumeComplex r) {
+        final int fi = f.ni;
+        final int fj = f.nj;
+        final int fk = f.nk;
+        final int gi = g.ni;
+        final int gj = g.nj;
+        final int gk = g.nk;
+        final int ri = r.ni;
+        final int rj = r.nj;
+        final int rk = r.nk;
+        final int gei = dilatedLength(gi, di);
+        final int gej = dilatedLength(gj, dj);
+        final int gek = dilatedLength(gk, dk);
+        checkResultLength(ri, fi, gei, mode);
+        checkResultLength(rj, fj, gej, mode);
+        checkResultLength(rk, fk, gek, mode);
+        final int oi = mode.offset(gei);
+        final int oj = mode.offset(gej);
+        final int ok = mode.offset(gek);
+        final double[] fRe = f.re;
+        final double[] fIm = f.im;
+        final double[] gRe = g.re;
+        final double[] gIm = g.im;
+        final double[] rRe = r.re;
+        final double[] rIm = r.im;
+        final int fsk = f.sk;
+        final int rsk = r.sk;
+        slabs.run(ri, (long) ri * rj * rk * gi * gj * gk, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    // only taps with 0 <= i + oi - p * di < fi are inside f
+                    final int ti = i + oi;
+                    final int pEnd = Math.min(gi, ti / di + 1);
+                    for (int j = 0; j < rj; j++) {
+                        final int tj = j + oj;
+                        final int qEnd = Math.min(gj, tj / dj + 1);
+                        final int rBase = r.index(i, j, 0);
+                        for (int k = 0; k < rk; k++) {
+                            rRe[rBase + k * rsk] = 0;
+                            rIm[rBase + k * rsk] = 0;
+                        }
+                        for (int p = ti < fi ? 0 : (ti - fi + di) / di; p < pEnd; p++) {
+                            for (int q = tj < fj ? 0 : (tj - fj + dj) / dj; q < qEnd; q++) {
+                                final int fBase = f.index(ti - p * di, tj - q * dj, 0);
+                                final int gBase = g.index(p, q, 0);
+                                for (int s = 0; s < gk; s++) {
+                                    final double gr = gRe[gBase + s * g.sk];
+                                    final double gm = gIm[gBase + s * g.sk];
+                                    final int offset = ok - s * dk;
+                                    final int kEnd = Math.min(rk, fk - offset);
+                                    int fInd, rInd;
+                                    for (int k = Math.max(0, -offset); k < kEnd; k++) {
+                                        fInd = fBase + (k + offset) * fsk;
+                                        rInd = rBase + k * rsk;
+                                        rRe[rInd] += fRe[fInd] * gr - fIm[fInd] * gm;
+                                        rIm[rInd] += fRe[fInd] * gm + fIm[fInd] * gr;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Convolve 3D {@code Complex[][][]} array with 3D {@code Complex[][][]}
+     * kernel at the outputs inside {@code mask} only. Outputs outside the mask
+     * are zero.
+     * 
+     * @param f
+     *            {@code Complex[][][]} array
+     * @param g
+     *            {@code Complex[][][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param mask
+     *            {@link Mask} of the dimensions given by {@code mode}
+     * @return {@code Complex[][][]}
+     */
+    public Complex[][][] convolveMasked(Complex[][][] f, Complex[][][] g, OutputMode mode, Mask mask) {
+        return convolveMasked(new VolumeComplex(f), new VolumeComplex(g), mode, mask).toArray();
+    }
+
+    /**
+     * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel
+     * at the outputs inside {@code mask} only. Outputs outside the mask are
+     * zero.
+     * 
+     * @param f
+     *            {@code VolumeComplex} array
+     * @param g
+     *            {@code VolumeComplex} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param mask
+     *            {@link Mask} of the dimensions given by {@code mode}
+     * @return contiguous {@code VolumeComplex} of the dimensions given by {@code mode}
+     */
+    public VolumeComplex convolveMasked(VolumeComplex f, VolumeComplex g, OutputMode mode, Mask mask) {
+        final VolumeComplex r = new VolumeComplex(mode.length(f.ni, g.ni), mode.length(f.nj, g.nj),
+                mode.length(f.nk, g.nk));
+        convolveMaskedInto(f, g, mode, mask, r);
+        return r;
+    }
+
+    /**
+     * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel
+     * at the outputs inside {@code mask} only, into a caller-supplied result
+     * which may be a strided view. Elements of {@code r} outside the mask are
+     * left untouched, and rows which hold no masked output are never visited,
+     * so the work grows with the size of the mask.
+     * 
+     * @param f
+     *            {@code VolumeComplex} array
+     * @param g
+     *            {@code VolumeComplex} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param mask
+     *            {@link Mask} of the dimensions given by {@code mode}
+     * @param r
+     *            {@code VolumeComplex} result of the dimensions given by {@code mode}
+     */
+    public void convolveMaskedInto(final VolumeComplex f, final VolumeComplex g, OutputMode mode, final Mask mask,
+            final VolumeComplex r) {
+        final int fi = f.ni;
+        final int fj = f.nj;
+        final int fk = f.nk;
+        final int gi = g.ni;
+        final int gj = g.nj;
+        final int gk = g.nk;
+        final int rj = r.nj;
+        checkResultLength(r.ni, fi, gi, mode);
+        checkResultLength(rj, fj, gj, mode);
+        checkResultLength(r.nk, fk, gk, mode);
+        mask.check(r.ni, rj, r.nk);
+        final int oi = mode.offset(gi);
+        final int oj = mode.offset(gj);
+        final int ok = mode.offset(gk);
+        final double[] fRe = f.re;
+        final double[] fIm = f.im;
+        final double[] gRe = g.re;
+        final double[] gIm = g.im;
+        final double[] rRe = r.re;
+        final double[] rIm = r.im;
+        final int fsk = f.sk;
+        final int rsk = r.sk;
+        slabs.run(mask.rows.length, mask.size * gi * gj * gk, new ParallelSlabs.Slab() {
+            public void compute(int start, int end) {
+                for (int n = start; n < end; n++) {
+                    final int row = mask.rows[n];
+                    final int i = row / rj;
+                    final int j = row % rj;
+                    final int[] run = mask.runs[row];
+                    final int rBase = r.index(i, j, 0);
+                    for (int b = 0; b < run.length; b += 2) {
+                        for (int k = run[b]; k < run[b + 1]; k++) {
+                            rRe[rBase + k * rsk] = 0;
+                            rIm[rBase + k * rsk] = 0;
+                        }
+                    }
+                    // only taps with 0 <= i + oi - p < fi are inside f
+                    final int ti = i + oi;
+                    final int tj = j + oj;
+                    final int pEnd = Math.min(gi, ti + 1);
+                    final int qEnd = Math.min(gj, tj + 1);
+                    for (int p = ti < fi ? 0 : ti - fi + 1; p < pEnd; p++) {
+                        for (int q = tj < fj ? 0 : tj - fj + 1; q < qEnd; q++) {
+                            final int fBase = f.index(ti - p, tj - q, 0);
+                            final int gBase = g.index(p, q, 0);
+                            for (int s = 0; s < gk; s++) {
+                                final double gr = gRe[gBase + s * g.sk];
+                                final double gm = gIm[gBase + s * g.sk];
+                                final int offset = ok - s;
+                                for (int b = 0; b < run.length; b += 2) {
+                                    final int kEnd = Math.min(run[b + 1], fk - offset);
+                                    int fInd, rInd;
+                                    for (int k = Math.max(run[b], -offset); k < kEnd; k++) {
+                                        fInd = fBase + (k + offset) * fsk;
+                                        rInd = rBase + k * rsk;
+                                        rRe[rInd] += fRe[fInd] * gr - fIm[fInd] * gm;
+                                        rIm[rInd] += fRe[fInd] * gm + fIm[fInd] * gr;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Convolve each volume {@code f[t]} of a batch with one
+     * {@code VolumeComplex} kernel.
+     * 
+     * @param f
+     *            {@code VolumeComplex[]} volumes of the same dimensions
+     * @param g
+     *            {@code VolumeComplex} kernel
+     * @return contiguous {@code VolumeComplex[]} results {@code f[t] * g}
+     */
+    public VolumeComplex[] convolve(VolumeComplex[] f, VolumeComplex g) {
+        final VolumeComplex[] r = new VolumeComplex[f.length];
+        for (int t = 0; t < f.length; t++) {
+            r[t] = new VolumeComplex(f[0].ni + g.ni - 1, f[0].nj + g.nj - 1, f[0].nk + g.nk - 1);
+        }
+        convolveInto(f, g, r, null);
+        return r;
+    }
+
+    /**
+     * Convolve a batch of volumes with a {@code VolumeComplex} kernel across
+     * each volume and a 1D {@code Complex[]} kernel along the batch.
+     * 
+     * @param f
+     *            {@code VolumeComplex[]} volumes of the same dimensions
+     * @param g
+     *            {@code VolumeComplex} kernel across each volume
+     * @param h
+     *            {@code Complex[]} kernel along the batch
+     * @return contiguous {@code VolumeComplex[]} of {@code f.length + h.length - 1} results
+     */
+    public VolumeComplex[] convolve(VolumeComplex[] f, VolumeComplex g, Complex[] h) {
+        final VolumeComplex[] r = new VolumeComplex[f.length + h.length - 1];
+        for (int t = 0; t < r.length; t++) {
+            r[t] = new VolumeComplex(f[0].ni + g.ni - 1, f[0].nj + g.nj - 1, f[0].nk + g.nk - 1);
+        }
+        convolveInto(f, g, h, r, new Workspace());
+        return r;
+    }
+
+    /**
+     * Convolve each volume {@code f[t]} of a batch with one
+     * {@code VolumeComplex} kernel into caller-supplied results, which may be
+     * strided views. The planes of all the results are shared out between
+     * threads together, so small volumes still keep every thread busy. No
+     * scratch buffers are needed, so {@code workspace} is not used and may be
+     * {@code null}.
+     * 
+     * @param f
+     *            {@code VolumeComplex[]} volumes of the same dimensions
+     * @param g
+     *            {@code VolumeComplex} kernel
+     * @param r
+     *            {@code VolumeComplex[]} results of dimensions {@code f + g - 1}
+     * @param workspace
+     *            scratch buffers
+     */
+    public void convolveInto(final VolumeComplex[] f, final VolumeComplex g, final VolumeComplex[] r,
+            Workspace workspace) {
+        final int nt = f.length;
+        checkBatch(f);
+        if (r.length != nt) {
+            throw new IllegalArgumentException("JVCL: batch needs one result per volume");
+        }
+        final int gi = g.ni;
+        final int gj = g.nj;
+        final int gk = g.nk;
+        final int ri = f[0].ni + gi - 1;
+        final int rj = f[0].nj + gj - 1;
+        final int rk = f[0].nk + gk - 1;
+        for (int t = 0; t < nt; t++) {
+            checkResultLength(r[t].ni, ri);
+            checkResultLength(r[t].nj, rj);
+            checkResultLength(r[t].nk, rk);
+        }
+        final int kTile = Tiling.tileK(gi, gj, gk, rk, 2 * Double.SIZE / 8);
+        final int jTile = Tiling.tileJ(gi, gj, gk, rj, kTile, 2 * Double.SIZE / 8);
+        slabs.run(nt * ri, (long) nt * ri * rj * rk * gi * gj * gk, new ParallelSlabs.Slab() {
+            public void compute(int start, int end) {
+                // planes start to end of the batch, taken volume by volume
+                for (int n = start; n < end;) {
+                    final int t = n / ri;
+                    final int iStart = n - t * ri;
+                    final int iEnd = Math.min(ri, iStart + end - n);
+                    convolvePlanes(f[t], g, r[t], 0, 0, 0, iStart, iEnd, kTile, jTile);
+                    n += iEnd - iStart;
+                }
+            }
+        });
+    }
+
+    /**
+     * Convolve a batch of volumes with a {@code VolumeComplex} kernel across
+     * each volume and a 1D {@code Complex[]} kernel along the batch, into
+     * caller-supplied results. Each volume is convolved across once, into
+     * scratch buffers of {@code workspace}, and the results along the batch
+     * are then summed from those.
+     * 
+     * @param f
+     *            {@code VolumeComplex[]} volumes of the same dimensions
+     * @param g
+     *            {@code VolumeComplex} kernel across each volume
+     * @param h
+     *            {@code Complex[]} kernel along the batch
+     * @param r
+     *            {@code VolumeComplex[]} {@code f.length + h.length - 1}
+     *            results of dimensions {@code f + g - 1}
+     * @param workspace
+     *            scratch buffers
+     */
+    public void convolveInto(final VolumeComplex[] f, final VolumeComplex g, Complex[] h, final VolumeComplex[] r,
+            Workspace workspace) {
+        final int nt = f.length;
+        final int nh = h.length;
+        checkBatch(f);
+        checkResultLength(r.length, nt + nh - 1);
+        final int ri = f[0].ni + g.ni - 1;
+        final int rj = f[0].nj + g.nj - 1;
+        final int rk = f[0].nk + g.nk - 1;
+        final int size = ri * rj * rk;
+        for (int t = 0; t < r.length; t++) {
+            checkResultLength(r[t].ni, ri);
+            checkResultLength(r[t].nj, rj);
+            checkResultLength(r[t].nk, rk);
+        }
+        final double[] sRe = workspace.getDoubles(0, nt * size);
+        final double[] sIm = workspace.getDoubles(1, nt * size);
+        final VolumeComplex[] s = new VolumeComplex[nt];
+        for (int t = 0; t < nt; t++) {
+            s[t] = new VolumeComplex(sRe, sIm, ri, rj, rk, t * size, rj * rk, rk, 1);
+        }
+        convolveInto(f, g, s, workspace);
+        final double[] hRe = ComplexUtils.complex2Real(h);
+        final double[] hIm = ComplexUtils.complex2Imaginary(h);
+        slabs.run(r.length * ri, (long) r.length * size * nh, new ParallelSlabs.Slab() {
+            public void compute(int start, int end) {
+                for (int n = start; n < end; n++) {
+                    final int t = n / ri;
+                    final int i = n - t * ri;
+                    // only taps with 0 <= t - u < nt are inside the batch
+                    final int uStart = Math.max(0, t - nt + 1);
+                    final int uEnd = Math.min(nh, t + 1);
+                    final VolumeComplex rt = r[t];
+                    final double[] rRe = rt.re;
+                    final double[] rIm = rt.im;
+                    final int rsk = rt.sk;
+                    for (int j = 0; j < rj; j++) {
+                        final int rBase = rt.index(i, j, 0);
+                        for (int k = 0; k < rk; k++) {
+                            rRe[rBase + k * rsk] = 0;
+                            rIm[rBase + k * rsk] = 0;
+                        }
+                        for (int u = uStart; u < uEnd; u++) {
+                            final double hr = hRe[u];
+                            final double hm = hIm[u];
+                            final int sBase = (t - u) * size + (i * rj + j) * rk;
+                            if (rsk == 1) {
+                                for (int k = 0; k < rk; k++) {
+                                    final double sr = sRe[sBase + k];
+                                    final double sm = sIm[sBase + k];
+                                    rRe[rBase + k] += sr * hr - sm * hm;
+                                    rIm[rBase + k] += sr * hm + sm * hr;
+                                }
+                            } else {
+                                for (int k = 0; k < rk; k++) {
+                                    final double sr = sRe[sBase + k];
+                                    final double sm = sIm[sBase + k];
+                                    rRe[rBase + k * rsk] += sr * hr - sm * hm;
+                                    rIm[rBase + k * rsk] += sr * hm + sm * hr;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return {@code g} as a volume which extends along {@code axis} (0, 1 or
+     *         2) only
+     */
+    private static VolumeComplex axisKernel(Complex[] g, int axis) {
+        final int gl = g.length;
+        return new VolumeComplex(ComplexUtils.complex2Real(g), ComplexUtils.complex2Imaginary(g),
+                axis == 0 ? gl : 1, axis == 1 ? gl : 1, axis == 2 ? gl : 1);
+    }
+
+    /**
+     * Checks that a batch is not empty and that its volumes have the same
+     * dimensions.
+     */
+    private static void checkBatch(VolumeComplex[] f) {
+        if (f.length == 0) {
+            throw new IllegalArgumentException("JVCL: batch must have at least one volume");
+        }
+        for (int t = 1; t < f.length; t++) {
+            if (f[t].ni != f[0].ni || f[t].nj != f[0].nj || f[t].nk != f[0].nk) {
+                throw new IllegalArgumentException("JVCL: batch volumes must have the same dimensions");
+            }
+        }
+    }
+
+    private VolumeComplex[] toVolumes(final Complex[][][][] f) {
+        final VolumeComplex[] v = new VolumeComplex[f.length];
+        slabs.run(f.length, (long) f.length * f[0].length * f[0][0].length * f[0][0][0].length,
+                new ParallelSlabs.Slab() {
+                    public void compute(int tStart, int tEnd) {
+                        for (int t = tStart; t < tEnd; t++) {
+                            v[t] = new VolumeComplex(f[t]);
+                        }
+                    }
+                });
+        return v;
+    }
+
+    private Complex[][][][] toArrays(final VolumeComplex[] v) {
+        final Complex[][][][] r = new Complex[v.length][][][];
+        slabs.run(v.length, (long) v.length * v[0].ni * v[0].nj * v[0].nk, new ParallelSlabs.Slab() {
+            public void compute(int tStart, int tEnd) {
+                for (int t = tStart; t < tEnd; t++) {
+                    r[t] = v[t].toArray();
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Computes result planes {@code iStart} to {@code iEnd} of the convolution
+     * of {@code f} with {@code g}, in tiles of {@code jTile x kTile} rows.
+     * Result element {@code (i, j, k)} is element
+     * {@code (i + oi, j + oj, k + ok)} of the full convolution.
+     */
+    private static void convolvePlanes(VolumeComplex f, VolumeComplex g, VolumeComplex r, int oi, int oj, int ok,
+            int iStart, int iEnd, int kTile, int jTile) {
+        final int fi = f.ni;
+        final int fj = f.nj;
+        final int fk = f.nk;
+        final int gi = g.ni;
+        final int gj = g.nj;
+        final int gk = g.nk;
+        final int rj = r.nj;
+        final int rk = r.nk;
+        final double[] fRe = f.re;
+        final double[] fIm = f.im;
+        final double[] gRe = g.re;
+        final double[] gIm = g.im;
+        final double[] rRe = r.re;
+        final double[] rIm = r.im;
+        final int fsk = f.sk;
+        final int rsk = r.sk;
+        for (int i = iStart; i < iEnd; i++) {
             for (int j = 0; j < rj; j++) {
+                final int rBase = r.index(i, j, 0);
                 for (int k = 0; k < rk; k++) {
-                    for (int p = 0; p < gi; p++) {
-                        for (int q = 0; q < gj; q++) {
-                            for (int s = 0; s < gk; s++) {
-                                ai = i + (p - hgie);
-                                aj = j + (q - hgje);
-                                ak = k + (s - hgke);
-                                if (ai >= 0 && ai < ri) {
-                                    if (aj >= 0 && aj < rj) {
-                                        if (ak >= 0 && ak < rk) {
-                                            r[i][j][k] = r[i][j][k].add(
-                                                    fPad[ai][aj][ak].multiply(g[gi - 1 - p][gj - 1 - q][gk - 1 - s]));
+                    rRe[rBase + k * rsk] = 0;
+                    rIm[rBase + k * rsk] = 0;
+                }
+            }
+        }
+        for (int j0 = 0; j0 < rj; j0 += jTile) {
+            final int j1 = Math.min(j0 + jTile, rj);
+            for (int k0 = 0; k0 < rk; k0 += kTile) {
+                final int k1 = Math.min(k0 + kTile, rk);
+                for (int i = iStart; i < iEnd; i++) {
+                    // only taps with 0 <= i + oi - (gi - 1) + p < fi are inside f
+                    final int pStart = Math.max(0, gi - 1 - i - oi);
+                    final int pEnd = Math.min(gi, fi + gi - 1 - i - oi);
+                    for (int j = j0; j < j1; j++) {
+                        final int qStart = Math.max(0, gj - 1 - j - oj);
+                        final int qEnd = Math.min(gj, fj + gj - 1 - j - oj);
+                        final int rBase = r.index(i, j, 0);
+                        for (int p = pStart; p < pEnd; p++) {
+                            for (int q = qStart; q < qEnd; q++) {
+                                final int fBase = f.index(i + oi - gi + 1 + p, j + oj - gj + 1 + q, 0);
+                                final int gBase = g.index(gi - 1 - p, gj - 1 - q, 0);
+                                for (int s = 0; s < gk; s++) {
+                                    final int gInd = gBase + (gk - 1 - s) * g.sk;
+                                    final double gr = gRe[gInd];
+                                    final double gm = gIm[gInd];
+                                    final int kStart = Math.max(k0, gk - 1 - s - ok);
+                                    final int kEnd = Math.min(k1, fk + gk - 1 - s - ok);
+                                    final int fOffset = fBase + (s - gk + 1 + ok) * fsk;
+                                    if (fsk == 1 && rsk == 1) {
+                                        for (int k = kStart; k < kEnd; k++) {
+                                            final double fr = fRe[fOffset + k];
+                                            final double fm = fIm[fOffset + k];
+                                            rRe[rBase + k] += fr * gr - fm * gm;
+                                            rIm[rBase + k] += fr * gm + fm * gr;
+                                        }
+                                    } else {
+                                        int fInd, rInd;
+                                        for (int k = kStart; k < kEnd; k++) {
+                                            fInd = fOffset + k * fsk;
+                                            rInd = rBase + k * rsk;
+                                            rRe[rInd] += fRe[fInd] * gr - fIm[fInd] * gm;
+                                            rIm[rInd] += fRe[fInd] * gm + fIm[fInd] * gr;
                                         }
                                     }
                                 }
@@ -281,7 +1215,146 @@ public class ConvolverComplexFDCPU extends Convolver<Complex>{
                 }
             }
         }
-        return r;
+    }
+
+    /**
+     * Computes result planes {@code iStart} to {@code iEnd} of {@code f}
+     * convolved with {@code g}, looking up position {@code i + p - ei} of
+     * {@code f} for tap {@code p} in {@code mapI[i + p]}, and likewise along
+     * j and k. Along k the taps which fall inside {@code f} are read directly.
+     */
+    private static void convolvePlanes(VolumeComplex f, VolumeComplex g, VolumeComplex r, int[] mapI, int[] mapJ,
+            int[] mapK, int ek, int iStart, int iEnd) {
+        final int fk = f.nk;
+        final int gi = g.ni;
+        final int gj = g.nj;
+        final int gk = g.nk;
+        final int rj = r.nj;
+        final int rk = r.nk;
+        final double[] fRe = f.re;
+        final double[] fIm = f.im;
+        final double[] gRe = g.re;
+        final double[] gIm = g.im;
+        final double[] rRe = r.re;
+        final double[] rIm = r.im;
+        final int fsk = f.sk;
+        final int rsk = r.sk;
+        final int kLo = Math.min(ek, rk);
+        final int kHi = Math.max(kLo, Math.min(fk - gk + 1 + ek, rk));
+        for (int i = iStart; i < iEnd; i++) {
+            for (int j = 0; j < rj; j++) {
+                final int rBase = r.index(i, j, 0);
+                for (int k = 0; k < rk; k++) {
+                    rRe[rBase + k * rsk] = 0;
+                    rIm[rBase + k * rsk] = 0;
+                }
+                for (int p = 0; p < gi; p++) {
+                    final int ai = mapI[i + p];
+                    if (ai < 0) {
+                        continue;
+                    }
+                    for (int q = 0; q < gj; q++) {
+                        final int aj = mapJ[j + q];
+                        if (aj < 0) {
+                            continue;
+                        }
+                        final int fBase = f.index(ai, aj, 0);
+                        final int gBase = g.index(gi - 1 - p, gj - 1 - q, 0);
+                        for (int s = 0; s < gk; s++) {
+                            final int gInd = gBase + (gk - 1 - s) * g.sk;
+                            final double gr = gRe[gInd];
+                            final double gm = gIm[gInd];
+                            final int fOffset = fBase + (s - ek) * fsk;
+                            int fInd, rInd;
+                            for (int k = kLo; k < kHi; k++) {
+                                fInd = fOffset + k * fsk;
+                                rInd = rBase + k * rsk;
+                                rRe[rInd] += fRe[fInd] * gr - fIm[fInd] * gm;
+                                rIm[rInd] += fRe[fInd] * gm + fIm[fInd] * gr;
+                            }
+                            for (int k = 0; k < kLo; k++) {
+                                final int ak = mapK[k + s];
+                                if (ak >= 0) {
+                                    fInd = fBase + ak * fsk;
+                                    rInd = rBase + k * rsk;
+                                    rRe[rInd] += fRe[fInd] * gr - fIm[fInd] * gm;
+                                    rIm[rInd] += fRe[fInd] * gm + fIm[fInd] * gr;
+                                }
+                            }
+                            for (int k = kHi; k < rk; k++) {
+                                final int ak = mapK[k + s];
+                                if (ak >= 0) {
+                                    fInd = fBase + ak * fsk;
+                                    rInd = rBase + k * rsk;
+                                    rRe[rInd] += fRe[fInd] * gr - fIm[fInd] * gm;
+                                    rIm[rInd] += fRe[fInd] * gm + fIm[fInd] * gr;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes output {@code (i * si, j * sj, k * sk)} of the full
+     * convolution of {@code f} with {@code g} into element {@code (i, j, k)}
+     * of {@code r}, reading only the taps which fall inside {@code f}.
+     */
+    private void convolveStridedInto(final VolumeComplex f, final VolumeComplex g, final int si, final int sj,
+            final int sk, final VolumeComplex r) {
+        final int fi = f.ni;
+        final int fj = f.nj;
+        final int fk = f.nk;
+        final int gi = g.ni;
+        final int gj = g.nj;
+        final int gk = g.nk;
+        final int ri = r.ni;
+        final int rj = r.nj;
+        final int rk = r.nk;
+        final double[] fRe = f.re;
+        final double[] fIm = f.im;
+        final double[] gRe = g.re;
+        final double[] gIm = g.im;
+        final double[] rRe = r.re;
+        final double[] rIm = r.im;
+        final int fsk = f.sk;
+        final int rsk = r.sk;
+        slabs.run(ri, (long) ri * rj * rk * gi * gj * gk, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    final int pEnd = Math.min(gi - 1, i * si);
+                    for (int j = 0; j < rj; j++) {
+                        final int qEnd = Math.min(gj - 1, j * sj);
+                        final int rBase = r.index(i, j, 0);
+                        for (int k = 0; k < rk; k++) {
+                            rRe[rBase + k * rsk] = 0;
+                            rIm[rBase + k * rsk] = 0;
+                        }
+                        for (int p = Math.max(0, i * si - fi + 1); p <= pEnd; p++) {
+                            for (int q = Math.max(0, j * sj - fj + 1); q <= qEnd; q++) {
+                                final int fBase = f.index(i * si - p, j * sj - q, 0);
+                                final int gBase = g.index(p, q, 0);
+                                for (int s = 0; s < gk; s++) {
+                                    final double gr = gRe[gBase + s * g.sk];
+                                    final double gm = gIm[gBase + s * g.sk];
+                                    // outputs with 0 <= k * sk - s < fk
+                                    final int kEnd = Math.min(rk, (fk - 1 + s) / sk + 1);
+                                    int fInd, rInd;
+                                    for (int k = (s + sk - 1) / sk; k < kEnd; k++) {
+                                        fInd = fBase + (k * sk - s) * fsk;
+                                        rInd = rBase + k * rsk;
+                                        rRe[rInd] += fRe[fInd] * gr - fIm[fInd] * gm;
+                                        rIm[rInd] += fRe[fInd] * gm + fIm[fInd] * gr;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
     }
 
 }
@@ -31,6 +31,7 @@ import java.nio.FloatBuffer;
 
 import org.apache.commons.numbers.complex.Complex;
 import org.apache.commons.numbers.complex.ComplexUtils;
+import org.apache.commons.math4.exception.OutOfRangeException;
 
 import com.ericbarnhill.arrayMath.ArrayMath;
 import com.jogamp.opencl.CLBuffer;
@@ -38,6 +39,7 @@ import com.jogamp.opencl.CLCommandQueue;
 import com.jogamp.opencl.CLContext;
 import com.jogamp.opencl.CLDevice;
 import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.CLMemory;
 import com.jogamp.opencl.CLProgram;
 
 /**
@@ -53,9 +55,11 @@ public class ConvolverComplexFDGPU extends ConvolverComplex {
     CLDevice device;
     CLCommandQueue queue;
     CLProgram program1d, program2d, program3d, program1dComplex, program2dComplex, program3dComplex,
-    	program21, program21Complex, program31, program31Complex;
+    	program21, program21Complex, program31, program31Complex, programVolume, programVolumeComplex;
     CLContext context;
     int localWorkSize;
+    CLKernel volumeKernel;
+    CLBuffer<FloatBuffer> clVolumeFRe, clVolumeFIm, clVolumeGRe, clVolumeGIm, clVolumeRRe, clVolumeRIm;
 
 	public ConvolverComplexFDGPU() {
 		//try {
@@ -83,6 +87,8 @@ public class ConvolverComplexFDGPU extends ConvolverComplex {
 	        program3dComplex = context.createProgram(source3dComplex).build();
 	        program21Complex = context.createProgram(source21Complex).build();
 	        program31Complex = context.createProgram(source31Complex).build();
+	        programVolume = context.createProgram(readFile(path+"ConvolveVolume.cl")).build();
+	        programVolumeComplex = context.createProgram(readFile(path+"ConvolveVolumeComplex.cl")).build();
 			localWorkSize = min(device.getMaxWorkGroupSize(), 32);  // Local work size dimensions
 		//} catch (Exception e) {
 		//	throw new NoGPUException();
@@ -130,50 +136,19 @@ public class ConvolverComplexFDGPU extends ConvolverComplex {
 	}
     
 	/**
-	 * Convolve 2D {@code Complex[][]} array with 1D {@code Complex[]} kernel.
+	 * Convolve 2D {@code Complex[][]} array with 1D {@code Complex[]} kernel, with {@code dim} as on the CPU:
+	 * with 0 each row {@code f[i]} is convolved; with 1 the kernel runs along the first index. The
+	 * array is read on the GPU through its strides, so it is never transposed.
 	 * @param f {@code Complex[][]} array
 	 * @param g {@code Complex[]} kernel
 	 * @param dim orientation of kernel (0 or 1)
 	 * @return {@code Complex[][]}
 	 */
 	public Complex[][] convolve(Complex[][] f, Complex[] g, int dim) {
-		if (dim == 1) {
-			f = ArrayMath.shiftDim(f);
+		if (dim < 0 || dim > 1) {
+			throw new OutOfRangeException(dim, 0, 1);
 		}
-		final int fi = f.length;
-		final int fj = f[0].length;
-		final int gi = g.length;
-		final int hgi = (int)( (gi - 1) / 2.0);
-		final int hgie = (gi % 2 == 0) ? hgi + 1 : hgi;
-		Complex[][] fPad = ArrayMath.zeroPadBoundaries(f, hgi, hgie, 0, 0);
-		Complex[][] r = ArrayMath.zeroPadBoundaries(new Complex[fi][fj], hgi, hgie, 0, 0);
-		final int ri = r.length;
-    	CLBuffer<FloatBuffer> clF = context.createFloatBuffer(ri*fj*2, READ_ONLY);
-        CLBuffer<FloatBuffer> clG = context.createFloatBuffer(gi*2, READ_ONLY);
-        CLBuffer<FloatBuffer> clR = context.createFloatBuffer(ri*fj*2, WRITE_ONLY);
-        clF.getBuffer().put(ComplexUtils.complex2InterleavedFloat(ArrayMath.vectorize(fPad))).rewind();
-        clG.getBuffer().put(ComplexUtils.complex2InterleavedFloat(g)).rewind();
-        CLKernel Kernel = program21Complex.createCLKernel("Convolve21Complex");
-        Kernel.putArg(clF)
-        	.putArg(clG)
-        	.putArg(clR)
-        	.putArg(ri)
-        	.putArg(fj)
-        	.putArg(gi)
-        	.putArg(hgi)
-        	.putArg(hgie);
-        queue.putWriteBuffer(clF, false)
-        	.putWriteBuffer(clG, false)
-        	.put2DRangeKernel(Kernel, 0, 0, ri, fj, 0,0)
-        	.putReadBuffer(clR, true);
-		float[] resultVec = new float[ri*fj*2];
-		clR.getBuffer().get(resultVec);
-		clF.release();
-		clG.release();
-		clR.release();
-		Complex[][] result = ArrayMath.devectorize(ComplexUtils.interleaved2Complex(resultVec), ri);
-		if (dim == 1) result = ArrayMath.shiftDim(result);
-        return result;
+		return convolve(new VolumeComplex(f), axisKernel(g, 1 - dim)).toArray2d();
 	}
 
 	/**
@@ -187,51 +162,20 @@ public class ConvolverComplexFDGPU extends ConvolverComplex {
 	}
 
 	/**
-	 * Convolve 3D {@code Complex[][][]} array with 1D {@code Complex[]} kernel.
+	 * Convolve 3D {@code Complex[][][]} array with 1D {@code Complex[]} kernel, with {@code dim} as on the
+	 * CPU: with 0 each row {@code f[i][j]} is convolved; with 1 the kernel runs along the first index
+	 * and with 2 along the second. The array is read on the GPU through its strides, so it is never
+	 * transposed.
 	 * @param f {@code Complex[][][]} array
 	 * @param g {@code Complex[]} kernel
 	 * @param dim orientation of kernel (0,1, or 2)
 	 * @return {@code Complex[][][]}
 	 */
 	public Complex[][][] convolve(Complex[][][] f, Complex[] g, int dim) {
-		if (dim == 1) f = ArrayMath.shiftDim(f, 1);
-		if (dim == 2) f = ArrayMath.shiftDim(f, 2);
-		final int fi = f.length;
-		final int fj = f[0].length;
-		final int fk = f[0][0].length;
-		final int gi = g.length;
-		final int hgi = (int)( (gi - 1) / 2.0);
-		final int hgie = (gi % 2 == 0) ? hgi + 1 : hgi;
-		Complex[][][] fPad = ArrayMath.zeroPadBoundaries(f, hgi, hgie, 0, 0, 0, 0);
-		Complex[][][] r = ArrayMath.zeroPadBoundaries(new Complex[fi][fj][fk], hgi, hgie, 0, 0, 0, 0);
-		final int ri = r.length;
-    	CLBuffer<FloatBuffer> clF = context.createFloatBuffer(ri*fj*fk*2, READ_ONLY);
-        CLBuffer<FloatBuffer> clG = context.createFloatBuffer(gi*2, READ_ONLY);
-        CLBuffer<FloatBuffer> clR = context.createFloatBuffer(ri*fj*fk*2, WRITE_ONLY);
-        clF.getBuffer().put(ComplexUtils.complex2InterleavedFloat(ArrayMath.vectorize(fPad))).rewind();
-        clG.getBuffer().put(ComplexUtils.complex2InterleavedFloat(g)).rewind();
-        CLKernel Kernel = program31Complex.createCLKernel("Convolve31Complex");
-        Kernel.putArg(clF)
-        	.putArg(clG)
-        	.putArg(clR)
-        	.putArg(ri)
-        	.putArg(fj)
-        	.putArg(gi)
-        	.putArg(hgi)
-        	.putArg(hgie);
-        queue.putWriteBuffer(clF, false)
-        	.putWriteBuffer(clG, false)
-        	.put3DRangeKernel(Kernel, 0, 0, 0, ri, fj, fk, 0,0,0)
-        	.putReadBuffer(clR, true);
-		float[] resultVec = new float[ri*fj*fk*2];
-		clR.getBuffer().get(resultVec);
-		clF.release();
-		clG.release();
-		clR.release();
-        Complex[][][] result = ArrayMath.devectorize(ComplexUtils.interleaved2Complex(resultVec), ri, fj);
-        if (dim == 1) result = ArrayMath.shiftDim(result, 2);
-		if (dim == 2) result = ArrayMath.shiftDim(result, 1);
-		return result;
+		if (dim < 0 || dim > 2) {
+			throw new OutOfRangeException(dim, 0, 2);
+		}
+		return convolve(new VolumeComplex(f), axisKernel(g, (dim + 2) % 3)).toArray();
 	}
 
 	/**
@@ -347,6 +291,311 @@ public class ConvolverComplexFDGPU extends ConvolverComplex {
         return ArrayMath.devectorize(ComplexUtils.interleaved2Complex(result), ri, rj);
 	}
 
+	/**
+	 * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel.
+	 * The split real and imaginary backing arrays are uploaded as they are and read on the GPU
+	 * through their strides, so no padded, vectorized or interleaved copies are made.
+	 * @param f {@code VolumeComplex} array
+	 * @param g {@code VolumeComplex} kernel
+	 * @return contiguous {@code VolumeComplex} of dimensions {@code f + g - 1}
+	 */
+	public VolumeComplex convolve(VolumeComplex f, VolumeComplex g) {
+		return convolve(f, g, OutputMode.FULL);
+	}
+
+	/**
+	 * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel into a caller-supplied result,
+	 * which may be a strided view. The device buffers and kernel are kept by the convolver and reused
+	 * while the sizes stay the same, so {@code workspace} is not used and may be {@code null}.
+	 * @param f {@code VolumeComplex} array
+	 * @param g {@code VolumeComplex} kernel
+	 * @param r {@code VolumeComplex} result of dimensions {@code f + g - 1}
+	 * @param workspace scratch buffers
+	 */
+	public void convolveInto(VolumeComplex f, VolumeComplex g, VolumeComplex r, Workspace workspace) {
+		convolveInto(f, g, OutputMode.FULL, r, workspace);
+	}
+
+	/**
+	 * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel, computing only the part of the result
+	 * selected by {@code mode}. Only that part is allocated, read back, and given GPU threads.
+	 * @param f {@code VolumeComplex} array
+	 * @param g {@code VolumeComplex} kernel
+	 * @param mode part of the result to compute
+	 * @return contiguous {@code VolumeComplex} of the dimensions given by {@code mode}
+	 */
+	public VolumeComplex convolve(VolumeComplex f, VolumeComplex g, OutputMode mode) {
+		final VolumeComplex r = new VolumeComplex(mode.length(f.ni, g.ni), mode.length(f.nj, g.nj),
+				mode.length(f.nk, g.nk));
+		convolveInto(f, g, mode, r, null);
+		return r;
+	}
+
+	/**
+	 * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel into a caller-supplied result,
+	 * which may be a strided view, computing only the part selected by {@code mode}.
+	 * @param f {@code VolumeComplex} array
+	 * @param g {@code VolumeComplex} kernel
+	 * @param mode part of the result to compute
+	 * @param r {@code VolumeComplex} result of the dimensions given by {@code mode}
+	 * @param workspace scratch buffers
+	 */
+	public void convolveInto(VolumeComplex f, VolumeComplex g, OutputMode mode, VolumeComplex r, Workspace workspace) {
+		convolveInto(f, g, mode, Boundaries.Condition.ZERO, r, workspace);
+	}
+
+	/**
+	 * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel, extending the array past its edges by
+	 * {@code condition}.
+	 * @param f {@code VolumeComplex} array
+	 * @param g {@code VolumeComplex} kernel
+	 * @param mode part of the result to compute
+	 * @param condition how {@code f} is extended past its edges
+	 * @return contiguous {@code VolumeComplex} of the dimensions given by {@code mode}
+	 */
+	public VolumeComplex convolve(VolumeComplex f, VolumeComplex g, OutputMode mode, Boundaries.Condition condition) {
+		final VolumeComplex r = new VolumeComplex(mode.length(f.ni, g.ni), mode.length(f.nj, g.nj),
+				mode.length(f.nk, g.nk));
+		convolveInto(f, g, mode, condition, r, null);
+		return r;
+	}
+
+	/**
+	 * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel into a caller-supplied result,
+	 * which may be a strided view, extending the array past its edges by {@code condition}. Taps which fall
+	 * outside {@code f} are remapped on the device, so no padded copy is uploaded.
+	 * @param f {@code VolumeComplex} array
+	 * @param g {@code VolumeComplex} kernel
+	 * @param mode part of the result to compute
+	 * @param condition how {@code f} is extended past its edges
+	 * @param r {@code VolumeComplex} result of the dimensions given by {@code mode}
+	 * @param workspace scratch buffers
+	 */
+	public void convolveInto(VolumeComplex f, VolumeComplex g, OutputMode mode, Boundaries.Condition condition,
+			VolumeComplex r, Workspace workspace) {
+		checkResultLength(r.ni, f.ni, g.ni, mode);
+		checkResultLength(r.nj, f.nj, g.nj, mode);
+		checkResultLength(r.nk, f.nk, g.nk, mode);
+		convolveVolume(f, g, mode.offset(g.ni), mode.offset(g.nj), mode.offset(g.nk), condition.ordinal(), 1, 1, 1,
+				r);
+	}
+
+	/**
+	 * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel dilated by {@code (di, dj, dk)}, as if
+	 * {@code d - 1} zeros stood between its taps along each axis. Only the real taps are applied.
+	 * @param f {@code VolumeComplex} array
+	 * @param g {@code VolumeComplex} kernel
+	 * @param di dilation along the first axis
+	 * @param dj dilation along the second axis
+	 * @param dk dilation along the third axis
+	 * @param mode part of the result to compute, for the dilated kernel
+	 * @return contiguous {@code VolumeComplex} of the dimensions given by {@code mode}
+	 */
+	public VolumeComplex convolveDilated(VolumeComplex f, VolumeComplex g, int di, int dj, int dk, OutputMode mode) {
+		final VolumeComplex r = new VolumeComplex(mode.length(f.ni, dilatedLength(g.ni, di)),
+				mode.length(f.nj, dilatedLength(g.nj, dj)), mode.length(f.nk, dilatedLength(g.nk, dk)));
+		convolveDilatedInto(f, g, di, dj, dk, mode, r);
+		return r;
+	}
+
+	/**
+	 * Convolve {@code VolumeComplex} array with {@code VolumeComplex} kernel dilated by {@code (di, dj, dk)} into a
+	 * caller-supplied result, which may be a strided view.
+	 * @param f {@code VolumeComplex} array
+	 * @param g {@code VolumeComplex} kernel
+	 * @param di dilation along the first axis
+	 * @param dj dilation along the second axis
+	 * @param dk dilation along the third axis
+	 * @param mode part of the result to compute, for the dilated kernel
+	 * @param r {@code VolumeComplex} result of the dimensions given by {@code mode}
+	 */
+	public void convolveDilatedInto(VolumeComplex f, VolumeComplex g, int di, int dj, int dk, OutputMode mode,
+			VolumeComplex r) {
+		final int gei = dilatedLength(g.ni, di);
+		final int gej = dilatedLength(g.nj, dj);
+		final int gek = dilatedLength(g.nk, dk);
+		checkResultLength(r.ni, f.ni, gei, mode);
+		checkResultLength(r.nj, f.nj, gej, mode);
+		checkResultLength(r.nk, f.nk, gek, mode);
+		convolveVolume(f, g, mode.offset(gei), mode.offset(gej), mode.offset(gek), Boundaries.Condition.ZERO.ordinal(),
+				di, dj, dk, r);
+	}
+
+	/**
+	 * Convolve 3D {@code Complex[][][]} array with 3D {@code Complex[][][]} kernel dilated by {@code (di, dj, dk)}.
+	 * @param f {@code Complex[][][]} array
+	 * @param g {@code Complex[][][]} kernel
+	 * @param di dilation along the first axis
+	 * @param dj dilation along the second axis
+	 * @param dk dilation along the third axis
+	 * @param mode part of the result to compute, for the dilated kernel
+	 * @return {@code Complex[][][]}
+	 */
+	public Complex[][][] convolveDilated(Complex[][][] f, Complex[][][] g, int di, int dj, int dk, OutputMode mode) {
+		return convolveDilated(new VolumeComplex(f), new VolumeComplex(g), di, dj, dk, mode).toArray();
+	}
+
+	/**
+	 * Runs the volume kernel, which computes result element {@code (i, j, k)} as element
+	 * {@code (i + oi, j + oj, k + ok)} of the full convolution of {@code f} with {@code g} dilated by
+	 * {@code (di, dj, dk)}, extending {@code f} by the boundary condition with ordinal {@code boundary}.
+	 */
+	private void convolveVolume(VolumeComplex f, VolumeComplex g, int oi, int oj, int ok, int boundary, int di, int dj,
+			int dk, VolumeComplex r) {
+		final int ri = r.ni;
+		final int rj = r.nj;
+		final int rk = r.nk;
+        clVolumeFRe = reuseBuffer(clVolumeFRe, f.re.length, READ_ONLY);
+        clVolumeFIm = reuseBuffer(clVolumeFIm, f.im.length, READ_ONLY);
+        clVolumeGRe = reuseBuffer(clVolumeGRe, g.re.length, READ_ONLY);
+        clVolumeGIm = reuseBuffer(clVolumeGIm, g.im.length, READ_ONLY);
+        clVolumeRRe = reuseBuffer(clVolumeRRe, ri*rj*rk, WRITE_ONLY);
+        clVolumeRIm = reuseBuffer(clVolumeRIm, ri*rj*rk, WRITE_ONLY);
+        putFloats(clVolumeFRe.getBuffer(), f.re);
+        putFloats(clVolumeFIm.getBuffer(), f.im);
+        putFloats(clVolumeGRe.getBuffer(), g.re);
+        putFloats(clVolumeGIm.getBuffer(), g.im);
+        if (volumeKernel == null) {
+        	volumeKernel = programVolumeComplex.createCLKernel("ConvolveVolumeComplex");
+        }
+        volumeKernel.rewind()
+        	.putArg(clVolumeFRe)
+        	.putArg(clVolumeFIm)
+        	.putArg(clVolumeGRe)
+        	.putArg(clVolumeGIm)
+        	.putArg(clVolumeRRe)
+        	.putArg(clVolumeRIm)
+        	.putArg(f.ni).putArg(f.nj).putArg(f.nk)
+        	.putArg(f.offset).putArg(f.si).putArg(f.sj).putArg(f.sk)
+        	.putArg(g.ni).putArg(g.nj).putArg(g.nk)
+        	.putArg(g.offset).putArg(g.si).putArg(g.sj).putArg(g.sk)
+        	.putArg(ri).putArg(rj).putArg(rk)
+        	.putArg(oi).putArg(oj).putArg(ok)
+        	.putArg(boundary).putArg(di).putArg(dj).putArg(dk);
+        queue.putWriteBuffer(clVolumeFRe, false)
+        	.putWriteBuffer(clVolumeFIm, false)
+        	.putWriteBuffer(clVolumeGRe, false)
+        	.putWriteBuffer(clVolumeGIm, false)
+        	.put3DRangeKernel(volumeKernel, 0, 0, 0, ri, rj, rk, 0, 0, 0)
+        	.putReadBuffer(clVolumeRRe, false)
+        	.putReadBuffer(clVolumeRIm, true);
+		final FloatBuffer rRe = clVolumeRRe.getBuffer();
+		final FloatBuffer rIm = clVolumeRIm.getBuffer();
+		for (int i = 0; i < ri; i++) {
+			for (int j = 0; j < rj; j++) {
+				for (int k = 0; k < rk; k++) {
+					final int n = (i*rj + j)*rk + k;
+					r.re[r.index(i, j, k)] = rRe.get(n);
+					r.im[r.index(i, j, k)] = rIm.get(n);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Convolve 1D {@code Complex[]} array with 1D {@code Complex[]} kernel, computing only the part of the
+	 * result selected by {@code mode}.
+	 * @param f {@code Complex[]} array
+	 * @param g {@code Complex[]} kernel
+	 * @param mode part of the result to compute
+	 * @return {@code Complex[]}
+	 */
+	public Complex[] convolve(Complex[] f, Complex[] g, OutputMode mode) {
+		return convolve(new VolumeComplex(f), new VolumeComplex(g), mode).toArray1d();
+	}
+
+	/**
+	 * Convolve 2D {@code Complex[][]} array with 2D {@code Complex[][]} kernel, computing only the part of the
+	 * result selected by {@code mode}.
+	 * @param f {@code Complex[][]} array
+	 * @param g {@code Complex[][]} kernel
+	 * @param mode part of the result to compute
+	 * @return {@code Complex[][]}
+	 */
+	public Complex[][] convolve(Complex[][] f, Complex[][] g, OutputMode mode) {
+		return convolve(new VolumeComplex(f), new VolumeComplex(g), mode).toArray2d();
+	}
+
+	/**
+	 * Convolve 3D {@code Complex[][][]} array with 3D {@code Complex[][][]} kernel, computing only the part of the
+	 * result selected by {@code mode}.
+	 * @param f {@code Complex[][][]} array
+	 * @param g {@code Complex[][][]} kernel
+	 * @param mode part of the result to compute
+	 * @return {@code Complex[][][]}
+	 */
+	public Complex[][][] convolve(Complex[][][] f, Complex[][][] g, OutputMode mode) {
+		return convolve(new VolumeComplex(f), new VolumeComplex(g), mode).toArray();
+	}
+
+	/**
+	 * Convolve 1D {@code Complex[]} array with 1D {@code Complex[]} kernel, extending the array past its
+	 * edges by {@code condition}.
+	 * @param f {@code Complex[]} array
+	 * @param g {@code Complex[]} kernel
+	 * @param mode part of the result to compute
+	 * @param condition how {@code f} is extended past its edges
+	 * @return {@code Complex[]}
+	 */
+	public Complex[] convolve(Complex[] f, Complex[] g, OutputMode mode, Boundaries.Condition condition) {
+		return convolve(new VolumeComplex(f), new VolumeComplex(g), mode, condition).toArray1d();
+	}
+
+	/**
+	 * Convolve 2D {@code Complex[][]} array with 2D {@code Complex[][]} kernel, extending the array past its
+	 * edges by {@code condition}.
+	 * @param f {@code Complex[][]} array
+	 * @param g {@code Complex[][]} kernel
+	 * @param mode part of the result to compute
+	 * @param condition how {@code f} is extended past its edges
+	 * @return {@code Complex[][]}
+	 */
+	public Complex[][] convolve(Complex[][] f, Complex[][] g, OutputMode mode, Boundaries.Condition condition) {
+		return convolve(new VolumeComplex(f), new VolumeComplex(g), mode, condition).toArray2d();
+	}
+
+	/**
+	 * Convolve 3D {@code Complex[][][]} array with 3D {@code Complex[][][]} kernel, extending the array past its
+	 * edges by {@code condition}.
+	 * @param f {@code Complex[][][]} array
+	 * @param g {@code Complex[][][]} kernel
+	 * @param mode part of the result to compute
+	 * @param condition how {@code f} is extended past its edges
+	 * @return {@code Complex[][][]}
+	 */
+	public Complex[][][] convolve(Complex[][][] f, Complex[][][] g, OutputMode mode, Boundaries.Condition condition) {
+		return convolve(new VolumeComplex(f), new VolumeComplex(g), mode, condition).toArray();
+	}
+
+	/**
+	 * @return {@code g} as a volume which extends along {@code axis} (0, 1 or 2) only
+	 */
+	private static VolumeComplex axisKernel(Complex[] g, int axis) {
+		final int gl = g.length;
+		return new VolumeComplex(ComplexUtils.complex2Real(g), ComplexUtils.complex2Imaginary(g),
+				axis == 0 ? gl : 1, axis == 1 ? gl : 1, axis == 2 ? gl : 1);
+	}
+
+	/**
+	 * @return {@code buffer} if it holds exactly {@code size} floats, otherwise a new buffer replacing it
+	 */
+	private CLBuffer<FloatBuffer> reuseBuffer(CLBuffer<FloatBuffer> buffer, int size, CLMemory.Mem flag) {
+		if (buffer != null) {
+			if (buffer.getBuffer().capacity() == size) {
+				return buffer;
+			}
+			buffer.release();
+		}
+		return context.createFloatBuffer(size, flag);
+	}
+
+	private static void putFloats(FloatBuffer buffer, double[] values) {
+		for (double v : values) {
+			buffer.put((float) v);
+		}
+		buffer.rewind();
+	}
+
 	/**
 	 * Should be called as destructor method.
 	 */
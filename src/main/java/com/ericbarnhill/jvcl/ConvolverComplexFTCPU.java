@@ -23,6 +23,8 @@
  */
 package com.ericbarnhill.jvcl;
 
+import java.util.Arrays;
+
 import org.apache.commons.numbers.complex.Complex;
 import org.apache.commons.numbers.complex.ComplexUtils;
 
@@ -161,7 +163,268 @@ public class ConvolverComplexFTCPU extends ConvolverComplex {
         return convolve(f, ArrayMath.convertTo3d(g));
     }
 
+	/**
+	 * Convolve {@code VolumeComplex} array with {@code VolumeComplex} g.
+	 * Both volumes are read through their strides straight into interleaved FFT buffers
+	 * of the full result size, with no intermediate padded or jagged arrays.
+	 * @param f {@code VolumeComplex} array
+	 * @param g {@code VolumeComplex} g
+	 * @return contiguous {@code VolumeComplex} of dimensions {@code f + g - 1}
+	 */
+	public VolumeComplex convolve(VolumeComplex f, VolumeComplex g) {
+		return convolve(f, g, OutputMode.FULL);
+	}
 
-}
+	/**
+	 * Convolve {@code VolumeComplex} array with {@code VolumeComplex} g into a caller-supplied result,
+	 * which may be a strided view. The FFT buffers and plan are kept in {@code workspace}, so repeated
+	 * convolutions of same-sized volumes allocate no buffers.
+	 * @param f {@code VolumeComplex} array
+	 * @param g {@code VolumeComplex} g
+	 * @param r {@code VolumeComplex} result of dimensions {@code f + g - 1}
+	 * @param workspace scratch buffers
+	 */
+	public void convolveInto(VolumeComplex f, VolumeComplex g, VolumeComplex r, Workspace workspace) {
+		convolveInto(f, g, OutputMode.FULL, r, workspace);
+	}
 
+	/**
+	 * Convolve {@code VolumeComplex} array with {@code VolumeComplex} g, keeping only the part of the
+	 * result selected by {@code mode}. The transforms are only as long as that part needs, see
+	 * {@link #transformLength}.
+	 * @param f {@code VolumeComplex} array
+	 * @param g {@code VolumeComplex} g
+	 * @param mode part of the result to compute
+	 * @return contiguous {@code VolumeComplex} of the dimensions given by {@code mode}
+	 */
+	public VolumeComplex convolve(VolumeComplex f, VolumeComplex g, OutputMode mode) {
+		final VolumeComplex r = new VolumeComplex(mode.length(f.ni, g.ni), mode.length(f.nj, g.nj),
+				mode.length(f.nk, g.nk));
+		convolveInto(f, g, mode, r, new Workspace());
+		return r;
+	}
+
+	/**
+	 * Convolve {@code VolumeComplex} array with {@code VolumeComplex} g into a caller-supplied result,
+	 * which may be a strided view, keeping only the part selected by {@code mode}.
+	 * @param f {@code VolumeComplex} array
+	 * @param g {@code VolumeComplex} g
+	 * @param mode part of the result to compute
+	 * @param r {@code VolumeComplex} result of the dimensions given by {@code mode}
+	 * @param workspace scratch buffers
+	 */
+	public void convolveInto(VolumeComplex f, VolumeComplex g, OutputMode mode, VolumeComplex r,
+			Workspace workspace) {
+		checkResultLength(r.ni, f.ni, g.ni, mode);
+		checkResultLength(r.nj, f.nj, g.nj, mode);
+		checkResultLength(r.nk, f.nk, g.nk, mode);
+		final int ti = transformLength(f.ni, g.ni, mode);
+		final int tj = transformLength(f.nj, g.nj, mode);
+		final int tk = transformLength(f.nk, g.nk, mode);
+		final double[] v = workspace.getDoubles(0, 2*ti*tj*tk);
+		final double[] k = workspace.getDoubles(1, 2*ti*tj*tk);
+		Arrays.fill(v, 0);
+		Arrays.fill(k, 0);
+		interleave(f.re, f.im, f, v, tj, tk);
+		interleave(g.re, g.im, g, k, tj, tk);
+		multiplyTransforms(v, k, ti, tj, tk, workspace);
+		deinterleave(v, tj, tk, mode.offset(g.ni), mode.offset(g.nj), mode.offset(g.nk), r.re, r.im, r);
+	}
 
+	/**
+	 * Convolve 1D {@code Complex[]} array with 1D {@code Complex[]} g, keeping only the part of the result
+	 * selected by {@code mode}.
+	 * @param f {@code Complex[]} array
+	 * @param g {@code Complex[]} g
+	 * @param mode part of the result to compute
+	 * @return {@code Complex[]}
+	 */
+	public Complex[] convolve(Complex[] f, Complex[] g, OutputMode mode) {
+		return convolve(new VolumeComplex(f), new VolumeComplex(g), mode).toArray1d();
+	}
+
+	/**
+	 * Convolve 2D {@code Complex[][]} array with 2D {@code Complex[][]} g, keeping only the part of the
+	 * result selected by {@code mode}.
+	 * @param f {@code Complex[][]} array
+	 * @param g {@code Complex[][]} g
+	 * @param mode part of the result to compute
+	 * @return {@code Complex[][]}
+	 */
+	public Complex[][] convolve(Complex[][] f, Complex[][] g, OutputMode mode) {
+		return convolve(new VolumeComplex(f), new VolumeComplex(g), mode).toArray2d();
+	}
+
+	/**
+	 * Convolve 3D {@code Complex[][][]} array with 3D {@code Complex[][][]} g, keeping only the part of the
+	 * result selected by {@code mode}.
+	 * @param f {@code Complex[][][]} array
+	 * @param g {@code Complex[][][]} g
+	 * @param mode part of the result to compute
+	 * @return {@code Complex[][][]}
+	 */
+	public Complex[][][] convolve(Complex[][][] f, Complex[][][] g, OutputMode mode) {
+		return convolve(new VolumeComplex(f), new VolumeComplex(g), mode).toArray();
+	}
+
+	/**
+	 * Length of the transform along an axis on which the array has length {@code f} and the kernel length
+	 * {@code g}. The circular convolution of that length wraps the end of the full result onto its start;
+	 * the length is the shortest for which the wrapped outputs all fall before the part selected by
+	 * {@code mode}, and that part and the kernel still fit. For {@link OutputMode#VALID} it is just {@code f}.
+	 */
+	static int transformLength(int f, int g, OutputMode mode) {
+		final int o = mode.offset(g);
+		return Math.max(Math.max(o + mode.length(f, g), f + g - 1 - o), g);
+	}
+
+	/**
+	 * Writes a volume into the interleaved buffer {@code v} of row-major dimensions
+	 * {@code (*, rj, rk)}, leaving the rest of {@code v} zero.
+	 * @param re real backing array
+	 * @param im imaginary backing array, or {@code null} for real data
+	 * @param vol shape of the volume
+	 */
+	static void interleave(double[] re, double[] im, Volume<?> vol, double[] v, int rj, int rk) {
+		for (int i = 0; i < vol.ni; i++) {
+			for (int j = 0; j < vol.nj; j++) {
+				final int base = vol.index(i, j, 0);
+				final int vBase = 2*(i*rj + j)*rk;
+				for (int k = 0; k < vol.nk; k++) {
+					v[vBase + 2*k] = re[base + k*vol.sk];
+					if (im != null) {
+						v[vBase + 2*k + 1] = im[base + k*vol.sk];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a real {@code float} volume into the interleaved buffer {@code v} of row-major dimensions
+	 * {@code (*, rj, rk)}, leaving the rest of {@code v} zero.
+	 */
+	static void interleave(float[] re, Volume<?> vol, double[] v, int rj, int rk) {
+		for (int i = 0; i < vol.ni; i++) {
+			for (int j = 0; j < vol.nj; j++) {
+				final int base = vol.index(i, j, 0);
+				final int vBase = 2*(i*rj + j)*rk;
+				for (int k = 0; k < vol.nk; k++) {
+					v[vBase + 2*k] = re[base + k*vol.sk];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the part of the interleaved buffer {@code v}, of row-major dimensions {@code (*, rj, rk)},
+	 * starting at {@code (oi, oj, ok)} into a volume.
+	 * @param re real backing array
+	 * @param im imaginary backing array, or {@code null} to keep the real part only
+	 * @param vol shape of the volume
+	 */
+	static void deinterleave(double[] v, int rj, int rk, int oi, int oj, int ok, double[] re, double[] im,
+			Volume<?> vol) {
+		for (int i = 0; i < vol.ni; i++) {
+			for (int j = 0; j < vol.nj; j++) {
+				final int base = vol.index(i, j, 0);
+				final int vBase = 2*((i + oi)*rj + j + oj)*rk + 2*ok;
+				for (int k = 0; k < vol.nk; k++) {
+					re[base + k*vol.sk] = v[vBase + 2*k];
+					if (im != null) {
+						im[base + k*vol.sk] = v[vBase + 2*k + 1];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the real part of the part of the interleaved buffer {@code v}, of row-major dimensions
+	 * {@code (*, rj, rk)}, starting at {@code (oi, oj, ok)} into a {@code float} volume.
+	 */
+	static void deinterleave(double[] v, int rj, int rk, int oi, int oj, int ok, float[] re, Volume<?> vol) {
+		for (int i = 0; i < vol.ni; i++) {
+			for (int j = 0; j < vol.nj; j++) {
+				final int base = vol.index(i, j, 0);
+				final int vBase = 2*((i + oi)*rj + j + oj)*rk + 2*ok;
+				for (int k = 0; k < vol.nk; k++) {
+					re[base + k*vol.sk] = (float) v[vBase + 2*k];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces {@code v} with the inverse transform of the product of the transforms of {@code v} and {@code k}.
+	 * Both are interleaved complex buffers of row-major dimensions {@code (ri, rj, rk)}. Dimensions of length 1
+	 * are dropped, so 1D and 2D volumes use the 1D and 2D transforms. The transform plan is kept in
+	 * {@code workspace} and reused while the dimensions stay the same.
+	 */
+	static void multiplyTransforms(double[] v, double[] k, int ri, int rj, int rk, Workspace workspace) {
+		final int[] dims = new int[3];
+		int nDims = 0;
+		for (int d : new int[] {ri, rj, rk}) {
+			if (d > 1) {
+				dims[nDims++] = d;
+			}
+		}
+		if (workspace.transform == null || workspace.ti != ri || workspace.tj != rj || workspace.tk != rk) {
+			switch (nDims) {
+				case 1:
+					workspace.transform = new DoubleFFT_1D(dims[0]);
+					break;
+				case 2:
+					workspace.transform = new DoubleFFT_2D(dims[0], dims[1]);
+					break;
+				case 3:
+					workspace.transform = new DoubleFFT_3D(dims[0], dims[1], dims[2]);
+					break;
+				default:
+					workspace.transform = null;
+			}
+			workspace.ti = ri;
+			workspace.tj = rj;
+			workspace.tk = rk;
+		}
+		switch (nDims) {
+			case 1:
+				final DoubleFFT_1D fft1 = (DoubleFFT_1D) workspace.transform;
+				fft1.complexForward(v);
+				fft1.complexForward(k);
+				multiplyInterleaved(v, k);
+				fft1.complexInverse(v, true);
+				break;
+			case 2:
+				final DoubleFFT_2D fft2 = (DoubleFFT_2D) workspace.transform;
+				fft2.complexForward(v);
+				fft2.complexForward(k);
+				multiplyInterleaved(v, k);
+				fft2.complexInverse(v, true);
+				break;
+			case 3:
+				final DoubleFFT_3D fft3 = (DoubleFFT_3D) workspace.transform;
+				fft3.complexForward(v);
+				fft3.complexForward(k);
+				multiplyInterleaved(v, k);
+				fft3.complexInverse(v, true);
+				break;
+			default:
+				multiplyInterleaved(v, k);
+		}
+	}
+
+	/**
+	 * Complex multiplication of interleaved buffers, in place in {@code v}.
+	 */
+	static void multiplyInterleaved(double[] v, double[] k) {
+		double re, im;
+		for (int n = 0; n < v.length; n += 2) {
+			re = v[n]*k[n] - v[n+1]*k[n+1];
+			im = v[n]*k[n+1] + v[n+1]*k[n];
+			v[n] = re;
+			v[n+1] = im;
+		}
+	}
+
+}
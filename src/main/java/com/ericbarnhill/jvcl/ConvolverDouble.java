@@ -19,4 +19,80 @@ abstract class ConvolverDouble extends Convolver<Double> {
     abstract Double[][] convolve(Double[][] f, Double[][] g);
     abstract Double[][][] convolve(Double[][][] f, Double[][] g);
     abstract Double[][][] convolve(Double[][][] f, Double[][][] g);
+
+    abstract VolumeDouble convolve(VolumeDouble f, VolumeDouble g);
+    abstract void convolveInto(VolumeDouble f, VolumeDouble g, VolumeDouble r, Workspace workspace);
+
+    abstract double[] convolve(double[] f, double[] g, OutputMode mode);
+    abstract double[][] convolve(double[][] f, double[][] g, OutputMode mode);
+    abstract double[][][] convolve(double[][][] f, double[][][] g, OutputMode mode);
+    abstract VolumeDouble convolve(VolumeDouble f, VolumeDouble g, OutputMode mode);
+    abstract void convolveInto(VolumeDouble f, VolumeDouble g, OutputMode mode, VolumeDouble r, Workspace workspace);
+
+    /**
+     * Convolve 1D {@code double[]} array with 1D {@code double[]} kernel, keeping
+     * only every {@code stride}-th output of the full result, starting at the
+     * first. This computes the full result and subsamples it; convolvers
+     * which can evaluate only the kept outputs override it.
+     */
+    double[] convolveStrided(double[] f, double[] g, int stride) {
+        final double[] full = convolve(f, g, OutputMode.FULL);
+        final double[] r = new double[stridedLength(f.length, g.length, stride)];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = full[i * stride];
+        }
+        return r;
+    }
+
+    /**
+     * Convolve 2D {@code double[][]} array with 2D {@code double[][]} kernel,
+     * keeping only every {@code si}-th, {@code sj}-th output of the full
+     * result along each axis.
+     */
+    double[][] convolveStrided(double[][] f, double[][] g, int si, int sj) {
+        final double[][] full = convolve(f, g, OutputMode.FULL);
+        final double[][] r = new double[stridedLength(f.length, g.length, si)][stridedLength(f[0].length,
+                g[0].length, sj)];
+        for (int i = 0; i < r.length; i++) {
+            for (int j = 0; j < r[0].length; j++) {
+                r[i][j] = full[i * si][j * sj];
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]} kernel,
+     * keeping only every {@code si}-th, {@code sj}-th, {@code sk}-th output
+     * of the full result along each axis.
+     */
+    double[][][] convolveStrided(double[][][] f, double[][][] g, int si, int sj, int sk) {
+        final double[][][] full = convolve(f, g, OutputMode.FULL);
+        final double[][][] r = new double[stridedLength(f.length, g.length, si)][stridedLength(f[0].length,
+                g[0].length, sj)][stridedLength(f[0][0].length, g[0][0].length, sk)];
+        for (int i = 0; i < r.length; i++) {
+            for (int j = 0; j < r[0].length; j++) {
+                for (int k = 0; k < r[0][0].length; k++) {
+                    r[i][j][k] = full[i * si][j * sj][k * sk];
+                }
+            }
+        }
+        return r;
+    }
+
+    Volume<Double> convolve(Volume<Double> f, Volume<Double> g) {
+        return convolve((VolumeDouble) f, (VolumeDouble) g);
+    }
+
+    void convolveInto(Volume<Double> f, Volume<Double> g, Volume<Double> r, Workspace workspace) {
+        convolveInto((VolumeDouble) f, (VolumeDouble) g, (VolumeDouble) r, workspace);
+    }
+
+    Volume<Double> convolve(Volume<Double> f, Volume<Double> g, OutputMode mode) {
+        return convolve((VolumeDouble) f, (VolumeDouble) g, mode);
+    }
+
+    void convolveInto(Volume<Double> f, Volume<Double> g, OutputMode mode, Volume<Double> r, Workspace workspace) {
+        convolveInto((VolumeDouble) f, (VolumeDouble) g, mode, (VolumeDouble) r, workspace);
+    }
 }
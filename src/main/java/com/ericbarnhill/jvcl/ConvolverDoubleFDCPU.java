@@ -24,6 +24,8 @@
 
 package com.ericbarnhill.jvcl;
 
+import java.util.Arrays;
+
 import org.apache.commons.numbers.complex.Complex;
 import org.apache.commons.numbers.complex.ComplexUtils;
 import org.apache.commons.math4.exception.OutOfRangeException;
@@ -31,13 +33,71 @@ import org.apache.commons.math4.exception.OutOfRangeException;
 import com.ericbarnhill.arrayMath.ArrayMath;
 
 /**
- * This class performs naive Finite-Differences convolutions on the CPU.
+ * This class performs Finite-Differences convolutions on the CPU. Result elements whose
+ * kernel taps all fall inside the padded array are computed in a loop without bounds checks,
+ * and the thin boundary shell around them is computed separately, with the valid range of each
+ * tap worked out ahead of its loop. Every inner loop is a contiguous multiply-add over one row,
+ * which the JIT compiler vectorizes. When the kernel is symmetric or antisymmetric along its
+ * last axis (see {@link KernelSymmetry}), mirrored taps are folded so that each pair costs one
+ * multiply. Separable 2D and 3D kernels are detected and applied as 1D passes along each axis,
+ * and sparse 3D kernels such as finite-difference stencils are applied tap by tap through a
+ * {@link Stencil}. Constant (box) kernels and factors are applied with running sums, at a cost per
+ * element which does not depend on their length.
+ * Dense 3D kernels are applied in cache tiles chosen by {@link Tiling}. A bank of kernels of the
+ * same dimensions can be applied in one pass, with each input row read once for all of them.
  *
  * @author ericbarnhill
  * @since 0.1
  *
  */
 public class ConvolverDoubleFDCPU extends ConvolverDouble{
+
+    /** shortest constant kernel applied with running sums rather than taps */
+    static final int MIN_BOX_LENGTH = 8;
+    /** elements of a 1D array convolved with every kernel of a filter bank before moving on */
+    static final int BANK_BLOCK = 2048;
+
+    ParallelSlabs slabs;
+    boolean detectSeparable = true;
+    boolean detectSparse = true;
+    double separableTolerance = SeparableKernel.DEFAULT_TOLERANCE;
+
+    public ConvolverDoubleFDCPU() {
+        slabs = new ParallelSlabs(1);
+    }
+
+    /**
+     * @param threads
+     *            number of threads used for large convolutions
+     */
+    public ConvolverDoubleFDCPU(int threads) {
+        slabs = new ParallelSlabs(threads);
+    }
+
+    /**
+     * Sets the number of threads used for large convolutions. With 1 thread
+     * (the default) all convolutions run sequentially.
+     * 
+     * @param threads
+     *            number of threads
+     */
+    public void setThreads(int threads) {
+        slabs.close();
+        slabs = new ParallelSlabs(threads);
+    }
+
+    public int getThreads() {
+        return slabs.getThreads();
+    }
+
+    /**
+     * Releases worker threads. Should be called as destructor method when
+     * more than one thread is used.
+     */
+    public void close() {
+        slabs.close();
+    }
+
     /**
      * Convolve 1D {@code double[]} array with 1D {@code double[]} kernel
      * 
@@ -48,27 +108,229 @@ public class ConvolverDoubleFDCPU extends ConvolverDouble{
      * @return {@code double[]}
      */
     public double[] convolve(double[] f, double[] g) {
+        return convolveInto(f, g, new double[f.length + g.length - 1], new Workspace());
+    }
+
+    /**
+     * Convolve 1D {@code double[]} array with 1D {@code double[]} kernel into
+     * a caller-supplied result, reusing the scratch buffers of
+     * {@code workspace}.
+     * 
+     * @param f
+     *            {@code double[]} array
+     * @param g
+     *            {@code double[]} kernel
+     * @param r
+     *            {@code double[]} result of length {@code f + g - 1}
+     * @param workspace
+     *            scratch buffers
+     * @return {@code r}
+     */
+    public double[] convolveInto(double[] f, double[] g, double[] r, Workspace workspace) {
+        return convolveInto(f, g, OutputMode.FULL, r, workspace);
+    }
+
+    /**
+     * Convolve 1D {@code double[]} array with 1D {@code double[]} kernel,
+     * computing only the part of the result selected by {@code mode}.
+     * 
+     * @param f
+     *            {@code double[]} array
+     * @param g
+     *            {@code double[]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @return {@code double[]}
+     */
+    public double[] convolve(double[] f, double[] g, OutputMode mode) {
+        return convolveInto(f, g, mode, new double[mode.length(f.length, g.length)], new Workspace());
+    }
+
+    /**
+     * Convolve 1D {@code double[]} array with 1D {@code double[]} kernel into
+     * a caller-supplied result, computing only the part selected by
+     * {@code mode} and reusing the scratch buffers of {@code workspace}.
+     * 
+     * @param f
+     *            {@code double[]} array
+     * @param g
+     *            {@code double[]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param r
+     *            {@code double[]} result of the length given by {@code mode}
+     * @param workspace
+     *            scratch buffers
+     * @return {@code r}
+     */
+    public double[] convolveInto(double[] f, final double[] g, OutputMode mode, final double[] r,
+            Workspace workspace) {
         final int fi = f.length;
         final int gi = g.length;
         final int hgi = (int) ((gi - 1) / 2.0);
-        final int hgie = (gi % 2 == 0) ? hgi + 1 : hgi;
-        double[] fPad = ArrayMath.zeroPadBoundaries(f, hgi, hgie);
-        double[] r = ArrayMath.zeroPadBoundaries(new double[fi], hgi, hgie);
         final int ri = r.length;
-        int ai;
-        for (int i = 0; i < ri; i++) {
-            for (int p = 0; p < gi; p++) {
-                ai = i + p - hgie;
-                if (ai >= 0 && ai < ri) {
-                    r[i] += fPad[ai] * g[gi - 1 - p];
-                }
+        checkResultLength(ri, fi, gi, mode);
+        if (isBox(g)) {
+            Arrays.fill(r, 0);
+            convolveBox(f, g[0], gi, mode.offset(gi), r);
+            return r;
+        }
+        final int sym = KernelSymmetry.of(g);
+        // VALID outputs only read inside f, so f itself stands in for the padded copy
+        final boolean pad = mode != OutputMode.VALID;
+        final double[] fPad = pad ? workspace.getDoubles(0, fi + gi - 1) : f;
+        if (pad) {
+            padInto(f, fPad, hgi);
+        }
+        // r[i] reads fPad[i + p - ei] for tap p
+        final int ei = gi - 1 - mode.offset(gi) - (pad ? hgi : 0);
+        Arrays.fill(r, 0);
+        final int iLo = ei, iHi = fPad.length - gi + 1 + ei;
+        slabs.run(ri, (long) ri * gi, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                final int iIntStart = Math.max(iStart, iLo);
+                final int iIntEnd = Math.min(iEnd, iHi);
+                convolveInterior(fPad, g, sym, r, iIntStart, iIntEnd, ei);
+                convolveBoundary(fPad, g, r, iStart, Math.min(iEnd, iIntStart), ei);
+                convolveBoundary(fPad, g, r, Math.max(iStart, iIntEnd), iEnd, ei);
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Convolve 1D {@code double[]} array with 1D {@code double[]} kernel,
+     * extending the array past its edges by {@code condition}.
+     * 
+     * @param f
+     *            {@code double[]} array
+     * @param g
+     *            {@code double[]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return {@code double[]}
+     */
+    public double[] convolve(double[] f, double[] g, OutputMode mode, Boundaries.Condition condition) {
+        return convolveInto(f, g, mode, condition, new double[mode.length(f.length, g.length)], new Workspace());
+    }
+
+    /**
+     * Convolve 1D {@code double[]} array with 1D {@code double[]} kernel into
+     * a caller-supplied result, extending the array past its edges by
+     * {@code condition}. Taps which fall outside {@code f} are remapped to an
+     * index inside it, so no padded copy is made; {@code workspace} is only
+     * used for {@link Boundaries.Condition#ZERO}.
+     * 
+     * @param f
+     *            {@code double[]} array
+     * @param g
+     *            {@code double[]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @param r
+     *            {@code double[]} result of the length given by {@code mode}
+     * @param workspace
+     *            scratch buffers
+     * @return {@code r}
+     */
+    public double[] convolveInto(double[] f, double[] g, OutputMode mode, Boundaries.Condition condition,
+            double[] r, Workspace workspace) {
+        if (condition == Boundaries.Condition.ZERO) {
+            return convolveInto(f, g, mode, r, workspace);
+        }
+        final int fi = f.length;
+        final int gi = g.length;
+        final int ri = r.length;
+        checkResultLength(ri, fi, gi, mode);
+        // r[i] reads position i + p - ei of f, looked up in mapI[i + p] outside [iLo, iHi)
+        final int ei = gi - 1 - mode.offset(gi);
+        final int iLo = Math.min(ei, ri);
+        final int iHi = Math.max(iLo, Math.min(fi - gi + 1 + ei, ri));
+        final int[] mapI = Boundaries.remap(condition, -ei, ri + gi - 1 - ei, fi);
+        Arrays.fill(r, 0);
+        convolveTaps(f, g, KernelSymmetry.of(g), r, iLo, iHi, ei, mapI);
+        return r;
+    }
+
+    /**
+     * Convolve 1D {@code double[]} array with each kernel of a bank of 1D
+     * {@code double[]} kernels of the same length. The array is padded once,
+     * and each block of it is convolved with every kernel while it is in
+     * cache.
+     * 
+     * @param f
+     *            {@code double[]} array
+     * @param g
+     *            {@code double[][]} kernels {@code g[n]}
+     * @return {@code double[][]} results {@code r[n]} of {@code f} with {@code g[n]}
+     */
+    public double[][] convolve(double[] f, double[][] g) {
+        return convolveInto(f, g, new double[g.length][f.length + g[0].length - 1], new Workspace());
+    }
+
+    /**
+     * Convolve 1D {@code double[]} array with each kernel of a bank of 1D
+     * {@code double[]} kernels of the same length into caller-supplied
+     * results, reusing the scratch buffers of {@code workspace}.
+     * 
+     * @param f
+     *            {@code double[]} array
+     * @param g
+     *            {@code double[][]} kernels {@code g[n]}
+     * @param r
+     *            {@code double[][]} results {@code r[n]} of length {@code f + g[n] - 1}
+     * @param workspace
+     *            scratch buffers
+     * @return {@code r}
+     */
+    public double[][] convolveInto(double[] f, final double[][] g, final double[][] r, Workspace workspace) {
+        final int nb = g.length;
+        final int fi = f.length;
+        final int gi = g[0].length;
+        checkBank(nb, r.length);
+        final int[] sym = new int[nb];
+        for (int n = 0; n < nb; n++) {
+            if (g[n].length != gi) {
+                throw new IllegalArgumentException("JVCL: filter bank kernels must have the same dimensions");
             }
+            sym[n] = KernelSymmetry.of(g[n]);
         }
+        final int hgi = (int) ((gi - 1) / 2.0);
+        final int hgie = (gi % 2 == 0) ? hgi + 1 : hgi;
+        final int ri = fi + gi - 1;
+        for (int n = 0; n < nb; n++) {
+            checkResultLength(r[n].length, ri);
+        }
+        final double[] fPad = workspace.getDoubles(0, ri);
+        padInto(f, fPad, hgi);
+        final int iLo = hgie, iHi = ri - hgi;
+        slabs.run(ri, (long) ri * gi * nb, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i0 = iStart; i0 < iEnd; i0 += BANK_BLOCK) {
+                    final int i1 = Math.min(i0 + BANK_BLOCK, iEnd);
+                    final int iIntStart = Math.max(i0, iLo);
+                    final int iIntEnd = Math.min(i1, iHi);
+                    for (int n = 0; n < nb; n++) {
+                        Arrays.fill(r[n], i0, i1, 0);
+                        convolveInterior(fPad, g[n], sym[n], r[n], iIntStart, iIntEnd, hgie);
+                        convolveBoundary(fPad, g[n], r[n], i0, Math.min(i1, iIntStart), hgie);
+                        convolveBoundary(fPad, g[n], r[n], Math.max(i0, iIntEnd), i1, hgie);
+                    }
+                }
+            }
+        });
         return r;
     }
 
     /**
      * Convolve 2D {@code double[][]} array with 1D {@code double[]} kernel.
+     * With {@code dim} 0 each row {@code f[i]} is convolved; with 1 the
+     * kernel runs along the first index, applied to whole rows at a time, so
+     * the array is never transposed.
      * 
      * @param f
      *            {@code double[][]} array
@@ -78,19 +340,15 @@ public class ConvolverDoubleFDCPU extends ConvolverDouble{
      *            orientation of kernel(0 or 1)
      * @return {@code double[][]}
      */
-    public double[][] convolve(double[][] f, double[] g, int dim) {
+    public double[][] convolve(double[][] f, final double[] g, int dim) {
         if (dim < 0 || dim > 1) {
             throw new OutOfRangeException(dim, 0, 1);
         }
-        if (dim == 1)
-            f = ArrayMath.shiftDim(f);
-        final int fi = f.length;
-        for (int i = 0; i < fi; i++) {
-            f[i] = convolve(f[i], g);
+        final int gl = g.length - 1;
+        if (dim == 0) {
+            return convolveAxis(f, g, 1, new double[f.length][f[0].length + gl]);
         }
-        if (dim == 1)
-            f = ArrayMath.shiftDim(f);
-        return f;
+        return convolveAxis(f, g, 0, new double[f.length + gl][f[0].length]);
     }
 
     /**
@@ -108,7 +366,10 @@ public class ConvolverDoubleFDCPU extends ConvolverDouble{
     }
 
     /**
-     * Convolve 3D {@code double[][][]} array with 1D {@code double[]} kernel
+     * Convolve 3D {@code double[][][]} array with 1D {@code double[]} kernel.
+     * With {@code dim} 0 each row {@code f[i][j]} is convolved; with 1 the
+     * kernel runs along the first index and with 2 along the second, applied
+     * to whole rows at a time, so the array is never transposed.
      * 
      * @param f
      *            {@code double[][][]} array
@@ -118,19 +379,20 @@ public class ConvolverDoubleFDCPU extends ConvolverDouble{
      *            orientation of kernel (0, 1 or 2)
      * @return {@code double[][][]}
      */
-    public double[][][] convolve(double[][][] f, double[] g, int dim) {
+    public double[][][] convolve(double[][][] f, final double[] g, int dim) {
         if (dim < 0 || dim > 2) {
             throw new OutOfRangeException(dim, 0, 2);
         }
-        if (dim > 0)
-            f = ArrayMath.shiftDim(f, dim);
         final int fi = f.length;
-        for (int i = 0; i < fi; i++) {
-            f[i] = convolve(f[i], g);
+        final int fj = f[0].length;
+        final int fk = f[0][0].length;
+        final int gl = g.length - 1;
+        if (dim == 0) {
+            return convolveAxis(f, g, 2, new double[fi][fj][fk + gl]);
+        } else if (dim == 1) {
+            return convolveAxis(f, g, 0, new double[fi + gl][fj][fk]);
         }
-        if (dim > 0)
-            f = ArrayMath.shiftDim(f, 3 - dim);
-        return f;
+        return convolveAxis(f, g, 1, new double[fi][fj + gl][fk]);
     }
 
     /**
@@ -157,34 +419,269 @@ public class ConvolverDoubleFDCPU extends ConvolverDouble{
      * @return {@code double[][]}
      */
     public double[][] convolve(double[][] f, double[][] g) {
+        return convolveInto(f, g, new double[f.length + g.length - 1][f[0].length + g[0].length - 1],
+                new Workspace());
+    }
+
+    /**
+     * Convolve 2D {@code double[][]} array with 2D {@code double[][]} kernel
+     * into a caller-supplied result, reusing the scratch buffers of
+     * {@code workspace}.
+     * 
+     * @param f
+     *            {@code double[][]} array
+     * @param g
+     *            {@code double[][]} kernel
+     * @param r
+     *            {@code double[][]} result of dimensions {@code f + g - 1}
+     * @param workspace
+     *            scratch buffers
+     * @return {@code r}
+     */
+    public double[][] convolveInto(double[][] f, double[][] g, double[][] r, Workspace workspace) {
+        return convolveInto(f, g, OutputMode.FULL, r, workspace);
+    }
+
+    /**
+     * Convolve 2D {@code double[][]} array with 2D {@code double[][]} kernel,
+     * computing only the part of the result selected by {@code mode}.
+     * 
+     * @param f
+     *            {@code double[][]} array
+     * @param g
+     *            {@code double[][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @return {@code double[][]}
+     */
+    public double[][] convolve(double[][] f, double[][] g, OutputMode mode) {
+        return convolveInto(f, g, mode, new double[mode.length(f.length, g.length)][mode.length(f[0].length,
+                g[0].length)], new Workspace());
+    }
+
+    /**
+     * Convolve 2D {@code double[][]} array with 2D {@code double[][]} kernel
+     * into a caller-supplied result, computing only the part selected by
+     * {@code mode} and reusing the scratch buffers of {@code workspace}.
+     * 
+     * @param f
+     *            {@code double[][]} array
+     * @param g
+     *            {@code double[][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param r
+     *            {@code double[][]} result of the dimensions given by {@code mode}
+     * @param workspace
+     *            scratch buffers
+     * @return {@code r}
+     */
+    public double[][] convolveInto(double[][] f, final double[][] g, OutputMode mode, final double[][] r,
+            Workspace workspace) {
         final int fi = f.length;
         final int fj = f[0].length;
         final int gi = g.length;
         final int gj = g[0].length;
+        checkResultLength(r.length, fi, gi, mode);
+        checkResultLength(r[0].length, fj, gj, mode);
+        if (detectSeparable && gi * gj > gi + gj) {
+            final double[] u = workspace.getDoubles(1, gi);
+            final double[] v = workspace.getDoubles(2, gj);
+            if (SeparableKernel.factor(g, separableTolerance, u, v)) {
+                if (mode == OutputMode.FULL) {
+                    return convolveSeparableInto(f, u, v, r, workspace);
+                }
+                return cropInto(convolveSeparableInto(f, u, v, workspace.getDoubles(3, fi + gi - 1, fj + gj - 1),
+                        workspace), mode.offset(gi), mode.offset(gj), r);
+            }
+        }
         final int hgi = (int) ((gi - 1) / 2.0);
         final int hgj = (int) ((gj - 1) / 2.0);
-        final int hgie = (gi % 2 == 0) ? hgi + 1 : hgi;
-        final int hgje = (gj % 2 == 0) ? hgj + 1 : hgj;
-        double[][] fPad = ArrayMath.zeroPadBoundaries(f, hgi, hgie, hgj, hgje);
-        double[][] r = ArrayMath.zeroPadBoundaries(new double[fi][fj], hgi, hgie, hgj, hgje);
         final int ri = r.length;
         final int rj = r[0].length;
-        int ai, aj;
-        for (int i = 0; i < ri; i++) {
-            for (int j = 0; j < rj; j++) {
-                for (int p = 0; p < gi; p++) {
-                    for (int q = 0; q < gj; q++) {
-                        ai = i + (p - hgie);
-                        aj = j + (q - hgje);
-                        if (ai >= 0 && ai < ri) {
-                            if (aj >= 0 && aj < rj) {
-                                r[i][j] += fPad[ai][aj] * g[gi - 1 - p][gj - 1 - q];
-                            }
+        final int sym = KernelSymmetry.alongLastAxis(g);
+        // VALID outputs only read inside f, so f itself stands in for the padded copy
+        final boolean pad = mode != OutputMode.VALID;
+        final double[][] fPad = pad ? workspace.getDoubles(0, fi + gi - 1, fj + gj - 1) : f;
+        if (pad) {
+            padInto(f, fPad, hgi, hgj);
+        }
+        // r[i][j] reads fPad[i + p - ei][j + q - ej] for tap (p, q)
+        final int ei = gi - 1 - mode.offset(gi) - (pad ? hgi : 0);
+        final int ej = gj - 1 - mode.offset(gj) - (pad ? hgj : 0);
+        final int iLo = ei, iHi = fPad.length - gi + 1 + ei;
+        final int jLo = ej, jHi = fPad[0].length - gj + 1 + ej;
+        slabs.run(ri, (long) ri * rj * gi * gj, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    Arrays.fill(r[i], 0);
+                    if (i >= iLo && i < iHi) {
+                        convolveInterior(fPad, g, sym, r[i], i, jLo, jHi, ei, ej);
+                        convolveBoundary(fPad, g, r[i], i, 0, jLo, ei, ej);
+                        convolveBoundary(fPad, g, r[i], i, jHi, rj, ei, ej);
+                    } else {
+                        convolveBoundary(fPad, g, r[i], i, 0, rj, ei, ej);
+                    }
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Convolve 2D {@code double[][]} array with 2D {@code double[][]} kernel,
+     * extending the array past its edges by {@code condition}.
+     * 
+     * @param f
+     *            {@code double[][]} array
+     * @param g
+     *            {@code double[][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return {@code double[][]}
+     */
+    public double[][] convolve(double[][] f, double[][] g, OutputMode mode, Boundaries.Condition condition) {
+        return convolveInto(f, g, mode, condition, new double[mode.length(f.length, g.length)][mode.length(
+                f[0].length, g[0].length)], new Workspace());
+    }
+
+    /**
+     * Convolve 2D {@code double[][]} array with 2D {@code double[][]} kernel
+     * into a caller-supplied result, extending the array past its edges by
+     * {@code condition}. Taps which fall outside {@code f} are remapped to an
+     * index inside it, so no padded copy is made; {@code workspace} is only
+     * used for {@link Boundaries.Condition#ZERO}.
+     * 
+     * @param f
+     *            {@code double[][]} array
+     * @param g
+     *            {@code double[][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @param r
+     *            {@code double[][]} result of the dimensions given by {@code mode}
+     * @param workspace
+     *            scratch buffers
+     * @return {@code r}
+     */
+    public double[][] convolveInto(final double[][] f, final double[][] g, OutputMode mode,
+            Boundaries.Condition condition, final double[][] r, Workspace workspace) {
+        if (condition == Boundaries.Condition.ZERO) {
+            return convolveInto(f, g, mode, r, workspace);
+        }
+        final int fi = f.length;
+        final int fj = f[0].length;
+        final int gi = g.length;
+        final int gj = g[0].length;
+        final int ri = r.length;
+        final int rj = r[0].length;
+        checkResultLength(ri, fi, gi, mode);
+        checkResultLength(rj, fj, gj, mode);
+        // r[i][j] reads position (i + p - ei, j + q - ej) of f, looked up in mapI[i + p] and mapJ[j + q]
+        final int ei = gi - 1 - mode.offset(gi);
+        final int ej = gj - 1 - mode.offset(gj);
+        final int jLo = Math.min(ej, rj);
+        final int jHi = Math.max(jLo, Math.min(fj - gj + 1 + ej, rj));
+        final int[] mapI = Boundaries.remap(condition, -ei, ri + gi - 1 - ei, fi);
+        final int[] mapJ = Boundaries.remap(condition, -ej, rj + gj - 1 - ej, fj);
+        final int sym = KernelSymmetry.alongLastAxis(g);
+        slabs.run(ri, (long) ri * rj * gi * gj, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    Arrays.fill(r[i], 0);
+                    for (int p = 0; p < gi; p++) {
+                        final int ai = mapI[i + p];
+                        if (ai >= 0) {
+                            convolveTaps(f[ai], g[gi - 1 - p], sym, r[i], jLo, jHi, ej, mapJ);
                         }
                     }
                 }
             }
+        });
+        return r;
+    }
+
+    /**
+     * Convolve 2D {@code double[][]} array with each kernel of a bank of 2D
+     * {@code double[][]} kernels of the same dimensions. The array is padded
+     * once, and each padded row is read once for all the kernels.
+     * 
+     * @param f
+     *            {@code double[][]} array
+     * @param g
+     *            {@code double[][][]} kernels {@code g[n]}
+     * @return {@code double[][][]} results {@code r[n]} of {@code f} with {@code g[n]}
+     */
+    public double[][][] convolve(double[][] f, double[][][] g) {
+        return convolveInto(f, g, new double[g.length][f.length + g[0].length - 1][f[0].length + g[0][0].length - 1],
+                new Workspace());
+    }
+
+    /**
+     * Convolve 2D {@code double[][]} array with each kernel of a bank of 2D
+     * {@code double[][]} kernels of the same dimensions into caller-supplied
+     * results, reusing the scratch buffers of {@code workspace}.
+     * 
+     * @param f
+     *            {@code double[][]} array
+     * @param g
+     *            {@code double[][][]} kernels {@code g[n]}
+     * @param r
+     *            {@code double[][][]} results {@code r[n]} of dimensions {@code f + g[n] - 1}
+     * @param workspace
+     *            scratch buffers
+     * @return {@code r}
+     */
+    public double[][][] convolveInto(double[][] f, final double[][][] g, final double[][][] r, Workspace workspace) {
+        final int nb = g.length;
+        final int fi = f.length;
+        final int fj = f[0].length;
+        final int gi = g[0].length;
+        final int gj = g[0][0].length;
+        checkBank(nb, r.length);
+        final int[] sym = new int[nb];
+        for (int n = 0; n < nb; n++) {
+            if (g[n].length != gi || g[n][0].length != gj) {
+                throw new IllegalArgumentException("JVCL: filter bank kernels must have the same dimensions");
+            }
+            sym[n] = KernelSymmetry.alongLastAxis(g[n]);
+        }
+        final int hgi = (int) ((gi - 1) / 2.0);
+        final int hgj = (int) ((gj - 1) / 2.0);
+        final int hgie = (gi % 2 == 0) ? hgi + 1 : hgi;
+        final int hgje = (gj % 2 == 0) ? hgj + 1 : hgj;
+        final int ri = fi + gi - 1;
+        final int rj = fj + gj - 1;
+        for (int n = 0; n < nb; n++) {
+            checkResultLength(r[n].length, ri);
+            checkResultLength(r[n][0].length, rj);
         }
+        final double[][] fPad = workspace.getDoubles(0, ri, rj);
+        padInto(f, fPad, hgi, hgj);
+        final int iLo = hgie, iHi = ri - hgi;
+        final int jLo = hgje, jHi = rj - hgj;
+        slabs.run(ri, (long) ri * rj * gi * gj * nb, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                final double[][] rRows = new double[nb][];
+                for (int i = iStart; i < iEnd; i++) {
+                    for (int n = 0; n < nb; n++) {
+                        rRows[n] = r[n][i];
+                        Arrays.fill(rRows[n], 0);
+                    }
+                    if (i >= iLo && i < iHi) {
+                        convolveInterior(fPad, g, sym, rRows, i, jLo, jHi, hgie, hgje);
+                        convolveBoundary(fPad, g, rRows, i, 0, jLo, hgie, hgje);
+                        convolveBoundary(fPad, g, rRows, i, jHi, rj, hgie, hgje);
+                    } else {
+                        convolveBoundary(fPad, g, rRows, i, 0, rj, hgie, hgje);
+                    }
+                }
+            }
+        });
         return r;
     }
 
@@ -199,16 +696,21 @@ public class ConvolverDoubleFDCPU extends ConvolverDouble{
      *            orientation of kernel (0, 1 or 2)
      * @return {@code double[][][]}
      */
-    public double[][][] convolve(double[][][] f, double[][] g, int dim) {
+    public double[][][] convolve(double[][][] f, final double[][] g, int dim) {
         if (dim < 0 || dim > 2) {
             throw new OutOfRangeException(dim, 0, 2);
         }
         if (dim > 0)
             f = ArrayMath.shiftDim(f, dim);
         final int fi = f.length;
-        for (int i = 0; i < fi; i++) {
-            f[i] = convolve(f[i], g);
-        }
+        final double[][][] fs = f;
+        slabs.run(fi, (long) fi * fs[0].length * fs[0][0].length * g.length * g[0].length, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    fs[i] = convolve(fs[i], g);
+                }
+            }
+        });
         if (dim > 0)
             f = ArrayMath.shiftDim(f, 3 - dim);
         return f;
@@ -239,49 +741,2418 @@ public class ConvolverDoubleFDCPU extends ConvolverDouble{
      * @return {@code double[][][]}
      */
     public double[][][] convolve(double[][][] f, double[][][] g) {
+        return convolveInto(f, g, new double[f.length + g.length - 1][f[0].length + g[0].length - 1][f[0][0].length
+                + g[0][0].length - 1], new Workspace());
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]}
+     * kernel into a caller-supplied result, reusing the scratch buffers of
+     * {@code workspace}. Once the workspace has been sized by a first call,
+     * repeated convolutions of same-sized arrays allocate no arrays.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][]} kernel
+     * @param r
+     *            {@code double[][][]} result of dimensions {@code f + g - 1}
+     * @param workspace
+     *            scratch buffers
+     * @return {@code r}
+     */
+    public double[][][] convolveInto(double[][][] f, double[][][] g, double[][][] r, Workspace workspace) {
+        return convolveInto(f, g, OutputMode.FULL, r, workspace);
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]}
+     * kernel, computing only the part of the result selected by {@code mode}.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @return {@code double[][][]}
+     */
+    public double[][][] convolve(double[][][] f, double[][][] g, OutputMode mode) {
+        return convolveInto(f, g, mode, new double[mode.length(f.length, g.length)][mode.length(f[0].length,
+                g[0].length)][mode.length(f[0][0].length, g[0][0].length)], new Workspace());
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]}
+     * kernel into a caller-supplied result, computing only the part selected
+     * by {@code mode} and reusing the scratch buffers of {@code workspace}.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param r
+     *            {@code double[][][]} result of the dimensions given by {@code mode}
+     * @param workspace
+     *            scratch buffers
+     * @return {@code r}
+     */
+    public double[][][] convolveInto(double[][][] f, final double[][][] g, OutputMode mode, final double[][][] r,
+            Workspace workspace) {
         final int fi = f.length;
         final int fj = f[0].length;
         final int fk = f[0][0].length;
         final int gi = g.length;
         final int gj = g[0].length;
         final int gk = g[0][0].length;
+        checkResultLength(r.length, fi, gi, mode);
+        checkResultLength(r[0].length, fj, gj, mode);
+        checkResultLength(r[0][0].length, fk, gk, mode);
+        if (detectSeparable && gi * gj * gk > gi + gj + gk) {
+            final double[] u = workspace.getDoubles(1, gi);
+            final double[] v = workspace.getDoubles(2, gj);
+            final double[] w = workspace.getDoubles(3, gk);
+            if (SeparableKernel.factor(g, separableTolerance, u, v, w)) {
+                if (mode == OutputMode.FULL) {
+                    return convolveSeparableInto(f, u, v, w, r, workspace);
+                }
+                return cropInto(convolveSeparableInto(f, u, v, w, workspace.getDoubles(3, fi + gi - 1, fj + gj - 1,
+                        fk + gk - 1), workspace), mode.offset(gi), mode.offset(gj), mode.offset(gk), r);
+            }
+        }
+        if (detectSparse && Stencil.isSparse(g)) {
+            return convolveInto(f, Stencil.compile(g), mode, r);
+        }
         final int hgi = (int) ((gi - 1) / 2.0);
         final int hgj = (int) ((gj - 1) / 2.0);
         final int hgk = (int) ((gk - 1) / 2.0);
-        final int hgie = (gi % 2 == 0) ? hgi + 1 : hgi;
-        final int hgje = (gj % 2 == 0) ? hgj + 1 : hgj;
-        final int hgke = (gk % 2 == 0) ? hgk + 1 : hgk;
-        double[][][] fPad = ArrayMath.zeroPadBoundaries(f, hgi, hgie, hgj, hgje, hgk, hgke);
-        double[][][] r = ArrayMath.zeroPadBoundaries(new double[fi][fj][fk], hgi, hgie, hgj, hgje, hgk, hgke);
         final int ri = r.length;
         final int rj = r[0].length;
         final int rk = r[0][0].length;
-        int ai, aj, ak;
-        for (int i = 0; i < ri; i++) {
-            for (int j = 0; j < rj; j++) {
-                for (int k = 0; k < rk; k++) {
-                    for (int p = 0; p < gi; p++) {
-                        for (int q = 0; q < gj; q++) {
-                            for (int s = 0; s < gk; s++) {
-                                ai = i + (p - hgie);
-                                aj = j + (q - hgje);
-                                ak = k + (s - hgke);
-                                if (ai >= 0 && ai < ri) {
-                                    if (aj >= 0 && aj < rj) {
-                                        if (ak >= 0 && ak < rk) {
-                                            r[i][j][k] += fPad[ai][aj][ak] * g[gi - 1 - p][gj - 1 - q][gk - 1 - s];
-                                        }
-                                    }
-                                }
-                            }
+        final int sym = KernelSymmetry.alongLastAxis(g);
+        // VALID outputs only read inside f, so f itself stands in for the padded copy
+        final boolean pad = mode != OutputMode.VALID;
+        final double[][][] fPad = pad ? workspace.getDoubles(0, fi + gi - 1, fj + gj - 1, fk + gk - 1) : f;
+        if (pad) {
+            padInto(f, fPad, hgi, hgj, hgk);
+        }
+        // r[i][j][k] reads fPad[i + p - ei][j + q - ej][k + s - ek] for tap (p, q, s)
+        final int ei = gi - 1 - mode.offset(gi) - (pad ? hgi : 0);
+        final int ej = gj - 1 - mode.offset(gj) - (pad ? hgj : 0);
+        final int ek = gk - 1 - mode.offset(gk) - (pad ? hgk : 0);
+        final int iLo = ei, iHi = fPad.length - gi + 1 + ei;
+        final int jLo = ej, jHi = fPad[0].length - gj + 1 + ej;
+        final int kLo = ek, kHi = fPad[0][0].length - gk + 1 + ek;
+        final int kTile = Tiling.tileK(gi, gj, gk, rk, Double.SIZE / 8);
+        final int jTile = Tiling.tileJ(gi, gj, gk, rj, kTile, Double.SIZE / 8);
+        slabs.run(ri, (long) ri * rj * rk * gi * gj * gk, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    for (int j = 0; j < rj; j++) {
+                        Arrays.fill(r[i][j], 0);
+                    }
+                }
+                for (int j0 = 0; j0 < rj; j0 += jTile) {
+                    final int j1 = Math.min(j0 + jTile, rj);
+                    for (int k0 = 0; k0 < rk; k0 += kTile) {
+                        final int k1 = Math.min(k0 + kTile, rk);
+                        final int kIntStart = Math.max(k0, kLo);
+                        final int kIntEnd = Math.min(k1, kHi);
+                        for (int i = iStart; i < iEnd; i++) {
+                            final boolean iInterior = i >= iLo && i < iHi;
+                            for (int j = j0; j < j1; j++) {
+                                if (iInterior && j >= jLo && j < jHi) {
+                                    convolveInterior(fPad, g, sym, r[i][j], i, j, kIntStart, kIntEnd, ei, ej, ek);
+                                    convolveBoundary(fPad, g, r[i][j], i, j, k0, Math.min(k1, kIntStart), ei, ej, ek);
+                                    convolveBoundary(fPad, g, r[i][j], i, j, Math.max(k0, kIntEnd), k1, ei, ej, ek);
+                                } else {
+                                    convolveBoundary(fPad, g, r[i][j], i, j, k0, k1, ei, ej, ek);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]}
+     * kernel, extending the array past its edges by {@code condition}.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return {@code double[][][]}
+     */
+    public double[][][] convolve(double[][][] f, double[][][] g, OutputMode mode, Boundaries.Condition condition) {
+        return convolveInto(f, g, mode, condition, new double[mode.length(f.length, g.length)][mode.length(
+                f[0].length, g[0].length)][mode.length(f[0][0].length, g[0][0].length)], new Workspace());
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]}
+     * kernel into a caller-supplied result, extending the array past its
+     * edges by {@code condition}. Taps which fall outside {@code f} are
+     * remapped to an index inside it, so no padded copy is made;
+     * {@code workspace} is only used for {@link Boundaries.Condition#ZERO}.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @param r
+     *            {@code double[][][]} result of the dimensions given by {@code mode}
+     * @param workspace
+     *            scratch buffers
+     * @return {@code r}
+     */
+    public double[][][] convolveInto(final double[][][] f, final double[][][] g, OutputMode mode,
+            Boundaries.Condition condition, final double[][][] r, Workspace workspace) {
+        if (condition == Boundaries.Condition.ZERO) {
+            return convolveInto(f, g, mode, r, workspace);
+        }
+        final int fi = f.length;
+        final int fj = f[0].length;
+        final int fk = f[0][0].length;
+        final int gi = g.length;
+        final int gj = g[0].length;
+        final int gk = g[0][0].length;
+        final int ri = r.length;
+        final int rj = r[0].length;
+        final int rk = r[0][0].length;
+        checkResultLength(ri, fi, gi, mode);
+        checkResultLength(rj, fj, gj, mode);
+        checkResultLength(rk, fk, gk, mode);
+        // r[i][j][k] reads position (i + p - ei, j + q - ej, k + s - ek) of f, looked up in mapI, mapJ and mapK
+        final int ei = gi - 1 - mode.offset(gi);
+        final int ej = gj - 1 - mode.offset(gj);
+        final int ek = gk - 1 - mode.offset(gk);
+        final int kLo = Math.min(ek, rk);
+        final int kHi = Math.max(kLo, Math.min(fk - gk + 1 + ek, rk));
+        final int[] mapI = Boundaries.remap(condition, -ei, ri + gi - 1 - ei, fi);
+        final int[] mapJ = Boundaries.remap(condition, -ej, rj + gj - 1 - ej, fj);
+        final int[] mapK = Boundaries.remap(condition, -ek, rk + gk - 1 - ek, fk);
+        final int sym = KernelSymmetry.alongLastAxis(g);
+        slabs.run(ri, (long) ri * rj * rk * gi * gj * gk, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    for (int j = 0; j < rj; j++) {
+                        Arrays.fill(r[i][j], 0);
+                        for (int p = 0; p < gi; p++) {
+                            final int ai = mapI[i + p];
+                            if (ai < 0) {
+                                continue;
+                            }
+                            final double[][] gPlane = g[gi - 1 - p];
+                            for (int q = 0; q < gj; q++) {
+                                final int aj = mapJ[j + q];
+                                if (aj >= 0) {
+                                    convolveTaps(f[ai][aj], gPlane[gj - 1 - q], sym, r[i][j], kLo, kHi, ek, mapK);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with each kernel of a bank of 3D
+     * {@code double[][][]} kernels of the same dimensions, such as the three
+     * components of a gradient or the six of a Hessian. The array is padded
+     * once, and each padded row is read once for all the kernels, so the
+     * input is streamed from memory once rather than once per kernel.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][][]} kernels {@code g[n]}
+     * @return {@code double[][][][]} results {@code r[n]} of {@code f} with {@code g[n]}
+     */
+    public double[][][][] convolve(double[][][] f, double[][][][] g) {
+        return convolveInto(f, g, new double[g.length][f.length + g[0].length - 1][f[0].length + g[0][0].length
+                - 1][f[0][0].length + g[0][0][0].length - 1], new Workspace());
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with each kernel of a bank of 3D
+     * {@code double[][][]} kernels of the same dimensions into
+     * caller-supplied results, reusing the scratch buffers of
+     * {@code workspace}. Each result is bit-identical to a dense convolution
+     * with its kernel alone; separable and sparse kernels are not detected.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][][]} kernels {@code g[n]}
+     * @param r
+     *            {@code double[][][][]} results {@code r[n]} of dimensions {@code f + g[n] - 1}
+     * @param workspace
+     *            scratch buffers
+     * @return {@code r}
+     */
+    public double[][][][] convolveInto(double[][][] f, final double[][][][] g, final double[][][][] r,
+            Workspace workspace) {
+        final int nb = g.length;
+        final int fi = f.length;
+        final int fj = f[0].length;
+        final int fk = f[0][0].length;
+        final int gi = g[0].length;
+        final int gj = g[0][0].length;
+        final int gk = g[0][0][0].length;
+        checkBank(nb, r.length);
+        final int[] sym = new int[nb];
+        for (int n = 0; n < nb; n++) {
+            if (g[n].length != gi || g[n][0].length != gj || g[n][0][0].length != gk) {
+                throw new IllegalArgumentException("JVCL: filter bank kernels must have the same dimensions");
+            }
+            sym[n] = KernelSymmetry.alongLastAxis(g[n]);
+        }
+        final int hgi = (int) ((gi - 1) / 2.0);
+        final int hgj = (int) ((gj - 1) / 2.0);
+        final int hgk = (int) ((gk - 1) / 2.0);
+        final int hgie = (gi % 2 == 0) ? hgi + 1 : hgi;
+        final int hgje = (gj % 2 == 0) ? hgj + 1 : hgj;
+        final int hgke = (gk % 2 == 0) ? hgk + 1 : hgk;
+        final int ri = fi + gi - 1;
+        final int rj = fj + gj - 1;
+        final int rk = fk + gk - 1;
+        for (int n = 0; n < nb; n++) {
+            checkResultLength(r[n].length, ri);
+            checkResultLength(r[n][0].length, rj);
+            checkResultLength(r[n][0][0].length, rk);
+        }
+        final double[][][] fPad = workspace.getDoubles(0, ri, rj, rk);
+        padInto(f, fPad, hgi, hgj, hgk);
+        final int iLo = hgie, iHi = ri - hgi;
+        final int jLo = hgje, jHi = rj - hgj;
+        final int kLo = hgke, kHi = rk - hgk;
+        final int kTile = Tiling.tileK(gi, gj, gk, rk, Double.SIZE / 8);
+        final int jTile = Tiling.tileJ(gi, gj, gk, rj, kTile, Double.SIZE / 8);
+        slabs.run(ri, (long) ri * rj * rk * gi * gj * gk * nb, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                final double[][] rRows = new double[nb][];
+                for (int n = 0; n < nb; n++) {
+                    for (int i = iStart; i < iEnd; i++) {
+                        for (int j = 0; j < rj; j++) {
+                            Arrays.fill(r[n][i][j], 0);
+                        }
+                    }
+                }
+                for (int j0 = 0; j0 < rj; j0 += jTile) {
+                    final int j1 = Math.min(j0 + jTile, rj);
+                    for (int k0 = 0; k0 < rk; k0 += kTile) {
+                        final int k1 = Math.min(k0 + kTile, rk);
+                        final int kIntStart = Math.max(k0, kLo);
+                        final int kIntEnd = Math.min(k1, kHi);
+                        for (int i = iStart; i < iEnd; i++) {
+                            final boolean iInterior = i >= iLo && i < iHi;
+                            for (int j = j0; j < j1; j++) {
+                                for (int n = 0; n < nb; n++) {
+                                    rRows[n] = r[n][i][j];
+                                }
+                                if (iInterior && j >= jLo && j < jHi) {
+                                    convolveInterior(fPad, g, sym, rRows, i, j, kIntStart, kIntEnd, hgie, hgje, hgke);
+                                    convolveBoundary(fPad, g, rRows, i, j, k0, Math.min(k1, kIntStart), hgie, hgje,
+                                            hgke);
+                                    convolveBoundary(fPad, g, rRows, i, j, Math.max(k0, kIntEnd), k1, hgie, hgje,
+                                            hgke);
+                                } else {
+                                    convolveBoundary(fPad, g, rRows, i, j, k0, k1, hgie, hgje, hgke);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Convolve 2D {@code double[][]} array with the separable kernel
+     * {@code gi[p]*gj[q]}, as one 1D pass along each axis. Gives the same
+     * result as convolving with the full 2D kernel, up to rounding.
+     * 
+     * @param f
+     *            {@code double[][]} array
+     * @param gi
+     *            {@code double[]} kernel factor along the first axis
+     * @param gj
+     *            {@code double[]} kernel factor along the second axis
+     * @return {@code double[][]}
+     */
+    public double[][] convolveSeparable(double[][] f, double[] gi, double[] gj) {
+        return convolveSeparableInto(f, gi, gj, new double[f.length + gi.length - 1][f[0].length + gj.length - 1],
+                new Workspace());
+    }
+
+    /**
+     * Convolve 2D {@code double[][]} array with the separable kernel
+     * {@code gi[p]*gj[q]} into a caller-supplied result, reusing the scratch
+     * buffers of {@code workspace}.
+     * 
+     * @param f
+     *            {@code double[][]} array
+     * @param gi
+     *            {@code double[]} kernel factor along the first axis
+     * @param gj
+     *            {@code double[]} kernel factor along the second axis
+     * @param r
+     *            {@code double[][]} result of dimensions {@code f + g - 1}
+     * @param workspace
+     *            scratch buffers
+     * @return {@code r}
+     */
+    public double[][] convolveSeparableInto(double[][] f, double[] gi, double[] gj, double[][] r,
+            Workspace workspace) {
+        final int ri = f.length + gi.length - 1;
+        checkResultLength(r.length, ri);
+        checkResultLength(r[0].length, f[0].length + gj.length - 1);
+        return convolveAxis(convolveAxis(f, gi, 0, workspace.getDoubles(1, ri, f[0].length)), gj, 1, r);
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with the separable kernel
+     * {@code gi[p]*gj[q]*gk[s]}, as one 1D pass along each axis. Gives the
+     * same result as convolving with the full 3D kernel, up to rounding.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param gi
+     *            {@code double[]} kernel factor along the first axis
+     * @param gj
+     *            {@code double[]} kernel factor along the second axis
+     * @param gk
+     *            {@code double[]} kernel factor along the third axis
+     * @return {@code double[][][]}
+     */
+    public double[][][] convolveSeparable(double[][][] f, double[] gi, double[] gj, double[] gk) {
+        return convolveSeparableInto(f, gi, gj, gk, new double[f.length + gi.length - 1][f[0].length + gj.length
+                - 1][f[0][0].length + gk.length - 1], new Workspace());
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with the separable kernel
+     * {@code gi[p]*gj[q]*gk[s]} into a caller-supplied result, reusing the
+     * scratch buffers of {@code workspace}.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param gi
+     *            {@code double[]} kernel factor along the first axis
+     * @param gj
+     *            {@code double[]} kernel factor along the second axis
+     * @param gk
+     *            {@code double[]} kernel factor along the third axis
+     * @param r
+     *            {@code double[][][]} result of dimensions {@code f + g - 1}
+     * @param workspace
+     *            scratch buffers
+     * @return {@code r}
+     */
+    public double[][][] convolveSeparableInto(double[][][] f, double[] gi, double[] gj, double[] gk,
+            double[][][] r, Workspace workspace) {
+        final int fj = f[0].length;
+        final int fk = f[0][0].length;
+        final int ri = f.length + gi.length - 1;
+        final int rj = fj + gj.length - 1;
+        checkResultLength(r.length, ri);
+        checkResultLength(r[0].length, rj);
+        checkResultLength(r[0][0].length, fk + gk.length - 1);
+        final double[][][] passI = convolveAxis(f, gi, 0, workspace.getDoubles(1, ri, fj, fk));
+        final double[][][] passIJ = convolveAxis(passI, gj, 1, workspace.getDoubles(2, ri, rj, fk));
+        return convolveAxis(passIJ, gk, 2, r);
+    }
+
+    /**
+     * Convolve 1D {@code double[]} array with 1D {@code double[]} kernel,
+     * computing only every {@code stride}-th output of the full result,
+     * starting at the first. Convolving and then decimating by
+     * {@code stride} would compute {@code stride} times as many outputs.
+     * 
+     * @param f
+     *            {@code double[]} array
+     * @param g
+     *            {@code double[]} kernel
+     * @param stride
+     *            step between kept outputs
+     * @return {@code double[]} of length {@code (f + g - 2) / stride + 1}
+     */
+    public double[] convolveStrided(double[] f, double[] g, int stride) {
+        return convolveStridedInto(f, g, stride, new double[stridedLength(f.length, g.length, stride)]);
+    }
+
+    /**
+     * Convolve 1D {@code double[]} array with 1D {@code double[]} kernel into
+     * a caller-supplied result, computing only every {@code stride}-th output
+     * of the full result.
+     * 
+     * @param f
+     *            {@code double[]} array
+     * @param g
+     *            {@code double[]} kernel
+     * @param stride
+     *            step between kept outputs
+     * @param r
+     *            {@code double[]} result of length {@code (f + g - 2) / stride + 1}
+     * @return {@code r}
+     */
+    public double[] convolveStridedInto(double[] f, double[] g, int stride, double[] r) {
+        checkStridedLength(r.length, f.length, g.length, stride);
+        Arrays.fill(r, 0);
+        convolveStridedRow(f, g, stride, r);
+        return r;
+    }
+
+    /**
+     * Convolve 2D {@code double[][]} array with 2D {@code double[][]} kernel,
+     * computing only every {@code si}-th, {@code sj}-th output of the full
+     * result along each axis.
+     * 
+     * @param f
+     *            {@code double[][]} array
+     * @param g
+     *            {@code double[][]} kernel
+     * @param si
+     *            step between kept outputs along the first axis
+     * @param sj
+     *            step between kept outputs along the second axis
+     * @return {@code double[][]} of dimensions {@code (f + g - 2) / stride + 1}
+     */
+    public double[][] convolveStrided(double[][] f, double[][] g, int si, int sj) {
+        return convolveStridedInto(f, g, si, sj, new double[stridedLength(f.length, g.length, si)][stridedLength(
+                f[0].length, g[0].length, sj)]);
+    }
+
+    /**
+     * Convolve 2D {@code double[][]} array with 2D {@code double[][]} kernel
+     * into a caller-supplied result, computing only every {@code si}-th,
+     * {@code sj}-th output of the full result along each axis.
+     * 
+     * @param f
+     *            {@code double[][]} array
+     * @param g
+     *            {@code double[][]} kernel
+     * @param si
+     *            step between kept outputs along the first axis
+     * @param sj
+     *            step between kept outputs along the second axis
+     * @param r
+     *            {@code double[][]} result of dimensions {@code (f + g - 2) / stride + 1}
+     * @return {@code r}
+     */
+    public double[][] convolveStridedInto(final double[][] f, final double[][] g, final int si, final int sj,
+            final double[][] r) {
+        final int fi = f.length;
+        final int gi = g.length;
+        final int ri = r.length;
+        checkStridedLength(ri, fi, gi, si);
+        checkStridedLength(r[0].length, f[0].length, g[0].length, sj);
+        slabs.run(ri, (long) ri * r[0].length * gi * g[0].length, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    Arrays.fill(r[i], 0);
+                    // taps with 0 <= i * si - p < fi
+                    final int pEnd = Math.min(gi - 1, i * si);
+                    for (int p = Math.max(0, i * si - fi + 1); p <= pEnd; p++) {
+                        convolveStridedRow(f[i * si - p], g[p], sj, r[i]);
+                    }
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]}
+     * kernel, computing only every {@code si}-th, {@code sj}-th, {@code sk}-th
+     * output of the full result along each axis. For a stride of 2 on every
+     * axis this is an eighth of the work of convolving and then decimating.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][]} kernel
+     * @param si
+     *            step between kept outputs along the first axis
+     * @param sj
+     *            step between kept outputs along the second axis
+     * @param sk
+     *            step between kept outputs along the third axis
+     * @return {@code double[][][]} of dimensions {@code (f + g - 2) / stride + 1}
+     */
+    public double[][][] convolveStrided(double[][][] f, double[][][] g, int si, int sj, int sk) {
+        return convolveStridedInto(f, g, si, sj, sk, new double[stridedLength(f.length, g.length,
+                si)][stridedLength(f[0].length, g[0].length, sj)][stridedLength(f[0][0].length, g[0][0].length,
+                sk)]);
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]}
+     * kernel into a caller-supplied result, computing only every
+     * {@code si}-th, {@code sj}-th, {@code sk}-th output of the full result
+     * along each axis.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][]} kernel
+     * @param si
+     *            step between kept outputs along the first axis
+     * @param sj
+     *            step between kept outputs along the second axis
+     * @param sk
+     *            step between kept outputs along the third axis
+     * @param r
+     *            {@code double[][][]} result of dimensions {@code (f + g - 2) / stride + 1}
+     * @return {@code r}
+     */
+    public double[][][] convolveStridedInto(final double[][][] f, final double[][][] g, final int si,
+            final int sj, final int sk, final double[][][] r) {
+        final int fi = f.length;
+        final int fj = f[0].length;
+        final int gi = g.length;
+        final int gj = g[0].length;
+        final int ri = r.length;
+        final int rj = r[0].length;
+        checkStridedLength(ri, fi, gi, si);
+        checkStridedLength(rj, fj, gj, sj);
+        checkStridedLength(r[0][0].length, f[0][0].length, g[0][0].length, sk);
+        slabs.run(ri, (long) ri * rj * r[0][0].length * gi * gj * g[0][0].length, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    final int pEnd = Math.min(gi - 1, i * si);
+                    for (int j = 0; j < rj; j++) {
+                        Arrays.fill(r[i][j], 0);
+                        final int qEnd = Math.min(gj - 1, j * sj);
+                        for (int p = Math.max(0, i * si - fi + 1); p <= pEnd; p++) {
+                            for (int q = Math.max(0, j * sj - fj + 1); q <= qEnd; q++) {
+                                convolveStridedRow(f[i * si - p][j * sj - q], g[p][q], sk, r[i][j]);
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Convolve 1D {@code double[]} array with 1D {@code double[]} kernel
+     * dilated by {@code d}, as if {@code d - 1} zeros stood between its taps
+     * (the "a trous" scheme). Only the real taps are applied, so the cost
+     * does not grow with the dilation.
+     * 
+     * @param f
+     *            {@code double[]} array
+     * @param g
+     *            {@code double[]} kernel
+     * @param d
+     *            dilation
+     * @param mode
+     *            part of the result to compute, for the dilated kernel
+     * @return {@code double[]}
+     */
+    public double[] convolveDilated(double[] f, double[] g, int d, OutputMode mode) {
+        return convolveDilatedInto(f, g, d, mode, new double[mode.length(f.length, dilatedLength(g.length, d))]);
+    }
+
+    /**
+     * Convolve 1D {@code double[]} array with 1D {@code double[]} kernel
+     * dilated by {@code d} into a caller-supplied result.
+     * 
+     * @param f
+     *            {@code double[]} array
+     * @param g
+     *            {@code double[]} kernel
+     * @param d
+     *            dilation
+     * @param mode
+     *            part of the result to compute, for the dilated kernel
+     * @param r
+     *            {@code double[]} result of the length given by {@code mode}
+     * @return {@code r}
+     */
+    public double[] convolveDilatedInto(double[] f, double[] g, int d, OutputMode mode, double[] r) {
+        final int ge = dilatedLength(g.length, d);
+        checkResultLength(r.length, f.length, ge, mode);
+        Arrays.fill(r, 0);
+        convolveDilatedRow(f, g, d, mode.offset(ge), r);
+        return r;
+    }
+
+    /**
+     * Convolve 2D {@code double[][]} array with 2D {@code double[][]} kernel
+     * dilated by {@code (di, dj)}, applying only the real taps.
+     * 
+     * @param f
+     *            {@code double[][]} array
+     * @param g
+     *            {@code double[][]} kernel
+     * @param di
+     *            dilation along the first axis
+     * @param dj
+     *            dilation along the second axis
+     * @param mode
+     *            part of the result to compute, for the dilated kernel
+     * @return {@code double[][]}
+     */
+    public double[][] convolveDilated(double[][] f, double[][] g, int di, int dj, OutputMode mode) {
+        return convolveDilatedInto(f, g, di, dj, mode, new double[mode.length(f.length, dilatedLength(g.length,
+                di))][mode.length(f[0].length, dilatedLength(g[0].length, dj))]);
+    }
+
+    /**
+     * Convolve 2D {@code double[][]} array with 2D {@code double[][]} kernel
+     * dilated by {@code (di, dj)} into a caller-supplied result.
+     * 
+     * @param f
+     *            {@code double[][]} array
+     * @param g
+     *            {@code double[][]} kernel
+     * @param di
+     *            dilation along the first axis
+     * @param dj
+     *            dilation along the second axis
+     * @param mode
+     *            part of the result to compute, for the dilated kernel
+     * @param r
+     *            {@code double[][]} result of the dimensions given by {@code mode}
+     * @return {@code r}
+     */
+    public double[][] convolveDilatedInto(final double[][] f, final double[][] g, final int di, final int dj,
+            OutputMode mode, final double[][] r) {
+        final int fi = f.length;
+        final int gi = g.length;
+        final int gei = dilatedLength(gi, di);
+        final int gej = dilatedLength(g[0].length, dj);
+        final int ri = r.length;
+        checkResultLength(ri, fi, gei, mode);
+        checkResultLength(r[0].length, f[0].length, gej, mode);
+        final int oi = mode.offset(gei);
+        final int oj = mode.offset(gej);
+        slabs.run(ri, (long) ri * r[0].length * gi * g[0].length, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    Arrays.fill(r[i], 0);
+                    final int ti = i + oi;
+                    final int pEnd = Math.min(gi, ti / di + 1);
+                    for (int p = firstDilatedTap(ti, fi, di); p < pEnd; p++) {
+                        convolveDilatedRow(f[ti - p * di], g[p], dj, oj, r[i]);
+                    }
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]}
+     * kernel dilated by {@code (di, dj, dk)}, as if {@code d - 1} zeros stood
+     * between its taps along each axis. Only the real taps are applied, so
+     * the cost at dilation 2, 4, 8 and so on is that of the undilated kernel.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][]} kernel
+     * @param di
+     *            dilation along the first axis
+     * @param dj
+     *            dilation along the second axis
+     * @param dk
+     *            dilation along the third axis
+     * @param mode
+     *            part of the result to compute, for the dilated kernel
+     * @return {@code double[][][]}
+     */
+    public double[][][] convolveDilated(double[][][] f, double[][][] g, int di, int dj, int dk, OutputMode mode) {
+        return convolveDilatedInto(f, g, di, dj, dk, mode, new double[mode.length(f.length, dilatedLength(g.length,
+                di))][mode.length(f[0].length, dilatedLength(g[0].length, dj))][mode.length(f[0][0].length,
+                dilatedLength(g[0][0].length, dk))]);
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]}
+     * kernel dilated by {@code (di, dj, dk)} into a caller-supplied result.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][]} kernel
+     * @param di
+     *            dilation along the first axis
+     * @param dj
+     *            dilation along the second axis
+     * @param dk
+     *            dilation along the third axis
+     * @param mode
+     *            part of the result to compute, for the dilated kernel
+     * @param r
+     *            {@code double[][][]} result of the dimensions given by {@code mode}
+     * @return {@code r}
+     */
+    public double[][][] convolveDilatedInto(final double[][][] f, final double[][][] g, final int di,
+            final int dj, final int dk, OutputMode mode, final double[][][] r) {
+        final int fi = f.length;
+        final int fj = f[0].length;
+        final int gi = g.length;
+        final int gj = g[0].length;
+        final int gei = dilatedLength(gi, di);
+        final int gej = dilatedLength(gj, dj);
+        final int gek = dilatedLength(g[0][0].length, dk);
+        final int ri = r.length;
+        final int rj = r[0].length;
+        checkResultLength(ri, fi, gei, mode);
+        checkResultLength(rj, fj, gej, mode);
+        checkResultLength(r[0][0].length, f[0][0].length, gek, mode);
+        final int oi = mode.offset(gei);
+        final int oj = mode.offset(gej);
+        final int ok = mode.offset(gek);
+        slabs.run(ri, (long) ri * rj * r[0][0].length * gi * gj * g[0][0].length, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    final int ti = i + oi;
+                    final int pEnd = Math.min(gi, ti / di + 1);
+                    for (int j = 0; j < rj; j++) {
+                        Arrays.fill(r[i][j], 0);
+                        final int tj = j + oj;
+                        final int qEnd = Math.min(gj, tj / dj + 1);
+                        for (int p = firstDilatedTap(ti, fi, di); p < pEnd; p++) {
+                            for (int q = firstDilatedTap(tj, fj, dj); q < qEnd; q++) {
+                                convolveDilatedRow(f[ti - p * di][tj - q * dj], g[p][q], dk, ok, r[i][j]);
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]}
+     * kernel at the outputs inside {@code mask} only. Outputs outside the
+     * mask are zero.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param mask
+     *            {@link Mask} of the dimensions given by {@code mode}
+     * @return {@code double[][][]}
+     */
+    public double[][][] convolveMasked(double[][][] f, double[][][] g, OutputMode mode, Mask mask) {
+        return convolveMaskedInto(f, g, mode, mask, new double[mode.length(f.length, g.length)][mode.length(
+                f[0].length, g[0].length)][mode.length(f[0][0].length, g[0][0].length)]);
+    }
+
+    /**
+     * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]}
+     * kernel at the outputs inside {@code mask} only, into a caller-supplied
+     * result. Elements of {@code r} outside the mask are left untouched, and
+     * rows of the result which hold no masked output are never visited, so
+     * the work grows with the size of the mask.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][]} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param mask
+     *            {@link Mask} of the dimensions given by {@code mode}
+     * @param r
+     *            {@code double[][][]} result of the dimensions given by {@code mode}
+     * @return {@code r}
+     */
+    public double[][][] convolveMaskedInto(final double[][][] f, final double[][][] g, OutputMode mode,
+            final Mask mask, final double[][][] r) {
+        final int fi = f.length;
+        final int fj = f[0].length;
+        final int gi = g.length;
+        final int gj = g[0].length;
+        final int rj = r[0].length;
+        checkResultLength(r.length, fi, gi, mode);
+        checkResultLength(rj, fj, gj, mode);
+        checkResultLength(r[0][0].length, f[0][0].length, g[0][0].length, mode);
+        mask.check(r.length, rj, r[0][0].length);
+        final int oi = mode.offset(gi);
+        final int oj = mode.offset(gj);
+        final int ok = mode.offset(g[0][0].length);
+        slabs.run(mask.rows.length, mask.size * gi * gj * g[0][0].length, new ParallelSlabs.Slab() {
+            public void compute(int start, int end) {
+                for (int n = start; n < end; n++) {
+                    final int row = mask.rows[n];
+                    final int i = row / rj;
+                    final int j = row % rj;
+                    final int[] run = mask.runs[row];
+                    final double[] rRow = r[i][j];
+                    for (int b = 0; b < run.length; b += 2) {
+                        Arrays.fill(rRow, run[b], run[b + 1], 0);
+                    }
+                    final int ti = i + oi;
+                    final int tj = j + oj;
+                    final int pEnd = Math.min(gi, ti + 1);
+                    final int qEnd = Math.min(gj, tj + 1);
+                    for (int p = firstDilatedTap(ti, fi, 1); p < pEnd; p++) {
+                        for (int q = firstDilatedTap(tj, fj, 1); q < qEnd; q++) {
+                            for (int b = 0; b < run.length; b += 2) {
+                                convolveDilatedRow(f[ti - p][tj - q], g[p][q], 1, ok, rRow, run[b], run[b + 1]);
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Reduce the neighbourhoods of 1D {@code double[]} array selected by 1D
+     * {@code double[]} kernel or structuring element, extending the array
+     * past its edges by {@code condition}.
+     * 
+     * @param f
+     *            {@code double[]} array
+     * @param g
+     *            {@code double[]} kernel or structuring element
+     * @param reduction
+     *            how each neighbourhood is reduced
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return {@code double[]}
+     * @see Reduction
+     */
+    public double[] reduce(double[] f, double[] g, Reduction reduction, OutputMode mode,
+            Boundaries.Condition condition) {
+        return reduceInto(new double[][][] {{f}}, new double[][][] {{g}}, reduction, mode, condition,
+                new double[][][] {{new double[mode.length(f.length, g.length)]}})[0][0];
+    }
+
+    /**
+     * Reduce the neighbourhoods of 2D {@code double[][]} array selected by 2D
+     * {@code double[][]} kernel or structuring element, extending the array
+     * past its edges by {@code condition}.
+     * 
+     * @param f
+     *            {@code double[][]} array
+     * @param g
+     *            {@code double[][]} kernel or structuring element
+     * @param reduction
+     *            how each neighbourhood is reduced
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return {@code double[][]}
+     * @see Reduction
+     */
+    public double[][] reduce(double[][] f, double[][] g, Reduction reduction, OutputMode mode,
+            Boundaries.Condition condition) {
+        return reduceInto(new double[][][] {f}, new double[][][] {g}, reduction, mode, condition,
+                new double[1][mode.length(f.length, g.length)][mode.length(f[0].length, g[0].length)])[0];
+    }
+
+    /**
+     * Reduce the neighbourhoods of 3D {@code double[][][]} array selected by
+     * 3D {@code double[][][]} kernel or structuring element, extending the
+     * array past its edges by {@code condition}.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][]} kernel or structuring element
+     * @param reduction
+     *            how each neighbourhood is reduced
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return {@code double[][][]}
+     * @see Reduction
+     */
+    public double[][][] reduce(double[][][] f, double[][][] g, Reduction reduction, OutputMode mode,
+            Boundaries.Condition condition) {
+        return reduceInto(f, g, reduction, mode, condition, new double[mode.length(f.length, g.length)][mode.length(
+                f[0].length, g[0].length)][mode.length(f[0][0].length, g[0][0].length)]);
+    }
+
+    /**
+     * Reduce the neighbourhoods of 3D {@code double[][][]} array selected by
+     * 3D {@code double[][][]} kernel or structuring element into a
+     * caller-supplied result, extending the array past its edges by
+     * {@code condition}. {@link Reduction#SUM} is the convolution. For
+     * {@link Reduction#MIN} and {@link Reduction#MAX} an element whose taps
+     * are all zero is a flat box, which is applied along each axis in turn
+     * with the van Herk/Gil-Werman algorithm, at about three comparisons per
+     * output per axis whatever its size. Other elements are applied tap by
+     * tap, skipping taps of {@code -Infinity}.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            {@code double[][][]} kernel or structuring element
+     * @param reduction
+     *            how each neighbourhood is reduced
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @param r
+     *            {@code double[][][]} result of the dimensions given by {@code mode}
+     * @return {@code r}
+     */
+    public double[][][] reduceInto(final double[][][] f, final double[][][] g, Reduction reduction,
+            OutputMode mode, Boundaries.Condition condition, final double[][][] r) {
+        if (reduction == Reduction.SUM) {
+            return convolveInto(f, g, mode, condition, r, new Workspace());
+        }
+        final int fi = f.length;
+        final int fj = f[0].length;
+        final int fk = f[0][0].length;
+        final int gi = g.length;
+        final int gj = g[0].length;
+        final int gk = g[0][0].length;
+        final int ri = r.length;
+        final int rj = r[0].length;
+        final int rk = r[0][0].length;
+        checkResultLength(ri, fi, gi, mode);
+        checkResultLength(rj, fj, gj, mode);
+        checkResultLength(rk, fk, gk, mode);
+        final boolean max = reduction == Reduction.MAX;
+        // r[i][j][k] reads position (i + p - ei, j + q - ej, k + s - ek) of f, looked up in mapI, mapJ and mapK
+        final int ei = gi - 1 - mode.offset(gi);
+        final int ej = gj - 1 - mode.offset(gj);
+        final int ek = gk - 1 - mode.offset(gk);
+        if (isFlat(g)) {
+            // a box is separable, so it is reduced along k, then j, then i
+            final double[][][] a = gk == 1 ? f : gi == 1 && gj == 1 ? r : new double[fi][fj][rk];
+            if (gk > 1) {
+                reduceAlongK(f, gk, ek, max, condition, a);
+            }
+            final double[][][] b = gj == 1 ? a : gi == 1 ? r : new double[fi][rj][rk];
+            if (gj > 1) {
+                reduceAlongJ(a, gj, ej, max, condition, b);
+            }
+            if (gi > 1 || b != r) {
+                reduceAlongI(b, gi, ei, max, condition, r);
+            }
+            return r;
+        }
+        final int kLo = Math.min(ek, rk);
+        final int kHi = Math.max(kLo, Math.min(fk - gk + 1 + ek, rk));
+        final int[] mapI = Boundaries.remap(condition, -ei, ri + gi - 1 - ei, fi);
+        final int[] mapJ = Boundaries.remap(condition, -ej, rj + gj - 1 - ej, fj);
+        final int[] mapK = Boundaries.remap(condition, -ek, rk + gk - 1 - ek, fk);
+        final double[] zeros = new double[fk];
+        slabs.run(ri, (long) ri * rj * rk * gi * gj * gk, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    for (int j = 0; j < rj; j++) {
+                        Arrays.fill(r[i][j], max ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+                        for (int p = 0; p < gi; p++) {
+                            final int ai = mapI[i + p];
+                            final double[][] gPlane = g[gi - 1 - p];
+                            for (int q = 0; q < gj; q++) {
+                                final int aj = mapJ[j + q];
+                                reduceTaps(ai < 0 || aj < 0 ? zeros : f[ai][aj], gPlane[gj - 1 - q], max, r[i][j],
+                                        kLo, kHi, ek, mapK);
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Sets whether 2D and 3D kernels are tested for separability. A kernel
+     * which factors to within the separability tolerance is applied as 1D
+     * passes along each axis. Default is {@code true}.
+     * 
+     * @param detectSeparable
+     *            {@code true} to test kernels for separability
+     */
+    public void setDetectSeparable(boolean detectSeparable) {
+        this.detectSeparable = detectSeparable;
+    }
+
+    public boolean getDetectSeparable() {
+        return detectSeparable;
+    }
+
+    /**
+     * Sets whether 3D and {@code VolumeDouble} kernels are tested for
+     * sparsity. A kernel with at most half of its taps non-zero is compiled to
+     * a {@link Stencil} and only its non-zero taps are applied. Default is
+     * {@code true}.
+     * 
+     * @param detectSparse
+     *            {@code true} to test kernels for sparsity
+     */
+    public void setDetectSparse(boolean detectSparse) {
+        this.detectSparse = detectSparse;
+    }
+
+    public boolean getDetectSparse() {
+        return detectSparse;
+    }
+
+    /**
+     * Sets the largest error, relative to the largest kernel magnitude, with
+     * which a kernel is accepted as separable. Default is
+     * {@link SeparableKernel#DEFAULT_TOLERANCE}.
+     * 
+     * @param separableTolerance
+     *            relative tolerance
+     */
+    public void setSeparableTolerance(double separableTolerance) {
+        this.separableTolerance = separableTolerance;
+    }
+
+    public double getSeparableTolerance() {
+        return separableTolerance;
+    }
+
+    /**
+     * Full 1D convolution of each line of {@code f} along {@code axis} (0 or
+     * 1) into {@code r}, which is longer than {@code f} by
+     * {@code g.length - 1} along that axis.
+     */
+    private double[][] convolveAxis(final double[][] f, final double[] g, final int axis, final double[][] r) {
+        final int fi = f.length;
+        final int gl = g.length;
+        final int ri = r.length;
+        final int rj = r[0].length;
+        final int sym = KernelSymmetry.of(g);
+        final boolean box = isBox(g);
+        slabs.run(ri, (long) ri * rj * gl, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    if (box && axis == 0 && i > iStart) {
+                        boxStep(r[i - 1], i < fi ? f[i] : null, i >= gl ? f[i - gl] : null, g[0], r[i], rj);
+                        continue;
+                    }
+                    Arrays.fill(r[i], 0);
+                    if (axis == 0) {
+                        final int pStart = Math.max(0, gl - 1 - i);
+                        final int pEnd = Math.min(gl, fi + gl - 1 - i);
+                        for (int p = pStart; p < pEnd; p++) {
+                            final int pMirror = gl - 1 - p;
+                            if (sym == KernelSymmetry.NONE || pMirror < pStart || pMirror >= pEnd) {
+                                convolveRow(f[i - gl + 1 + p], 0, g[gl - 1 - p], r[i], 0, rj);
+                            } else if (p < pMirror) {
+                                foldRow(f[i - gl + 1 + p], 0, f[i - p], 0, g[gl - 1 - p], sym, r[i], 0, rj);
+                            } else if (p == pMirror && sym == KernelSymmetry.EVEN) {
+                                convolveRow(f[i - p], 0, g[p], r[i], 0, rj);
+                            }
+                        }
+                    } else if (box) {
+                        convolveBox(f[i], g[0], gl, 0, r[i]);
+                    } else {
+                        convolveLine(f[i], g, sym, r[i]);
+                    }
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Full 1D convolution of each line of {@code f} along {@code axis} (0, 1
+     * or 2) into {@code r}, which is longer than {@code f} by
+     * {@code g.length - 1} along that axis.
+     */
+    private double[][][] convolveAxis(final double[][][] f, final double[] g, final int axis, final double[][][] r) {
+        final int fi = f.length;
+        final int fj = f[0].length;
+        final int gl = g.length;
+        final int ri = r.length;
+        final int rj = r[0].length;
+        final int rk = r[0][0].length;
+        final int sym = KernelSymmetry.of(g);
+        final boolean box = isBox(g);
+        slabs.run(ri, (long) ri * rj * rk * gl, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    if (box && axis == 0 && i > iStart) {
+                        for (int j = 0; j < rj; j++) {
+                            boxStep(r[i - 1][j], i < fi ? f[i][j] : null, i >= gl ? f[i - gl][j] : null, g[0],
+                                    r[i][j], rk);
+                        }
+                        continue;
+                    }
+                    for (int j = 0; j < rj; j++) {
+                        Arrays.fill(r[i][j], 0);
+                    }
+                    if (axis == 0) {
+                        final int pStart = Math.max(0, gl - 1 - i);
+                        final int pEnd = Math.min(gl, fi + gl - 1 - i);
+                        for (int p = pStart; p < pEnd; p++) {
+                            final int pMirror = gl - 1 - p;
+                            final double[][] fPlane = f[i - gl + 1 + p];
+                            final double gv = g[gl - 1 - p];
+                            if (sym == KernelSymmetry.NONE || pMirror < pStart || pMirror >= pEnd) {
+                                for (int j = 0; j < rj; j++) {
+                                    convolveRow(fPlane[j], 0, gv, r[i][j], 0, rk);
+                                }
+                            } else if (p < pMirror) {
+                                final double[][] fMirror = f[i - p];
+                                for (int j = 0; j < rj; j++) {
+                                    foldRow(fPlane[j], 0, fMirror[j], 0, gv, sym, r[i][j], 0, rk);
+                                }
+                            } else if (p == pMirror && sym == KernelSymmetry.EVEN) {
+                                for (int j = 0; j < rj; j++) {
+                                    convolveRow(fPlane[j], 0, gv, r[i][j], 0, rk);
+                                }
+                            }
+                        }
+                    } else if (axis == 1) {
+                        for (int j = 0; j < rj; j++) {
+                            if (box && j > 0) {
+                                boxStep(r[i][j - 1], j < fj ? f[i][j] : null, j >= gl ? f[i][j - gl] : null, g[0],
+                                        r[i][j], rk);
+                                continue;
+                            }
+                            final int pStart = Math.max(0, gl - 1 - j);
+                            final int pEnd = Math.min(gl, fj + gl - 1 - j);
+                            for (int p = pStart; p < pEnd; p++) {
+                                final int pMirror = gl - 1 - p;
+                                if (sym == KernelSymmetry.NONE || pMirror < pStart || pMirror >= pEnd) {
+                                    convolveRow(f[i][j - gl + 1 + p], 0, g[gl - 1 - p], r[i][j], 0, rk);
+                                } else if (p < pMirror) {
+                                    foldRow(f[i][j - gl + 1 + p], 0, f[i][j - p], 0, g[gl - 1 - p], sym,
+                                            r[i][j], 0, rk);
+                                } else if (p == pMirror && sym == KernelSymmetry.EVEN) {
+                                    convolveRow(f[i][j - p], 0, g[p], r[i][j], 0, rk);
+                                }
+                            }
+                        }
+                    } else if (box) {
+                        for (int j = 0; j < rj; j++) {
+                            convolveBox(f[i][j], g[0], gl, 0, r[i][j]);
+                        }
+                    } else {
+                        for (int j = 0; j < rj; j++) {
+                            convolveLine(f[i][j], g, sym, r[i][j]);
+                        }
+                    }
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * @return {@code true} if {@code g} is a constant kernel long enough to be
+     *         applied with running sums
+     */
+    private static boolean isBox(double[] g) {
+        if (g.length < MIN_BOX_LENGTH) {
+            return false;
+        }
+        for (int p = 1; p < g.length; p++) {
+            if (g[p] != g[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the 1D convolution of {@code f} with a box of {@code gl} taps of
+     * value {@code c} to {@code r}, keeping a running sum of the window, so
+     * the cost per element does not depend on {@code gl}. {@code r[n]} is
+     * element {@code n + o} of the full result.
+     */
+    private static void convolveBox(double[] f, double c, int gl, int o, double[] r) {
+        final int fl = f.length;
+        final int rl = r.length;
+        double sum = 0;
+        for (int n = 0; n < Math.min(o, fl); n++) {
+            sum += f[n];
+        }
+        for (int n = o; n < o + rl; n++) {
+            if (n < fl) {
+                sum += f[n];
+            }
+            if (n >= gl) {
+                sum -= f[n - gl];
+            }
+            r[n - o] += sum * c;
+        }
+    }
+
+    /**
+     * One step of a box filter of value {@code c} along an outer axis: sets
+     * {@code r} to the previous result row {@code rPrev} plus {@code c} times
+     * the row entering the window, {@code fIn}, less the row leaving it,
+     * {@code fOut}. Either row is {@code null} past the edge of the array.
+     */
+    private static void boxStep(double[] rPrev, double[] fIn, double[] fOut, double c, double[] r, int len) {
+        System.arraycopy(rPrev, 0, r, 0, len);
+        if (fIn != null) {
+            convolveRow(fIn, 0, c, r, 0, len);
+        }
+        if (fOut != null) {
+            convolveRow(fOut, 0, -c, r, 0, len);
+        }
+    }
+
+    /**
+     * Adds {@code gv * f[k + offset]} to {@code r[k]} for {@code k} in
+     * {@code [kStart, kEnd)}.
+     */
+    private static void convolveRow(double[] f, int offset, double gv, double[] r, int kStart, int kEnd) {
+        for (int k = kStart; k < kEnd; k++) {
+            r[k] += f[k + offset] * gv;
+        }
+    }
+
+    /**
+     * Adds a mirrored pair of taps to {@code r[k]} for {@code k} in
+     * {@code [kStart, kEnd)} with one multiply:
+     * {@code gv * (fA[k + offsetA] + fB[k + offsetB])} when {@code sym} is
+     * {@link KernelSymmetry#EVEN}, or the difference when it is
+     * {@link KernelSymmetry#ODD}.
+     */
+    private static void foldRow(double[] fA, int offsetA, double[] fB, int offsetB, double gv, int sym,
+            double[] r, int kStart, int kEnd) {
+        if (sym == KernelSymmetry.EVEN) {
+            for (int k = kStart; k < kEnd; k++) {
+                r[k] += (fA[k + offsetA] + fB[k + offsetB]) * gv;
+            }
+        } else {
+            for (int k = kStart; k < kEnd; k++) {
+                r[k] += (fA[k + offsetA] - fB[k + offsetB]) * gv;
+            }
+        }
+    }
+
+    /**
+     * Adds the taps of the 1D kernel {@code gRow}, centred at {@code hgke}, to
+     * {@code r[k]} for {@code k} in {@code [kStart, kEnd)}, reading
+     * {@code fRow[k + s - hgke]} for tap {@code s}. Mirrored taps of a
+     * symmetric or antisymmetric kernel share one multiply.
+     */
+    private static void convolveTaps(double[] fRow, double[] gRow, int sym, double[] r,
+            int kStart, int kEnd, int hgke) {
+        final int gk = gRow.length;
+        if (sym == KernelSymmetry.NONE) {
+            for (int s = 0; s < gk; s++) {
+                convolveRow(fRow, s - hgke, gRow[gk - 1 - s], r, kStart, kEnd);
+            }
+            return;
+        }
+        for (int s = 0; s < gk / 2; s++) {
+            foldRow(fRow, s - hgke, fRow, gk - 1 - s - hgke, gRow[gk - 1 - s], sym, r, kStart, kEnd);
+        }
+        if (gk % 2 == 1 && sym == KernelSymmetry.EVEN) {
+            convolveRow(fRow, gk / 2 - hgke, gRow[gk / 2], r, kStart, kEnd);
+        }
+    }
+
+    /**
+     * Adds the taps of the 1D kernel {@code gRow} to {@code r[k]} for every
+     * {@code k}, reading position {@code k + s - hgke} of {@code fRow} for tap
+     * {@code s}. Inside {@code [kLo, kHi)} every tap falls inside
+     * {@code fRow}; outside it the position is looked up in
+     * {@code mapK[k + s]}, and the tap is skipped where that is -1.
+     */
+    private static void convolveTaps(double[] fRow, double[] gRow, int sym, double[] r,
+            int kLo, int kHi, int hgke, int[] mapK) {
+        convolveTaps(fRow, gRow, sym, r, kLo, kHi, hgke);
+        final int gk = gRow.length;
+        final int rk = r.length;
+        for (int s = 0; s < gk; s++) {
+            final double gv = gRow[gk - 1 - s];
+            for (int k = 0; k < kLo; k++) {
+                final int a = mapK[k + s];
+                if (a >= 0) {
+                    r[k] += fRow[a] * gv;
+                }
+            }
+            for (int k = kHi; k < rk; k++) {
+                final int a = mapK[k + s];
+                if (a >= 0) {
+                    r[k] += fRow[a] * gv;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds output {@code n * stride} of the full 1D convolution of
+     * {@code fRow} with {@code gRow} to {@code r[n]} for every {@code n},
+     * reading only the taps which fall inside {@code fRow}.
+     */
+    private static void convolveStridedRow(double[] fRow, double[] gRow, int stride, double[] r) {
+        final int fl = fRow.length;
+        for (int p = 0; p < gRow.length; p++) {
+            final double gv = gRow[p];
+            // outputs with 0 <= n * stride - p < fl
+            final int nStart = (p + stride - 1) / stride;
+            final int nEnd = Math.min(r.length, (fl - 1 + p) / stride + 1);
+            for (int n = nStart; n < nEnd; n++) {
+                r[n] += fRow[n * stride - p] * gv;
+            }
+        }
+    }
+
+    /**
+     * @return first tap {@code p} of a kernel dilated by {@code d} for which
+     *         output {@code t} of the full result reads inside an array of
+     *         length {@code f}, that is {@code t - p * d < f}
+     */
+    private static int firstDilatedTap(int t, int f, int d) {
+        return t < f ? 0 : (t - f + d) / d;
+    }
+
+    /**
+     * Adds output {@code k + o} of the full 1D convolution of {@code fRow}
+     * with {@code gRow} dilated by {@code d} to {@code r[k]} for every
+     * {@code k}, reading only the taps which fall inside {@code fRow}.
+     */
+    private static void convolveDilatedRow(double[] fRow, double[] gRow, int d, int o, double[] r) {
+        convolveDilatedRow(fRow, gRow, d, o, r, 0, r.length);
+    }
+
+    /**
+     * As {@link #convolveDilatedRow(double[], double[], int, int, double[])},
+     * for the outputs {@code kStart <= k < kEnd} only.
+     */
+    private static void convolveDilatedRow(double[] fRow, double[] gRow, int d, int o, double[] r, int kStart,
+            int kEnd) {
+        for (int s = 0; s < gRow.length; s++) {
+            final int offset = o - s * d;
+            convolveRow(fRow, offset, gRow[s], r, Math.max(kStart, -offset), Math.min(kEnd, fRow.length - offset));
+        }
+    }
+
+    /**
+     * @return {@code true} if every tap of {@code g} is zero
+     */
+    private static boolean isFlat(double[][][] g) {
+        for (double[][] gPlane : g) {
+            for (double[] gRow : gPlane) {
+                for (double gv : gRow) {
+                    if (gv != 0) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes the greatest {@code fRow[k + s - hgke] + gRow[gk - 1 - s]}, or
+     * the least {@code fRow[k + s - hgke] - gRow[gk - 1 - s]}, into
+     * {@code r[k]} for every {@code k}, skipping taps of {@code -Infinity}.
+     * Inside {@code [kLo, kHi)} every tap falls inside {@code fRow}; outside
+     * it the position is looked up in {@code mapK[k + s]}, and reads zero
+     * where that is -1.
+     */
+    private static void reduceTaps(double[] fRow, double[] gRow, boolean max, double[] r, int kLo, int kHi,
+            int hgke, int[] mapK) {
+        final int gk = gRow.length;
+        final int rk = r.length;
+        for (int s = 0; s < gk; s++) {
+            final double gv = max ? gRow[gk - 1 - s] : -gRow[gk - 1 - s];
+            if (gv == (max ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY)) {
+                continue;
+            }
+            final int offset = s - hgke;
+            if (max) {
+                for (int k = kLo; k < kHi; k++) {
+                    r[k] = Math.max(r[k], fRow[k + offset] + gv);
+                }
+            } else {
+                for (int k = kLo; k < kHi; k++) {
+                    r[k] = Math.min(r[k], fRow[k + offset] + gv);
+                }
+            }
+            reduceEdge(fRow, gv, max, r, 0, kLo, s, mapK);
+            reduceEdge(fRow, gv, max, r, kHi, rk, s, mapK);
+        }
+    }
+
+    /**
+     * Reduces tap {@code s} of value {@code gv} into {@code r[k]} for
+     * {@code k} in {@code [kStart, kEnd)}, reading position {@code mapK[k + s]}
+     * of {@code fRow}, or zero where that is -1.
+     */
+    private static void reduceEdge(double[] fRow, double gv, boolean max, double[] r, int kStart, int kEnd, int s,
+            int[] mapK) {
+        for (int k = kStart; k < kEnd; k++) {
+            final int a = mapK[k + s];
+            final double v = (a < 0 ? 0 : fRow[a]) + gv;
+            r[k] = max ? Math.max(r[k], v) : Math.min(r[k], v);
+        }
+    }
+
+    /**
+     * Reduces each row {@code f[i][j]} over windows of {@code w} along k into
+     * {@code r[i][j]}, reading position {@code k + s - e} of the row for
+     * {@code s} in {@code [0, w)}.
+     */
+    private void reduceAlongK(final double[][][] f, final int w, final int e, final boolean max,
+            Boundaries.Condition condition, final double[][][] r) {
+        final int fj = f[0].length;
+        final int rl = r[0][0].length;
+        final int[] map = Boundaries.remap(condition, -e, rl + w - 1 - e, f[0][0].length);
+        slabs.run(f.length, (long) f.length * fj * rl * 3, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                final double[] ext = new double[map.length];
+                final double[] fwd = new double[map.length];
+                final double[] bwd = new double[map.length];
+                for (int i = iStart; i < iEnd; i++) {
+                    for (int j = 0; j < fj; j++) {
+                        final double[] fRow = f[i][j];
+                        for (int x = 0; x < map.length; x++) {
+                            ext[x] = map[x] < 0 ? 0 : fRow[map[x]];
+                        }
+                        vanHerk(ext, w, max, r[i][j], fwd, bwd);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Reduces each plane {@code f[i]} over windows of {@code w} rows along j
+     * into {@code r[i]}, reading row {@code j + q - e} for {@code q} in
+     * {@code [0, w)}.
+     */
+    private void reduceAlongJ(final double[][][] f, final int w, final int e, final boolean max,
+            Boundaries.Condition condition, final double[][][] r) {
+        final int rl = r[0].length;
+        final int rk = r[0][0].length;
+        final int[] map = Boundaries.remap(condition, -e, rl + w - 1 - e, f[0].length);
+        final double[] zeros = new double[rk];
+        slabs.run(f.length, (long) f.length * rl * rk * 3, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                final double[][] ext = new double[map.length][];
+                final double[][] fwd = new double[map.length][rk];
+                final double[][] bwd = new double[map.length][rk];
+                for (int i = iStart; i < iEnd; i++) {
+                    for (int x = 0; x < map.length; x++) {
+                        ext[x] = map[x] < 0 ? zeros : f[i][map[x]];
+                    }
+                    vanHerk(ext, w, max, r[i], fwd, bwd);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reduces the rows {@code f[.][j]} over windows of {@code w} along i into
+     * {@code r[.][j]}, reading row {@code i + p - e} for {@code p} in
+     * {@code [0, w)}.
+     */
+    private void reduceAlongI(final double[][][] f, final int w, final int e, final boolean max,
+            Boundaries.Condition condition, final double[][][] r) {
+        final int rl = r.length;
+        final int rj = r[0].length;
+        final int rk = r[0][0].length;
+        final int[] map = Boundaries.remap(condition, -e, rl + w - 1 - e, f.length);
+        final double[] zeros = new double[rk];
+        slabs.run(rj, (long) rl * rj * rk * 3, new ParallelSlabs.Slab() {
+            public void compute(int jStart, int jEnd) {
+                final double[][] ext = new double[map.length][];
+                final double[][] rRows = new double[rl][];
+                final double[][] fwd = new double[map.length][rk];
+                final double[][] bwd = new double[map.length][rk];
+                for (int j = jStart; j < jEnd; j++) {
+                    for (int x = 0; x < map.length; x++) {
+                        ext[x] = map[x] < 0 ? zeros : f[map[x]][j];
+                    }
+                    for (int i = 0; i < rl; i++) {
+                        rRows[i] = r[i][j];
+                    }
+                    vanHerk(ext, w, max, rRows, fwd, bwd);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets {@code r[m]} to the least, or greatest, of {@code e[m]} to
+     * {@code e[m + w - 1]} by the van Herk/Gil-Werman algorithm. {@code fwd}
+     * holds running extrema from the start of each block of {@code w}, and
+     * {@code bwd} to its end, so each window is the extremum of one entry of
+     * each, whatever {@code w}.
+     */
+    private static void vanHerk(double[] e, int w, boolean max, double[] r, double[] fwd, double[] bwd) {
+        final int len = r.length + w - 1;
+        for (int x = 0; x < len; x++) {
+            fwd[x] = x % w == 0 ? e[x] : max ? Math.max(fwd[x - 1], e[x]) : Math.min(fwd[x - 1], e[x]);
+        }
+        for (int x = len - 1; x >= 0; x--) {
+            bwd[x] = x == len - 1 || (x + 1) % w == 0 ? e[x] : max ? Math.max(bwd[x + 1], e[x])
+                    : Math.min(bwd[x + 1], e[x]);
+        }
+        for (int m = 0; m < r.length; m++) {
+            r[m] = max ? Math.max(bwd[m], fwd[m + w - 1]) : Math.min(bwd[m], fwd[m + w - 1]);
+        }
+    }
+
+    /**
+     * As {@link #vanHerk(double[], int, boolean, double[], double[], double[])}
+     * for whole rows, taking the extrema element by element.
+     */
+    private static void vanHerk(double[][] e, int w, boolean max, double[][] r, double[][] fwd, double[][] bwd) {
+        final int len = r.length + w - 1;
+        for (int x = 0; x < len; x++) {
+            if (x % w == 0) {
+                System.arraycopy(e[x], 0, fwd[x], 0, fwd[x].length);
+            } else {
+                extremum(fwd[x - 1], e[x], max, fwd[x]);
+            }
+        }
+        for (int x = len - 1; x >= 0; x--) {
+            if (x == len - 1 || (x + 1) % w == 0) {
+                System.arraycopy(e[x], 0, bwd[x], 0, bwd[x].length);
+            } else {
+                extremum(bwd[x + 1], e[x], max, bwd[x]);
+            }
+        }
+        for (int m = 0; m < r.length; m++) {
+            extremum(bwd[m], fwd[m + w - 1], max, r[m]);
+        }
+    }
+
+    /**
+     * Sets {@code r[k]} to the greater, or lesser, of {@code a[k]} and
+     * {@code b[k]}.
+     */
+    private static void extremum(double[] a, double[] b, boolean max, double[] r) {
+        if (max) {
+            for (int k = 0; k < r.length; k++) {
+                r[k] = Math.max(a[k], b[k]);
+            }
+        } else {
+            for (int k = 0; k < r.length; k++) {
+                r[k] = Math.min(a[k], b[k]);
+            }
+        }
+    }
+
+    /**
+     * Adds the full 1D convolution of {@code f} with {@code g} to {@code r},
+     * which has length {@code f.length + g.length - 1}. Where both taps of a
+     * mirrored pair fall inside {@code f} they share one multiply.
+     */
+    private static void convolveLine(double[] f, double[] g, int sym, double[] r) {
+        final int fl = f.length;
+        final int gl = g.length;
+        if (sym == KernelSymmetry.NONE) {
+            for (int p = 0; p < gl; p++) {
+                final int m = gl - 1 - p;
+                convolveRow(f, -m, g[m], r, m, m + fl);
+            }
+            return;
+        }
+        for (int m = gl - 1; m >= 0; m--) {
+            final int mMirror = gl - 1 - m;
+            if (m > mMirror) {
+                // tap m covers [m, m + fl), its mirror covers [mMirror, mMirror + fl)
+                final int overlapEnd = Math.max(m, mMirror + fl);
+                convolveRow(f, -mMirror, g[mMirror], r, mMirror, Math.min(m, mMirror + fl));
+                foldRow(f, -m, f, -mMirror, g[m], sym, r, m, mMirror + fl);
+                convolveRow(f, -m, g[m], r, overlapEnd, m + fl);
+            } else if (m == mMirror && sym == KernelSymmetry.EVEN) {
+                convolveRow(f, -m, g[m], r, m, m + fl);
+            }
+        }
+    }
+
+
+    /**
+     * Convolve {@code VolumeDouble} array with {@code VolumeDouble} kernel.
+     * Both are read in place through their strides, with no padded copy; kernel
+     * taps which fall outside the array are skipped. 1D and 2D data are
+     * convolved as volumes with trailing dimensions of length 1.
+     * 
+     * @param f
+     *            {@code VolumeDouble} array
+     * @param g
+     *            {@code VolumeDouble} kernel
+     * @return contiguous {@code VolumeDouble} of dimensions {@code f + g - 1}
+     */
+    public VolumeDouble convolve(VolumeDouble f, VolumeDouble g) {
+        return convolve(f, g, OutputMode.FULL);
+    }
+
+    /**
+     * Convolve {@code VolumeDouble} array with {@code VolumeDouble} kernel into
+     * a caller-supplied result, which may be a strided view. No scratch
+     * buffers are needed, so {@code workspace} is not used and may be
+     * {@code null}.
+     * 
+     * @param f
+     *            {@code VolumeDouble} array
+     * @param g
+     *            {@code VolumeDouble} kernel
+     * @param r
+     *            {@code VolumeDouble} result of dimensions {@code f + g - 1}
+     * @param workspace
+     *            scratch buffers
+     */
+    public void convolveInto(VolumeDouble f, VolumeDouble g, VolumeDouble r, Workspace workspace) {
+        convolveInto(f, g, OutputMode.FULL, r, workspace);
+    }
+
+    /**
+     * Convolve {@code VolumeDouble} array with {@code VolumeDouble} kernel,
+     * computing only the part of the result selected by {@code mode}.
+     * 
+     * @param f
+     *            {@code VolumeDouble} array
+     * @param g
+     *            {@code VolumeDouble} kernel
+     * @param mode
+     *            part of the result to compute
+     * @return contiguous {@code VolumeDouble} of the dimensions given by {@code mode}
+     */
+    public VolumeDouble convolve(VolumeDouble f, VolumeDouble g, OutputMode mode) {
+        final VolumeDouble r = new VolumeDouble(mode.length(f.ni, g.ni), mode.length(f.nj, g.nj), mode.length(f.nk,
+                g.nk));
+        convolveInto(f, g, mode, r, null);
+        return r;
+    }
+
+    /**
+     * Convolve {@code VolumeDouble} array with {@code VolumeDouble} kernel into
+     * a caller-supplied result, which may be a strided view, computing only
+     * the part selected by {@code mode}.
+     * 
+     * @param f
+     *            {@code VolumeDouble} array
+     * @param g
+     *            {@code VolumeDouble} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param r
+     *            {@code VolumeDouble} result of the dimensions given by {@code mode}
+     * @param workspace
+     *            scratch buffers
+     */
+    public void convolveInto(final VolumeDouble f, final VolumeDouble g, OutputMode mode, final VolumeDouble r,
+            Workspace workspace) {
+        if (detectSparse && Stencil.isSparse(g)) {
+            convolveInto(f, Stencil.compile(g), mode, r);
+            return;
+        }
+        final int fi = f.ni;
+        final int fj = f.nj;
+        final int fk = f.nk;
+        final int gi = g.ni;
+        final int gj = g.nj;
+        final int gk = g.nk;
+        final int ri = r.ni;
+        final int rj = r.nj;
+        final int rk = r.nk;
+        checkResultLength(ri, fi, gi, mode);
+        checkResultLength(rj, fj, gj, mode);
+        checkResultLength(rk, fk, gk, mode);
+        // result element (i, j, k) is element (i + oi, j + oj, k + ok) of the full result
+        final int oi = mode.offset(gi);
+        final int oj = mode.offset(gj);
+        final int ok = mode.offset(gk);
+        final double[] fd = f.data;
+        final double[] gd = g.data;
+        final double[] rd = r.data;
+        final int fsk = f.sk;
+        final int rsk = r.sk;
+        final int kTile = Tiling.tileK(gi, gj, gk, rk, Double.SIZE / 8);
+        final int jTile = Tiling.tileJ(gi, gj, gk, rj, kTile, Double.SIZE / 8);
+        slabs.run(ri, (long) ri * rj * rk * gi * gj * gk, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    for (int j = 0; j < rj; j++) {
+                        final int rBase = r.index(i, j, 0);
+                        for (int k = 0; k < rk; k++) {
+                            rd[rBase + k * rsk] = 0;
+                        }
+                    }
+                }
+                for (int j0 = 0; j0 < rj; j0 += jTile) {
+                    final int j1 = Math.min(j0 + jTile, rj);
+                    for (int k0 = 0; k0 < rk; k0 += kTile) {
+                        final int k1 = Math.min(k0 + kTile, rk);
+                        for (int i = iStart; i < iEnd; i++) {
+                            // only taps with 0 <= i + oi - (gi - 1) + p < fi are inside f
+                            final int pStart = Math.max(0, gi - 1 - i - oi);
+                            final int pEnd = Math.min(gi, fi + gi - 1 - i - oi);
+                            for (int j = j0; j < j1; j++) {
+                                final int qStart = Math.max(0, gj - 1 - j - oj);
+                                final int qEnd = Math.min(gj, fj + gj - 1 - j - oj);
+                                final int rBase = r.index(i, j, 0);
+                                for (int p = pStart; p < pEnd; p++) {
+                                    for (int q = qStart; q < qEnd; q++) {
+                                        final int fBase = f.index(i + oi - gi + 1 + p, j + oj - gj + 1 + q, 0);
+                                        final int gBase = g.index(gi - 1 - p, gj - 1 - q, 0);
+                                        for (int s = 0; s < gk; s++) {
+                                            final double gpqs = gd[gBase + (gk - 1 - s) * g.sk];
+                                            final int kStart = Math.max(k0, gk - 1 - s - ok);
+                                            final int kEnd = Math.min(k1, fk + gk - 1 - s - ok);
+                                            final int fOffset = fBase + (s - gk + 1 + ok) * fsk;
+                                            if (fsk == 1 && rsk == 1) {
+                                                for (int k = kStart; k < kEnd; k++) {
+                                                    rd[rBase + k] += fd[fOffset + k] * gpqs;
+                                                }
+                                            } else {
+                                                for (int k = kStart; k < kEnd; k++) {
+                                                    rd[rBase + k * rsk] += fd[fOffset + k * fsk] * gpqs;
+                                                }
+                                            }
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Convolve {@code VolumeDouble} array with {@code VolumeDouble} kernel,
+     * extending the array past its edges by {@code condition}.
+     * 
+     * @param f
+     *            {@code VolumeDouble} array
+     * @param g
+     *            {@code VolumeDouble} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return contiguous {@code VolumeDouble} of the dimensions given by {@code mode}
+     */
+    public VolumeDouble convolve(VolumeDouble f, VolumeDouble g, OutputMode mode, Boundaries.Condition condition) {
+        final VolumeDouble r = new VolumeDouble(mode.length(f.ni, g.ni), mode.length(f.nj, g.nj), mode.length(f.nk,
+                g.nk));
+        convolveInto(f, g, mode, condition, r, null);
+        return r;
+    }
+
+    /**
+     * Convolve {@code VolumeDouble} array with {@code VolumeDouble} kernel into
+     * a caller-supplied result, which may be a strided view, extending the
+     * array past its edges by {@code condition}. Taps which fall outside
+     * {@code f} are remapped to an index inside it, so no padded copy is made.
+     * 
+     * @param f
+     *            {@code VolumeDouble} array
+     * @param g
+     *            {@code VolumeDouble} kernel
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @param r
+     *            {@code VolumeDouble} result of the dimensions given by {@code mode}
+     * @param workspace
+     *            scratch buffers
+     */
+    public void convolveInto(final VolumeDouble f, final VolumeDouble g, OutputMode mode,
+            Boundaries.Condition condition, final VolumeDouble r, Workspace workspace) {
+        if (condition == Boundaries.Condition.ZERO) {
+            convolveInto(f, g, mode, r, workspace);
+            return;
+        }
+        final int fi = f.ni;
+        final int fj = f.nj;
+        final int fk = f.nk;
+        final int gi = g.ni;
+        final int gj = g.nj;
+        final int gk = g.nk;
+        final int ri = r.ni;
+        final int rj = r.nj;
+        final int rk = r.nk;
+        checkResultLength(ri, fi, gi, mode);
+        checkResultLength(rj, fj, gj, mode);
+        checkResultLength(rk, fk, gk, mode);
+        // result element (i, j, k) reads position (i + p - ei, j + q - ej, k + s - ek) of f for tap (p, q, s)
+        final int ei = gi - 1 - mode.offset(gi);
+        final int ej = gj - 1 - mode.offset(gj);
+        final int ek = gk - 1 - mode.offset(gk);
+        final int kLo = Math.min(ek, rk);
+        final int kHi = Math.max(kLo, Math.min(fk - gk + 1 + ek, rk));
+        final int[] mapI = Boundaries.remap(condition, -ei, ri + gi - 1 - ei, fi);
+        final int[] mapJ = Boundaries.remap(condition, -ej, rj + gj - 1 - ej, fj);
+        final int[] mapK = Boundaries.remap(condition, -ek, rk + gk - 1 - ek, fk);
+        final double[] fd = f.data;
+        final double[] gd = g.data;
+        final double[] rd = r.data;
+        final int fsk = f.sk;
+        final int rsk = r.sk;
+        slabs.run(ri, (long) ri * rj * rk * gi * gj * gk, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    for (int j = 0; j < rj; j++) {
+                        final int rBase = r.index(i, j, 0);
+                        for (int k = 0; k < rk; k++) {
+                            rd[rBase + k * rsk] = 0;
+                        }
+                        for (int p = 0; p < gi; p++) {
+                            final int ai = mapI[i + p];
+                            if (ai < 0) {
+                                continue;
+                            }
+                            for (int q = 0; q < gj; q++) {
+                                final int aj = mapJ[j + q];
+                                if (aj < 0) {
+                                    continue;
+                                }
+                                final int fBase = f.index(ai, aj, 0);
+                                final int gBase = g.index(gi - 1 - p, gj - 1 - q, 0);
+                                for (int s = 0; s < gk; s++) {
+                                    final double gpqs = gd[gBase + (gk - 1 - s) * g.sk];
+                                    final int fOffset = fBase + (s - ek) * fsk;
+                                    for (int k = kLo; k < kHi; k++) {
+                                        rd[rBase + k * rsk] += fd[fOffset + k * fsk] * gpqs;
+                                    }
+                                    for (int k = 0; k < kLo; k++) {
+                                        final int ak = mapK[k + s];
+                                        if (ak >= 0) {
+                                            rd[rBase + k * rsk] += fd[fBase + ak * fsk] * gpqs;
+                                        }
+                                    }
+                                    for (int k = kHi; k < rk; k++) {
+                                        final int ak = mapK[k + s];
+                                        if (ak >= 0) {
+                                            rd[rBase + k * rsk] += fd[fBase + ak * fsk] * gpqs;
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Convolve {@code double[][][]} array with the non-zero taps of a
+     * {@link Stencil}. Taps which fall outside the array are skipped, as for
+     * the dense kernel.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            compiled kernel
+     * @return {@code double[][][]} of dimensions {@code f + g - 1}
+     */
+    public double[][][] convolve(double[][][] f, Stencil g) {
+        return convolveInto(f, g, new double[f.length + g.gi - 1][f[0].length + g.gj - 1][f[0][0].length + g.gk - 1]);
+    }
+
+    /**
+     * Convolve {@code double[][][]} array with the non-zero taps of a
+     * {@link Stencil} into a caller-supplied result. No padded copy of
+     * {@code f} is made.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            compiled kernel
+     * @param r
+     *            {@code double[][][]} result of dimensions {@code f + g - 1}
+     * @return {@code r}
+     */
+    public double[][][] convolveInto(double[][][] f, Stencil g, double[][][] r) {
+        return convolveInto(f, g, OutputMode.FULL, r);
+    }
+
+    /**
+     * Convolve {@code double[][][]} array with the non-zero taps of a
+     * {@link Stencil} into a caller-supplied result, computing only the part
+     * selected by {@code mode}.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param g
+     *            compiled kernel
+     * @param mode
+     *            part of the result to compute
+     * @param r
+     *            {@code double[][][]} result of the dimensions given by {@code mode}
+     * @return {@code r}
+     */
+    public double[][][] convolveInto(final double[][][] f, final Stencil g, OutputMode mode, final double[][][] r) {
+        final int fi = f.length;
+        final int fj = f[0].length;
+        final int fk = f[0][0].length;
+        final int ri = r.length;
+        final int rj = r[0].length;
+        final int rk = r[0][0].length;
+        checkResultLength(ri, fi, g.gi, mode);
+        checkResultLength(rj, fj, g.gj, mode);
+        checkResultLength(rk, fk, g.gk, mode);
+        final int oi = mode.offset(g.gi);
+        final int oj = mode.offset(g.gj);
+        final int ok = mode.offset(g.gk);
+        final int taps = g.size();
+        final double[] w = g.doubleWeights;
+        slabs.run(ri, (long) ri * rj * rk * taps, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    for (int j = 0; j < rj; j++) {
+                        final double[] rRow = r[i][j];
+                        Arrays.fill(rRow, 0);
+                        for (int t = 0; t < taps; t++) {
+                            final int ai = i + oi - g.ti[t];
+                            final int aj = j + oj - g.tj[t];
+                            if (ai < 0 || ai >= fi || aj < 0 || aj >= fj) {
+                                continue;
+                            }
+                            final int c = g.tk[t] - ok;
+                            convolveRow(f[ai][aj], -c, w[t], rRow, Math.max(0, c), Math.min(rk, c + fk));
+                        }
+                    }
+                }
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Convolve {@code VolumeDouble} array with the non-zero taps of a
+     * {@link Stencil}. Each tap is a single offset into the backing array of
+     * {@code f}.
+     * 
+     * @param f
+     *            {@code VolumeDouble} array
+     * @param g
+     *            compiled kernel
+     * @return contiguous {@code VolumeDouble} of dimensions {@code f + g - 1}
+     */
+    public VolumeDouble convolve(VolumeDouble f, Stencil g) {
+        final VolumeDouble r = new VolumeDouble(f.ni + g.gi - 1, f.nj + g.gj - 1, f.nk + g.gk - 1);
+        convolveInto(f, g, r);
+        return r;
+    }
+
+    /**
+     * Convolve {@code VolumeDouble} array with the non-zero taps of a
+     * {@link Stencil} into a caller-supplied result, which may be a strided
+     * view.
+     * 
+     * @param f
+     *            {@code VolumeDouble} array
+     * @param g
+     *            compiled kernel
+     * @param r
+     *            {@code VolumeDouble} result of dimensions {@code f + g - 1}
+     */
+    public void convolveInto(VolumeDouble f, Stencil g, VolumeDouble r) {
+        convolveInto(f, g, OutputMode.FULL, r);
+    }
+
+    /**
+     * Convolve {@code VolumeDouble} array with the non-zero taps of a
+     * {@link Stencil} into a caller-supplied result, which may be a strided
+     * view, computing only the part selected by {@code mode}.
+     * 
+     * @param f
+     *            {@code VolumeDouble} array
+     * @param g
+     *            compiled kernel
+     * @param mode
+     *            part of the result to compute
+     * @param r
+     *            {@code VolumeDouble} result of the dimensions given by {@code mode}
+     */
+    public void convolveInto(final VolumeDouble f, final Stencil g, OutputMode mode, final VolumeDouble r) {
+        final int fi = f.ni;
+        final int fj = f.nj;
+        final int fk = f.nk;
+        final int ri = r.ni;
+        final int rj = r.nj;
+        final int rk = r.nk;
+        checkResultLength(ri, fi, g.gi, mode);
+        checkResultLength(rj, fj, g.gj, mode);
+        checkResultLength(rk, fk, g.gk, mode);
+        final int oi = mode.offset(g.gi);
+        final int oj = mode.offset(g.gj);
+        final int ok = mode.offset(g.gk);
+        final double[] fd = f.data;
+        final double[] rd = r.data;
+        final int fsk = f.sk;
+        final int rsk = r.sk;
+        final int taps = g.size();
+        final double[] w = g.doubleWeights;
+        final int[] offsets = g.offsets(f.si, f.sj, fsk);
+        slabs.run(ri, (long) ri * rj * rk * taps, new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                for (int i = iStart; i < iEnd; i++) {
+                    for (int j = 0; j < rj; j++) {
+                        final int rBase = r.index(i, j, 0);
+                        for (int k = 0; k < rk; k++) {
+                            rd[rBase + k * rsk] = 0;
+                        }
+                        // f.index(i + oi, j + oj, ok) may lie outside f; only taps inside are read
+                        final int fBase = f.index(i + oi, j + oj, ok);
+                        for (int t = 0; t < taps; t++) {
+                            final int ai = i + oi - g.ti[t];
+                            final int aj = j + oj - g.tj[t];
+                            if (ai < 0 || ai >= fi || aj < 0 || aj >= fj) {
+                                continue;
+                            }
+                            final double wt = w[t];
+                            final int fOffset = fBase - offsets[t];
+                            final int kStart = Math.max(0, g.tk[t] - ok);
+                            final int kEnd = Math.min(rk, g.tk[t] - ok + fk);
+                            if (fsk == 1 && rsk == 1) {
+                                for (int k = kStart; k < kEnd; k++) {
+                                    rd[rBase + k] += fd[fOffset + k] * wt;
+                                }
+                            } else {
+                                for (int k = kStart; k < kEnd; k++) {
+                                    rd[rBase + k * rsk] += fd[fOffset + k * fsk] * wt;
+                                }
+                            }
                         }
                     }
                 }
             }
+        });
+    }
+
+    /**
+     * Copies the part of the full result {@code full} starting at
+     * {@code (oi, oj)} into {@code r}.
+     */
+    private static double[][] cropInto(double[][] full, int oi, int oj, double[][] r) {
+        for (int i = 0; i < r.length; i++) {
+            System.arraycopy(full[i + oi], oj, r[i], 0, r[i].length);
+        }
+        return r;
+    }
+
+    private static double[][][] cropInto(double[][][] full, int oi, int oj, int ok, double[][][] r) {
+        for (int i = 0; i < r.length; i++) {
+            cropInto(full[i + oi], oj, ok, r[i]);
         }
         return r;
     }
 
+    /**
+     * Copies {@code f} into {@code fPad} starting at {@code hgi} and zeroes
+     * the rest of {@code fPad}.
+     */
+    private static void padInto(double[] f, double[] fPad, int hgi) {
+        Arrays.fill(fPad, 0, hgi, 0);
+        System.arraycopy(f, 0, fPad, hgi, f.length);
+        Arrays.fill(fPad, hgi + f.length, fPad.length, 0);
+    }
+
+    private static void padInto(double[][] f, double[][] fPad, int hgi, int hgj) {
+        for (int i = 0; i < fPad.length; i++) {
+            if (i < hgi || i >= hgi + f.length) {
+                Arrays.fill(fPad[i], 0);
+            } else {
+                padInto(f[i - hgi], fPad[i], hgj);
+            }
+        }
+    }
+
+    private static void padInto(double[][][] f, double[][][] fPad, int hgi, int hgj, int hgk) {
+        for (int i = 0; i < fPad.length; i++) {
+            if (i < hgi || i >= hgi + f.length) {
+                for (int j = 0; j < fPad[i].length; j++) {
+                    Arrays.fill(fPad[i][j], 0);
+                }
+            } else {
+                padInto(f[i - hgi], fPad[i], hgj, hgk);
+            }
+        }
+    }
+
+    /**
+     * Adds the kernel taps to {@code r} for {@code i} from {@code iStart} to
+     * {@code iEnd}. All taps must fall inside {@code fPad}, so the inner loop
+     * carries no bounds checks.
+     */
+    private static void convolveInterior(double[] fPad, double[] g, int sym, double[] r,
+            int iStart, int iEnd, int hgie) {
+        convolveTaps(fPad, g, sym, r, iStart, iEnd, hgie);
+    }
+
+    /**
+     * Adds the kernel taps to {@code r} for {@code i} from {@code iStart} to
+     * {@code iEnd}, skipping taps which fall outside {@code fPad}. The valid
+     * range of {@code i} is worked out per tap, so the inner loop carries no
+     * bounds checks and can be vectorized.
+     */
+    private static void convolveBoundary(double[] fPad, double[] g, double[] r,
+            int iStart, int iEnd, int hgie) {
+        final int gi = g.length;
+        final int ri = fPad.length;
+        for (int p = 0; p < gi; p++) {
+            final double gp = g[gi - 1 - p];
+            final int offset = p - hgie;
+            final int iFrom = Math.max(iStart, -offset);
+            final int iTo = Math.min(iEnd, ri - offset);
+            for (int i = iFrom; i < iTo; i++) {
+                r[i] += fPad[i + offset] * gp;
+            }
+        }
+    }
+
+    /**
+     * Adds the kernel taps to result row {@code rRow = r[i]} for {@code j} from
+     * {@code jStart} to {@code jEnd}. All taps must fall inside {@code fPad},
+     * so the inner loop carries no bounds checks.
+     */
+    private static void convolveInterior(double[][] fPad, double[][] g, int sym, double[] rRow, int i,
+            int jStart, int jEnd, int hgie, int hgje) {
+        final int gi = g.length;
+        for (int p = 0; p < gi; p++) {
+            convolveTaps(fPad[i + p - hgie], g[gi - 1 - p], sym, rRow, jStart, jEnd, hgje);
+        }
+    }
+
+    /**
+     * Adds the kernel taps to result row {@code rRow = r[i]} for {@code j} from
+     * {@code jStart} to {@code jEnd}, skipping taps which fall outside
+     * {@code fPad}. The valid range of {@code j} is worked out per tap, so the
+     * inner loop carries no bounds checks and can be vectorized.
+     */
+    private static void convolveBoundary(double[][] fPad, double[][] g, double[] rRow, int i,
+            int jStart, int jEnd, int hgie, int hgje) {
+        final int gi = g.length;
+        final int gj = g[0].length;
+        final int ri = fPad.length;
+        final int rj = fPad[0].length;
+        for (int p = 0; p < gi; p++) {
+            final int ai = i + (p - hgie);
+            if (ai < 0 || ai >= ri) {
+                continue;
+            }
+            final double[] fRow = fPad[ai];
+            final double[] gRow = g[gi - 1 - p];
+            for (int q = 0; q < gj; q++) {
+                final double gpq = gRow[gj - 1 - q];
+                final int offset = q - hgje;
+                final int jFrom = Math.max(jStart, -offset);
+                final int jTo = Math.min(jEnd, rj - offset);
+                for (int j = jFrom; j < jTo; j++) {
+                    rRow[j] += fRow[j + offset] * gpq;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the kernel taps to result row {@code rRow = r[i][j]} for {@code k}
+     * from {@code kStart} to {@code kEnd}. All taps must fall inside
+     * {@code fPad}, so the inner loop carries no bounds checks.
+     */
+    private static void convolveInterior(double[][][] fPad, double[][][] g, int sym, double[] rRow, int i, int j,
+            int kStart, int kEnd, int hgie, int hgje, int hgke) {
+        final int gi = g.length;
+        final int gj = g[0].length;
+        for (int p = 0; p < gi; p++) {
+            final double[][] fPlane = fPad[i + p - hgie];
+            final double[][] gPlane = g[gi - 1 - p];
+            for (int q = 0; q < gj; q++) {
+                convolveTaps(fPlane[j + q - hgje], gPlane[gj - 1 - q], sym, rRow, kStart, kEnd, hgke);
+            }
+        }
+    }
+
+    /**
+     * Adds the kernel taps to result row {@code rRow = r[i][j]} for {@code k}
+     * from {@code kStart} to {@code kEnd}, skipping taps which fall outside
+     * {@code fPad}. The valid range of {@code k} is worked out per tap, so the
+     * inner loop carries no bounds checks and can be vectorized.
+     */
+    private static void convolveBoundary(double[][][] fPad, double[][][] g, double[] rRow, int i, int j,
+            int kStart, int kEnd, int hgie, int hgje, int hgke) {
+        final int gi = g.length;
+        final int gj = g[0].length;
+        final int gk = g[0][0].length;
+        final int ri = fPad.length;
+        final int rj = fPad[0].length;
+        final int rk = fPad[0][0].length;
+        for (int p = 0; p < gi; p++) {
+            final int ai = i + (p - hgie);
+            if (ai < 0 || ai >= ri) {
+                continue;
+            }
+            final double[][] fPlane = fPad[ai];
+            final double[][] gPlane = g[gi - 1 - p];
+            for (int q = 0; q < gj; q++) {
+                final int aj = j + (q - hgje);
+                if (aj < 0 || aj >= rj) {
+                    continue;
+                }
+                final double[] fRow = fPlane[aj];
+                final double[] gRow = gPlane[gj - 1 - q];
+                for (int s = 0; s < gk; s++) {
+                    final double gpqs = gRow[gk - 1 - s];
+                    final int offset = s - hgke;
+                    final int kFrom = Math.max(kStart, -offset);
+                    final int kTo = Math.min(kEnd, rk - offset);
+                    for (int k = kFrom; k < kTo; k++) {
+                        rRow[k] += fRow[k + offset] * gpqs;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that a filter bank has kernels and one result per kernel.
+     */
+    private static void checkBank(int kernels, int results) {
+        if (kernels == 0) {
+            throw new IllegalArgumentException("JVCL: filter bank must have at least one kernel");
+        }
+        if (results != kernels) {
+            throw new IllegalArgumentException("JVCL: filter bank needs one result per kernel");
+        }
+    }
+
+    /**
+     * Adds the taps of each kernel {@code g[n]} to result row
+     * {@code rRows[n] = r[n][i]} for {@code j} from {@code jStart} to
+     * {@code jEnd}, taking each input row once for all the kernels. All taps
+     * must fall inside {@code fPad}.
+     */
+    private static void convolveInterior(double[][] fPad, double[][][] g, int[] sym, double[][] rRows, int i,
+            int jStart, int jEnd, int hgie, int hgje) {
+        final int gi = g[0].length;
+        for (int p = 0; p < gi; p++) {
+            final double[] fRow = fPad[i + p - hgie];
+            for (int n = 0; n < g.length; n++) {
+                convolveTaps(fRow, g[n][gi - 1 - p], sym[n], rRows[n], jStart, jEnd, hgje);
+            }
+        }
+    }
+
+    /**
+     * Adds the taps of each kernel {@code g[n]} to result row
+     * {@code rRows[n] = r[n][i]} for {@code j} from {@code jStart} to
+     * {@code jEnd}, skipping taps which fall outside {@code fPad}.
+     */
+    private static void convolveBoundary(double[][] fPad, double[][][] g, double[][] rRows, int i,
+            int jStart, int jEnd, int hgie, int hgje) {
+        final int gi = g[0].length;
+        final int gj = g[0][0].length;
+        final int ri = fPad.length;
+        final int rj = fPad[0].length;
+        for (int p = 0; p < gi; p++) {
+            final int ai = i + (p - hgie);
+            if (ai < 0 || ai >= ri) {
+                continue;
+            }
+            final double[] fRow = fPad[ai];
+            for (int q = 0; q < gj; q++) {
+                final int offset = q - hgje;
+                final int jFrom = Math.max(jStart, -offset);
+                final int jTo = Math.min(jEnd, rj - offset);
+                for (int n = 0; n < g.length; n++) {
+                    final double gpq = g[n][gi - 1 - p][gj - 1 - q];
+                    final double[] rRow = rRows[n];
+                    for (int j = jFrom; j < jTo; j++) {
+                        rRow[j] += fRow[j + offset] * gpq;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the taps of each kernel {@code g[n]} to result row
+     * {@code rRows[n] = r[n][i][j]} for {@code k} from {@code kStart} to
+     * {@code kEnd}, taking each input row once for all the kernels. All taps
+     * must fall inside {@code fPad}.
+     */
+    private static void convolveInterior(double[][][] fPad, double[][][][] g, int[] sym, double[][] rRows, int i,
+            int j, int kStart, int kEnd, int hgie, int hgje, int hgke) {
+        final int gi = g[0].length;
+        final int gj = g[0][0].length;
+        for (int p = 0; p < gi; p++) {
+            final double[][] fPlane = fPad[i + p - hgie];
+            for (int q = 0; q < gj; q++) {
+                final double[] fRow = fPlane[j + q - hgje];
+                for (int n = 0; n < g.length; n++) {
+                    convolveTaps(fRow, g[n][gi - 1 - p][gj - 1 - q], sym[n], rRows[n], kStart, kEnd, hgke);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the taps of each kernel {@code g[n]} to result row
+     * {@code rRows[n] = r[n][i][j]} for {@code k} from {@code kStart} to
+     * {@code kEnd}, skipping taps which fall outside {@code fPad}.
+     */
+    private static void convolveBoundary(double[][][] fPad, double[][][][] g, double[][] rRows, int i, int j,
+            int kStart, int kEnd, int hgie, int hgje, int hgke) {
+        final int gi = g[0].length;
+        final int gj = g[0][0].length;
+        final int gk = g[0][0][0].length;
+        final int ri = fPad.length;
+        final int rj = fPad[0].length;
+        final int rk = fPad[0][0].length;
+        for (int p = 0; p < gi; p++) {
+            final int ai = i + (p - hgie);
+            if (ai < 0 || ai >= ri) {
+                continue;
+            }
+            final double[][] fPlane = fPad[ai];
+            for (int q = 0; q < gj; q++) {
+                final int aj = j + (q - hgje);
+                if (aj < 0 || aj >= rj) {
+                    continue;
+                }
+                final double[] fRow = fPlane[aj];
+                for (int s = 0; s < gk; s++) {
+                    final int offset = s - hgke;
+                    final int kFrom = Math.max(kStart, -offset);
+                    final int kTo = Math.min(kEnd, rk - offset);
+                    for (int n = 0; n < g.length; n++) {
+                        final double gpqs = g[n][gi - 1 - p][gj - 1 - q][gk - 1 - s];
+                        final double[] rRow = rRows[n];
+                        for (int k = kFrom; k < kTo; k++) {
+                            rRow[k] += fRow[k + offset] * gpqs;
+                        }
+                    }
+                }
+            }
+        }
+    }
 
     public Double[] convolve(Double[] f, Double[] g) {
         return ArrayMath.box(convolve(ArrayMath.unbox(f), ArrayMath.unbox(g)));
@@ -31,6 +31,7 @@ import java.nio.FloatBuffer;
 
 import org.apache.commons.numbers.complex.Complex;
 import org.apache.commons.numbers.complex.ComplexUtils;
+import org.apache.commons.math4.exception.OutOfRangeException;
 
 import com.ericbarnhill.arrayMath.ArrayMath;
 import com.jogamp.opencl.CLBuffer;
@@ -38,6 +39,7 @@ import com.jogamp.opencl.CLCommandQueue;
 import com.jogamp.opencl.CLContext;
 import com.jogamp.opencl.CLDevice;
 import com.jogamp.opencl.CLKernel;
+import com.jogamp.opencl.CLMemory;
 import com.jogamp.opencl.CLProgram;
 
 /**
@@ -53,9 +55,11 @@ public class ConvolverDoubleFDGPU extends ConvolverDouble {
     CLDevice device;
     CLCommandQueue queue;
     CLProgram program1d, program2d, program3d, program1dComplex, program2dComplex, program3dComplex,
-    	program21, program21Complex, program31, program31Complex;
+    	program21, program21Complex, program31, program31Complex, programVolume, programVolumeComplex;
     CLContext context;
     int localWorkSize;
+    CLKernel volumeKernel;
+    CLBuffer<FloatBuffer> clVolumeF, clVolumeG, clVolumeR;
 
 	public ConvolverDoubleFDGPU() {
 		//try {
@@ -83,6 +87,8 @@ public class ConvolverDoubleFDGPU extends ConvolverDouble {
 	        program3dComplex = context.createProgram(source3dComplex).build();
 	        program21Complex = context.createProgram(source21Complex).build();
 	        program31Complex = context.createProgram(source31Complex).build();
+	        programVolume = context.createProgram(readFile(path+"ConvolveVolume.cl")).build();
+	        programVolumeComplex = context.createProgram(readFile(path+"ConvolveVolumeComplex.cl")).build();
 			localWorkSize = min(device.getMaxWorkGroupSize(), 32);  // Local work size dimensions
 		//} catch (Exception e) {
 		//	throw new NoGPUException();
@@ -129,53 +135,25 @@ public class ConvolverDoubleFDGPU extends ConvolverDouble {
 	}
 
 	/**
-	 * Convolve 2D {@code double[][]} array with 1D {@code double[]} kernel
+	 * Convolve 2D {@code double[][]} array with 1D {@code double[]} kernel, with {@code dim} as on the CPU:
+	 * with 0 each row {@code f[i]} is convolved; with 1 the kernel runs along the first index. The
+	 * array is read on the GPU through its strides, so it is never transposed.
 	 * @param f {@code double[][]} array
 	 * @param g {@code double[]} kernel
 	 * @param dim orientation of kernel (0 or 1)
 	 * @return {@code double[][]}
 	 */
 	public double[][] convolve(double[][] f, double[] g, int dim) {
-		if (dim == 1) f = ArrayMath.shiftDim(f);
-		final int fi = f.length;
-		final int fj = f[0].length;
-		final int gi = g.length;
-		final int hgi = (int)( (gi - 1) / 2.0);
-		final int hgie = (gi % 2 == 0) ? hgi + 1 : hgi;
-		double[][] fPad = ArrayMath.zeroPadBoundaries(f, hgi, hgie, 0, 0);
-		double[][] r = ArrayMath.zeroPadBoundaries(new double[fi][fj], hgi, hgie, 0, 0);
-		final int ri = r.length;
-    	CLBuffer<FloatBuffer> clF = context.createFloatBuffer(ri*fj, READ_ONLY);
-        CLBuffer<FloatBuffer> clG = context.createFloatBuffer(gi, READ_ONLY);
-        CLBuffer<FloatBuffer> clR = context.createFloatBuffer(ri*fj, WRITE_ONLY);
-        clF.getBuffer().put(ArrayMath.double2Float(ArrayMath.vectorize(fPad))).rewind();
-        clG.getBuffer().put(ArrayMath.double2Float(g)).rewind();
-        CLKernel Kernel = program21.createCLKernel("Convolve21");
-        Kernel.putArg(clF)
-        	.putArg(clG)
-        	.putArg(clR)
-        	.putArg(ri)
-        	.putArg(fj)
-        	.putArg(gi)
-        	.putArg(hgi)
-        	.putArg(hgie);
-        queue.putWriteBuffer(clF, false)
-        	.putWriteBuffer(clG, false)
-        	.put2DRangeKernel(Kernel, 0, 0, ri, fj,0 ,0)
-        	.putReadBuffer(clR, true);
-		float[] resultVec = new float[ri*fj];
-		clR.getBuffer().get(resultVec);
-		clF.release();
-		clG.release();
-		clR.release();
-        double[][] result = ArrayMath.devectorize(ArrayMath.float2Double(resultVec), ri);
-		// if (dim == 1) result = shiftDim(result);
-		return result;
+		if (dim < 0 || dim > 1) {
+			throw new OutOfRangeException(dim, 0, 1);
+		}
+		final VolumeDouble r = convolve(new VolumeDouble(f), axisKernel(g, 1 - dim));
+		return r.toArray2d();
 	}
 
 	/**
 	 * Convolve 2D {@code double[][]} array with 1D {@code double[]} kernel.
-	 * Default orientation of kernel along first dimension
+	 * Default orientation of 0, along each row
 	 * @param f {@code double[][]} array
 	 * @param g {@code double[]} kernel
 	 * @return {@code double[][]}
@@ -184,56 +162,25 @@ public class ConvolverDoubleFDGPU extends ConvolverDouble {
 		return convolve(f, g, 0);
 	}
 	/**
-	 * Convolve 3D {@code double[][][]} array with 1D {@code double[]} kernel.
+	 * Convolve 3D {@code double[][][]} array with 1D {@code double[]} kernel, with {@code dim} as on the
+	 * CPU: with 0 each row {@code f[i][j]} is convolved; with 1 the kernel runs along the first index
+	 * and with 2 along the second. The array is read on the GPU through its strides, so it is never
+	 * transposed.
 	 * @param f {@code double[][][]} array
 	 * @param g {@code double[]} kernel
 	 * @param dim orientation of kernel (0,1, or 2)
 	 * @return {@code double[][][]}
 	 */
 	public double[][][] convolve(double[][][] f, double[] g, int dim) {
-		if (dim == 1) f = ArrayMath.shiftDim(f, 1);
-		if (dim == 2) f = ArrayMath.shiftDim(f, 2);
-		final int fi = f.length;
-		final int fj = f[0].length;
-		final int fk = f[0][0].length;
-		final int gi = g.length;
-		final int hgi = (int)( (gi - 1) / 2.0);
-		final int hgie = (gi % 2 == 0) ? hgi + 1 : hgi;
-		double[][][] fPad = ArrayMath.zeroPadBoundaries(f, hgi, hgie, 0, 0, 0, 0);
-		double[][][] r = ArrayMath.zeroPadBoundaries(new double[fi][fj][fk], hgi, hgie, 0, 0, 0, 0);
-		final int ri = r.length;
-    	CLBuffer<FloatBuffer> clF = context.createFloatBuffer(ri*fj*fk, READ_ONLY);
-        CLBuffer<FloatBuffer> clG = context.createFloatBuffer(gi, READ_ONLY);
-        CLBuffer<FloatBuffer> clR = context.createFloatBuffer(ri*fj*fk, WRITE_ONLY);
-        clF.getBuffer().put(ArrayMath.double2Float(ArrayMath.vectorize(fPad))).rewind();
-        clG.getBuffer().put(ArrayMath.double2Float(g)).rewind();
-        CLKernel Kernel = program31.createCLKernel("Convolve31");
-        Kernel.putArg(clF)
-        	.putArg(clG)
-        	.putArg(clR)
-        	.putArg(ri)
-        	.putArg(fj)
-        	.putArg(gi)
-        	.putArg(hgi)
-        	.putArg(hgie);
-        queue.putWriteBuffer(clF, false)
-        	.putWriteBuffer(clG, false)
-        	.put3DRangeKernel(Kernel, 0, 0, 0, ri, fj, fk, 0,0, 0)
-        	.putReadBuffer(clR, true);
-		float[] resultVec = new float[ri*fj*fk];
-		clR.getBuffer().get(resultVec);
-		clF.release();
-		clG.release();
-		clR.release();
-        double[][][] result = ArrayMath.devectorize(ArrayMath.float2Double(resultVec), ri, fj);
-        if (dim == 1) result = ArrayMath.shiftDim(result, 2);
-		if (dim == 2) result = ArrayMath.shiftDim(result, 1);
-		return result;
+		if (dim < 0 || dim > 2) {
+			throw new OutOfRangeException(dim, 0, 2);
+		}
+		return convolve(new VolumeDouble(f), axisKernel(g, (dim + 2) % 3)).toArray();
 	}
 
 	/**
 	 * Convolve 3D {@code double[][][]} array with 1D {@code double[]} kernel.
-	 * Default orientation of kernel along 1st dimension
+	 * Default orientation of 0, along each row
 	 * @param f {@code double[][][]} array
 	 * @param g {@code double[]} kernel
 	 * @return {@code double[][][]}
@@ -254,15 +201,20 @@ public class ConvolverDoubleFDGPU extends ConvolverDouble {
 	}
 
 	/**
-	 * Convolve 3D {@code Complex[][][]} array with 1D {@code Complex[]} kernel.
+	 * Convolve 3D {@code Complex[][][]} array with 1D {@code Complex[]} kernel, with {@code dim} as
+	 * for {@code double[][][]} arrays.
 	 * @param f {@code Complex[][][]} array
 	 * @param g {@code Complex[]} kernel
 	 * @param dim orientation of kernel (0,1, or 2)
 	 * @return {@code Complex[][][]}
 	 */
 	public Complex[][][] convolve(Complex[][][] f, Complex[] g, int dim) {
-		if (dim == 1) f = ArrayMath.shiftDim(f, 1);
-		if (dim == 2) f = ArrayMath.shiftDim(f, 2);
+		if (dim < 0 || dim > 2) {
+			throw new OutOfRangeException(dim, 0, 2);
+		}
+		final int axis = (dim + 2) % 3;
+		if (axis == 1) f = ArrayMath.shiftDim(f, 1);
+		if (axis == 2) f = ArrayMath.shiftDim(f, 2);
 		final int fi = f.length;
 		final int fj = f[0].length;
 		final int fk = f[0][0].length;
@@ -296,8 +248,8 @@ public class ConvolverDoubleFDGPU extends ConvolverDouble {
 		clG.release();
 		clR.release();
         Complex[][][] result = ArrayMath.devectorize(ComplexUtils.interleaved2Complex(resultVec), ri, fj);
-        if (dim == 1) result = ArrayMath.shiftDim(result, 2);
-		if (dim == 2) result = ArrayMath.shiftDim(result, 1);
+        if (axis == 1) result = ArrayMath.shiftDim(result, 2);
+		if (axis == 2) result = ArrayMath.shiftDim(result, 1);
 		return result;
 	}
 
@@ -410,6 +362,297 @@ public class ConvolverDoubleFDGPU extends ConvolverDouble {
         return ArrayMath.devectorize(ArrayMath.float2Double(result), ri, rj);
 	}
 
+	/**
+	 * Convolve {@code VolumeDouble} array with {@code VolumeDouble} kernel.
+	 * The backing arrays are uploaded as they are and read on the GPU through their strides,
+	 * so no padded, vectorized or transposed copies are made.
+	 * @param f {@code VolumeDouble} array
+	 * @param g {@code VolumeDouble} kernel
+	 * @return contiguous {@code VolumeDouble} of dimensions {@code f + g - 1}
+	 */
+	public VolumeDouble convolve(VolumeDouble f, VolumeDouble g) {
+		return convolve(f, g, OutputMode.FULL);
+	}
+
+	/**
+	 * Convolve {@code VolumeDouble} array with {@code VolumeDouble} kernel into a caller-supplied result,
+	 * which may be a strided view. The device buffers and kernel are kept by the convolver and reused
+	 * while the sizes stay the same, so {@code workspace} is not used and may be {@code null}.
+	 * @param f {@code VolumeDouble} array
+	 * @param g {@code VolumeDouble} kernel
+	 * @param r {@code VolumeDouble} result of dimensions {@code f + g - 1}
+	 * @param workspace scratch buffers
+	 */
+	public void convolveInto(VolumeDouble f, VolumeDouble g, VolumeDouble r, Workspace workspace) {
+		convolveInto(f, g, OutputMode.FULL, r, workspace);
+	}
+
+	/**
+	 * Convolve {@code VolumeDouble} array with {@code VolumeDouble} kernel, computing only the part of the result
+	 * selected by {@code mode}. Only that part is allocated, read back, and given GPU threads.
+	 * @param f {@code VolumeDouble} array
+	 * @param g {@code VolumeDouble} kernel
+	 * @param mode part of the result to compute
+	 * @return contiguous {@code VolumeDouble} of the dimensions given by {@code mode}
+	 */
+	public VolumeDouble convolve(VolumeDouble f, VolumeDouble g, OutputMode mode) {
+		final VolumeDouble r = new VolumeDouble(mode.length(f.ni, g.ni), mode.length(f.nj, g.nj),
+				mode.length(f.nk, g.nk));
+		convolveInto(f, g, mode, r, null);
+		return r;
+	}
+
+	/**
+	 * Convolve {@code VolumeDouble} array with {@code VolumeDouble} kernel into a caller-supplied result,
+	 * which may be a strided view, computing only the part selected by {@code mode}.
+	 * @param f {@code VolumeDouble} array
+	 * @param g {@code VolumeDouble} kernel
+	 * @param mode part of the result to compute
+	 * @param r {@code VolumeDouble} result of the dimensions given by {@code mode}
+	 * @param workspace scratch buffers
+	 */
+	public void convolveInto(VolumeDouble f, VolumeDouble g, OutputMode mode, VolumeDouble r, Workspace workspace) {
+		convolveInto(f, g, mode, Boundaries.Condition.ZERO, r, workspace);
+	}
+
+	/**
+	 * Convolve {@code VolumeDouble} array with {@code VolumeDouble} kernel, extending the array past its edges by
+	 * {@code condition}.
+	 * @param f {@code VolumeDouble} array
+	 * @param g {@code VolumeDouble} kernel
+	 * @param mode part of the result to compute
+	 * @param condition how {@code f} is extended past its edges
+	 * @return contiguous {@code VolumeDouble} of the dimensions given by {@code mode}
+	 */
+	public VolumeDouble convolve(VolumeDouble f, VolumeDouble g, OutputMode mode, Boundaries.Condition condition) {
+		final VolumeDouble r = new VolumeDouble(mode.length(f.ni, g.ni), mode.length(f.nj, g.nj),
+				mode.length(f.nk, g.nk));
+		convolveInto(f, g, mode, condition, r, null);
+		return r;
+	}
+
+	/**
+	 * Convolve {@code VolumeDouble} array with {@code VolumeDouble} kernel into a caller-supplied result,
+	 * which may be a strided view, extending the array past its edges by {@code condition}. Taps which fall
+	 * outside {@code f} are remapped on the device, so no padded copy is uploaded.
+	 * @param f {@code VolumeDouble} array
+	 * @param g {@code VolumeDouble} kernel
+	 * @param mode part of the result to compute
+	 * @param condition how {@code f} is extended past its edges
+	 * @param r {@code VolumeDouble} result of the dimensions given by {@code mode}
+	 * @param workspace scratch buffers
+	 */
+	public void convolveInto(VolumeDouble f, VolumeDouble g, OutputMode mode, Boundaries.Condition condition,
+			VolumeDouble r, Workspace workspace) {
+		checkResultLength(r.ni, f.ni, g.ni, mode);
+		checkResultLength(r.nj, f.nj, g.nj, mode);
+		checkResultLength(r.nk, f.nk, g.nk, mode);
+		convolveVolume(f, g, mode.offset(g.ni), mode.offset(g.nj), mode.offset(g.nk), condition.ordinal(), 1, 1, 1,
+				r);
+	}
+
+	/**
+	 * Convolve {@code VolumeDouble} array with {@code VolumeDouble} kernel dilated by {@code (di, dj, dk)}, as if
+	 * {@code d - 1} zeros stood between its taps along each axis. Only the real taps are applied.
+	 * @param f {@code VolumeDouble} array
+	 * @param g {@code VolumeDouble} kernel
+	 * @param di dilation along the first axis
+	 * @param dj dilation along the second axis
+	 * @param dk dilation along the third axis
+	 * @param mode part of the result to compute, for the dilated kernel
+	 * @return contiguous {@code VolumeDouble} of the dimensions given by {@code mode}
+	 */
+	public VolumeDouble convolveDilated(VolumeDouble f, VolumeDouble g, int di, int dj, int dk, OutputMode mode) {
+		final VolumeDouble r = new VolumeDouble(mode.length(f.ni, dilatedLength(g.ni, di)),
+				mode.length(f.nj, dilatedLength(g.nj, dj)), mode.length(f.nk, dilatedLength(g.nk, dk)));
+		convolveDilatedInto(f, g, di, dj, dk, mode, r);
+		return r;
+	}
+
+	/**
+	 * Convolve {@code VolumeDouble} array with {@code VolumeDouble} kernel dilated by {@code (di, dj, dk)} into a
+	 * caller-supplied result, which may be a strided view.
+	 * @param f {@code VolumeDouble} array
+	 * @param g {@code VolumeDouble} kernel
+	 * @param di dilation along the first axis
+	 * @param dj dilation along the second axis
+	 * @param dk dilation along the third axis
+	 * @param mode part of the result to compute, for the dilated kernel
+	 * @param r {@code VolumeDouble} result of the dimensions given by {@code mode}
+	 */
+	public void convolveDilatedInto(VolumeDouble f, VolumeDouble g, int di, int dj, int dk, OutputMode mode,
+			VolumeDouble r) {
+		final int gei = dilatedLength(g.ni, di);
+		final int gej = dilatedLength(g.nj, dj);
+		final int gek = dilatedLength(g.nk, dk);
+		checkResultLength(r.ni, f.ni, gei, mode);
+		checkResultLength(r.nj, f.nj, gej, mode);
+		checkResultLength(r.nk, f.nk, gek, mode);
+		convolveVolume(f, g, mode.offset(gei), mode.offset(gej), mode.offset(gek), Boundaries.Condition.ZERO.ordinal(),
+				di, dj, dk, r);
+	}
+
+	/**
+	 * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]} kernel dilated by {@code (di, dj, dk)}.
+	 * @param f {@code double[][][]} array
+	 * @param g {@code double[][][]} kernel
+	 * @param di dilation along the first axis
+	 * @param dj dilation along the second axis
+	 * @param dk dilation along the third axis
+	 * @param mode part of the result to compute, for the dilated kernel
+	 * @return {@code double[][][]}
+	 */
+	public double[][][] convolveDilated(double[][][] f, double[][][] g, int di, int dj, int dk, OutputMode mode) {
+		return convolveDilated(new VolumeDouble(f), new VolumeDouble(g), di, dj, dk, mode).toArray();
+	}
+
+	/**
+	 * Runs the volume kernel, which computes result element {@code (i, j, k)} as element
+	 * {@code (i + oi, j + oj, k + ok)} of the full convolution of {@code f} with {@code g} dilated by
+	 * {@code (di, dj, dk)}, extending {@code f} by the boundary condition with ordinal {@code boundary}.
+	 */
+	private void convolveVolume(VolumeDouble f, VolumeDouble g, int oi, int oj, int ok, int boundary, int di, int dj,
+			int dk, VolumeDouble r) {
+		final int ri = r.ni;
+		final int rj = r.nj;
+		final int rk = r.nk;
+        clVolumeF = reuseBuffer(clVolumeF, f.data.length, READ_ONLY);
+        clVolumeG = reuseBuffer(clVolumeG, g.data.length, READ_ONLY);
+        clVolumeR = reuseBuffer(clVolumeR, ri*rj*rk, WRITE_ONLY);
+        final FloatBuffer fBuffer = clVolumeF.getBuffer();
+        for (double v : f.data) {
+        	fBuffer.put((float) v);
+        }
+        fBuffer.rewind();
+        final FloatBuffer gBuffer = clVolumeG.getBuffer();
+        for (double v : g.data) {
+        	gBuffer.put((float) v);
+        }
+        gBuffer.rewind();
+        if (volumeKernel == null) {
+        	volumeKernel = programVolume.createCLKernel("ConvolveVolume");
+        }
+        volumeKernel.rewind()
+        	.putArg(clVolumeF)
+        	.putArg(clVolumeG)
+        	.putArg(clVolumeR)
+        	.putArg(f.ni).putArg(f.nj).putArg(f.nk)
+        	.putArg(f.offset).putArg(f.si).putArg(f.sj).putArg(f.sk)
+        	.putArg(g.ni).putArg(g.nj).putArg(g.nk)
+        	.putArg(g.offset).putArg(g.si).putArg(g.sj).putArg(g.sk)
+        	.putArg(ri).putArg(rj).putArg(rk)
+        	.putArg(oi).putArg(oj).putArg(ok)
+        	.putArg(boundary).putArg(di).putArg(dj).putArg(dk);
+        queue.putWriteBuffer(clVolumeF, false)
+        	.putWriteBuffer(clVolumeG, false)
+        	.put3DRangeKernel(volumeKernel, 0, 0, 0, ri, rj, rk, 0, 0, 0)
+        	.putReadBuffer(clVolumeR, true);
+		final FloatBuffer rBuffer = clVolumeR.getBuffer();
+		for (int i = 0; i < ri; i++) {
+			for (int j = 0; j < rj; j++) {
+				for (int k = 0; k < rk; k++) {
+					r.data[r.index(i, j, k)] = rBuffer.get((i*rj + j)*rk + k);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Convolve 1D {@code double[]} array with 1D {@code double[]} kernel, computing only the part of the
+	 * result selected by {@code mode}.
+	 * @param f {@code double[]} array
+	 * @param g {@code double[]} kernel
+	 * @param mode part of the result to compute
+	 * @return {@code double[]}
+	 */
+	public double[] convolve(double[] f, double[] g, OutputMode mode) {
+		return convolve(new VolumeDouble(f), new VolumeDouble(g), mode).toArray1d();
+	}
+
+	/**
+	 * Convolve 2D {@code double[][]} array with 2D {@code double[][]} kernel, computing only the part of the
+	 * result selected by {@code mode}.
+	 * @param f {@code double[][]} array
+	 * @param g {@code double[][]} kernel
+	 * @param mode part of the result to compute
+	 * @return {@code double[][]}
+	 */
+	public double[][] convolve(double[][] f, double[][] g, OutputMode mode) {
+		return convolve(new VolumeDouble(f), new VolumeDouble(g), mode).toArray2d();
+	}
+
+	/**
+	 * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]} kernel, computing only the part of the
+	 * result selected by {@code mode}.
+	 * @param f {@code double[][][]} array
+	 * @param g {@code double[][][]} kernel
+	 * @param mode part of the result to compute
+	 * @return {@code double[][][]}
+	 */
+	public double[][][] convolve(double[][][] f, double[][][] g, OutputMode mode) {
+		return convolve(new VolumeDouble(f), new VolumeDouble(g), mode).toArray();
+	}
+
+	/**
+	 * Convolve 1D {@code double[]} array with 1D {@code double[]} kernel, extending the array past its
+	 * edges by {@code condition}.
+	 * @param f {@code double[]} array
+	 * @param g {@code double[]} kernel
+	 * @param mode part of the result to compute
+	 * @param condition how {@code f} is extended past its edges
+	 * @return {@code double[]}
+	 */
+	public double[] convolve(double[] f, double[] g, OutputMode mode, Boundaries.Condition condition) {
+		return convolve(new VolumeDouble(f), new VolumeDouble(g), mode, condition).toArray1d();
+	}
+
+	/**
+	 * Convolve 2D {@code double[][]} array with 2D {@code double[][]} kernel, extending the array past its
+	 * edges by {@code condition}.
+	 * @param f {@code double[][]} array
+	 * @param g {@code double[][]} kernel
+	 * @param mode part of the result to compute
+	 * @param condition how {@code f} is extended past its edges
+	 * @return {@code double[][]}
+	 */
+	public double[][] convolve(double[][] f, double[][] g, OutputMode mode, Boundaries.Condition condition) {
+		return convolve(new VolumeDouble(f), new VolumeDouble(g), mode, condition).toArray2d();
+	}
+
+	/**
+	 * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]} kernel, extending the array past its
+	 * edges by {@code condition}.
+	 * @param f {@code double[][][]} array
+	 * @param g {@code double[][][]} kernel
+	 * @param mode part of the result to compute
+	 * @param condition how {@code f} is extended past its edges
+	 * @return {@code double[][][]}
+	 */
+	public double[][][] convolve(double[][][] f, double[][][] g, OutputMode mode, Boundaries.Condition condition) {
+		return convolve(new VolumeDouble(f), new VolumeDouble(g), mode, condition).toArray();
+	}
+
+	/**
+	 * @return {@code g} as a volume which extends along {@code axis} (0, 1 or 2) only
+	 */
+	private static VolumeDouble axisKernel(double[] g, int axis) {
+		final int gl = g.length;
+		return new VolumeDouble(g, axis == 0 ? gl : 1, axis == 1 ? gl : 1, axis == 2 ? gl : 1);
+	}
+
+	/**
+	 * @return {@code buffer} if it holds exactly {@code size} floats, otherwise a new buffer replacing it
+	 */
+	private CLBuffer<FloatBuffer> reuseBuffer(CLBuffer<FloatBuffer> buffer, int size, CLMemory.Mem flag) {
+		if (buffer != null) {
+			if (buffer.getBuffer().capacity() == size) {
+				return buffer;
+			}
+			buffer.release();
+		}
+		return context.createFloatBuffer(size, flag);
+	}
+
 	/**
 	 * Should be called as destructor method.
 	 */
@@ -23,6 +23,8 @@
  */
 package com.ericbarnhill.jvcl;
 
+import java.util.Arrays;
+
 import org.apache.commons.numbers.complex.Complex;
 import org.apache.commons.numbers.complex.ComplexUtils;
 
@@ -147,6 +149,106 @@ public class ConvolverDoubleFTCPU extends ConvolverDouble {
         return ArrayMath.box(convolve(ArrayMath.unbox(f), ArrayMath.unbox(g)));
     }
 
-}
+	/**
+	 * Convolve {@code VolumeDouble} array with {@code VolumeDouble} g.
+	 * Both volumes are read through their strides straight into interleaved FFT buffers.
+	 * @param f {@code VolumeDouble} array
+	 * @param g {@code VolumeDouble} g
+	 * @return contiguous {@code VolumeDouble} of dimensions {@code f + g - 1}
+	 */
+	public VolumeDouble convolve(VolumeDouble f, VolumeDouble g) {
+		return convolve(f, g, OutputMode.FULL);
+	}
+
+	/**
+	 * Convolve {@code VolumeDouble} array with {@code VolumeDouble} g into a caller-supplied result, which may be a
+	 * strided view. The FFT buffers and plan are kept in {@code workspace}, so repeated convolutions of
+	 * same-sized volumes allocate no buffers.
+	 * @param f {@code VolumeDouble} array
+	 * @param g {@code VolumeDouble} g
+	 * @param r {@code VolumeDouble} result of dimensions {@code f + g - 1}
+	 * @param workspace scratch buffers
+	 */
+	public void convolveInto(VolumeDouble f, VolumeDouble g, VolumeDouble r, Workspace workspace) {
+		convolveInto(f, g, OutputMode.FULL, r, workspace);
+	}
+
+	/**
+	 * Convolve {@code VolumeDouble} array with {@code VolumeDouble} g, keeping only the part of the result selected
+	 * by {@code mode}. The transforms are only as long as that part needs.
+	 * @param f {@code VolumeDouble} array
+	 * @param g {@code VolumeDouble} g
+	 * @param mode part of the result to compute
+	 * @return contiguous {@code VolumeDouble} of the dimensions given by {@code mode}
+	 */
+	public VolumeDouble convolve(VolumeDouble f, VolumeDouble g, OutputMode mode) {
+		final VolumeDouble r = new VolumeDouble(mode.length(f.ni, g.ni), mode.length(f.nj, g.nj),
+				mode.length(f.nk, g.nk));
+		convolveInto(f, g, mode, r, new Workspace());
+		return r;
+	}
+
+	/**
+	 * Convolve {@code VolumeDouble} array with {@code VolumeDouble} g into a caller-supplied result, which may be a
+	 * strided view, keeping only the part selected by {@code mode}.
+	 * @param f {@code VolumeDouble} array
+	 * @param g {@code VolumeDouble} g
+	 * @param mode part of the result to compute
+	 * @param r {@code VolumeDouble} result of the dimensions given by {@code mode}
+	 * @param workspace scratch buffers
+	 */
+	public void convolveInto(VolumeDouble f, VolumeDouble g, OutputMode mode, VolumeDouble r, Workspace workspace) {
+		checkResultLength(r.ni, f.ni, g.ni, mode);
+		checkResultLength(r.nj, f.nj, g.nj, mode);
+		checkResultLength(r.nk, f.nk, g.nk, mode);
+		final int ti = ConvolverComplexFTCPU.transformLength(f.ni, g.ni, mode);
+		final int tj = ConvolverComplexFTCPU.transformLength(f.nj, g.nj, mode);
+		final int tk = ConvolverComplexFTCPU.transformLength(f.nk, g.nk, mode);
+		final double[] v = workspace.getDoubles(0, 2*ti*tj*tk);
+		final double[] k = workspace.getDoubles(1, 2*ti*tj*tk);
+		Arrays.fill(v, 0);
+		Arrays.fill(k, 0);
+		ConvolverComplexFTCPU.interleave(f.data, null, f, v, tj, tk);
+		ConvolverComplexFTCPU.interleave(g.data, null, g, k, tj, tk);
+		ConvolverComplexFTCPU.multiplyTransforms(v, k, ti, tj, tk, workspace);
+		ConvolverComplexFTCPU.deinterleave(v, tj, tk, mode.offset(g.ni), mode.offset(g.nj), mode.offset(g.nk),
+				r.data, null, r);
+	}
+
+	/**
+	 * Convolve 1D {@code double[]} array with 1D {@code double[]} g, keeping only the part of the result
+	 * selected by {@code mode}.
+	 * @param f {@code double[]} array
+	 * @param g {@code double[]} g
+	 * @param mode part of the result to compute
+	 * @return {@code double[]}
+	 */
+	public double[] convolve(double[] f, double[] g, OutputMode mode) {
+		return convolve(new VolumeDouble(f), new VolumeDouble(g), mode).toArray1d();
+	}
 
+	/**
+	 * Convolve 2D {@code double[][]} array with 2D {@code double[][]} g, keeping only the part of the result
+	 * selected by {@code mode}.
+	 * @param f {@code double[][]} array
+	 * @param g {@code double[][]} g
+	 * @param mode part of the result to compute
+	 * @return {@code double[][]}
+	 */
+	public double[][] convolve(double[][] f, double[][] g, OutputMode mode) {
+		return convolve(new VolumeDouble(f), new VolumeDouble(g), mode).toArray2d();
+	}
 
+	/**
+	 * Convolve 3D {@code double[][][]} array with 3D {@code double[][][]} g, keeping only the part of the
+	 * result selected by {@code mode}.
+	 * @param f {@code double[][][]} array
+	 * @param g {@code double[][][]} g
+	 * @param mode part of the result to compute
+	 * @return {@code double[][][]}
+	 */
+	public double[][][] convolve(double[][][] f, double[][][] g, OutputMode mode) {
+		return convolve(new VolumeDouble(f), new VolumeDouble(g), mode).toArray();
+	}
+
+}
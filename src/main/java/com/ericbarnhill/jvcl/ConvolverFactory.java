@@ -51,6 +51,24 @@ public class ConvolverFactory {
         }
         throw new RuntimeException("JVCL: Type error in convolver"); 
     }
+
+    /**
+     * Returns a convolver which splits large convolutions across {@code threads} threads.
+     * Only the FDCPU convolvers are multi-threaded; other types ignore the thread count.
+     */
+    public Convolver getConvolver(DataType dataType, ConvolutionType convolutionType, int threads) {
+        if (convolutionType == ConvolutionType.FDCPU) {
+            switch (dataType) {
+                case FLOAT:
+                    return new ConvolverFloatFDCPU(threads);
+                case DOUBLE:
+                    return new ConvolverDoubleFDCPU(threads);
+                case COMPLEX:
+                    return new ConvolverComplexFDCPU(threads);
+            }
+        }
+        return getConvolver(dataType, convolutionType);
+    }
 }
 
         
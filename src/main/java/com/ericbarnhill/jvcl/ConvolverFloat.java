@@ -13,5 +13,81 @@ abstract class ConvolverFloat extends Convolver<Float> {
     abstract Float[][][] convolve(Float[][][] f, Float[][] g);
     abstract Float[][][] convolve(Float[][][] f, Float[][][] g);
 
+    abstract VolumeFloat convolve(VolumeFloat f, VolumeFloat g);
+    abstract void convolveInto(VolumeFloat f, VolumeFloat g, VolumeFloat r, Workspace workspace);
+
+    abstract float[] convolve(float[] f, float[] g, OutputMode mode);
+    abstract float[][] convolve(float[][] f, float[][] g, OutputMode mode);
+    abstract float[][][] convolve(float[][][] f, float[][][] g, OutputMode mode);
+    abstract VolumeFloat convolve(VolumeFloat f, VolumeFloat g, OutputMode mode);
+    abstract void convolveInto(VolumeFloat f, VolumeFloat g, OutputMode mode, VolumeFloat r, Workspace workspace);
+
+    /**
+     * Convolve 1D {@code float[]} array with 1D {@code float[]} kernel, keeping
+     * only every {@code stride}-th output of the full result, starting at the
+     * first. This computes the full result and subsamples it; convolvers
+     * which can evaluate only the kept outputs override it.
+     */
+    float[] convolveStrided(float[] f, float[] g, int stride) {
+        final float[] full = convolve(f, g, OutputMode.FULL);
+        final float[] r = new float[stridedLength(f.length, g.length, stride)];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = full[i * stride];
+        }
+        return r;
+    }
+
+    /**
+     * Convolve 2D {@code float[][]} array with 2D {@code float[][]} kernel,
+     * keeping only every {@code si}-th, {@code sj}-th output of the full
+     * result along each axis.
+     */
+    float[][] convolveStrided(float[][] f, float[][] g, int si, int sj) {
+        final float[][] full = convolve(f, g, OutputMode.FULL);
+        final float[][] r = new float[stridedLength(f.length, g.length, si)][stridedLength(f[0].length,
+                g[0].length, sj)];
+        for (int i = 0; i < r.length; i++) {
+            for (int j = 0; j < r[0].length; j++) {
+                r[i][j] = full[i * si][j * sj];
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Convolve 3D {@code float[][][]} array with 3D {@code float[][][]} kernel,
+     * keeping only every {@code si}-th, {@code sj}-th, {@code sk}-th output
+     * of the full result along each axis.
+     */
+    float[][][] convolveStrided(float[][][] f, float[][][] g, int si, int sj, int sk) {
+        final float[][][] full = convolve(f, g, OutputMode.FULL);
+        final float[][][] r = new float[stridedLength(f.length, g.length, si)][stridedLength(f[0].length,
+                g[0].length, sj)][stridedLength(f[0][0].length, g[0][0].length, sk)];
+        for (int i = 0; i < r.length; i++) {
+            for (int j = 0; j < r[0].length; j++) {
+                for (int k = 0; k < r[0][0].length; k++) {
+                    r[i][j][k] = full[i * si][j * sj][k * sk];
+                }
+            }
+        }
+        return r;
+    }
+
+    Volume<Float> convolve(Volume<Float> f, Volume<Float> g) {
+        return convolve((VolumeFloat) f, (VolumeFloat) g);
+    }
+
+    void convolveInto(Volume<Float> f, Volume<Float> g, Volume<Float> r, Workspace workspace) {
+        convolveInto((VolumeFloat) f, (VolumeFloat) g, (VolumeFloat) r, workspace);
+    }
+
+    Volume<Float> convolve(Volume<Float> f, Volume<Float> g, OutputMode mode) {
+        return convolve((VolumeFloat) f, (VolumeFloat) g, mode);
+    }
+
+    void convolveInto(Volume<Float> f, Volume<Float> g, OutputMode mode, Volume<Float> r, Workspace workspace) {
+        convolveInto((VolumeFloat) f, (VolumeFloat) g, mode, (VolumeFloat) r, workspace);
+    }
+
 
 }
@@ -23,6 +23,8 @@
  */
 package com.ericbarnhill.jvcl;
 
+import java.util.Arrays;
+
 import org.apache.commons.numbers.complex.Complex;
 import org.apache.commons.numbers.complex.ComplexUtils;
 
@@ -109,7 +111,106 @@ public class ConvolverFloatFTCPU extends ConvolverFloat {
         return ArrayMath.box(convolve(ArrayMath.unbox(f), ArrayMath.unbox(g)));
     }
 
+	/**
+	 * Convolve {@code VolumeFloat} array with {@code VolumeFloat} g.
+	 * Both volumes are read through their strides straight into interleaved FFT buffers.
+	 * @param f {@code VolumeFloat} array
+	 * @param g {@code VolumeFloat} g
+	 * @return contiguous {@code VolumeFloat} of dimensions {@code f + g - 1}
+	 */
+	public VolumeFloat convolve(VolumeFloat f, VolumeFloat g) {
+		return convolve(f, g, OutputMode.FULL);
+	}
 
-}
+	/**
+	 * Convolve {@code VolumeFloat} array with {@code VolumeFloat} g into a caller-supplied result, which may be a
+	 * strided view. The FFT buffers and plan are kept in {@code workspace}, so repeated convolutions of
+	 * same-sized volumes allocate no buffers.
+	 * @param f {@code VolumeFloat} array
+	 * @param g {@code VolumeFloat} g
+	 * @param r {@code VolumeFloat} result of dimensions {@code f + g - 1}
+	 * @param workspace scratch buffers
+	 */
+	public void convolveInto(VolumeFloat f, VolumeFloat g, VolumeFloat r, Workspace workspace) {
+		convolveInto(f, g, OutputMode.FULL, r, workspace);
+	}
 
+	/**
+	 * Convolve {@code VolumeFloat} array with {@code VolumeFloat} g, keeping only the part of the result selected
+	 * by {@code mode}. The transforms are only as long as that part needs.
+	 * @param f {@code VolumeFloat} array
+	 * @param g {@code VolumeFloat} g
+	 * @param mode part of the result to compute
+	 * @return contiguous {@code VolumeFloat} of the dimensions given by {@code mode}
+	 */
+	public VolumeFloat convolve(VolumeFloat f, VolumeFloat g, OutputMode mode) {
+		final VolumeFloat r = new VolumeFloat(mode.length(f.ni, g.ni), mode.length(f.nj, g.nj),
+				mode.length(f.nk, g.nk));
+		convolveInto(f, g, mode, r, new Workspace());
+		return r;
+	}
+
+	/**
+	 * Convolve {@code VolumeFloat} array with {@code VolumeFloat} g into a caller-supplied result, which may be a
+	 * strided view, keeping only the part selected by {@code mode}.
+	 * @param f {@code VolumeFloat} array
+	 * @param g {@code VolumeFloat} g
+	 * @param mode part of the result to compute
+	 * @param r {@code VolumeFloat} result of the dimensions given by {@code mode}
+	 * @param workspace scratch buffers
+	 */
+	public void convolveInto(VolumeFloat f, VolumeFloat g, OutputMode mode, VolumeFloat r, Workspace workspace) {
+		checkResultLength(r.ni, f.ni, g.ni, mode);
+		checkResultLength(r.nj, f.nj, g.nj, mode);
+		checkResultLength(r.nk, f.nk, g.nk, mode);
+		final int ti = ConvolverComplexFTCPU.transformLength(f.ni, g.ni, mode);
+		final int tj = ConvolverComplexFTCPU.transformLength(f.nj, g.nj, mode);
+		final int tk = ConvolverComplexFTCPU.transformLength(f.nk, g.nk, mode);
+		final double[] v = workspace.getDoubles(0, 2*ti*tj*tk);
+		final double[] k = workspace.getDoubles(1, 2*ti*tj*tk);
+		Arrays.fill(v, 0);
+		Arrays.fill(k, 0);
+		ConvolverComplexFTCPU.interleave(f.data, f, v, tj, tk);
+		ConvolverComplexFTCPU.interleave(g.data, g, k, tj, tk);
+		ConvolverComplexFTCPU.multiplyTransforms(v, k, ti, tj, tk, workspace);
+		ConvolverComplexFTCPU.deinterleave(v, tj, tk, mode.offset(g.ni), mode.offset(g.nj), mode.offset(g.nk),
+				r.data, r);
+	}
 
+	/**
+	 * Convolve 1D {@code float[]} array with 1D {@code float[]} g, keeping only the part of the result
+	 * selected by {@code mode}.
+	 * @param f {@code float[]} array
+	 * @param g {@code float[]} g
+	 * @param mode part of the result to compute
+	 * @return {@code float[]}
+	 */
+	public float[] convolve(float[] f, float[] g, OutputMode mode) {
+		return convolve(new VolumeFloat(f), new VolumeFloat(g), mode).toArray1d();
+	}
+
+	/**
+	 * Convolve 2D {@code float[][]} array with 2D {@code float[][]} g, keeping only the part of the result
+	 * selected by {@code mode}.
+	 * @param f {@code float[][]} array
+	 * @param g {@code float[][]} g
+	 * @param mode part of the result to compute
+	 * @return {@code float[][]}
+	 */
+	public float[][] convolve(float[][] f, float[][] g, OutputMode mode) {
+		return convolve(new VolumeFloat(f), new VolumeFloat(g), mode).toArray2d();
+	}
+
+	/**
+	 * Convolve 3D {@code float[][][]} array with 3D {@code float[][][]} g, keeping only the part of the
+	 * result selected by {@code mode}.
+	 * @param f {@code float[][][]} array
+	 * @param g {@code float[][][]} g
+	 * @param mode part of the result to compute
+	 * @return {@code float[][][]}
+	 */
+	public float[][][] convolve(float[][][] f, float[][][] g, OutputMode mode) {
+		return convolve(new VolumeFloat(f), new VolumeFloat(g), mode).toArray();
+	}
+
+}
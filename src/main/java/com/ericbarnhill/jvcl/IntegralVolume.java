@@ -0,0 +1,448 @@
+/*
+ * (c) Eric Barnhill 2016 All Rights Reserved.
+ *
+ * This file is part of the Java Volumetric Convolution Library (JVCL). JVCL is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * JVCL is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with JVCL.  If not, see http://www.gnu.org/licenses/ .
+ *
+ * This code uses software from the Apache Software Foundation.
+ * The Apache Software License can be found at: http://www.apache.org/licenses/LICENSE-2.0.txt .
+ *
+ * This code uses software from the JogAmp project.
+ * Jogamp information and software license can be found at: https://jogamp.org/ .
+ *
+ * This code uses methods from the JTransforms package by Piotr Wendykier.
+ * JTransforms information and software license can be found at: https://github.com/wendykierp/JTransforms .
+ *
+ */
+
+package com.ericbarnhill.jvcl;
+
+/**
+ * This class holds the integral volume (3D summed-area table) of an array, from which the sum of
+ * any box is read in 8 lookups whatever its size. Local mean, variance, standard deviation and
+ * energy filters are built on it, so several window sizes are answered from one table rather
+ * than by a box convolution each. The array is extended past its edges by zeros, as in
+ * {@link Boundaries.Condition#ZERO}, so that a local mean equals the convolution with a box
+ * kernel of weights {@code 1 / (wi * wj * wk)}, and the result has the dimensions given by an
+ * {@link OutputMode} for a kernel of the size of the window.
+ * <p>
+ * Sums are accumulated in {@code double} after subtracting the mean of the array, which keeps the
+ * sums of squares, and so the variances, accurate for arrays with a large offset.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ * @see ConvolverDoubleFDCPU
+ */
+public class IntegralVolume {
+
+    final int ni, nj, nk;
+    /** mean of the array, subtracted before accumulating */
+    final double shift;
+    /** sums of {@code f - shift} over {@code [0, i) * [0, j) * [0, k)} at {@code (i * (nj + 1) + j) * (nk + 1) + k} */
+    final double[] sum;
+    /** sums of {@code (f - shift)^2}, laid out as {@code sum} */
+    final double[] sumSq;
+
+    /**
+     * @param f
+     *            {@code double[][][]} array
+     */
+    public IntegralVolume(double[][][] f) {
+        ni = f.length;
+        nj = f[0].length;
+        nk = f[0][0].length;
+        double total = 0;
+        for (double[][] fPlane : f) {
+            for (double[] fRow : fPlane) {
+                for (double v : fRow) {
+                    total += v;
+                }
+            }
+        }
+        shift = total / ((double) ni * nj * nk);
+        sum = new double[(ni + 1) * (nj + 1) * (nk + 1)];
+        sumSq = new double[sum.length];
+        for (int i = 0; i < ni; i++) {
+            for (int j = 0; j < nj; j++) {
+                final int base = index(i + 1, j + 1, 1);
+                for (int k = 0; k < nk; k++) {
+                    final double v = f[i][j][k] - shift;
+                    sum[base + k] = v;
+                    sumSq[base + k] = v * v;
+                }
+            }
+        }
+        accumulate(sum);
+        accumulate(sumSq);
+    }
+
+    /**
+     * @param f
+     *            {@code float[][][]} array, accumulated in {@code double}
+     */
+    public IntegralVolume(float[][][] f) {
+        ni = f.length;
+        nj = f[0].length;
+        nk = f[0][0].length;
+        double total = 0;
+        for (float[][] fPlane : f) {
+            for (float[] fRow : fPlane) {
+                for (float v : fRow) {
+                    total += v;
+                }
+            }
+        }
+        shift = total / ((double) ni * nj * nk);
+        sum = new double[(ni + 1) * (nj + 1) * (nk + 1)];
+        sumSq = new double[sum.length];
+        for (int i = 0; i < ni; i++) {
+            for (int j = 0; j < nj; j++) {
+                final int base = index(i + 1, j + 1, 1);
+                for (int k = 0; k < nk; k++) {
+                    final double v = f[i][j][k] - shift;
+                    sum[base + k] = v;
+                    sumSq[base + k] = v * v;
+                }
+            }
+        }
+        accumulate(sum);
+        accumulate(sumSq);
+    }
+
+    private int index(int i, int j, int k) {
+        return (i * (nj + 1) + j) * (nk + 1) + k;
+    }
+
+    /**
+     * Turns the values of table {@code s} into running sums along k, then j,
+     * then i.
+     */
+    private void accumulate(double[] s) {
+        final int sj = nk + 1;
+        final int si = (nj + 1) * sj;
+        for (int i = 1; i <= ni; i++) {
+            for (int j = 1; j <= nj; j++) {
+                final int base = index(i, j, 0);
+                for (int k = 1; k <= nk; k++) {
+                    s[base + k] += s[base + k - 1];
+                }
+            }
+        }
+        for (int i = 1; i <= ni; i++) {
+            for (int j = 1; j <= nj; j++) {
+                final int base = index(i, j, 0);
+                for (int k = 1; k <= nk; k++) {
+                    s[base + k] += s[base + k - sj];
+                }
+            }
+        }
+        for (int i = 1; i <= ni; i++) {
+            for (int j = 1; j <= nj; j++) {
+                final int base = index(i, j, 0);
+                for (int k = 1; k <= nk; k++) {
+                    s[base + k] += s[base + k - si];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return sum of table {@code s} over the box
+     *         {@code [i0, i1) * [j0, j1) * [k0, k1)}, all inside the array
+     */
+    private double box(double[] s, int i0, int i1, int j0, int j1, int k0, int k1) {
+        final int b11 = index(i1, j1, 0);
+        final int b01 = index(i0, j1, 0);
+        final int b10 = index(i1, j0, 0);
+        final int b00 = index(i0, j0, 0);
+        return s[b11 + k1] - s[b01 + k1] - s[b10 + k1] + s[b00 + k1]
+                - (s[b11 + k0] - s[b01 + k0] - s[b10 + k0] + s[b00 + k0]);
+    }
+
+    /**
+     * @return sum of the array over the box
+     *         {@code [i0, i1) * [j0, j1) * [k0, k1)}; elements of the box
+     *         outside the array count as zero
+     */
+    public double sum(int i0, int i1, int j0, int j1, int k0, int k1) {
+        i0 = Math.max(i0, 0);
+        j0 = Math.max(j0, 0);
+        k0 = Math.max(k0, 0);
+        i1 = Math.min(i1, ni);
+        j1 = Math.min(j1, nj);
+        k1 = Math.min(k1, nk);
+        if (i1 <= i0 || j1 <= j0 || k1 <= k0) {
+            return 0;
+        }
+        return box(sum, i0, i1, j0, j1, k0, k1) + shift * (i1 - i0) * (j1 - j0) * (k1 - k0);
+    }
+
+    /**
+     * @return sum of the squares of the array over the box
+     *         {@code [i0, i1) * [j0, j1) * [k0, k1)}; elements of the box
+     *         outside the array count as zero
+     */
+    public double sumOfSquares(int i0, int i1, int j0, int j1, int k0, int k1) {
+        i0 = Math.max(i0, 0);
+        j0 = Math.max(j0, 0);
+        k0 = Math.max(k0, 0);
+        i1 = Math.min(i1, ni);
+        j1 = Math.min(j1, nj);
+        k1 = Math.min(k1, nk);
+        if (i1 <= i0 || j1 <= j0 || k1 <= k0) {
+            return 0;
+        }
+        final double n = (double) (i1 - i0) * (j1 - j0) * (k1 - k0);
+        return box(sumSq, i0, i1, j0, j1, k0, k1) + 2 * shift * box(sum, i0, i1, j0, j1, k0, k1)
+                + shift * shift * n;
+    }
+
+    /**
+     * Local mean over a window of {@code wi * wj * wk} elements.
+     * 
+     * @param wi
+     *            window length along the first axis
+     * @param wj
+     *            window length along the second axis
+     * @param wk
+     *            window length along the third axis
+     * @param mode
+     *            part of the result to compute
+     * @return {@code double[][][]}
+     */
+    public double[][][] localMean(int wi, int wj, int wk, OutputMode mode) {
+        return localMeanInto(wi, wj, wk, mode, result(wi, wj, wk, mode));
+    }
+
+    /**
+     * Local mean over a window of {@code wi * wj * wk} elements into a
+     * caller-supplied result.
+     * 
+     * @param wi
+     *            window length along the first axis
+     * @param wj
+     *            window length along the second axis
+     * @param wk
+     *            window length along the third axis
+     * @param mode
+     *            part of the result to compute
+     * @param r
+     *            {@code double[][][]} result of the dimensions given by {@code mode}
+     * @return {@code r}
+     */
+    public double[][][] localMeanInto(int wi, int wj, int wk, OutputMode mode, double[][][] r) {
+        return filter(wi, wj, wk, mode, MEAN, r);
+    }
+
+    /**
+     * Local variance over a window of {@code wi * wj * wk} elements, that is
+     * the local mean of the squares less the square of the local mean.
+     * 
+     * @param wi
+     *            window length along the first axis
+     * @param wj
+     *            window length along the second axis
+     * @param wk
+     *            window length along the third axis
+     * @param mode
+     *            part of the result to compute
+     * @return {@code double[][][]}
+     */
+    public double[][][] localVariance(int wi, int wj, int wk, OutputMode mode) {
+        return localVarianceInto(wi, wj, wk, mode, result(wi, wj, wk, mode));
+    }
+
+    /**
+     * Local variance over a window of {@code wi * wj * wk} elements into a
+     * caller-supplied result.
+     * 
+     * @param wi
+     *            window length along the first axis
+     * @param wj
+     *            window length along the second axis
+     * @param wk
+     *            window length along the third axis
+     * @param mode
+     *            part of the result to compute
+     * @param r
+     *            {@code double[][][]} result of the dimensions given by {@code mode}
+     * @return {@code r}
+     */
+    public double[][][] localVarianceInto(int wi, int wj, int wk, OutputMode mode, double[][][] r) {
+        return filter(wi, wj, wk, mode, VARIANCE, r);
+    }
+
+    /**
+     * Local standard deviation over a window of {@code wi * wj * wk}
+     * elements.
+     * 
+     * @param wi
+     *            window length along the first axis
+     * @param wj
+     *            window length along the second axis
+     * @param wk
+     *            window length along the third axis
+     * @param mode
+     *            part of the result to compute
+     * @return {@code double[][][]}
+     */
+    public double[][][] localStd(int wi, int wj, int wk, OutputMode mode) {
+        return localStdInto(wi, wj, wk, mode, result(wi, wj, wk, mode));
+    }
+
+    /**
+     * Local standard deviation over a window of {@code wi * wj * wk}
+     * elements into a caller-supplied result.
+     * 
+     * @param wi
+     *            window length along the first axis
+     * @param wj
+     *            window length along the second axis
+     * @param wk
+     *            window length along the third axis
+     * @param mode
+     *            part of the result to compute
+     * @param r
+     *            {@code double[][][]} result of the dimensions given by {@code mode}
+     * @return {@code r}
+     */
+    public double[][][] localStdInto(int wi, int wj, int wk, OutputMode mode, double[][][] r) {
+        return filter(wi, wj, wk, mode, STD, r);
+    }
+
+    /**
+     * Local energy, the sum of squares over a window of
+     * {@code wi * wj * wk} elements.
+     * 
+     * @param wi
+     *            window length along the first axis
+     * @param wj
+     *            window length along the second axis
+     * @param wk
+     *            window length along the third axis
+     * @param mode
+     *            part of the result to compute
+     * @return {@code double[][][]}
+     */
+    public double[][][] localEnergy(int wi, int wj, int wk, OutputMode mode) {
+        return localEnergyInto(wi, wj, wk, mode, result(wi, wj, wk, mode));
+    }
+
+    /**
+     * Local energy over a window of {@code wi * wj * wk} elements into a
+     * caller-supplied result.
+     * 
+     * @param wi
+     *            window length along the first axis
+     * @param wj
+     *            window length along the second axis
+     * @param wk
+     *            window length along the third axis
+     * @param mode
+     *            part of the result to compute
+     * @param r
+     *            {@code double[][][]} result of the dimensions given by {@code mode}
+     * @return {@code r}
+     */
+    public double[][][] localEnergyInto(int wi, int wj, int wk, OutputMode mode, double[][][] r) {
+        return filter(wi, wj, wk, mode, ENERGY, r);
+    }
+
+    private static final int MEAN = 0;
+    private static final int VARIANCE = 1;
+    private static final int STD = 2;
+    private static final int ENERGY = 3;
+
+    private double[][][] result(int wi, int wj, int wk, OutputMode mode) {
+        return new double[mode.length(ni, wi)][mode.length(nj, wj)][mode.length(nk, wk)];
+    }
+
+    /**
+     * Fills {@code r} with the statistic {@code kind} of each window. Output
+     * {@code i} covers {@code [i + o - w + 1, i + o]} of the array along each
+     * axis, clipped to the array, where {@code o} is the offset of
+     * {@code mode}.
+     */
+    private double[][][] filter(int wi, int wj, int wk, OutputMode mode, int kind, double[][][] r) {
+        if (wi < 1 || wj < 1 || wk < 1) {
+            throw new IllegalArgumentException("JVCL: window must be at least 1 long along each axis");
+        }
+        final int ri = r.length;
+        final int rj = r[0].length;
+        final int rk = r[0][0].length;
+        Convolver.checkResultLength(ri, ni, wi, mode);
+        Convolver.checkResultLength(rj, nj, wj, mode);
+        Convolver.checkResultLength(rk, nk, wk, mode);
+        final int[] loI = new int[ri];
+        final int[] hiI = new int[ri];
+        final int[] loJ = new int[rj];
+        final int[] hiJ = new int[rj];
+        final int[] loK = new int[rk];
+        final int[] hiK = new int[rk];
+        bounds(ni, wi, mode.offset(wi), loI, hiI);
+        bounds(nj, wj, mode.offset(wj), loJ, hiJ);
+        bounds(nk, wk, mode.offset(wk), loK, hiK);
+        final double volume = (double) wi * wj * wk;
+        for (int i = 0; i < ri; i++) {
+            final int i0 = loI[i];
+            final int i1 = hiI[i];
+            for (int j = 0; j < rj; j++) {
+                final int j0 = loJ[j];
+                final int j1 = hiJ[j];
+                final double[] rRow = r[i][j];
+                final int b11 = index(i1, j1, 0);
+                final int b01 = index(i0, j1, 0);
+                final int b10 = index(i1, j0, 0);
+                final int b00 = index(i0, j0, 0);
+                final double area = (double) (i1 - i0) * (j1 - j0);
+                for (int k = 0; k < rk; k++) {
+                    final int k0 = loK[k];
+                    final int k1 = hiK[k];
+                    // shifted sums over the window, and the number of its elements inside the array
+                    final double s = sum[b11 + k1] - sum[b01 + k1] - sum[b10 + k1] + sum[b00 + k1]
+                            - (sum[b11 + k0] - sum[b01 + k0] - sum[b10 + k0] + sum[b00 + k0]);
+                    final double n = area * (k1 - k0);
+                    final double mean = (s + shift * n) / volume;
+                    if (kind == MEAN) {
+                        rRow[k] = mean;
+                        continue;
+                    }
+                    final double s2 = sumSq[b11 + k1] - sumSq[b01 + k1] - sumSq[b10 + k1] + sumSq[b00 + k1]
+                            - (sumSq[b11 + k0] - sumSq[b01 + k0] - sumSq[b10 + k0] + sumSq[b00 + k0]);
+                    final double energy = s2 + 2 * shift * s + shift * shift * n;
+                    if (kind == ENERGY) {
+                        rRow[k] = energy;
+                        continue;
+                    }
+                    // the elements past the edges are zero, that is -shift once shifted, and the variance
+                    // of the shifted window is taken directly, which avoids subtracting large squares
+                    final double outside = volume - n;
+                    final double mu = (s - shift * outside) / volume;
+                    final double variance = Math.max(0, (s2 + shift * shift * outside) / volume - mu * mu);
+                    rRow[k] = kind == STD ? Math.sqrt(variance) : variance;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Sets the range {@code [lo, hi)} of the array, of length {@code n}, read
+     * by each output of a window of length {@code w} starting at offset
+     * {@code o} of the full result.
+     */
+    private static void bounds(int n, int w, int o, int[] lo, int[] hi) {
+        for (int x = 0; x < lo.length; x++) {
+            lo[x] = Math.max(0, x + o - w + 1);
+            hi[x] = Math.max(lo[x], Math.min(n, x + o + 1));
+        }
+    }
+
+}
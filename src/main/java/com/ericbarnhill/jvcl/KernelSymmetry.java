@@ -0,0 +1,248 @@
+/*
+ * (c) Eric Barnhill 2016 All Rights Reserved.
+ *
+ * This file is part of the Java Volumetric Convolution Library (JVCL). JVCL is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * JVCL is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with JVCL.  If not, see http://www.gnu.org/licenses/ .
+ *
+ * This code uses software from the Apache Software Foundation.
+ * The Apache Software License can be found at: http://www.apache.org/licenses/LICENSE-2.0.txt .
+ *
+ * This code uses software from the JogAmp project.
+ * Jogamp information and software license can be found at: https://jogamp.org/ .
+ *
+ * This code uses methods from the JTransforms package by Piotr Wendykier.
+ * JTransforms information and software license can be found at: https://github.com/wendykierp/JTransforms .
+ *
+ */
+
+package com.ericbarnhill.jvcl;
+
+/**
+ * This class detects even- and odd-symmetric kernels. Smoothing kernels are usually
+ * even-symmetric, {@code g[p] == g[n-1-p]}, and derivative kernels odd-symmetric,
+ * {@code g[p] == -g[n-1-p]}. For both, the taps {@code p} and {@code n-1-p} can be folded
+ * into a single multiply of {@code g[p]} with the sum or difference of two inputs, which
+ * roughly halves the multiplies.
+ * <p>
+ * Symmetry is tested exactly, so folding is only used where it gives the same sum as the
+ * unfolded taps up to rounding.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ */
+public class KernelSymmetry {
+
+    public static final int NONE = 0;
+    public static final int EVEN = 1;
+    public static final int ODD = -1;
+
+    private KernelSymmetry() {}
+
+    /**
+     * @param g
+     *            {@code double[]} kernel
+     * @return {@link #EVEN} if {@code g[p] == g[n-1-p]}, {@link #ODD} if
+     *         {@code g[p] == -g[n-1-p]}, otherwise {@link #NONE}
+     */
+    public static int of(double[] g) {
+        final int gi = g.length;
+        boolean even = true, odd = true;
+        for (int p = 0; p < gi / 2 + 1; p++) {
+            even &= g[p] == g[gi - 1 - p];
+            odd &= g[p] == -g[gi - 1 - p];
+        }
+        return even ? EVEN : odd ? ODD : NONE;
+    }
+
+    /**
+     * @param g
+     *            {@code double[][]} kernel
+     * @return symmetry shared by every row {@code g[p]}, as in {@link #of}
+     */
+    public static int alongLastAxis(double[][] g) {
+        boolean even = true, odd = true;
+        for (int p = 0; p < g.length; p++) {
+            final int sym = of(g[p]);
+            even &= sym == EVEN || isZero(g[p]);
+            odd &= sym == ODD || isZero(g[p]);
+        }
+        return even ? EVEN : odd ? ODD : NONE;
+    }
+
+    /**
+     * @param g
+     *            {@code double[][][]} kernel
+     * @return symmetry shared by every row {@code g[p][q]}, as in {@link #of}
+     */
+    public static int alongLastAxis(double[][][] g) {
+        boolean even = true, odd = true;
+        for (int p = 0; p < g.length; p++) {
+            final int sym = alongLastAxis(g[p]);
+            even &= sym == EVEN || isZero(g[p]);
+            odd &= sym == ODD || isZero(g[p]);
+        }
+        return even ? EVEN : odd ? ODD : NONE;
+    }
+
+    /**
+     * @param g
+     *            {@code double[][]} kernel
+     * @return symmetry of the rows {@code g[p]} against {@code g[n-1-p]}, as in {@link #of}
+     */
+    public static int alongFirstAxis(double[][] g) {
+        final int gi = g.length;
+        boolean even = true, odd = true;
+        for (int p = 0; p < gi / 2 + 1; p++) {
+            for (int q = 0; q < g[p].length; q++) {
+                even &= g[p][q] == g[gi - 1 - p][q];
+                odd &= g[p][q] == -g[gi - 1 - p][q];
+            }
+        }
+        return even ? EVEN : odd ? ODD : NONE;
+    }
+
+    /**
+     * @param g
+     *            {@code double[][][]} kernel
+     * @return symmetry of the planes {@code g[p]} against {@code g[n-1-p]}, as in {@link #of}
+     */
+    public static int alongFirstAxis(double[][][] g) {
+        final int gi = g.length;
+        boolean even = true, odd = true;
+        for (int p = 0; p < gi / 2 + 1; p++) {
+            for (int q = 0; q < g[p].length; q++) {
+                for (int r = 0; r < g[p][q].length; r++) {
+                    even &= g[p][q][r] == g[gi - 1 - p][q][r];
+                    odd &= g[p][q][r] == -g[gi - 1 - p][q][r];
+                }
+            }
+        }
+        return even ? EVEN : odd ? ODD : NONE;
+    }
+
+    private static boolean isZero(double[] g) {
+        for (int p = 0; p < g.length; p++) {
+            if (g[p] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(double[][] g) {
+        for (int p = 0; p < g.length; p++) {
+            if (!isZero(g[p])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param g
+     *            {@code float[]} kernel
+     * @return {@link #EVEN} if {@code g[p] == g[n-1-p]}, {@link #ODD} if
+     *         {@code g[p] == -g[n-1-p]}, otherwise {@link #NONE}
+     */
+    public static int of(float[] g) {
+        final int gi = g.length;
+        boolean even = true, odd = true;
+        for (int p = 0; p < gi / 2 + 1; p++) {
+            even &= g[p] == g[gi - 1 - p];
+            odd &= g[p] == -g[gi - 1 - p];
+        }
+        return even ? EVEN : odd ? ODD : NONE;
+    }
+
+    /**
+     * @param g
+     *            {@code float[][]} kernel
+     * @return symmetry shared by every row {@code g[p]}, as in {@link #of}
+     */
+    public static int alongLastAxis(float[][] g) {
+        boolean even = true, odd = true;
+        for (int p = 0; p < g.length; p++) {
+            final int sym = of(g[p]);
+            even &= sym == EVEN || isZero(g[p]);
+            odd &= sym == ODD || isZero(g[p]);
+        }
+        return even ? EVEN : odd ? ODD : NONE;
+    }
+
+    /**
+     * @param g
+     *            {@code float[][][]} kernel
+     * @return symmetry shared by every row {@code g[p][q]}, as in {@link #of}
+     */
+    public static int alongLastAxis(float[][][] g) {
+        boolean even = true, odd = true;
+        for (int p = 0; p < g.length; p++) {
+            final int sym = alongLastAxis(g[p]);
+            even &= sym == EVEN || isZero(g[p]);
+            odd &= sym == ODD || isZero(g[p]);
+        }
+        return even ? EVEN : odd ? ODD : NONE;
+    }
+
+    /**
+     * @param g
+     *            {@code float[][]} kernel
+     * @return symmetry of the rows {@code g[p]} against {@code g[n-1-p]}, as in {@link #of}
+     */
+    public static int alongFirstAxis(float[][] g) {
+        final int gi = g.length;
+        boolean even = true, odd = true;
+        for (int p = 0; p < gi / 2 + 1; p++) {
+            for (int q = 0; q < g[p].length; q++) {
+                even &= g[p][q] == g[gi - 1 - p][q];
+                odd &= g[p][q] == -g[gi - 1 - p][q];
+            }
+        }
+        return even ? EVEN : odd ? ODD : NONE;
+    }
+
+    /**
+     * @param g
+     *            {@code float[][][]} kernel
+     * @return symmetry of the planes {@code g[p]} against {@code g[n-1-p]}, as in {@link #of}
+     */
+    public static int alongFirstAxis(float[][][] g) {
+        final int gi = g.length;
+        boolean even = true, odd = true;
+        for (int p = 0; p < gi / 2 + 1; p++) {
+            for (int q = 0; q < g[p].length; q++) {
+                for (int r = 0; r < g[p][q].length; r++) {
+                    even &= g[p][q][r] == g[gi - 1 - p][q][r];
+                    odd &= g[p][q][r] == -g[gi - 1 - p][q][r];
+                }
+            }
+        }
+        return even ? EVEN : odd ? ODD : NONE;
+    }
+
+    private static boolean isZero(float[] g) {
+        for (int p = 0; p < g.length; p++) {
+            if (g[p] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(float[][] g) {
+        for (int p = 0; p < g.length; p++) {
+            if (!isZero(g[p])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * (c) Eric Barnhill 2016 All Rights Reserved.
+ *
+ * This file is part of the Java Volumetric Convolution Library (JVCL). JVCL is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * JVCL is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with JVCL.  If not, see http://www.gnu.org/licenses/ .
+ *
+ * This code uses software from the Apache Software Foundation.
+ * The Apache Software License can be found at: http://www.apache.org/licenses/LICENSE-2.0.txt .
+ *
+ * This code uses software from the JogAmp project.
+ * Jogamp information and software license can be found at: https://jogamp.org/ .
+ *
+ * This code uses methods from the JTransforms package by Piotr Wendykier.
+ * JTransforms information and software license can be found at: https://github.com/wendykierp/JTransforms .
+ *
+ */
+
+package com.ericbarnhill.jvcl;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This class holds an output mask compiled to the runs of masked elements along each row. A masked
+ * convolution computes only the outputs inside the mask, such as the voxels of a tissue, and skips
+ * the rows which hold none of them, so its work grows with the size of the mask rather than of the
+ * volume.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ * @see ConvolverDoubleFDCPU
+ * @see ConvolverFloatFDCPU
+ * @see ConvolverComplexFDCPU
+ */
+public class Mask {
+
+    final int ni, nj, nk;
+    /** bounds {@code k0, k1, k0, k1, ...} of the runs of row {@code (i, j)} at {@code i * nj + j} */
+    final int[][] runs;
+    /** rows {@code i * nj + j} which hold at least one masked element, in order */
+    final int[] rows;
+    /** number of masked elements */
+    final long size;
+
+    private Mask(int ni, int nj, int nk, int[][] runs) {
+        this.ni = ni;
+        this.nj = nj;
+        this.nk = nk;
+        this.runs = runs;
+        int count = 0;
+        long elements = 0;
+        for (int[] run : runs) {
+            if (run.length > 0) {
+                count++;
+                for (int b = 0; b < run.length; b += 2) {
+                    elements += run[b + 1] - run[b];
+                }
+            }
+        }
+        rows = new int[count];
+        count = 0;
+        for (int row = 0; row < runs.length; row++) {
+            if (runs[row].length > 0) {
+                rows[count++] = row;
+            }
+        }
+        size = elements;
+    }
+
+    /**
+     * @param mask
+     *            {@code boolean[][][]} which is {@code true} at the outputs to compute
+     * @return the runs of {@code mask}
+     */
+    public static Mask of(boolean[][][] mask) {
+        final int ni = mask.length;
+        final int nj = mask[0].length;
+        final int nk = mask[0][0].length;
+        final int[][] runs = new int[ni * nj][];
+        final int[] bounds = new int[nk + 1];
+        for (int i = 0; i < ni; i++) {
+            for (int j = 0; j < nj; j++) {
+                final boolean[] row = mask[i][j];
+                int b = 0;
+                for (int k = 0; k < nk; k++) {
+                    if (row[k] && (k == 0 || !row[k - 1])) {
+                        bounds[b++] = k;
+                    }
+                    if (row[k] && (k == nk - 1 || !row[k + 1])) {
+                        bounds[b++] = k + 1;
+                    }
+                }
+                runs[i * nj + j] = Arrays.copyOf(bounds, b);
+            }
+        }
+        return new Mask(ni, nj, nk, runs);
+    }
+
+    /**
+     * @param mask
+     *            bits set at the outputs to compute, bit {@code (i * nj + j) * nk + k} standing for
+     *            output {@code (i, j, k)}
+     * @param ni
+     *            first dimension of the result
+     * @param nj
+     *            second dimension of the result
+     * @param nk
+     *            third dimension of the result
+     * @return the runs of {@code mask}
+     */
+    public static Mask of(BitSet mask, int ni, int nj, int nk) {
+        final int[][] runs = new int[ni * nj][];
+        final int[] bounds = new int[nk + 1];
+        for (int row = 0; row < ni * nj; row++) {
+            final int rowStart = row * nk;
+            final int rowEnd = rowStart + nk;
+            int b = 0;
+            // nextSetBit jumps over empty stretches of the mask without visiting them
+            for (int k = mask.nextSetBit(rowStart); k >= 0 && k < rowEnd; k = mask.nextSetBit(k)) {
+                bounds[b++] = k - rowStart;
+                k = Math.min(mask.nextClearBit(k), rowEnd);
+                bounds[b++] = k - rowStart;
+            }
+            runs[row] = Arrays.copyOf(bounds, b);
+        }
+        return new Mask(ni, nj, nk, runs);
+    }
+
+    /**
+     * @param ni
+     *            first dimension of the result
+     * @param nj
+     *            second dimension of the result
+     * @param nk
+     *            third dimension of the result
+     * @return mask of the outputs {@code (i, j, k)} with {@code i0 <= i < i1}, {@code j0 <= j < j1}
+     *         and {@code k0 <= k < k1}
+     */
+    public static Mask box(int ni, int nj, int nk, int i0, int i1, int j0, int j1, int k0, int k1) {
+        if (i0 < 0 || j0 < 0 || k0 < 0 || i1 > ni || j1 > nj || k1 > nk) {
+            throw new IllegalArgumentException("JVCL: box must lie inside the result");
+        }
+        final int[][] runs = new int[ni * nj][];
+        final int[] run = k1 > k0 ? new int[] {k0, k1} : new int[0];
+        for (int i = 0; i < ni; i++) {
+            for (int j = 0; j < nj; j++) {
+                runs[i * nj + j] = i >= i0 && i < i1 && j >= j0 && j < j1 ? run : new int[0];
+            }
+        }
+        return new Mask(ni, nj, nk, runs);
+    }
+
+    /**
+     * @return number of masked outputs
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Throws if the mask does not have the dimensions of the result.
+     */
+    void check(int ri, int rj, int rk) {
+        if (ri != ni || rj != nj || rk != nk) {
+            throw new IllegalArgumentException("JVCL: mask must have the dimensions of the result");
+        }
+    }
+
+}
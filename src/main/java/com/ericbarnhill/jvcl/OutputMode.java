@@ -0,0 +1,80 @@
+/*
+ * (c) Eric Barnhill 2016 All Rights Reserved.
+ *
+ * This file is part of the Java Volumetric Convolution Library (JVCL). JVCL is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * JVCL is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with JVCL.  If not, see http://www.gnu.org/licenses/ .
+ *
+ * This code uses software from the Apache Software Foundation.
+ * The Apache Software License can be found at: http://www.apache.org/licenses/LICENSE-2.0.txt .
+ *
+ * This code uses software from the JogAmp project.
+ * Jogamp information and software license can be found at: https://jogamp.org/ .
+ *
+ * This code uses methods from the JTransforms package by Piotr Wendykier.
+ * JTransforms information and software license can be found at: https://github.com/wendykierp/JTransforms .
+ *
+ */
+
+package com.ericbarnhill.jvcl;
+
+/**
+ * This enum selects which part of the convolution of an array {@code f} with a kernel
+ * {@code g} a {@link Convolver} computes. Along each axis:
+ * <ul>
+ * <li>{@link #FULL} returns every output the kernel touches, {@code f + g - 1} long;</li>
+ * <li>{@link #SAME} returns the centre of the full result, as long as {@code f}, starting
+ * at {@code g / 2};</li>
+ * <li>{@link #VALID} returns only the outputs for which the whole kernel lies inside
+ * {@code f}, {@code f - g + 1} long, starting at {@code g - 1}.</li>
+ * </ul>
+ * Only the selected part is computed and allocated, so {@link #SAME} and {@link #VALID}
+ * save both work and memory over cropping a full result, most of all for large kernels.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ */
+public enum OutputMode {
+
+    FULL, SAME, VALID;
+
+    /**
+     * @return length of the output along an axis on which the array has length {@code f}
+     *         and the kernel length {@code g}
+     */
+    public int length(int f, int g) {
+        switch (this) {
+            case SAME:
+                return f;
+            case VALID:
+                if (g > f) {
+                    throw new IllegalArgumentException("JVCL: kernel is larger than the array, so there is no valid output");
+                }
+                return f - g + 1;
+            default:
+                return f + g - 1;
+        }
+    }
+
+    /**
+     * @return position in the full result of the first output along an axis on which the
+     *         kernel has length {@code g}
+     */
+    public int offset(int g) {
+        switch (this) {
+            case SAME:
+                return g / 2;
+            case VALID:
+                return g - 1;
+            default:
+                return 0;
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * (c) Eric Barnhill 2016 All Rights Reserved.
+ *
+ * This file is part of the Java Volumetric Convolution Library (JVCL). JVCL is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * JVCL is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with JVCL.  If not, see http://www.gnu.org/licenses/ .
+ *
+ * This code uses software from the Apache Software Foundation.
+ * The Apache Software License can be found at: http://www.apache.org/licenses/LICENSE-2.0.txt .
+ *
+ * This code uses software from the JogAmp project.
+ * Jogamp information and software license can be found at: https://jogamp.org/ .
+ *
+ * This code uses methods from the JTransforms package by Piotr Wendykier.
+ * JTransforms information and software license can be found at: https://github.com/wendykierp/JTransforms .
+ *
+ */
+
+package com.ericbarnhill.jvcl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class runs Finite-Differences convolutions in parallel by splitting the result array into slabs
+ * along its first dimension and computing the slabs on a {@link ForkJoinPool}. Each result element is
+ * computed by a single thread in the same summation order as the sequential loops, so results are
+ * bit-identical to sequential execution. Convolutions smaller than {@link #PARALLEL_THRESHOLD}
+ * multiply-adds are run sequentially on the calling thread.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ */
+public class ParallelSlabs {
+
+	/**
+	 * Minimum number of multiply-adds before a convolution is split across threads.
+	 */
+	public static final long PARALLEL_THRESHOLD = 1L << 20;
+
+	/**
+	 * A computation over the result indices {@code iStart} (inclusive) to {@code iEnd} (exclusive)
+	 * of the first dimension.
+	 */
+	interface Slab {
+		void compute(int iStart, int iEnd);
+	}
+
+	private final int threads;
+	private ForkJoinPool pool;
+
+	/**
+	 * @param threads number of threads; 1 or fewer runs every convolution sequentially
+	 */
+	public ParallelSlabs(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Computes {@code slab} over result indices 0 to {@code ri}, in parallel if the thread count and
+	 * the amount of work justify it. Calls made from inside a running slab, of this or any other
+	 * {@code ParallelSlabs}, are always sequential; calls from other fork-join pools, such as the
+	 * common pool behind parallel streams, are not.
+	 * @param ri length of the first result dimension
+	 * @param work total number of multiply-adds in the convolution
+	 * @param slab computation to run
+	 */
+	void run(int ri, long work, Slab slab) {
+		if (threads < 2 || ri < 2 || work < PARALLEL_THRESHOLD || Thread.currentThread() instanceof SlabWorker) {
+			slab.compute(0, ri);
+			return;
+		}
+		final int grain = Math.max(1, ri / (4*threads));
+		getPool().invoke(new SlabTask(slab, 0, ri, grain));
+	}
+
+	private synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+				public ForkJoinWorkerThread newThread(ForkJoinPool p) {
+					return new SlabWorker(p);
+				}
+			}, null, false);
+		}
+		return pool;
+	}
+
+	/**
+	 * Releases the worker threads. The pool is recreated if the object is used again.
+	 */
+	public synchronized void close() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Worker thread of a slab pool, by which nested calls are recognised.
+	 */
+	private static class SlabWorker extends ForkJoinWorkerThread {
+
+		SlabWorker(ForkJoinPool pool) {
+			super(pool);
+		}
+	}
+
+	private static class SlabTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final Slab slab;
+		private final int iStart, iEnd, grain;
+
+		SlabTask(Slab slab, int iStart, int iEnd, int grain) {
+			this.slab = slab;
+			this.iStart = iStart;
+			this.iEnd = iEnd;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (iEnd - iStart <= grain) {
+				slab.compute(iStart, iEnd);
+				return;
+			}
+			final int iMid = (iStart + iEnd) >>> 1;
+			invokeAll(new SlabTask(slab, iStart, iMid, grain), new SlabTask(slab, iMid, iEnd, grain));
+		}
+	}
+
+}
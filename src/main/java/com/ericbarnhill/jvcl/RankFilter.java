@@ -0,0 +1,567 @@
+/*
+ * (c) Eric Barnhill 2016 All Rights Reserved.
+ *
+ * This file is part of the Java Volumetric Convolution Library (JVCL). JVCL is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * JVCL is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with JVCL.  If not, see http://www.gnu.org/licenses/ .
+ *
+ * This code uses software from the Apache Software Foundation.
+ * The Apache Software License can be found at: http://www.apache.org/licenses/LICENSE-2.0.txt .
+ *
+ * This code uses software from the JogAmp project.
+ * Jogamp information and software license can be found at: https://jogamp.org/ .
+ *
+ * This code uses methods from the JTransforms package by Piotr Wendykier.
+ * JTransforms information and software license can be found at: https://github.com/wendykierp/JTransforms .
+ *
+ */
+
+package com.ericbarnhill.jvcl;
+
+import java.util.Arrays;
+
+import org.apache.commons.math4.exception.OutOfRangeException;
+
+/**
+ * This class performs median and other rank filters over a box window on the CPU. Each slab of
+ * output planes ranks the values it reads once, by sorting them, and keeps a histogram of the
+ * ranks in the window with one count per rank and coarser levels of counts above it. The window
+ * sweeps the slab in a serpentine, so each step only adds and removes one face of the window,
+ * and the median, or any other rank, is found by descending the levels of the histogram. The
+ * cost per output grows with the face of the window rather than its volume, and the result is
+ * exact for {@code double} and {@code float} data alike. The array is extended past its edges by a
+ * {@link Boundaries.Condition}, as in the finite-difference convolvers, and the result has the
+ * dimensions given by an {@link OutputMode} for a kernel of the size of the window.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ * @see ConvolverDoubleFDCPU
+ * @see ConvolverFloatFDCPU
+ */
+public class RankFilter {
+
+    /** each count of a level of the histogram sums {@code 1 << FANOUT_BITS} counts of the level below */
+    static final int FANOUT_BITS = 6;
+
+    ParallelSlabs slabs;
+
+    public RankFilter() {
+        slabs = new ParallelSlabs(1);
+    }
+
+    /**
+     * @param threads
+     *            number of threads used for large filters
+     */
+    public RankFilter(int threads) {
+        slabs = new ParallelSlabs(threads);
+    }
+
+    /**
+     * Sets the number of threads used for large filters. With 1 thread (the
+     * default) all filters run sequentially.
+     * 
+     * @param threads
+     *            number of threads
+     */
+    public void setThreads(int threads) {
+        slabs.close();
+        slabs = new ParallelSlabs(threads);
+    }
+
+    public int getThreads() {
+        return slabs.getThreads();
+    }
+
+    /**
+     * Releases worker threads. Should be called as destructor method when
+     * more than one thread is used.
+     */
+    public void close() {
+        slabs.close();
+    }
+
+    /**
+     * Median filter of 3D {@code double[][][]} array over a window of
+     * {@code wi * wj * wk} elements. For a window with an even number of
+     * elements the upper median is taken.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param wi
+     *            window length along the first axis
+     * @param wj
+     *            window length along the second axis
+     * @param wk
+     *            window length along the third axis
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return {@code double[][][]}
+     */
+    public double[][][] median(double[][][] f, int wi, int wj, int wk, OutputMode mode,
+            Boundaries.Condition condition) {
+        return rank(f, wi, wj, wk, wi * wj * wk / 2, mode, condition);
+    }
+
+    /**
+     * Rank filter of 3D {@code double[][][]} array over a window of
+     * {@code wi * wj * wk} elements.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param wi
+     *            window length along the first axis
+     * @param wj
+     *            window length along the second axis
+     * @param wk
+     *            window length along the third axis
+     * @param rank
+     *            rank of the output in its sorted window, 0 for the minimum and
+     *            {@code wi * wj * wk - 1} for the maximum
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return {@code double[][][]}
+     */
+    public double[][][] rank(double[][][] f, int wi, int wj, int wk, int rank, OutputMode mode,
+            Boundaries.Condition condition) {
+        return rankInto(f, wi, wj, wk, rank, mode, condition, new double[mode.length(f.length, wi)][mode.length(
+                f[0].length, wj)][mode.length(f[0][0].length, wk)]);
+    }
+
+    /**
+     * Rank filter of 3D {@code double[][][]} array over a window of
+     * {@code wi * wj * wk} elements into a caller-supplied result.
+     * 
+     * @param f
+     *            {@code double[][][]} array
+     * @param wi
+     *            window length along the first axis
+     * @param wj
+     *            window length along the second axis
+     * @param wk
+     *            window length along the third axis
+     * @param rank
+     *            rank of the output in its sorted window, 0 for the minimum and
+     *            {@code wi * wj * wk - 1} for the maximum
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @param r
+     *            {@code double[][][]} result of the dimensions given by {@code mode}
+     * @return {@code r}
+     */
+    public double[][][] rankInto(final double[][][] f, int wi, int wj, int wk, int rank, OutputMode mode,
+            Boundaries.Condition condition, final double[][][] r) {
+        final int fj = f[0].length;
+        final int fk = f[0][0].length;
+        final Sweep sweep = new Sweep(f.length, fj, fk, wi, wj, wk, rank, mode, condition, r.length, r[0].length,
+                r[0][0].length);
+        slabs.run(r.length, sweep.work(), new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                final int[] plane = sweep.planes(iStart, iEnd);
+                // the values read by the slab, and a zero for virtual elements past the edges
+                final double[] sorted = new double[sweep.touched(plane) * fj * fk + 1];
+                int n = 0;
+                for (int a = 0; a < plane.length; a++) {
+                    if (plane[a] >= 0) {
+                        for (int j = 0; j < fj; j++) {
+                            System.arraycopy(f[a][j], 0, sorted, n, fk);
+                            n += fk;
+                        }
+                    }
+                }
+                Arrays.sort(sorted);
+                final int[] ranks = new int[n];
+                n = 0;
+                for (int a = 0; a < plane.length; a++) {
+                    if (plane[a] >= 0) {
+                        for (int j = 0; j < fj; j++) {
+                            for (int k = 0; k < fk; k++) {
+                                ranks[n++] = lowerBound(sorted, f[a][j][k]);
+                            }
+                        }
+                    }
+                }
+                sweep.run(iStart, iEnd, plane, ranks, lowerBound(sorted, 0), sorted.length, new Output() {
+                    public void put(int i, int j, int k, int slot) {
+                        r[i][j][k] = sorted[slot];
+                    }
+                });
+            }
+        });
+        return r;
+    }
+
+    /**
+     * Median filter of 3D {@code float[][][]} array over a window of
+     * {@code wi * wj * wk} elements. For a window with an even number of
+     * elements the upper median is taken.
+     * 
+     * @param f
+     *            {@code float[][][]} array
+     * @param wi
+     *            window length along the first axis
+     * @param wj
+     *            window length along the second axis
+     * @param wk
+     *            window length along the third axis
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return {@code float[][][]}
+     */
+    public float[][][] median(float[][][] f, int wi, int wj, int wk, OutputMode mode,
+            Boundaries.Condition condition) {
+        return rank(f, wi, wj, wk, wi * wj * wk / 2, mode, condition);
+    }
+
+    /**
+     * Rank filter of 3D {@code float[][][]} array over a window of
+     * {@code wi * wj * wk} elements.
+     * 
+     * @param f
+     *            {@code float[][][]} array
+     * @param wi
+     *            window length along the first axis
+     * @param wj
+     *            window length along the second axis
+     * @param wk
+     *            window length along the third axis
+     * @param rank
+     *            rank of the output in its sorted window, 0 for the minimum and
+     *            {@code wi * wj * wk - 1} for the maximum
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @return {@code float[][][]}
+     */
+    public float[][][] rank(float[][][] f, int wi, int wj, int wk, int rank, OutputMode mode,
+            Boundaries.Condition condition) {
+        return rankInto(f, wi, wj, wk, rank, mode, condition, new float[mode.length(f.length, wi)][mode.length(
+                f[0].length, wj)][mode.length(f[0][0].length, wk)]);
+    }
+
+    /**
+     * Rank filter of 3D {@code float[][][]} array over a window of
+     * {@code wi * wj * wk} elements into a caller-supplied result.
+     * 
+     * @param f
+     *            {@code float[][][]} array
+     * @param wi
+     *            window length along the first axis
+     * @param wj
+     *            window length along the second axis
+     * @param wk
+     *            window length along the third axis
+     * @param rank
+     *            rank of the output in its sorted window, 0 for the minimum and
+     *            {@code wi * wj * wk - 1} for the maximum
+     * @param mode
+     *            part of the result to compute
+     * @param condition
+     *            how {@code f} is extended past its edges
+     * @param r
+     *            {@code float[][][]} result of the dimensions given by {@code mode}
+     * @return {@code r}
+     */
+    public float[][][] rankInto(final float[][][] f, int wi, int wj, int wk, int rank, OutputMode mode,
+            Boundaries.Condition condition, final float[][][] r) {
+        final int fj = f[0].length;
+        final int fk = f[0][0].length;
+        final Sweep sweep = new Sweep(f.length, fj, fk, wi, wj, wk, rank, mode, condition, r.length, r[0].length,
+                r[0][0].length);
+        slabs.run(r.length, sweep.work(), new ParallelSlabs.Slab() {
+            public void compute(int iStart, int iEnd) {
+                final int[] plane = sweep.planes(iStart, iEnd);
+                // the values read by the slab, and a zero for virtual elements past the edges
+                final float[] sorted = new float[sweep.touched(plane) * fj * fk + 1];
+                int n = 0;
+                for (int a = 0; a < plane.length; a++) {
+                    if (plane[a] >= 0) {
+                        for (int j = 0; j < fj; j++) {
+                            System.arraycopy(f[a][j], 0, sorted, n, fk);
+                            n += fk;
+                        }
+                    }
+                }
+                Arrays.sort(sorted);
+                final int[] ranks = new int[n];
+                n = 0;
+                for (int a = 0; a < plane.length; a++) {
+                    if (plane[a] >= 0) {
+                        for (int j = 0; j < fj; j++) {
+                            for (int k = 0; k < fk; k++) {
+                                ranks[n++] = lowerBound(sorted, f[a][j][k]);
+                            }
+                        }
+                    }
+                }
+                sweep.run(iStart, iEnd, plane, ranks, lowerBound(sorted, 0), sorted.length, new Output() {
+                    public void put(int i, int j, int k, int slot) {
+                        r[i][j][k] = sorted[slot];
+                    }
+                });
+            }
+        });
+        return r;
+    }
+
+    /**
+     * @return first index of sorted {@code a} holding a value not less than
+     *         {@code v}, in the order of {@link Double#compare}
+     */
+    private static int lowerBound(double[] a, double v) {
+        int lo = 0;
+        int hi = a.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (Double.compare(a[mid], v) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return first index of sorted {@code a} holding a value not less than
+     *         {@code v}, in the order of {@link Float#compare}
+     */
+    private static int lowerBound(float[] a, float v) {
+        int lo = 0;
+        int hi = a.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (Float.compare(a[mid], v) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Receives the rank, in the sorted values of a slab, of each output.
+     */
+    interface Output {
+        void put(int i, int j, int k, int slot);
+    }
+
+    /**
+     * Geometry of a rank filter, shared by the slabs. Output {@code (i, j, k)}
+     * reads the positions {@code (i + p, j + q, k + s)} of the extended array,
+     * looked up in {@code mapI}, {@code mapJ} and {@code mapK}, for
+     * {@code p < wi}, {@code q < wj} and {@code s < wk}.
+     */
+    private static class Sweep {
+
+        final int fi, fj, fk;
+        final int wi, wj, wk;
+        final int ri, rj, rk;
+        final int rank;
+        final int[] mapI, mapJ, mapK;
+
+        Sweep(int fi, int fj, int fk, int wi, int wj, int wk, int rank, OutputMode mode,
+                Boundaries.Condition condition, int ri, int rj, int rk) {
+            if (wi < 1 || wj < 1 || wk < 1) {
+                throw new IllegalArgumentException("JVCL: window must be at least 1 long along each axis");
+            }
+            if (rank < 0 || rank >= wi * wj * wk) {
+                throw new OutOfRangeException(rank, 0, wi * wj * wk - 1);
+            }
+            Convolver.checkResultLength(ri, fi, wi, mode);
+            Convolver.checkResultLength(rj, fj, wj, mode);
+            Convolver.checkResultLength(rk, fk, wk, mode);
+            this.fi = fi;
+            this.fj = fj;
+            this.fk = fk;
+            this.wi = wi;
+            this.wj = wj;
+            this.wk = wk;
+            this.ri = ri;
+            this.rj = rj;
+            this.rk = rk;
+            this.rank = rank;
+            final int ei = wi - 1 - mode.offset(wi);
+            final int ej = wj - 1 - mode.offset(wj);
+            final int ek = wk - 1 - mode.offset(wk);
+            mapI = Boundaries.remap(condition, -ei, ri + wi - 1 - ei, fi);
+            mapJ = Boundaries.remap(condition, -ej, rj + wj - 1 - ej, fj);
+            mapK = Boundaries.remap(condition, -ek, rk + wk - 1 - ek, fk);
+        }
+
+        long work() {
+            return (long) ri * rj * rk * wi * wj;
+        }
+
+        /**
+         * @return for each plane of {@code f}, its index among the planes read
+         *         by outputs {@code iStart} to {@code iEnd}, or -1 if none of
+         *         them reads it
+         */
+        int[] planes(int iStart, int iEnd) {
+            final int[] plane = new int[fi];
+            Arrays.fill(plane, -1);
+            for (int x = iStart; x < iEnd + wi - 1; x++) {
+                if (mapI[x] >= 0) {
+                    plane[mapI[x]] = 0;
+                }
+            }
+            int n = 0;
+            for (int a = 0; a < fi; a++) {
+                if (plane[a] == 0) {
+                    plane[a] = n++;
+                }
+            }
+            return plane;
+        }
+
+        /**
+         * @return number of planes read
+         */
+        int touched(int[] plane) {
+            int n = 0;
+            for (int a : plane) {
+                if (a >= 0) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        /**
+         * Sweeps the window over outputs {@code iStart} to {@code iEnd} in a
+         * serpentine along k, then j, passing the selected rank of each output
+         * to {@code out}.
+         */
+        void run(int iStart, int iEnd, int[] plane, int[] ranks, int zeroSlot, int slots, Output out) {
+            final Window w = new Window(this, plane, ranks, zeroSlot, slots);
+            int j = 0;
+            int k = 0;
+            int dj = 1;
+            int dk = 1;
+            w.add(iStart, iStart + wi, 0, wj, 0, wk, 1);
+            for (int i = iStart; i < iEnd; i++) {
+                if (i > iStart) {
+                    w.add(i - 1, i, j, j + wj, k, k + wk, -1);
+                    w.add(i + wi - 1, i + wi, j, j + wj, k, k + wk, 1);
+                }
+                for (int jn = 0; jn < rj; jn++) {
+                    if (jn > 0) {
+                        final int out0 = dj > 0 ? j : j + wj - 1;
+                        final int in0 = dj > 0 ? j + wj : j - 1;
+                        w.add(i, i + wi, out0, out0 + 1, k, k + wk, -1);
+                        w.add(i, i + wi, in0, in0 + 1, k, k + wk, 1);
+                        j += dj;
+                    }
+                    for (int kn = 0; kn < rk; kn++) {
+                        if (kn > 0) {
+                            final int out0 = dk > 0 ? k : k + wk - 1;
+                            final int in0 = dk > 0 ? k + wk : k - 1;
+                            w.add(i, i + wi, j, j + wj, out0, out0 + 1, -1);
+                            w.add(i, i + wi, j, j + wj, in0, in0 + 1, 1);
+                            k += dk;
+                        }
+                        out.put(i, j, k, w.select(rank));
+                    }
+                    dk = -dk;
+                }
+                dj = -dj;
+            }
+        }
+
+    }
+
+    /**
+     * Histogram of the ranks in the window of one slab. Level 0 counts each
+     * rank, and each count of a level above sums a block of counts below it.
+     */
+    private static class Window {
+
+        final Sweep sweep;
+        final int[] plane;
+        final int[] ranks;
+        final int zeroSlot;
+        final int[][] levels;
+
+        Window(Sweep sweep, int[] plane, int[] ranks, int zeroSlot, int slots) {
+            this.sweep = sweep;
+            this.plane = plane;
+            this.ranks = ranks;
+            this.zeroSlot = zeroSlot;
+            int count = 1;
+            for (int n = slots; n > 1 << FANOUT_BITS; n = (n >> FANOUT_BITS) + 1) {
+                count++;
+            }
+            levels = new int[count][];
+            for (int l = 0, n = slots; l < count; l++, n = (n >> FANOUT_BITS) + 1) {
+                levels[l] = new int[n];
+            }
+        }
+
+        /**
+         * Adds {@code d} to the count of each position in the box
+         * {@code [x0, x1) * [y0, y1) * [z0, z1)} of the extended array.
+         */
+        void add(int x0, int x1, int y0, int y1, int z0, int z1, int d) {
+            final int[] mapI = sweep.mapI;
+            final int[] mapJ = sweep.mapJ;
+            final int[] mapK = sweep.mapK;
+            for (int x = x0; x < x1; x++) {
+                final int a = mapI[x];
+                for (int y = y0; y < y1; y++) {
+                    final int b = mapJ[y];
+                    if (a < 0 || b < 0) {
+                        count(zeroSlot, d * (z1 - z0));
+                        continue;
+                    }
+                    final int base = (plane[a] * sweep.fj + b) * sweep.fk;
+                    for (int z = z0; z < z1; z++) {
+                        final int c = mapK[z];
+                        count(c < 0 ? zeroSlot : ranks[base + c], d);
+                    }
+                }
+            }
+        }
+
+        private void count(int slot, int d) {
+            for (int[] level : levels) {
+                level[slot] += d;
+                slot >>= FANOUT_BITS;
+            }
+        }
+
+        /**
+         * @return slot holding element {@code t} of the sorted window
+         */
+        int select(int t) {
+            int n = 0;
+            for (int l = levels.length - 1; l >= 0; l--) {
+                final int[] level = levels[l];
+                n <<= FANOUT_BITS;
+                while (level[n] <= t) {
+                    t -= level[n];
+                    n++;
+                }
+            }
+            return n;
+        }
+
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * (c) Eric Barnhill 2016 All Rights Reserved.
+ *
+ * This file is part of the Java Volumetric Convolution Library (JVCL). JVCL is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * JVCL is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with JVCL.  If not, see http://www.gnu.org/licenses/ .
+ *
+ * This code uses software from the Apache Software Foundation.
+ * The Apache Software License can be found at: http://www.apache.org/licenses/LICENSE-2.0.txt .
+ *
+ * This code uses software from the JogAmp project.
+ * Jogamp information and software license can be found at: https://jogamp.org/ .
+ *
+ * This code uses methods from the JTransforms package by Piotr Wendykier.
+ * JTransforms information and software license can be found at: https://github.com/wendykierp/JTransforms .
+ *
+ */
+
+package com.ericbarnhill.jvcl;
+
+/**
+ * This enum selects how a finite-difference convolver reduces the neighbourhood of each output.
+ * Output {@code t} reads {@code f[t - p]} for every tap {@code p} of {@code g}, as in a
+ * convolution, and:
+ * <ul>
+ * <li>{@link #SUM} adds {@code f[t - p] * g[p]}, which is the convolution itself;</li>
+ * <li>{@link #MIN} takes the least {@code f[t - p] - g[p]}, the grayscale erosion of {@code f}
+ * by the reflection of {@code g};</li>
+ * <li>{@link #MAX} takes the greatest {@code f[t - p] + g[p]}, the grayscale dilation of
+ * {@code f} by {@code g}.</li>
+ * </ul>
+ * For {@link #MIN} and {@link #MAX}, {@code g} is a structuring element: taps which are
+ * {@code -Infinity} lie outside it and are skipped, and a flat element has taps of zero. For
+ * symmetric elements, such as boxes and balls, {@link #MIN} is the usual erosion.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ * @see ConvolverDoubleFDCPU
+ * @see ConvolverFloatFDCPU
+ */
+public enum Reduction {
+
+    SUM, MIN, MAX;
+
+}
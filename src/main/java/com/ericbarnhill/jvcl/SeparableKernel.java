@@ -0,0 +1,349 @@
+/*
+ * (c) Eric Barnhill 2016 All Rights Reserved.
+ *
+ * This file is part of the Java Volumetric Convolution Library (JVCL). JVCL is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * JVCL is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with JVCL.  If not, see http://www.gnu.org/licenses/ .
+ *
+ * This code uses software from the Apache Software Foundation.
+ * The Apache Software License can be found at: http://www.apache.org/licenses/LICENSE-2.0.txt .
+ *
+ * This code uses software from the JogAmp project.
+ * Jogamp information and software license can be found at: https://jogamp.org/ .
+ *
+ * This code uses methods from the JTransforms package by Piotr Wendykier.
+ * JTransforms information and software license can be found at: https://github.com/wendykierp/JTransforms .
+ *
+ */
+
+package com.ericbarnhill.jvcl;
+
+/**
+ * This class detects and factors separable (rank-1) kernels such as Gaussians and
+ * derivatives of Gaussians. A separable {@code gi x gj x gk} kernel can be applied as
+ * three 1D convolutions costing {@code gi + gj + gk} multiply-adds per element
+ * instead of {@code gi*gj*gk}.
+ * <p>
+ * The factors are taken from the lines through the largest kernel element, and the
+ * kernel is accepted if the outer product of the factors reproduces every element to
+ * within the given tolerance.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ */
+public class SeparableKernel {
+
+    /**
+     * Default tolerance, relative to the largest kernel magnitude, below which a
+     * kernel is treated as separable.
+     */
+    public static final double DEFAULT_TOLERANCE = 1e-10;
+
+    /**
+     * Default tolerance for {@code float} kernels, which carry more rounding error.
+     */
+    public static final double DEFAULT_FLOAT_TOLERANCE = 1e-5;
+
+    /**
+     * Factors a 2D {@code double[][]} kernel into {@code g[p][q] = u[p]*v[q]}.
+     * 
+     * @param g
+     *            {@code double[][]} kernel
+     * @param tolerance
+     *            largest accepted error of the factorization, relative to the
+     *            largest kernel magnitude
+     * @return {@code {u, v}}, or {@code null} if {@code g} is not separable
+     *         within {@code tolerance}
+     */
+    public static double[][] factor(double[][] g, double tolerance) {
+        final double[] u = new double[g.length];
+        final double[] v = new double[g[0].length];
+        return factor(g, tolerance, u, v) ? new double[][] {u, v} : null;
+    }
+
+    /**
+     * Factors a 2D {@code double[][]} kernel into {@code g[p][q] = u[p]*v[q]},
+     * writing the factors into caller-supplied arrays.
+     * 
+     * @param g
+     *            {@code double[][]} kernel
+     * @param tolerance
+     *            largest accepted error of the factorization, relative to the
+     *            largest kernel magnitude
+     * @param u
+     *            {@code double[]} of length {@code g.length}
+     * @param v
+     *            {@code double[]} of length {@code g[0].length}
+     * @return true if {@code g} is separable within {@code tolerance}
+     */
+    public static boolean factor(double[][] g, double tolerance, double[] u, double[] v) {
+        final int gi = g.length;
+        final int gj = g[0].length;
+        int pMax = 0, qMax = 0;
+        double max = 0;
+        for (int p = 0; p < gi; p++) {
+            for (int q = 0; q < gj; q++) {
+                if (Math.abs(g[p][q]) > max) {
+                    max = Math.abs(g[p][q]);
+                    pMax = p;
+                    qMax = q;
+                }
+            }
+        }
+        if (max == 0 || Double.isNaN(max) || Double.isInfinite(max)) {
+            return false;
+        }
+        final double pivot = g[pMax][qMax];
+        for (int p = 0; p < gi; p++) {
+            u[p] = g[p][qMax];
+        }
+        for (int q = 0; q < gj; q++) {
+            v[q] = g[pMax][q] / pivot;
+        }
+        final double maxError = tolerance * max;
+        for (int p = 0; p < gi; p++) {
+            for (int q = 0; q < gj; q++) {
+                if (!(Math.abs(g[p][q] - u[p] * v[q]) <= maxError)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Factors a 3D {@code double[][][]} kernel into
+     * {@code g[p][q][s] = u[p]*v[q]*w[s]}.
+     * 
+     * @param g
+     *            {@code double[][][]} kernel
+     * @param tolerance
+     *            largest accepted error of the factorization, relative to the
+     *            largest kernel magnitude
+     * @return {@code {u, v, w}}, or {@code null} if {@code g} is not separable
+     *         within {@code tolerance}
+     */
+    public static double[][] factor(double[][][] g, double tolerance) {
+        final double[] u = new double[g.length];
+        final double[] v = new double[g[0].length];
+        final double[] w = new double[g[0][0].length];
+        return factor(g, tolerance, u, v, w) ? new double[][] {u, v, w} : null;
+    }
+
+    /**
+     * Factors a 3D {@code double[][][]} kernel into
+     * {@code g[p][q][s] = u[p]*v[q]*w[s]}, writing the factors into
+     * caller-supplied arrays.
+     * 
+     * @param g
+     *            {@code double[][][]} kernel
+     * @param tolerance
+     *            largest accepted error of the factorization, relative to the
+     *            largest kernel magnitude
+     * @param u
+     *            {@code double[]} of length {@code g.length}
+     * @param v
+     *            {@code double[]} of length {@code g[0].length}
+     * @param w
+     *            {@code double[]} of length {@code g[0][0].length}
+     * @return true if {@code g} is separable within {@code tolerance}
+     */
+    public static boolean factor(double[][][] g, double tolerance, double[] u, double[] v, double[] w) {
+        final int gi = g.length;
+        final int gj = g[0].length;
+        final int gk = g[0][0].length;
+        int pMax = 0, qMax = 0, sMax = 0;
+        double max = 0;
+        for (int p = 0; p < gi; p++) {
+            for (int q = 0; q < gj; q++) {
+                for (int s = 0; s < gk; s++) {
+                    if (Math.abs(g[p][q][s]) > max) {
+                        max = Math.abs(g[p][q][s]);
+                        pMax = p;
+                        qMax = q;
+                        sMax = s;
+                    }
+                }
+            }
+        }
+        if (max == 0 || Double.isNaN(max) || Double.isInfinite(max)) {
+            return false;
+        }
+        final double pivot = g[pMax][qMax][sMax];
+        for (int p = 0; p < gi; p++) {
+            u[p] = g[p][qMax][sMax];
+        }
+        for (int q = 0; q < gj; q++) {
+            v[q] = g[pMax][q][sMax] / pivot;
+        }
+        for (int s = 0; s < gk; s++) {
+            w[s] = g[pMax][qMax][s] / pivot;
+        }
+        final double maxError = tolerance * max;
+        for (int p = 0; p < gi; p++) {
+            for (int q = 0; q < gj; q++) {
+                for (int s = 0; s < gk; s++) {
+                    if (!(Math.abs(g[p][q][s] - u[p] * v[q] * w[s]) <= maxError)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Factors a 2D {@code float[][]} kernel into {@code g[p][q] = u[p]*v[q]}.
+     * 
+     * @param g
+     *            {@code float[][]} kernel
+     * @param tolerance
+     *            largest accepted error of the factorization, relative to the
+     *            largest kernel magnitude
+     * @return {@code {u, v}}, or {@code null} if {@code g} is not separable
+     *         within {@code tolerance}
+     */
+    public static float[][] factor(float[][] g, double tolerance) {
+        final float[] u = new float[g.length];
+        final float[] v = new float[g[0].length];
+        return factor(g, tolerance, u, v) ? new float[][] {u, v} : null;
+    }
+
+    /**
+     * Factors a 2D {@code float[][]} kernel into {@code g[p][q] = u[p]*v[q]},
+     * writing the factors into caller-supplied arrays.
+     * 
+     * @param g
+     *            {@code float[][]} kernel
+     * @param tolerance
+     *            largest accepted error of the factorization, relative to the
+     *            largest kernel magnitude
+     * @param u
+     *            {@code float[]} of length {@code g.length}
+     * @param v
+     *            {@code float[]} of length {@code g[0].length}
+     * @return true if {@code g} is separable within {@code tolerance}
+     */
+    public static boolean factor(float[][] g, double tolerance, float[] u, float[] v) {
+        final int gi = g.length;
+        final int gj = g[0].length;
+        int pMax = 0, qMax = 0;
+        float max = 0;
+        for (int p = 0; p < gi; p++) {
+            for (int q = 0; q < gj; q++) {
+                if (Math.abs(g[p][q]) > max) {
+                    max = Math.abs(g[p][q]);
+                    pMax = p;
+                    qMax = q;
+                }
+            }
+        }
+        if (max == 0 || Float.isNaN(max) || Float.isInfinite(max)) {
+            return false;
+        }
+        final float pivot = g[pMax][qMax];
+        for (int p = 0; p < gi; p++) {
+            u[p] = g[p][qMax];
+        }
+        for (int q = 0; q < gj; q++) {
+            v[q] = g[pMax][q] / pivot;
+        }
+        final double maxError = tolerance * max;
+        for (int p = 0; p < gi; p++) {
+            for (int q = 0; q < gj; q++) {
+                if (!(Math.abs(g[p][q] - u[p] * v[q]) <= maxError)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Factors a 3D {@code float[][][]} kernel into
+     * {@code g[p][q][s] = u[p]*v[q]*w[s]}.
+     * 
+     * @param g
+     *            {@code float[][][]} kernel
+     * @param tolerance
+     *            largest accepted error of the factorization, relative to the
+     *            largest kernel magnitude
+     * @return {@code {u, v, w}}, or {@code null} if {@code g} is not separable
+     *         within {@code tolerance}
+     */
+    public static float[][] factor(float[][][] g, double tolerance) {
+        final float[] u = new float[g.length];
+        final float[] v = new float[g[0].length];
+        final float[] w = new float[g[0][0].length];
+        return factor(g, tolerance, u, v, w) ? new float[][] {u, v, w} : null;
+    }
+
+    /**
+     * Factors a 3D {@code float[][][]} kernel into
+     * {@code g[p][q][s] = u[p]*v[q]*w[s]}, writing the factors into
+     * caller-supplied arrays.
+     * 
+     * @param g
+     *            {@code float[][][]} kernel
+     * @param tolerance
+     *            largest accepted error of the factorization, relative to the
+     *            largest kernel magnitude
+     * @param u
+     *            {@code float[]} of length {@code g.length}
+     * @param v
+     *            {@code float[]} of length {@code g[0].length}
+     * @param w
+     *            {@code float[]} of length {@code g[0][0].length}
+     * @return true if {@code g} is separable within {@code tolerance}
+     */
+    public static boolean factor(float[][][] g, double tolerance, float[] u, float[] v, float[] w) {
+        final int gi = g.length;
+        final int gj = g[0].length;
+        final int gk = g[0][0].length;
+        int pMax = 0, qMax = 0, sMax = 0;
+        float max = 0;
+        for (int p = 0; p < gi; p++) {
+            for (int q = 0; q < gj; q++) {
+                for (int s = 0; s < gk; s++) {
+                    if (Math.abs(g[p][q][s]) > max) {
+                        max = Math.abs(g[p][q][s]);
+                        pMax = p;
+                        qMax = q;
+                        sMax = s;
+                    }
+                }
+            }
+        }
+        if (max == 0 || Float.isNaN(max) || Float.isInfinite(max)) {
+            return false;
+        }
+        final float pivot = g[pMax][qMax][sMax];
+        for (int p = 0; p < gi; p++) {
+            u[p] = g[p][qMax][sMax];
+        }
+        for (int q = 0; q < gj; q++) {
+            v[q] = g[pMax][q][sMax] / pivot;
+        }
+        for (int s = 0; s < gk; s++) {
+            w[s] = g[pMax][qMax][s] / pivot;
+        }
+        final double maxError = tolerance * max;
+        for (int p = 0; p < gi; p++) {
+            for (int q = 0; q < gj; q++) {
+                for (int s = 0; s < gk; s++) {
+                    if (!(Math.abs(g[p][q][s] - u[p] * v[q] * w[s]) <= maxError)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+}
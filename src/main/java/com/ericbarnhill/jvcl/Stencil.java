@@ -0,0 +1,293 @@
+/*
+ * (c) Eric Barnhill 2016 All Rights Reserved.
+ *
+ * This file is part of the Java Volumetric Convolution Library (JVCL). JVCL is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * JVCL is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with JVCL.  If not, see http://www.gnu.org/licenses/ .
+ *
+ * This code uses software from the Apache Software Foundation.
+ * The Apache Software License can be found at: http://www.apache.org/licenses/LICENSE-2.0.txt .
+ *
+ * This code uses software from the JogAmp project.
+ * Jogamp information and software license can be found at: https://jogamp.org/ .
+ *
+ * This code uses methods from the JTransforms package by Piotr Wendykier.
+ * JTransforms information and software license can be found at: https://github.com/wendykierp/JTransforms .
+ *
+ */
+
+
+package com.ericbarnhill.jvcl;
+
+/**
+ * This class holds a kernel compiled to the list of its non-zero taps. Finite-difference
+ * stencils such as the 7-point Laplacian fill only a few entries of their bounding box, so
+ * iterating the list skips the zero taps which a dense convolution would multiply.
+ * <p>
+ * Taps are kept in the order a dense convolution visits them, so a stencil convolution
+ * gives the same sums as the dense kernel. For a flat volume each tap reduces to a single
+ * offset into the backing array, worked out once per set of strides.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ * @see ConvolverDoubleFDCPU
+ * @see ConvolverFloatFDCPU
+ */
+public class Stencil {
+
+    final int gi, gj, gk;
+    /** kernel position {@code (ti[t], tj[t], tk[t])} of tap {@code t} */
+    final int[] ti, tj, tk;
+    final double[] doubleWeights;
+    final float[] floatWeights;
+    private int[] offsets;
+    private int osi, osj, osk;
+
+    private Stencil(int gi, int gj, int gk, int taps) {
+        this.gi = gi;
+        this.gj = gj;
+        this.gk = gk;
+        ti = new int[taps];
+        tj = new int[taps];
+        tk = new int[taps];
+        doubleWeights = new double[taps];
+        floatWeights = new float[taps];
+    }
+
+    /**
+     * @param g
+     *            {@code double[][][]} kernel
+     * @return the non-zero taps of {@code g}
+     */
+    public static Stencil compile(double[][][] g) {
+        final int gi = g.length;
+        final int gj = g[0].length;
+        final int gk = g[0][0].length;
+        final Stencil st = new Stencil(gi, gj, gk, countNonZero(g));
+        int t = 0;
+        for (int p = gi - 1; p >= 0; p--) {
+            for (int q = gj - 1; q >= 0; q--) {
+                for (int s = gk - 1; s >= 0; s--) {
+                    if (g[p][q][s] != 0) {
+                        st.add(t++, p, q, s, g[p][q][s]);
+                    }
+                }
+            }
+        }
+        return st;
+    }
+
+    /**
+     * @param g
+     *            {@code float[][][]} kernel
+     * @return the non-zero taps of {@code g}
+     */
+    public static Stencil compile(float[][][] g) {
+        final int gi = g.length;
+        final int gj = g[0].length;
+        final int gk = g[0][0].length;
+        final Stencil st = new Stencil(gi, gj, gk, countNonZero(g));
+        int t = 0;
+        for (int p = gi - 1; p >= 0; p--) {
+            for (int q = gj - 1; q >= 0; q--) {
+                for (int s = gk - 1; s >= 0; s--) {
+                    if (g[p][q][s] != 0) {
+                        st.add(t++, p, q, s, g[p][q][s]);
+                    }
+                }
+            }
+        }
+        return st;
+    }
+
+    /**
+     * @param g
+     *            {@code VolumeDouble} kernel
+     * @return the non-zero taps of {@code g}
+     */
+    public static Stencil compile(VolumeDouble g) {
+        final Stencil st = new Stencil(g.ni, g.nj, g.nk, countNonZero(g));
+        int t = 0;
+        for (int p = g.ni - 1; p >= 0; p--) {
+            for (int q = g.nj - 1; q >= 0; q--) {
+                for (int s = g.nk - 1; s >= 0; s--) {
+                    final double v = g.data[g.index(p, q, s)];
+                    if (v != 0) {
+                        st.add(t++, p, q, s, v);
+                    }
+                }
+            }
+        }
+        return st;
+    }
+
+    /**
+     * @param g
+     *            {@code VolumeFloat} kernel
+     * @return the non-zero taps of {@code g}
+     */
+    public static Stencil compile(VolumeFloat g) {
+        final Stencil st = new Stencil(g.ni, g.nj, g.nk, countNonZero(g));
+        int t = 0;
+        for (int p = g.ni - 1; p >= 0; p--) {
+            for (int q = g.nj - 1; q >= 0; q--) {
+                for (int s = g.nk - 1; s >= 0; s--) {
+                    final float v = g.data[g.index(p, q, s)];
+                    if (v != 0) {
+                        st.add(t++, p, q, s, v);
+                    }
+                }
+            }
+        }
+        return st;
+    }
+
+    private void add(int t, int p, int q, int s, double v) {
+        ti[t] = p;
+        tj[t] = q;
+        tk[t] = s;
+        doubleWeights[t] = v;
+        floatWeights[t] = (float) v;
+    }
+
+    private void add(int t, int p, int q, int s, float v) {
+        ti[t] = p;
+        tj[t] = q;
+        tk[t] = s;
+        doubleWeights[t] = v;
+        floatWeights[t] = v;
+    }
+
+    /**
+     * @return number of non-zero taps
+     */
+    public int size() {
+        return ti.length;
+    }
+
+    /**
+     * @return dimensions {@code {gi, gj, gk}} of the kernel
+     */
+    public int[] getDims() {
+        return new int[] {gi, gj, gk};
+    }
+
+    /**
+     * Offset of each tap in a flat array of strides {@code (si, sj, sk)}: the
+     * input sample read by tap {@code t} for output {@code (i, j, k)} is at
+     * {@code index(i, j, k) - offsets[t]}. The last result is cached.
+     */
+    synchronized int[] offsets(int si, int sj, int sk) {
+        int[] o = offsets;
+        if (o == null || si != osi || sj != osj || sk != osk) {
+            o = new int[ti.length];
+            for (int t = 0; t < o.length; t++) {
+                o[t] = ti[t] * si + tj[t] * sj + tk[t] * sk;
+            }
+            osi = si;
+            osj = sj;
+            osk = sk;
+            offsets = o;
+        }
+        return o;
+    }
+
+    /**
+     * @return {@code true} if at most half of the taps of {@code g} are
+     *         non-zero, so that a stencil convolution does less work than a
+     *         dense one
+     */
+    public static boolean isSparse(double[][][] g) {
+        return 2 * countNonZero(g) <= g.length * g[0].length * g[0][0].length;
+    }
+
+    /**
+     * @return {@code true} if at most half of the taps of {@code g} are
+     *         non-zero, so that a stencil convolution does less work than a
+     *         dense one
+     */
+    public static boolean isSparse(float[][][] g) {
+        return 2 * countNonZero(g) <= g.length * g[0].length * g[0][0].length;
+    }
+
+    /**
+     * @return {@code true} if at most half of the taps of {@code g} are
+     *         non-zero, so that a stencil convolution does less work than a
+     *         dense one
+     */
+    public static boolean isSparse(VolumeDouble g) {
+        return 2 * countNonZero(g) <= g.size();
+    }
+
+    /**
+     * @return {@code true} if at most half of the taps of {@code g} are
+     *         non-zero, so that a stencil convolution does less work than a
+     *         dense one
+     */
+    public static boolean isSparse(VolumeFloat g) {
+        return 2 * countNonZero(g) <= g.size();
+    }
+
+    private static int countNonZero(double[][][] g) {
+        int n = 0;
+        for (double[][] plane : g) {
+            for (double[] row : plane) {
+                for (double v : row) {
+                    if (v != 0) {
+                        n++;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    private static int countNonZero(float[][][] g) {
+        int n = 0;
+        for (float[][] plane : g) {
+            for (float[] row : plane) {
+                for (float v : row) {
+                    if (v != 0) {
+                        n++;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    private static int countNonZero(VolumeDouble g) {
+        int n = 0;
+        for (int p = 0; p < g.ni; p++) {
+            for (int q = 0; q < g.nj; q++) {
+                for (int s = 0; s < g.nk; s++) {
+                    if (g.data[g.index(p, q, s)] != 0) {
+                        n++;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    private static int countNonZero(VolumeFloat g) {
+        int n = 0;
+        for (int p = 0; p < g.ni; p++) {
+            for (int q = 0; q < g.nj; q++) {
+                for (int s = 0; s < g.nk; s++) {
+                    if (g.data[g.index(p, q, s)] != 0) {
+                        n++;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+}
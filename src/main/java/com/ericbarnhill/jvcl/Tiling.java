@@ -0,0 +1,88 @@
+/*
+ * (c) Eric Barnhill 2016 All Rights Reserved.
+ *
+ * This file is part of the Java Volumetric Convolution Library (JVCL). JVCL is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * JVCL is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with JVCL.  If not, see http://www.gnu.org/licenses/ .
+ *
+ * This code uses software from the Apache Software Foundation.
+ * The Apache Software License can be found at: http://www.apache.org/licenses/LICENSE-2.0.txt .
+ *
+ * This code uses software from the JogAmp project.
+ * Jogamp information and software license can be found at: https://jogamp.org/ .
+ *
+ * This code uses methods from the JTransforms package by Piotr Wendykier.
+ * JTransforms information and software license can be found at: https://github.com/wendykierp/JTransforms .
+ *
+ */
+
+package com.ericbarnhill.jvcl;
+
+/**
+ * This class chooses cache tiles for 3D Finite-Differences convolutions. The result is computed in
+ * tiles of {@code jTile x kTile} rows, and each tile is swept through all result planes {@code i}
+ * before moving to the next. The input read by one plane of a tile, {@code gi} planes of
+ * {@code (jTile + gj - 1) x (kTile + gk - 1)} elements, is sized to stay in cache, so moving to the
+ * next plane reuses {@code gi - 1} of them instead of streaming the whole input from memory again.
+ * <p>
+ * Tiling only changes the order in which result elements are visited, not the order in which the
+ * taps of one element are summed, so tiled and untiled results are bit-identical.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ */
+class Tiling {
+
+	/**
+	 * Bytes of input which one tile may keep in cache, about half of a typical server L2 cache.
+	 */
+	static final int CACHE_BYTES = 1 << 19;
+
+	/**
+	 * Shortest tile along the contiguous axis, which is kept long enough for the inner loop to
+	 * vectorize well.
+	 */
+	static final int MIN_K_TILE = 64;
+
+	private Tiling() {}
+
+	/**
+	 * Rows are only split along {@code k} if {@code 2*gj} full rows of {@code gi} planes would not
+	 * fit in cache. Tiles are balanced so that no short remainder tile is left over.
+	 * @param elementBytes size of one array element, e.g. 8 for {@code double}
+	 * @return tile length along {@code k}, at most {@code rk}
+	 */
+	static int tileK(int gi, int gj, int gk, int rk, int elementBytes) {
+		final long rowBytes = (long) gi * 2 * gj * elementBytes;
+		int tiles = 1;
+		int kTile = rk;
+		while (kTile > MIN_K_TILE && rowBytes * (kTile + gk - 1) > CACHE_BYTES) {
+			tiles++;
+			kTile = (rk + tiles - 1) / tiles;
+		}
+		return kTile;
+	}
+
+	/**
+	 * The whole result plane is a single tile if {@code gi} input planes fit in cache.
+	 * @param kTile tile length along {@code k} from {@link #tileK}
+	 * @param elementBytes size of one array element, e.g. 8 for {@code double}
+	 * @return tile length along {@code j}, at least 1 and at most {@code rj}
+	 */
+	static int tileJ(int gi, int gj, int gk, int rj, int kTile, int elementBytes) {
+		final long rowBytes = (long) gi * (kTile + gk - 1) * elementBytes;
+		final long fit = CACHE_BYTES / rowBytes - (gj - 1);
+		if (fit >= rj) {
+			return rj;
+		}
+		final int tiles = (int) ((rj + Math.max(1, fit) - 1) / Math.max(1, fit));
+		return (rj + tiles - 1) / tiles;
+	}
+
+}
@@ -38,6 +38,11 @@ import java.util.Scanner;
  * Unrolled.java and the code re-compiled. More streamlined approaches to adding unrolled kernels will be
  * developed in future releases. A commented out main method which contains some scratch work in this
  * direction has been left in the code.
+ * <p>
+ * Kernels which are symmetric or antisymmetric along their first index, {@code g[p]} against
+ * {@code g[gi-1-p]}, can be generated in folded form, where each mirrored pair of taps is summed
+ * or differenced before a single multiply. This index is the unit-stride one of the vectorized kernel
+ * {@code gg[i + j*gi]}. Folded methods carry an {@code _even} or {@code _odd} suffix.
  *
  * @author ericbarnhill
  * @since 0.1
@@ -86,10 +91,14 @@ public class Unroller {
 	}
 
 	public String makeMethodHead1dDouble(int gi) {
+		return makeMethodHead1dDouble(gi, "");
+	}
+
+	public String makeMethodHead1dDouble(int gi, String suffix) {
 		StringBuilder sb = new StringBuilder();
-		sb.append(String.format("// begin convolve_%s%n", Integer.toString(gi)));
+		sb.append(String.format("// begin convolve_%s%s%n", Integer.toString(gi), suffix));
 		sb.append(
-				String.format("    public static double[] convolve_%s(double[] f, double[] g) {%n", Integer.toString(gi))
+				String.format("    public static double[] convolve_%s%s(double[] f, double[] g) {%n", Integer.toString(gi), suffix)
 			);
 		sb.append(String.format("        final int fi = f.length;%n"));
 		sb.append(String.format("        final int gi = g.length;%n"));
@@ -103,9 +112,13 @@ public class Unroller {
 	}
 
 	public String makeMethodHead1dComplex(int gi) {
+		return makeMethodHead1dComplex(gi, "");
+	}
+
+	public String makeMethodHead1dComplex(int gi, String suffix) {
 		StringBuilder sb = new StringBuilder();
 		sb.append(
-				String.format("    public static Complex[] convolve_%s(Complex[] f, Complex[] g) {%n", Integer.toString(gi))
+				String.format("    public static Complex[] convolve_%s%s(Complex[] f, Complex[] g) {%n", Integer.toString(gi), suffix)
 			);
 		sb.append(String.format("        final int fi = f.length;%n"));
 		sb.append(String.format("        final int gi = g.length;%n"));
@@ -165,19 +178,27 @@ public class Unroller {
 	}
 
 	public String makeMethodTail1dComplex(int gi) {
+		return makeMethodTail1dComplex(gi, "");
+	}
+
+	public String makeMethodTail1dComplex(int gi, String suffix) {
 		StringBuilder sb = new StringBuilder();
 		sb.append(String.format("            }%n"));
 		sb.append(String.format("        return Boundaries.finishBoundaries1d(fPad, g, r, gi, hgi, hgie, ri);%n"));
 		sb.append(String.format("    };%n"));
-		sb.append(String.format("// end convolve_%s%n", Integer.toString(gi)));
+		sb.append(String.format("// end convolve_%s%s%n", Integer.toString(gi), suffix));
 		return sb.toString();
 	}
 
 	public String makeMethodHead2dDouble(int gi, int gj) {
+		return makeMethodHead2dDouble(gi, gj, "");
+	}
+
+	public String makeMethodHead2dDouble(int gi, int gj, String suffix) {
 		StringBuilder sb = new StringBuilder();
-		sb.append(String.format(" // begin convolve_%s_%s%n", Integer.toString(gi), Integer.toString(gj)));
+		sb.append(String.format(" // begin convolve_%s_%s%s%n", Integer.toString(gi), Integer.toString(gj), suffix));
 		sb.append(
-				String.format("    public static double[][] convolve_%s_%s(double[][] f, double[][] g) {%n", Integer.toString(gi), Integer.toString(gj))
+				String.format("    public static double[][] convolve_%s_%s%s(double[][] f, double[][] g) {%n", Integer.toString(gi), Integer.toString(gj), suffix)
 				//String.format("    public double[][] convolve_%s_%s() {%n", Integer.toString(gi), Integer.toString(gj))
 			);
 		sb.append(String.format("        final int fi = f.length;%n"));
@@ -202,9 +223,13 @@ public class Unroller {
 	}
 
 	public String makeMethodHead2dComplex(int gi, int gj) {
+		return makeMethodHead2dComplex(gi, gj, "");
+	}
+
+	public String makeMethodHead2dComplex(int gi, int gj, String suffix) {
 		StringBuilder sb = new StringBuilder();
 		sb.append(
-				String.format("    public static Complex[][] convolve_%s_%s(Complex[][] f, Complex[][] g) {%n", Integer.toString(gi), Integer.toString(gj))
+				String.format("    public static Complex[][] convolve_%s_%s%s(Complex[][] f, Complex[][] g) {%n", Integer.toString(gi), Integer.toString(gj), suffix)
 				//String.format("    public Complex[][] convolve_%s_%s() {%n", Integer.toString(gi), Integer.toString(gj))
 			);
 		sb.append(String.format("        final int fi = f.length;%n"));
@@ -288,20 +313,28 @@ public class Unroller {
 	}
 
 	public String makeMethodTail2dComplex(int gi, int gj) {
+		return makeMethodTail2dComplex(gi, gj, "");
+	}
+
+	public String makeMethodTail2dComplex(int gi, int gj, String suffix) {
 		StringBuilder sb = new StringBuilder();
 		sb.append(String.format("                }%n"));
 		sb.append(String.format("            }%n"));
 		sb.append(String.format("    return Boundaries.finishBoundaries2d(fPad, gg, r, gi, gj, hgi, hgie, hgj, hgje, ri, rj)%n;"));
 		sb.append(String.format("    };%n"));
-		sb.append(String.format(" // end convolve_%s_%s%n", Integer.toString(gi), Integer.toString(gj)));
+		sb.append(String.format(" // end convolve_%s_%s%s%n", Integer.toString(gi), Integer.toString(gj), suffix));
 		return sb.toString();
 	}
 
 	public String makeMethodHead3dDouble(int gi, int gj, int gk) {
+		return makeMethodHead3dDouble(gi, gj, gk, "");
+	}
+
+	public String makeMethodHead3dDouble(int gi, int gj, int gk, String suffix) {
 		StringBuilder sb = new StringBuilder();
-		sb.append(String.format("// begin convolve_%s_%s_%s%n", Integer.toString(gi), Integer.toString(gj), Integer.toString(gk)));
-		sb.append(String.format("    public static double[][][] convolve_%s_%s_%s(double[][][] f, double[][][] g) {%n", Integer.toString(gi), Integer.toString(gj),
-				Integer.toString(gk)));
+		sb.append(String.format("// begin convolve_%s_%s_%s%s%n", Integer.toString(gi), Integer.toString(gj), Integer.toString(gk), suffix));
+		sb.append(String.format("    public static double[][][] convolve_%s_%s_%s%s(double[][][] f, double[][][] g) {%n", Integer.toString(gi), Integer.toString(gj),
+				Integer.toString(gk), suffix));
 		sb.append(String.format("        final int fi = f.length;%n"));
 		sb.append(String.format("        final int fj = f[0].length;%n"));
 		sb.append(String.format("        final int fk = f[0][0].length;%n"));
@@ -331,8 +364,12 @@ public class Unroller {
 
 
 	public String makeMethodHead3dComplex(int gi, int gj, int gk) {
+		return makeMethodHead3dComplex(gi, gj, gk, "");
+	}
+
+	public String makeMethodHead3dComplex(int gi, int gj, int gk, String suffix) {
 		StringBuilder sb = new StringBuilder();
-		sb.append(String.format("    public static Complex[][][] convolve_%s_%s_%s(Complex[][][] f, Complex[][][] g) {%n", Integer.toString(gi), Integer.toString(gj), Integer.toString(gk)));
+		sb.append(String.format("    public static Complex[][][] convolve_%s_%s_%s%s(Complex[][][] f, Complex[][][] g) {%n", Integer.toString(gi), Integer.toString(gj), Integer.toString(gk), suffix));
 		sb.append(String.format("        final int fi = f.length;%n"));
 		sb.append(String.format("        final int fj = f[0].length;%n"));
 		sb.append(String.format("        final int fk = f[0][0].length;%n"));
@@ -435,16 +472,144 @@ public class Unroller {
 	}
 
 	public String makeMethodTail3dComplex(int gi, int gj, int gk) {
+		return makeMethodTail3dComplex(gi, gj, gk, "");
+	}
+
+	public String makeMethodTail3dComplex(int gi, int gj, int gk, String suffix) {
 		StringBuilder sb = new StringBuilder();
 		sb.append(String.format("     	        	   }%n"));
 		sb.append(String.format("                }%n"));
 		sb.append(String.format("            }%n"));
 		sb.append(String.format("        return Boundaries.finishBoundaries3d(fPad, gg, r, gi, gj, gk, hgi, hgie, hgj, hgje, hgk, hgke, ri, rj, rk)%n;"));
 		sb.append(String.format("    };%n"));
-		sb.append(String.format("// end convolve_%s_%s_%s(double[][][] f, double[][][] g) {%n", Integer.toString(gi), Integer.toString(gj), Integer.toString(gk)));
+		sb.append(String.format("// end convolve_%s_%s_%s%s(double[][][] f, double[][][] g) {%n", Integer.toString(gi), Integer.toString(gj), Integer.toString(gk), suffix));
 		return sb.toString();
 	}
 
+	/**
+	 * Method name suffix for folded kernels of symmetry {@code sym}.
+	 */
+	public static String symmetrySuffix(int sym) {
+		switch (sym) {
+		case KernelSymmetry.EVEN:
+			return "_even";
+		case KernelSymmetry.ODD:
+			return "_odd";
+		default:
+			return "";
+		}
+	}
+
+	/*
+	 * Folded tap expressions along the unit-stride axis i. Tap i and its mirror gi-1-i share the
+	 * weight of tap i, up to sign, so their samples are summed (even) or differenced (odd) first.
+	 * The centre tap of an odd-length kernel is kept only for even symmetry, being zero otherwise.
+	 */
+	private ArrayList<String> foldedTerms(int gi, int sym, String index, String offset, String weight,
+			int gBase, boolean flip, boolean complex, DecimalFormat fmtI) {
+		ArrayList<String> terms = new ArrayList<String>();
+		int hgi = gi/2;
+		String op = (sym == KernelSymmetry.EVEN) ? (complex ? "add" : "+") : (complex ? "subtract" : "-");
+		for (int i = 0; i < gi/2; i++) {
+			String a = fmtI.format(i-hgi);
+			String b = fmtI.format(gi-1-i-hgi);
+			String w = String.format(weight, gBase + (flip ? gi-1-i : i));
+			if (complex) {
+				terms.add(String.format(".add(fPad[%s%s%s].%s(fPad[%s%s%s]).multiply(%s))", index, offset, a, op, index, offset, b, w));
+			} else {
+				terms.add(String.format("(fPad[%s%s%s] %s fPad[%s%s%s])*%s", index, offset, a, op, index, offset, b, w));
+			}
+		}
+		if (gi % 2 == 1 && sym == KernelSymmetry.EVEN) {
+			String c = fmtI.format(0);
+			String w = String.format(weight, gBase + hgi);
+			if (complex) {
+				terms.add(String.format(".add(fPad[%s%s%s].multiply(%s))", index, offset, c, w));
+			} else {
+				terms.add(String.format("fPad[%s%s%s]*%s", index, offset, c, w));
+			}
+		}
+		return terms;
+	}
+
+	private String appendTerms(StringBuilder sb, ArrayList<String> terms, String indent, boolean complex) {
+		if (terms.isEmpty()) {
+			sb.append(String.format("%s%s;%n", indent, complex ? ".add(Complex.ZERO)" : "0"));
+			return sb.toString();
+		}
+		for (int n = 0; n < terms.size(); n++) {
+			sb.append(indent).append(terms.get(n));
+			if (n == terms.size()-1) {
+				sb.append(String.format(";%n"));
+			} else {
+				sb.append(complex ? String.format("%n") : String.format("+ %n"));
+			}
+		}
+		return sb.toString();
+	}
+
+	public String makeFoldedBody1dDouble(int gi, int sym) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("                 r[i] = %n"));
+		return appendTerms(sb, foldedTerms(gi, sym, "i", "", "g[%d]", 0, true, false, fmtI2D), "                 ", false);
+	}
+
+	public String makeFoldedBody1dComplex(int gi, int sym) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("                 r[i] %n"));
+		return appendTerms(sb, foldedTerms(gi, sym, "i", "", "g[%d]", 0, true, true, fmtI2D), "                 ", true);
+	}
+
+	public String makeFoldedBody2dDouble(int gi, int gj, int sym) {
+		int hgj = gj/2;
+		StringBuilder sb = new StringBuilder();
+		ArrayList<String> terms = new ArrayList<String>();
+		sb.append(String.format("                 r[ij] = %n"));
+		for (int j = 0; j < gj; j++) {
+			terms.addAll(foldedTerms(gi, sym, "ij", fmtJ2D.format(j-hgj), "gg[%d]", j*gi, false, false, fmtI2D));
+		}
+		return appendTerms(sb, terms, "                 ", false);
+	}
+
+	public String makeFoldedBody2dComplex(int gi, int gj, int sym) {
+		int hgj = gj/2;
+		StringBuilder sb = new StringBuilder();
+		ArrayList<String> terms = new ArrayList<String>();
+		sb.append(String.format("				r[ij] %n"));
+		for (int j = 0; j < gj; j++) {
+			terms.addAll(foldedTerms(gi, sym, "ij", fmtJ2D.format(j-hgj), "gg[%d]", j*gi, false, true, fmtI2D));
+		}
+		return appendTerms(sb, terms, "                ", true);
+	}
+
+	public String makeFoldedBody3dDouble(int gi, int gj, int gk, int sym) {
+		int hgj = gj/2;
+		int hgk = gk/2;
+		StringBuilder sb = new StringBuilder();
+		ArrayList<String> terms = new ArrayList<String>();
+		sb.append(String.format("	                 r[ijk] = %n"));
+		for (int k = 0; k < gk; k++) {
+			for (int j = 0; j < gj; j++) {
+				terms.addAll(foldedTerms(gi, sym, "ijk", fmtK3D.format(k-hgk)+fmtJ3D.format(j-hgj), "gg[%d]", k*gi*gj + j*gi, false, false, fmtI3D));
+			}
+		}
+		return appendTerms(sb, terms, "    	             ", false);
+	}
+
+	public String makeFoldedBody3dComplex(int gi, int gj, int gk, int sym) {
+		int hgj = gj/2;
+		int hgk = gk/2;
+		StringBuilder sb = new StringBuilder();
+		ArrayList<String> terms = new ArrayList<String>();
+		sb.append(String.format("         	        r[ijk] %n"));
+		for (int k = 0; k < gk; k++) {
+			for (int j = 0; j < gj; j++) {
+				terms.addAll(foldedTerms(gi, sym, "ijk", fmtK3D.format(k-hgk)+fmtJ3D.format(j-hgj), "gg[%d]", k*gi*gj + j*gi, false, true, fmtI3D));
+			}
+		}
+		return appendTerms(sb, terms, "       	          ", true);
+	}
+
 
 	public void setPath() {
 		try {
@@ -504,6 +669,54 @@ public class Unroller {
 		return sb.toString();
 	}
 
+	public String makeFoldedMethodDouble(int sym, int i) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(makeMethodHead1dDouble(i, symmetrySuffix(sym)));
+		sb.append(makeFoldedBody1dDouble(i, sym));
+		sb.append(makeMethodTail1dDouble());
+		return sb.toString();
+	}
+
+	public String makeFoldedMethodComplex(int sym, int i) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(makeMethodHead1dComplex(i, symmetrySuffix(sym)));
+		sb.append(makeFoldedBody1dComplex(i, sym));
+		sb.append(makeMethodTail1dComplex(i, symmetrySuffix(sym)));
+		return sb.toString();
+	}
+
+	public String makeFoldedMethodDouble(int sym, int i, int j) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(makeMethodHead2dDouble(i, j, symmetrySuffix(sym)));
+		sb.append(makeFoldedBody2dDouble(i, j, sym));
+		sb.append(makeMethodTail2dDouble());
+		return sb.toString();
+	}
+
+	public String makeFoldedMethodComplex(int sym, int i, int j) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(makeMethodHead2dComplex(i, j, symmetrySuffix(sym)));
+		sb.append(makeFoldedBody2dComplex(i, j, sym));
+		sb.append(makeMethodTail2dComplex(i, j, symmetrySuffix(sym)));
+		return sb.toString();
+	}
+
+	public String makeFoldedMethodDouble(int sym, int i, int j, int k) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(makeMethodHead3dDouble(i, j, k, symmetrySuffix(sym)));
+		sb.append(makeFoldedBody3dDouble(i, j, k, sym));
+		sb.append(makeMethodTail3dDouble());
+		return sb.toString();
+	}
+
+	public String makeFoldedMethodComplex(int sym, int i, int j, int k) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(makeMethodHead3dComplex(i, j, k, symmetrySuffix(sym)));
+		sb.append(makeFoldedBody3dComplex(i, j, k, sym));
+		sb.append(makeMethodTail3dComplex(i, j, k, symmetrySuffix(sym)));
+		return sb.toString();
+	}
+
 
 	public void addKernel(ArrayList<Integer> dims, Path kernelSrcPath) {
 		switch(dims.size()) {
@@ -575,6 +788,50 @@ public class Unroller {
 		}
 	}
 
+	/**
+	 * Appends folded methods for a kernel of symmetry {@code sym} along its first index to the
+	 * source file. {@code sym} is as returned by {@link KernelSymmetry#of(double[])} for 1D kernels and
+	 * {@link KernelSymmetry#alongFirstAxis(double[][])} or {@link KernelSymmetry#alongFirstAxis(double[][][])}
+	 * for 2D and 3D kernels. Kernels without symmetry get the ordinary unrolled methods.
+	 */
+	public void addKernel(ArrayList<Integer> dims, int sym, Path kernelSrcPath) {
+		if (sym == KernelSymmetry.NONE) {
+			addKernel(dims, kernelSrcPath);
+			return;
+		}
+		try {
+			StringBuilder currentFile = new StringBuilder();
+			Scanner s = new Scanner(new BufferedReader(new FileReader(kernelSrcPath.toString())));
+			String previousLine = "";
+			while (s.hasNextLine()) {
+				currentFile.append(previousLine);
+				currentFile.append(String.format("%n"));
+				previousLine = s.nextLine();
+			} // drops final bracket
+			s.close();
+			switch(dims.size()) {
+			case 1:
+				currentFile.append(makeFoldedMethodDouble(sym, dims.get(0)));
+				currentFile.append(makeFoldedMethodComplex(sym, dims.get(0)));
+				break;
+			case 2:
+				currentFile.append(makeFoldedMethodDouble(sym, dims.get(0), dims.get(1)));
+				currentFile.append(makeFoldedMethodComplex(sym, dims.get(0), dims.get(1)));
+				break;
+			case 3:
+				currentFile.append(makeFoldedMethodDouble(sym, dims.get(0), dims.get(1), dims.get(2)));
+				currentFile.append(makeFoldedMethodComplex(sym, dims.get(0), dims.get(1), dims.get(2)));
+				break;
+			}
+			currentFile.append(String.format("}%n"));
+			BufferedWriter w = new BufferedWriter(new FileWriter(kernelSrcPath.toString(), false));
+			w.write(currentFile.toString());
+			w.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	/*
 	public static void main(String[] args) {
 
@@ -1,79 +1,277 @@
 package com.ericbarnhill.jvcl;
 
-import org.apache.commons.numbers.complex.Complex;
+import java.util.Arrays;
 
-import com.ericbarnhill.arrayMath.ArrayMath;
+import org.apache.commons.math4.exception.OutOfRangeException;
+import org.apache.commons.numbers.complex.Complex;
+import org.apache.commons.numbers.complex.ComplexUtils;
 
+/**
+ * This class upsamples, filters and downsamples signals in one polyphase pass. For 2D and 3D arrays the filter
+ * runs along one axis chosen by {@code dim}, with the convention of the 1D kernels of
+ * {@link ConvolverDoubleFDCPU}: in 2D, {@code dim} 0 resamples each row {@code f[i]} and 1 runs along the first
+ * index; in 3D, {@code dim} 0 resamples each row {@code f[i][j]}, 1 runs along the first index and 2 along the
+ * second. The overloads without {@code dim} use 1 in 2D and 0 in 3D.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ */
  public class UpFirDn {
 
 	 int upValue, downValue;
      ConvolverFactory convolverFactory;
      ConvolverFactory.ConvolutionType convolutionType;
+     ParallelSlabs slabs;
 
      public UpFirDn() {
          convolverFactory = new ConvolverFactory();
          this.convolutionType = ConvolverFactory.ConvolutionType.FDCPU;
+         slabs = new ParallelSlabs(1);
      }
 
      public UpFirDn(ConvolverFactory.ConvolutionType convolutionType) {
          convolverFactory = new ConvolverFactory();
          this.convolutionType = convolutionType;
+         slabs = new ParallelSlabs(1);
      }
 
-	 Complex[] upFirDn(Complex[] f, Complex[] g, int upFactor, int downFactor) {
-        ConvolverComplex c = (ConvolverComplex)convolverFactory.getConvolver(ConvolverFactory.DataType.COMPLEX, convolutionType);
-		if (upFactor > 1) {
-			f = interpolateZeros(f, upFactor);
-		}
-		// f = Unrolled.convolve_10(f, g);
-		f = c.convolve(f,g);
-		if (downFactor > 1) {
-			f = decimate(f, downFactor);
+	/**
+	 * @param threads number of threads used to resample large 3D arrays
+	 */
+	 public UpFirDn(int threads) {
+		this();
+		slabs.close();
+		slabs = new ParallelSlabs(threads);
+	}
+
+	/**
+	 * Sets the number of threads used to resample large 3D arrays. With 1 thread (the default) all resampling
+	 * runs sequentially.
+	 * @param threads number of threads
+	 */
+	 public void setThreads(int threads) {
+		slabs.close();
+		slabs = new ParallelSlabs(threads);
+	}
+
+	 public int getThreads() {
+		return slabs.getThreads();
+	}
+
+	/**
+	 * Releases worker threads. Should be called as destructor method when more than one thread is used.
+	 */
+	 public void close() {
+		slabs.close();
+	}
+
+	 public Complex[] upFirDn(Complex[] f, Complex[] g, int upFactor, int downFactor) {
+		if (upFactor == 1) {
+			return ((ConvolverComplex)convolverFactory.getConvolver(ConvolverFactory.DataType.COMPLEX, convolutionType))
+					.convolveStrided(f, g, downFactor);
 		}
-		return f;
+		final int rl = resampledLength(f.length, g.length, upFactor, downFactor);
+		final double[] rRe = new double[rl];
+		final double[] rIm = new double[rl];
+		polyphase(ComplexUtils.complex2Real(f), ComplexUtils.complex2Imaginary(f),
+				phases(ComplexUtils.complex2Real(g), upFactor), phases(ComplexUtils.complex2Imaginary(g), upFactor),
+				upFactor, downFactor, rRe, rIm);
+		return ComplexUtils.split2Complex(rRe, rIm);
 	}
 
-	 Complex[][] upFirDn(Complex[][] f, Complex[] g, int upFactor, int downFactor, int dim) {
+	 public Complex[][] upFirDn(Complex[][] f, Complex[] g, int upFactor, int downFactor, int dim) {
 		if (dim < 0 || dim > 1) {
-			throw new RuntimeException("Switch to invalid dimension");
+			throw new OutOfRangeException(dim, 0, 1);
 		}
-		if (dim == 1) f = ArrayMath.shiftDim(f);
-		int height = f[0].length;
-		for (int i = 0; i <height-1; i++) {
-			f[i] = upFirDn(f[i], g, upFactor, downFactor);
+		final int fi = f.length;
+		final int fj = f[0].length;
+		final int fl = dim == 0 ? fj : fi;
+		final int rl = resampledLength(fl, g.length, upFactor, downFactor);
+		final double[][] hRe = phases(ComplexUtils.complex2Real(g), upFactor);
+		final double[][] hIm = phases(ComplexUtils.complex2Imaginary(g), upFactor);
+		final Complex[][] r = dim == 0 ? new Complex[fi][rl] : new Complex[rl][fj];
+		final double[] lineRe = new double[fl];
+		final double[] lineIm = new double[fl];
+		final double[] outRe = new double[rl];
+		final double[] outIm = new double[rl];
+		for (int a = 0; a < (dim == 0 ? fi : fj); a++) {
+			for (int l = 0; l < fl; l++) {
+				final Complex v = dim == 0 ? f[a][l] : f[l][a];
+				lineRe[l] = v.getReal();
+				lineIm[l] = v.getImaginary();
+			}
+			polyphase(lineRe, lineIm, hRe, hIm, upFactor, downFactor, outRe, outIm);
+			for (int l = 0; l < rl; l++) {
+				if (dim == 0) {
+					r[a][l] = new Complex(outRe[l], outIm[l]);
+				} else {
+					r[l][a] = new Complex(outRe[l], outIm[l]);
+				}
+			}
 		}
-		if (dim ==1) f = ArrayMath.shiftDim(f);
-		return f;
+		return r;
 	}
 
-	 Complex[][] upFirDn(Complex[][] f, Complex[] g, int upFactor, int downFactor) {
+	 public Complex[][] upFirDn(Complex[][] f, Complex[] g, int upFactor, int downFactor) {
 		return upFirDn(f, g, upFactor, downFactor, 1);
 	}
 
-	 public double[] upFirDn(double[] f, double[] g, int upFactor, int downFactor) {
-        ConvolverDouble c = (ConvolverDouble)convolverFactory.getConvolver(ConvolverFactory.DataType.DOUBLE, convolutionType);
-		if (upFactor > 1) {
-			f = interpolateZeros(f, upFactor);
+	 public Complex[][][] upFirDn(final Complex[][][] f, Complex[] g, final int upFactor, final int downFactor,
+			int dim) {
+		final int[] n = resampledDimensions(f.length, f[0].length, f[0][0].length, g.length, upFactor, downFactor,
+				dim);
+		final int axis = axis(dim);
+		final int fl = axis == 0 ? f.length : axis == 1 ? f[0].length : f[0][0].length;
+		final int rl = n[axis];
+		final double[][] hRe = phases(ComplexUtils.complex2Real(g), upFactor);
+		final double[][] hIm = phases(ComplexUtils.complex2Imaginary(g), upFactor);
+		final Complex[][][] r = new Complex[n[0]][n[1]][n[2]];
+		// a and b run over the two axes other than the resampled one
+		final int na = axis == 0 ? n[1] : n[0];
+		final int nb = axis == 2 ? n[1] : n[2];
+		slabs.run(na, (long) n[0] * n[1] * n[2] * (g.length / upFactor + 1), new ParallelSlabs.Slab() {
+			public void compute(int aStart, int aEnd) {
+				final double[] lineRe = new double[fl];
+				final double[] lineIm = new double[fl];
+				final double[] outRe = new double[rl];
+				final double[] outIm = new double[rl];
+				for (int a = aStart; a < aEnd; a++) {
+					for (int b = 0; b < nb; b++) {
+						for (int l = 0; l < fl; l++) {
+							final Complex v = axis == 0 ? f[l][a][b] : axis == 1 ? f[a][l][b] : f[a][b][l];
+							lineRe[l] = v.getReal();
+							lineIm[l] = v.getImaginary();
+						}
+						polyphase(lineRe, lineIm, hRe, hIm, upFactor, downFactor, outRe, outIm);
+						for (int l = 0; l < rl; l++) {
+							final Complex v = new Complex(outRe[l], outIm[l]);
+							if (axis == 0) {
+								r[l][a][b] = v;
+							} else if (axis == 1) {
+								r[a][l][b] = v;
+							} else {
+								r[a][b][l] = v;
+							}
+						}
+					}
+				}
+			}
+		});
+		return r;
+	}
+
+	 public Complex[][][] upFirDn(Complex[][][] f, Complex[] g, int upFactor, int downFactor) {
+		return upFirDn(f, g, upFactor, downFactor, 0);
+	}
+
+	/**
+	 * As {@link #polyphase(double[], double[][], int, int, double[])} for complex signal and filter held as real
+	 * and imaginary parts.
+	 */
+	 static void polyphase(double[] fRe, double[] fIm, double[][] hRe, double[][] hIm, int up, int down,
+			double[] rRe, double[] rIm) {
+		final int fl = fRe.length;
+		for (int m = 0; m < rRe.length; m++) {
+			final int n = m * down;
+			final double[] hpRe = hRe[n % up];
+			final double[] hpIm = hIm[n % up];
+			int i = n / up;
+			int t = 0;
+			if (i >= fl) {
+				t = i - fl + 1;
+				i = fl - 1;
+			}
+			double sumRe = 0;
+			double sumIm = 0;
+			for (; t < hpRe.length && i >= 0; t++, i--) {
+				sumRe += hpRe[t] * fRe[i] - hpIm[t] * fIm[i];
+				sumIm += hpRe[t] * fIm[i] + hpIm[t] * fRe[i];
+			}
+			rRe[m] = sumRe;
+			rIm[m] = sumIm;
 		}
-		//f = Unrolled.convolve_10(f, g);
-		f = c.convolve(f,g);
-		if (downFactor > 1) {
-			f = decimate( f, downFactor);
+	}
+
+	/**
+	 * @return length of a signal of length {@code f} upsampled by {@code up}, convolved with a filter of length
+	 *         {@code g} and downsampled by {@code down}
+	 */
+	 public static int resampledLength(int f, int g, int up, int down) {
+		if (up < 1 || down < 1) {
+			throw new IllegalArgumentException("JVCL: up and down factors must be at least 1");
+		}
+		return ((f - 1) * up + g - 1) / down + 1;
+	}
+
+	/**
+	 * @return index of the array axis along which {@code dim} resamples a 3D array. As for the 1D kernels of
+	 *         {@link ConvolverDoubleFDCPU}, {@code dim} 0 runs along the last index, 1 along the first and 2
+	 *         along the second.
+	 */
+	 static int axis(int dim) {
+		if (dim < 0 || dim > 2) {
+			throw new OutOfRangeException(dim, 0, 2);
+		}
+		return dim == 0 ? 2 : dim - 1;
+	}
+
+	/**
+	 * @return dimensions of an array of dimensions {@code (fi, fj, fk)} resampled along {@code dim}
+	 */
+	 static int[] resampledDimensions(int fi, int fj, int fk, int g, int up, int down, int dim) {
+		final int[] n = {fi, fj, fk};
+		final int axis = axis(dim);
+		n[axis] = resampledLength(n[axis], g, up, down);
+		return n;
+	}
+
+	/**
+	 * Throws if a caller-supplied result does not have the resampled dimensions {@code n}.
+	 */
+	 static void checkResultDimensions(int ri, int rj, int rk, int[] n) {
+		if (ri != n[0] || rj != n[1] || rk != n[2]) {
+			throw new IllegalArgumentException("JVCL: result must have the resampled dimensions");
 		}
-		return f;
+	}
+
+	 public double[] upFirDn(double[] f, double[] g, int upFactor, int downFactor) {
+		if (upFactor == 1) {
+			return ((ConvolverDouble)convolverFactory.getConvolver(ConvolverFactory.DataType.DOUBLE, convolutionType))
+					.convolveStrided(f, g, downFactor);
+		}
+		final double[] r = new double[resampledLength(f.length, g.length, upFactor, downFactor)];
+		polyphase(f, phases(g, upFactor), upFactor, downFactor, r);
+		return r;
 	}
 
 	 public double[][] upFirDn(double[][] f, double[] g, int upFactor, int downFactor, int dim) {
 		if (dim < 0 || dim > 1) {
-			throw new RuntimeException("Switch to invalid dimension");
+			throw new OutOfRangeException(dim, 0, 1);
 		}
-		if (dim == 1) f = ArrayMath.shiftDim(f);
-		int height = f.length;
-		for (int i = 0; i < height; i++) {
-			f[i] = upFirDn(f[i], g, upFactor, downFactor);
+		final int fi = f.length;
+		final int fj = f[0].length;
+		final double[][] h = phases(g, upFactor);
+		if (dim == 0) {
+			final double[][] r = new double[fi][resampledLength(fj, g.length, upFactor, downFactor)];
+			for (int i = 0; i < fi; i++) {
+				polyphase(f[i], h, upFactor, downFactor, r[i]);
+			}
+			return r;
 		}
-		if (dim ==1) f = ArrayMath.shiftDim(f);
-		return f;
+		final int ri = resampledLength(fi, g.length, upFactor, downFactor);
+		final double[][] r = new double[ri][fj];
+		final double[] line = new double[fi];
+		final double[] out = new double[ri];
+		for (int j = 0; j < fj; j++) {
+			for (int i = 0; i < fi; i++) {
+				line[i] = f[i][j];
+			}
+			polyphase(line, h, upFactor, downFactor, out);
+			for (int i = 0; i < ri; i++) {
+				r[i][j] = out[i];
+			}
+		}
+		return r;
 	}
 
 	 public double[][] upFirDn(double[][] f, double[] g, int upFactor, int downFactor) {
@@ -81,30 +279,323 @@ import com.ericbarnhill.arrayMath.ArrayMath;
 	}
 
 	 public double[][][] upFirDn(double[][][] f, double[] g, int upFactor, int downFactor, int dim) {
-        ConvolverDouble c = (ConvolverDouble)convolverFactory.getConvolver(ConvolverFactory.DataType.DOUBLE, convolutionType);
+		final int[] n = resampledDimensions(f.length, f[0].length, f[0][0].length, g.length, upFactor, downFactor,
+				dim);
+		return upFirDnInto(f, g, upFactor, downFactor, dim, new double[n[0]][n[1]][n[2]]);
+	}
+
+	/**
+	 * Resamples {@code f} along {@code dim} into a caller-supplied result. The filter is split into its
+	 * phases once, and independent parts of the result are computed in parallel. Along the first two indices
+	 * whole rows of {@code f} are combined, so the array is read in its own layout with no gathered copies of
+	 * lines.
+	 * @param f {@code double[][][]} array
+	 * @param g {@code double[]} filter
+	 * @param upFactor upsampling factor
+	 * @param downFactor downsampling factor
+	 * @param dim orientation of the filter, as for {@link ConvolverDoubleFDCPU}: 0 along the last index
+	 *            ({@code f[i][j]}), 1 along the first and 2 along the second
+	 * @param r {@code double[][][]} result, whose length along {@code dim} is given by {@link #resampledLength}
+	 * @return {@code r}
+	 */
+	 public double[][][] upFirDnInto(final double[][][] f, double[] g, final int upFactor, final int downFactor,
+			final int dim, final double[][][] r) {
+		final int[] n = resampledDimensions(f.length, f[0].length, f[0][0].length, g.length, upFactor, downFactor,
+				dim);
+		checkResultDimensions(r.length, r[0].length, r[0][0].length, n);
+		final double[][] h = phases(g, upFactor);
+		final int axis = axis(dim);
+		final int fl = axis == 0 ? f.length : axis == 1 ? f[0].length : f[0][0].length;
+		final long work = (long) n[0] * n[1] * n[2] * (g.length / upFactor + 1);
+		switch (axis) {
+			case 0:
+				slabs.run(n[0], work, new ParallelSlabs.Slab() {
+					public void compute(int mStart, int mEnd) {
+						for (int m = mStart; m < mEnd; m++) {
+							final double[][] rPlane = r[m];
+							for (int a = 0; a < rPlane.length; a++) {
+								Arrays.fill(rPlane[a], 0);
+							}
+							// tap t of phase m * down mod up meets plane i0 - t
+							final double[] hp = h[m * downFactor % upFactor];
+							final int i0 = m * downFactor / upFactor;
+							final int tEnd = Math.min(hp.length, i0 + 1);
+							for (int t = Math.max(0, i0 - fl + 1); t < tEnd; t++) {
+								final double[][] fPlane = f[i0 - t];
+								for (int a = 0; a < rPlane.length; a++) {
+									addRow(fPlane[a], hp[t], rPlane[a]);
+								}
+							}
+						}
+					}
+				});
+				break;
+			case 1:
+				slabs.run(n[0], work, new ParallelSlabs.Slab() {
+					public void compute(int iStart, int iEnd) {
+						for (int i = iStart; i < iEnd; i++) {
+							for (int m = 0; m < n[1]; m++) {
+								final double[] rRow = r[i][m];
+								Arrays.fill(rRow, 0);
+								final double[] hp = h[m * downFactor % upFactor];
+								final int j0 = m * downFactor / upFactor;
+								final int tEnd = Math.min(hp.length, j0 + 1);
+								for (int t = Math.max(0, j0 - fl + 1); t < tEnd; t++) {
+									addRow(f[i][j0 - t], hp[t], rRow);
+								}
+							}
+						}
+					}
+				});
+				break;
+			default:
+				slabs.run(n[0], work, new ParallelSlabs.Slab() {
+					public void compute(int iStart, int iEnd) {
+						for (int i = iStart; i < iEnd; i++) {
+							for (int j = 0; j < n[1]; j++) {
+								polyphase(f[i][j], h, upFactor, downFactor, r[i][j]);
+							}
+						}
+					}
+				});
+		}
+		return r;
+	}
+
+	 public double[][][] upFirDn(double[][][] f, double[] g, int upFactor, int downFactor) {
+		return upFirDn(f, g, upFactor, downFactor, 0);
+	}
+
+	/**
+	 * Adds {@code hv * fRow} to {@code rRow}.
+	 */
+	 private static void addRow(double[] fRow, double hv, double[] rRow) {
+		for (int b = 0; b < rRow.length; b++) {
+			rRow[b] += hv * fRow[b];
+		}
+	}
+
+	/**
+	 * Splits {@code g} into {@code up} phase sub-filters {@code h[ph][t] = g[ph + t * up]}. Output {@code n} of
+	 * the convolution of the upsampled signal with {@code g} only meets the taps of phase {@code n mod up}.
+	 */
+	 static double[][] phases(double[] g, int up) {
+		final double[][] h = new double[up][];
+		for (int ph = 0; ph < up; ph++) {
+			h[ph] = new double[ph < g.length ? (g.length - 1 - ph) / up + 1 : 0];
+			for (int t = 0; t < h[ph].length; t++) {
+				h[ph][t] = g[ph + t * up];
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Computes {@code r[m]}, output {@code m * down} of {@code f} upsampled by {@code up} and convolved with the
+	 * filter whose phases are {@code h}, without forming the upsampled signal. Only the taps which meet a sample
+	 * of {@code f} are applied.
+	 */
+	 static void polyphase(double[] f, double[][] h, int up, int down, double[] r) {
+		final int fl = f.length;
+		for (int m = 0; m < r.length; m++) {
+			final int n = m * down;
+			// tap t of phase n mod up meets f[n / up - t]
+			final double[] hp = h[n % up];
+			int i = n / up;
+			int t = 0;
+			if (i >= fl) {
+				t = i - fl + 1;
+				i = fl - 1;
+			}
+			double sum = 0;
+			for (; t < hp.length && i >= 0; t++, i--) {
+				sum += hp[t] * f[i];
+			}
+			r[m] = sum;
+		}
+	}
+
+	 public float[] upFirDn(float[] f, float[] g, int upFactor, int downFactor) {
+		if (upFactor == 1) {
+			return ((ConvolverFloat)convolverFactory.getConvolver(ConvolverFactory.DataType.FLOAT, convolutionType))
+					.convolveStrided(f, g, downFactor);
+		}
+		final float[] r = new float[resampledLength(f.length, g.length, upFactor, downFactor)];
+		polyphase(f, phases(g, upFactor), upFactor, downFactor, r);
+		return r;
+	}
+
+	 public float[][] upFirDn(float[][] f, float[] g, int upFactor, int downFactor, int dim) {
 		if (dim < 0 || dim > 1) {
-			throw new RuntimeException("Switch to invalid dimension");
+			throw new OutOfRangeException(dim, 0, 1);
 		}
-		if (dim == 0) f = ArrayMath.shiftDim(f , 1);
-		if (dim == 1) f = ArrayMath.shiftDim(f , 2);
-		int fi = f.length;
-		int fj = f[0].length;
-		if (upFactor > 1) {
+		final int fi = f.length;
+		final int fj = f[0].length;
+		final float[][] h = phases(g, upFactor);
+		if (dim == 0) {
+			final float[][] r = new float[fi][resampledLength(fj, g.length, upFactor, downFactor)];
 			for (int i = 0; i < fi; i++) {
-				for (int j = 0; j < fj; j++) {
-                    f[i][j] = upFirDn(f[i][j], g, upFactor, downFactor); 
-				}
+				polyphase(f[i], h, upFactor, downFactor, r[i]);
 			}
+			return r;
 		}
-		if (dim == 0) f = ArrayMath.shiftDim(f , 1);
-		if (dim == 1) f = ArrayMath.shiftDim(f , 2);
-		return f;
+		final int ri = resampledLength(fi, g.length, upFactor, downFactor);
+		final float[][] r = new float[ri][fj];
+		final float[] line = new float[fi];
+		final float[] out = new float[ri];
+		for (int j = 0; j < fj; j++) {
+			for (int i = 0; i < fi; i++) {
+				line[i] = f[i][j];
+			}
+			polyphase(line, h, upFactor, downFactor, out);
+			for (int i = 0; i < ri; i++) {
+				r[i][j] = out[i];
+			}
+		}
+		return r;
 	}
 
-	 public double[][][] upFirDn(double[][][] f, double[] g, int upFactor, int downFactor) {
+	 public float[][] upFirDn(float[][] f, float[] g, int upFactor, int downFactor) {
+		return upFirDn(f, g, upFactor, downFactor, 1);
+	}
+
+	 public float[][][] upFirDn(float[][][] f, float[] g, int upFactor, int downFactor, int dim) {
+		final int[] n = resampledDimensions(f.length, f[0].length, f[0][0].length, g.length, upFactor, downFactor,
+				dim);
+		return upFirDnInto(f, g, upFactor, downFactor, dim, new float[n[0]][n[1]][n[2]]);
+	}
+
+	/**
+	 * Resamples {@code f} along {@code dim} into a caller-supplied result. The filter is split into its
+	 * phases once, and independent parts of the result are computed in parallel. Along the first two indices
+	 * whole rows of {@code f} are combined, so the array is read in its own layout with no gathered copies of
+	 * lines.
+	 * @param f {@code float[][][]} array
+	 * @param g {@code float[]} filter
+	 * @param upFactor upsampling factor
+	 * @param downFactor downsampling factor
+	 * @param dim orientation of the filter, as for {@link ConvolverDoubleFDCPU}: 0 along the last index
+	 *            ({@code f[i][j]}), 1 along the first and 2 along the second
+	 * @param r {@code float[][][]} result, whose length along {@code dim} is given by {@link #resampledLength}
+	 * @return {@code r}
+	 */
+	 public float[][][] upFirDnInto(final float[][][] f, float[] g, final int upFactor, final int downFactor,
+			final int dim, final float[][][] r) {
+		final int[] n = resampledDimensions(f.length, f[0].length, f[0][0].length, g.length, upFactor, downFactor,
+				dim);
+		checkResultDimensions(r.length, r[0].length, r[0][0].length, n);
+		final float[][] h = phases(g, upFactor);
+		final int axis = axis(dim);
+		final int fl = axis == 0 ? f.length : axis == 1 ? f[0].length : f[0][0].length;
+		final long work = (long) n[0] * n[1] * n[2] * (g.length / upFactor + 1);
+		switch (axis) {
+			case 0:
+				slabs.run(n[0], work, new ParallelSlabs.Slab() {
+					public void compute(int mStart, int mEnd) {
+						for (int m = mStart; m < mEnd; m++) {
+							final float[][] rPlane = r[m];
+							for (int a = 0; a < rPlane.length; a++) {
+								Arrays.fill(rPlane[a], 0);
+							}
+							// tap t of phase m * down mod up meets plane i0 - t
+							final float[] hp = h[m * downFactor % upFactor];
+							final int i0 = m * downFactor / upFactor;
+							final int tEnd = Math.min(hp.length, i0 + 1);
+							for (int t = Math.max(0, i0 - fl + 1); t < tEnd; t++) {
+								final float[][] fPlane = f[i0 - t];
+								for (int a = 0; a < rPlane.length; a++) {
+									addRow(fPlane[a], hp[t], rPlane[a]);
+								}
+							}
+						}
+					}
+				});
+				break;
+			case 1:
+				slabs.run(n[0], work, new ParallelSlabs.Slab() {
+					public void compute(int iStart, int iEnd) {
+						for (int i = iStart; i < iEnd; i++) {
+							for (int m = 0; m < n[1]; m++) {
+								final float[] rRow = r[i][m];
+								Arrays.fill(rRow, 0);
+								final float[] hp = h[m * downFactor % upFactor];
+								final int j0 = m * downFactor / upFactor;
+								final int tEnd = Math.min(hp.length, j0 + 1);
+								for (int t = Math.max(0, j0 - fl + 1); t < tEnd; t++) {
+									addRow(f[i][j0 - t], hp[t], rRow);
+								}
+							}
+						}
+					}
+				});
+				break;
+			default:
+				slabs.run(n[0], work, new ParallelSlabs.Slab() {
+					public void compute(int iStart, int iEnd) {
+						for (int i = iStart; i < iEnd; i++) {
+							for (int j = 0; j < n[1]; j++) {
+								polyphase(f[i][j], h, upFactor, downFactor, r[i][j]);
+							}
+						}
+					}
+				});
+		}
+		return r;
+	}
+
+	 public float[][][] upFirDn(float[][][] f, float[] g, int upFactor, int downFactor) {
 		return upFirDn(f, g, upFactor, downFactor, 0);
 	}
 
+	/**
+	 * Adds {@code hv * fRow} to {@code rRow}.
+	 */
+	 private static void addRow(float[] fRow, float hv, float[] rRow) {
+		for (int b = 0; b < rRow.length; b++) {
+			rRow[b] += hv * fRow[b];
+		}
+	}
+
+	/**
+	 * Splits {@code g} into {@code up} phase sub-filters {@code h[ph][t] = g[ph + t * up]}. Output {@code n} of
+	 * the convolution of the upsampled signal with {@code g} only meets the taps of phase {@code n mod up}.
+	 */
+	 static float[][] phases(float[] g, int up) {
+		final float[][] h = new float[up][];
+		for (int ph = 0; ph < up; ph++) {
+			h[ph] = new float[ph < g.length ? (g.length - 1 - ph) / up + 1 : 0];
+			for (int t = 0; t < h[ph].length; t++) {
+				h[ph][t] = g[ph + t * up];
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Computes {@code r[m]}, output {@code m * down} of {@code f} upsampled by {@code up} and convolved with the
+	 * filter whose phases are {@code h}, without forming the upsampled signal. Only the taps which meet a sample
+	 * of {@code f} are applied.
+	 */
+	 static void polyphase(float[] f, float[][] h, int up, int down, float[] r) {
+		final int fl = f.length;
+		for (int m = 0; m < r.length; m++) {
+			final int n = m * down;
+			// tap t of phase n mod up meets f[n / up - t]
+			final float[] hp = h[n % up];
+			int i = n / up;
+			int t = 0;
+			if (i >= fl) {
+				t = i - fl + 1;
+				i = fl - 1;
+			}
+			float sum = 0;
+			for (; t < hp.length && i >= 0; t++, i--) {
+				sum += hp[t] * f[i];
+			}
+			r[m] = sum;
+		}
+	}
+
 	 public double[] interpolateZeros(double[] vec, int factor) {
 		int length = vec.length;
 		double[] interpVec = new double[length*factor-(factor-1)];
@@ -0,0 +1,110 @@
+/*
+ * (c) Eric Barnhill 2016 All Rights Reserved.
+ *
+ * This file is part of the Java Volumetric Convolution Library (JVCL). JVCL is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * JVCL is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with JVCL.  If not, see http://www.gnu.org/licenses/ .
+ *
+ * This code uses software from the Apache Software Foundation.
+ * The Apache Software License can be found at: http://www.apache.org/licenses/LICENSE-2.0.txt .
+ *
+ * This code uses software from the JogAmp project.
+ * Jogamp information and software license can be found at: https://jogamp.org/ .
+ *
+ * This code uses methods from the JTransforms package by Piotr Wendykier.
+ * JTransforms information and software license can be found at: https://github.com/wendykierp/JTransforms .
+ *
+ */
+
+package com.ericbarnhill.jvcl;
+
+/**
+ * This class describes the shape of a volume stored in a single flat backing array.
+ * Element {@code (i, j, k)} is stored at {@code offset + i*si + j*sj + k*sk}.
+ * 1D and 2D data are represented with trailing dimensions of length 1, so a 1D
+ * array of length {@code fi} has dimensions {@code (fi, 1, 1)}.
+ * <p>
+ * Volumes created from dimensions alone are contiguous, with the last dimension
+ * varying fastest as in a {@code [i][j][k]} Java array. Other strides allow views
+ * such as sub-volumes or transposes of existing data to be passed to a
+ * {@link Convolver} without copying.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ * @see VolumeDouble
+ * @see VolumeFloat
+ * @see VolumeComplex
+ */
+public abstract class Volume<T> {
+
+    final int ni, nj, nk;
+    final int si, sj, sk;
+    final int offset;
+
+    /**
+     * Contiguous volume with the last dimension varying fastest.
+     */
+    Volume(int ni, int nj, int nk) {
+        this(ni, nj, nk, 0, nj * nk, nk, 1);
+    }
+
+    Volume(int ni, int nj, int nk, int offset, int si, int sj, int sk) {
+        if (ni < 1 || nj < 1 || nk < 1) {
+            throw new IllegalArgumentException("JVCL: Volume dimensions must be positive");
+        }
+        this.ni = ni;
+        this.nj = nj;
+        this.nk = nk;
+        this.offset = offset;
+        this.si = si;
+        this.sj = sj;
+        this.sk = sk;
+    }
+
+    /**
+     * @return position of element {@code (i, j, k)} in the backing array
+     */
+    public int index(int i, int j, int k) {
+        return offset + i * si + j * sj + k * sk;
+    }
+
+    /**
+     * @return {@code {ni, nj, nk}}
+     */
+    public int[] getDims() {
+        return new int[] {ni, nj, nk};
+    }
+
+    /**
+     * @return {@code {si, sj, sk}}
+     */
+    public int[] getStrides() {
+        return new int[] {si, sj, sk};
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return number of elements in the volume
+     */
+    public int size() {
+        return ni * nj * nk;
+    }
+
+    /**
+     * @return true if the volume occupies its backing array from position 0 with
+     *         the last dimension varying fastest
+     */
+    public boolean isContiguous() {
+        return offset == 0 && sk == 1 && sj == nk && si == nj * nk;
+    }
+
+}
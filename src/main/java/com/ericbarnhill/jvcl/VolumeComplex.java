@@ -0,0 +1,206 @@
+/*
+ * (c) Eric Barnhill 2016 All Rights Reserved.
+ *
+ * This file is part of the Java Volumetric Convolution Library (JVCL). JVCL is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * JVCL is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with JVCL.  If not, see http://www.gnu.org/licenses/ .
+ *
+ * This code uses software from the Apache Software Foundation.
+ * The Apache Software License can be found at: http://www.apache.org/licenses/LICENSE-2.0.txt .
+ *
+ * This code uses software from the JogAmp project.
+ * Jogamp information and software license can be found at: https://jogamp.org/ .
+ *
+ * This code uses methods from the JTransforms package by Piotr Wendykier.
+ * JTransforms information and software license can be found at: https://github.com/wendykierp/JTransforms .
+ *
+ */
+
+package com.ericbarnhill.jvcl;
+
+import org.apache.commons.numbers.complex.Complex;
+import org.apache.commons.numbers.complex.ComplexUtils;
+
+/**
+ * A volume of complex values held as split real and imaginary {@code double[]} arrays,
+ * which share the same offset and strides.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ * @see Volume
+ */
+public class VolumeComplex extends Volume<Complex> {
+
+    final double[] re, im;
+
+    /**
+     * Zero-filled contiguous volume.
+     */
+    public VolumeComplex(int ni, int nj, int nk) {
+        super(ni, nj, nk);
+        this.re = new double[ni * nj * nk];
+        this.im = new double[ni * nj * nk];
+    }
+
+    /**
+     * Wraps {@code re} and {@code im} as a contiguous volume without copying.
+     */
+    public VolumeComplex(double[] re, double[] im, int ni, int nj, int nk) {
+        super(ni, nj, nk);
+        if (re.length < ni * nj * nk || im.length < ni * nj * nk) {
+            throw new IllegalArgumentException("JVCL: backing array is too short for volume dimensions");
+        }
+        this.re = re;
+        this.im = im;
+    }
+
+    /**
+     * Wraps {@code re} and {@code im} with arbitrary offset and strides without copying.
+     */
+    public VolumeComplex(double[] re, double[] im, int ni, int nj, int nk, int offset, int si, int sj, int sk) {
+        super(ni, nj, nk, offset, si, sj, sk);
+        this.re = re;
+        this.im = im;
+    }
+
+    /**
+     * Copies a 1D {@code Complex[]} array into a volume of dimensions {@code (fi, 1, 1)}.
+     */
+    public VolumeComplex(Complex[] f) {
+        this(ComplexUtils.complex2Real(f), ComplexUtils.complex2Imaginary(f), f.length, 1, 1);
+    }
+
+    /**
+     * Copies a 2D {@code Complex[][]} array into a volume of dimensions {@code (fi, fj, 1)}.
+     */
+    public VolumeComplex(Complex[][] f) {
+        this(f.length, f[0].length, 1);
+        final int fj = f[0].length;
+        for (int i = 0; i < ni; i++) {
+            System.arraycopy(ComplexUtils.complex2Real(f[i]), 0, re, i * fj, fj);
+            System.arraycopy(ComplexUtils.complex2Imaginary(f[i]), 0, im, i * fj, fj);
+        }
+    }
+
+    /**
+     * Copies a 3D {@code Complex[][][]} array into a volume.
+     */
+    public VolumeComplex(Complex[][][] f) {
+        this(f.length, f[0].length, f[0][0].length);
+        for (int i = 0; i < ni; i++) {
+            for (int j = 0; j < nj; j++) {
+                System.arraycopy(ComplexUtils.complex2Real(f[i][j]), 0, re, (i * nj + j) * nk, nk);
+                System.arraycopy(ComplexUtils.complex2Imaginary(f[i][j]), 0, im, (i * nj + j) * nk, nk);
+            }
+        }
+    }
+
+    public double getReal(int i, int j, int k) {
+        return re[index(i, j, k)];
+    }
+
+    public double getImaginary(int i, int j, int k) {
+        return im[index(i, j, k)];
+    }
+
+    public void set(int i, int j, int k, double real, double imaginary) {
+        final int n = index(i, j, k);
+        re[n] = real;
+        im[n] = imaginary;
+    }
+
+    /**
+     * @return the real backing array, which may be shared with other volumes
+     */
+    public double[] getReal() {
+        return re;
+    }
+
+    /**
+     * @return the imaginary backing array, which may be shared with other volumes
+     */
+    public double[] getImaginary() {
+        return im;
+    }
+
+    /**
+     * @return contiguous copy of this volume
+     */
+    public VolumeComplex copy() {
+        final VolumeComplex r = new VolumeComplex(ni, nj, nk);
+        int n = 0;
+        for (int i = 0; i < ni; i++) {
+            for (int j = 0; j < nj; j++) {
+                final int base = offset + i * si + j * sj;
+                for (int k = 0; k < nk; k++) {
+                    r.re[n] = re[base + k * sk];
+                    r.im[n++] = im[base + k * sk];
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return {@code Complex[][][]} copy of this volume
+     */
+    public Complex[][][] toArray() {
+        final Complex[][][] r = new Complex[ni][nj][];
+        final double[] rowRe = new double[nk];
+        final double[] rowIm = new double[nk];
+        for (int i = 0; i < ni; i++) {
+            for (int j = 0; j < nj; j++) {
+                final int base = offset + i * si + j * sj;
+                for (int k = 0; k < nk; k++) {
+                    rowRe[k] = re[base + k * sk];
+                    rowIm[k] = im[base + k * sk];
+                }
+                r[i][j] = ComplexUtils.split2Complex(rowRe, rowIm);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return {@code Complex[][]} copy of a volume with {@code nk == 1}
+     */
+    public Complex[][] toArray2d() {
+        if (nk != 1) {
+            throw new IllegalStateException("JVCL: volume is not 2D");
+        }
+        final Complex[][] r = new Complex[ni][];
+        final double[] rowRe = new double[nj];
+        final double[] rowIm = new double[nj];
+        for (int i = 0; i < ni; i++) {
+            for (int j = 0; j < nj; j++) {
+                rowRe[j] = re[offset + i * si + j * sj];
+                rowIm[j] = im[offset + i * si + j * sj];
+            }
+            r[i] = ComplexUtils.split2Complex(rowRe, rowIm);
+        }
+        return r;
+    }
+
+    /**
+     * @return {@code Complex[]} copy of a volume with {@code nj == nk == 1}
+     */
+    public Complex[] toArray1d() {
+        if (nj != 1 || nk != 1) {
+            throw new IllegalStateException("JVCL: volume is not 1D");
+        }
+        final double[] rowRe = new double[ni];
+        final double[] rowIm = new double[ni];
+        for (int i = 0; i < ni; i++) {
+            rowRe[i] = re[offset + i * si];
+            rowIm[i] = im[offset + i * si];
+        }
+        return ComplexUtils.split2Complex(rowRe, rowIm);
+    }
+
+}
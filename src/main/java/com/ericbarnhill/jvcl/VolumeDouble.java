@@ -0,0 +1,175 @@
+/*
+ * (c) Eric Barnhill 2016 All Rights Reserved.
+ *
+ * This file is part of the Java Volumetric Convolution Library (JVCL). JVCL is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * JVCL is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with JVCL.  If not, see http://www.gnu.org/licenses/ .
+ *
+ * This code uses software from the Apache Software Foundation.
+ * The Apache Software License can be found at: http://www.apache.org/licenses/LICENSE-2.0.txt .
+ *
+ * This code uses software from the JogAmp project.
+ * Jogamp information and software license can be found at: https://jogamp.org/ .
+ *
+ * This code uses methods from the JTransforms package by Piotr Wendykier.
+ * JTransforms information and software license can be found at: https://github.com/wendykierp/JTransforms .
+ *
+ */
+
+package com.ericbarnhill.jvcl;
+
+/**
+ * A volume of {@code double} values held in one flat {@code double[]}.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ * @see Volume
+ */
+public class VolumeDouble extends Volume<Double> {
+
+    final double[] data;
+
+    /**
+     * Zero-filled contiguous volume.
+     */
+    public VolumeDouble(int ni, int nj, int nk) {
+        super(ni, nj, nk);
+        this.data = new double[ni * nj * nk];
+    }
+
+    /**
+     * Wraps {@code data} as a contiguous volume without copying.
+     */
+    public VolumeDouble(double[] data, int ni, int nj, int nk) {
+        super(ni, nj, nk);
+        if (data.length < ni * nj * nk) {
+            throw new IllegalArgumentException("JVCL: backing array is too short for volume dimensions");
+        }
+        this.data = data;
+    }
+
+    /**
+     * Wraps {@code data} with arbitrary offset and strides without copying.
+     */
+    public VolumeDouble(double[] data, int ni, int nj, int nk, int offset, int si, int sj, int sk) {
+        super(ni, nj, nk, offset, si, sj, sk);
+        this.data = data;
+    }
+
+    /**
+     * Copies a 1D {@code double[]} array into a volume of dimensions {@code (fi, 1, 1)}.
+     */
+    public VolumeDouble(double[] f) {
+        this(f.length, 1, 1);
+        System.arraycopy(f, 0, data, 0, f.length);
+    }
+
+    /**
+     * Copies a 2D {@code double[][]} array into a volume of dimensions {@code (fi, fj, 1)}.
+     */
+    public VolumeDouble(double[][] f) {
+        this(f.length, f[0].length, 1);
+        final int fj = f[0].length;
+        for (int i = 0; i < ni; i++) {
+            System.arraycopy(f[i], 0, data, i * fj, fj);
+        }
+    }
+
+    /**
+     * Copies a 3D {@code double[][][]} array into a volume.
+     */
+    public VolumeDouble(double[][][] f) {
+        this(f.length, f[0].length, f[0][0].length);
+        for (int i = 0; i < ni; i++) {
+            for (int j = 0; j < nj; j++) {
+                System.arraycopy(f[i][j], 0, data, (i * nj + j) * nk, nk);
+            }
+        }
+    }
+
+    public double get(int i, int j, int k) {
+        return data[index(i, j, k)];
+    }
+
+    public void set(int i, int j, int k, double value) {
+        data[index(i, j, k)] = value;
+    }
+
+    /**
+     * @return the backing array, which may be shared with other volumes
+     */
+    public double[] getData() {
+        return data;
+    }
+
+    /**
+     * @return contiguous copy of this volume
+     */
+    public VolumeDouble copy() {
+        final VolumeDouble r = new VolumeDouble(ni, nj, nk);
+        int n = 0;
+        for (int i = 0; i < ni; i++) {
+            for (int j = 0; j < nj; j++) {
+                final int base = offset + i * si + j * sj;
+                for (int k = 0; k < nk; k++) {
+                    r.data[n++] = data[base + k * sk];
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return {@code double[][][]} copy of this volume
+     */
+    public double[][][] toArray() {
+        final double[][][] r = new double[ni][nj][nk];
+        for (int i = 0; i < ni; i++) {
+            for (int j = 0; j < nj; j++) {
+                final int base = offset + i * si + j * sj;
+                final double[] row = r[i][j];
+                for (int k = 0; k < nk; k++) {
+                    row[k] = data[base + k * sk];
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return {@code double[][]} copy of a volume with {@code nk == 1}
+     */
+    public double[][] toArray2d() {
+        if (nk != 1) {
+            throw new IllegalStateException("JVCL: volume is not 2D");
+        }
+        final double[][] r = new double[ni][nj];
+        for (int i = 0; i < ni; i++) {
+            for (int j = 0; j < nj; j++) {
+                r[i][j] = data[offset + i * si + j * sj];
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return {@code double[]} copy of a volume with {@code nj == nk == 1}
+     */
+    public double[] toArray1d() {
+        if (nj != 1 || nk != 1) {
+            throw new IllegalStateException("JVCL: volume is not 1D");
+        }
+        final double[] r = new double[ni];
+        for (int i = 0; i < ni; i++) {
+            r[i] = data[offset + i * si];
+        }
+        return r;
+    }
+
+}
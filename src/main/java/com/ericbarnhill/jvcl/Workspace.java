@@ -0,0 +1,150 @@
+/*
+ * (c) Eric Barnhill 2016 All Rights Reserved.
+ *
+ * This file is part of the Java Volumetric Convolution Library (JVCL). JVCL is free software:
+ * you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * JVCL is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with JVCL.  If not, see http://www.gnu.org/licenses/ .
+ *
+ * This code uses software from the Apache Software Foundation.
+ * The Apache Software License can be found at: http://www.apache.org/licenses/LICENSE-2.0.txt .
+ *
+ * This code uses software from the JogAmp project.
+ * Jogamp information and software license can be found at: https://jogamp.org/ .
+ *
+ * This code uses methods from the JTransforms package by Piotr Wendykier.
+ * JTransforms information and software license can be found at: https://github.com/wendykierp/JTransforms .
+ *
+ */
+
+package com.ericbarnhill.jvcl;
+
+/**
+ * This class holds scratch buffers which are reused across {@code convolveInto}
+ * calls. Buffers are created on first use and kept for as long as the workspace
+ * is, so repeated convolutions of same-sized arrays allocate nothing once the
+ * first call has sized the workspace.
+ * <p>
+ * A workspace may be shared between convolvers and between calls of different
+ * sizes, but not between threads.
+ *
+ * @author ericbarnhill
+ * @since 0.1
+ */
+public class Workspace {
+
+    static final int SLOTS = 4;
+
+    private final double[][] doubles = new double[SLOTS][];
+    private final float[][] floats = new float[SLOTS][];
+    private final Object[] arrays = new Object[SLOTS];
+
+    Object transform;
+    int ti, tj, tk;
+
+    public Workspace() {}
+
+    /**
+     * Releases all buffers held by the workspace.
+     */
+    public void clear() {
+        for (int n = 0; n < SLOTS; n++) {
+            doubles[n] = null;
+            floats[n] = null;
+            arrays[n] = null;
+        }
+        transform = null;
+    }
+
+    /**
+     * @return {@code double[]} buffer of exactly {@code length} elements, with
+     *         undefined contents
+     */
+    double[] getDoubles(int slot, int length) {
+        if (doubles[slot] == null || doubles[slot].length != length) {
+            doubles[slot] = new double[length];
+        }
+        return doubles[slot];
+    }
+
+    /**
+     * @return {@code float[]} buffer of exactly {@code length} elements, with
+     *         undefined contents
+     */
+    float[] getFloats(int slot, int length) {
+        if (floats[slot] == null || floats[slot].length != length) {
+            floats[slot] = new float[length];
+        }
+        return floats[slot];
+    }
+
+    /**
+     * @return {@code double[][]} buffer of exactly {@code (ni, nj)}, with
+     *         undefined contents
+     */
+    double[][] getDoubles(int slot, int ni, int nj) {
+        if (arrays[slot] instanceof double[][]) {
+            final double[][] a = (double[][]) arrays[slot];
+            if (a.length == ni && a[0].length == nj) {
+                return a;
+            }
+        }
+        final double[][] a = new double[ni][nj];
+        arrays[slot] = a;
+        return a;
+    }
+
+    /**
+     * @return {@code double[][][]} buffer of exactly {@code (ni, nj, nk)}, with
+     *         undefined contents
+     */
+    double[][][] getDoubles(int slot, int ni, int nj, int nk) {
+        if (arrays[slot] instanceof double[][][]) {
+            final double[][][] a = (double[][][]) arrays[slot];
+            if (a.length == ni && a[0].length == nj && a[0][0].length == nk) {
+                return a;
+            }
+        }
+        final double[][][] a = new double[ni][nj][nk];
+        arrays[slot] = a;
+        return a;
+    }
+
+    /**
+     * @return {@code float[][]} buffer of exactly {@code (ni, nj)}, with
+     *         undefined contents
+     */
+    float[][] getFloats(int slot, int ni, int nj) {
+        if (arrays[slot] instanceof float[][]) {
+            final float[][] a = (float[][]) arrays[slot];
+            if (a.length == ni && a[0].length == nj) {
+                return a;
+            }
+        }
+        final float[][] a = new float[ni][nj];
+        arrays[slot] = a;
+        return a;
+    }
+
+    /**
+     * @return {@code float[][][]} buffer of exactly {@code (ni, nj, nk)}, with
+     *         undefined contents
+     */
+    float[][][] getFloats(int slot, int ni, int nj, int nk) {
+        if (arrays[slot] instanceof float[][][]) {
+            final float[][][] a = (float[][][]) arrays[slot];
+            if (a.length == ni && a[0].length == nj && a[0][0].length == nk) {
+                return a;
+            }
+        }
+        final float[][][] a = new float[ni][nj][nk];
+        arrays[slot] = a;
+        return a;
+    }
+
+}